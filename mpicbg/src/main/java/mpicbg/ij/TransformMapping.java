@@ -46,25 +46,31 @@ public class TransformMapping< T extends CoordinateTransform > implements Invers
 	@Override
 	public void mapInverse( final ImageProcessor source, final ImageProcessor target )
 	{
-		final double[] t = new double[ 2 ];
 		final int sw = source.getWidth() - 1;
 		final int sh = source.getHeight() - 1;
 		final int tw = target.getWidth();
 		final int th = target.getHeight();
+
+		/* rows of target coordinates, transformed in bulk */
+		final double[] xs = new double[ tw ];
+		final double[] ys = new double[ tw ];
 		for ( int y = 0; y < th; ++y )
 		{
 			for ( int x = 0; x < tw; ++x )
 			{
-				t[ 0 ] = x;
-				t[ 1 ] = y;
-				transform.applyInPlace( t );
-				final int tx = ( int )( t[ 0 ] + 0.5f );
-				final int ty = ( int )( t[ 1 ] + 0.5f );
+				xs[ x ] = x;
+				ys[ x ] = y;
+			}
+			transform.applyInPlace( xs, ys, 0, tw );
+			for ( int x = 0; x < tw; ++x )
+			{
+				final int tx = ( int )( xs[ x ] + 0.5f );
+				final int ty = ( int )( ys[ x ] + 0.5f );
 				if (
-						t[ 0 ] >= 0 &&
-						t[ 0 ] <= sw &&
-						t[ 1 ] >= 0 &&
-						t[ 1 ] <= sh )
+						xs[ x ] >= 0 &&
+						xs[ x ] <= sw &&
+						ys[ x ] >= 0 &&
+						ys[ x ] <= sh )
 					target.putPixel( x, y, source.getPixel( tx, ty ) );
 			}
 		}
@@ -74,24 +80,30 @@ public class TransformMapping< T extends CoordinateTransform > implements Invers
 	@Override
 	public void mapInverseInterpolated( final ImageProcessor source, final ImageProcessor target )
 	{
-		final double[] t = new double[ 2 ];
 		final int sw = source.getWidth() - 1;
 		final int sh = source.getHeight() - 1;
 		final int tw = target.getWidth();
 		final int th = target.getHeight();
+
+		/* rows of target coordinates, transformed in bulk */
+		final double[] xs = new double[ tw ];
+		final double[] ys = new double[ tw ];
 		for ( int y = 0; y < th; ++y )
 		{
 			for ( int x = 0; x < tw; ++x )
 			{
-				t[ 0 ] = x;
-				t[ 1 ] = y;
-				transform.applyInPlace( t );
+				xs[ x ] = x;
+				ys[ x ] = y;
+			}
+			transform.applyInPlace( xs, ys, 0, tw );
+			for ( int x = 0; x < tw; ++x )
+			{
 				if (
-						t[ 0 ] >= 0 &&
-						t[ 0 ] <= sw &&
-						t[ 1 ] >= 0 &&
-						t[ 1 ] <= sh )
-					target.putPixel( x, y, source.getPixelInterpolated( t[ 0 ], t[ 1 ] ) );
+						xs[ x ] >= 0 &&
+						xs[ x ] <= sw &&
+						ys[ x ] >= 0 &&
+						ys[ x ] <= sh )
+					target.putPixel( x, y, source.getPixelInterpolated( xs[ x ], ys[ x ] ) );
 			}
 		}
 	}
@@ -236,7 +236,7 @@ public class BlockMatching
 		final CoordinateTransformList< CoordinateTransform > lTarget = new CoordinateTransformList< CoordinateTransform >();
 		lTarget.add( tTarget );
 		lTarget.add( transform );
-		final InverseMapping< ? > targetMapping = new TransformMapping< CoordinateTransform >( lTarget );
+		final InverseMapping< ? > targetMapping = new TransformMapping< CoordinateTransform >( lTarget.compile() );
 		targetMapping.mapInverseInterpolated( target, mappedTarget );
 
 //		mappedTarget.setMinAndMax( 0, 1 );
@@ -629,10 +629,11 @@ public class BlockMatching
 		lTarget.add( sTarget );
 		lTarget.add( tTarget );
 		lTarget.add( transform );
+		final CoordinateTransform cTarget = lTarget.compile();
 
 		if ( targetMask == null )
 		{
-			final InverseMapping< ? > targetMapping = new TransformMapping< CoordinateTransform >( lTarget );
+			final InverseMapping< ? > targetMapping = new TransformMapping< CoordinateTransform >( cTarget );
 			targetMapping.mapInverseInterpolated( target, mappedScaledTarget );
 		}
 		else
@@ -640,7 +641,7 @@ public class BlockMatching
 			final FloatProcessor smoothedTargetMask = ( FloatProcessor )targetMask.duplicate();
 	    	Filter.smoothForScale( smoothedTargetMask, scale, 0.5f, 0.5f );
 
-	    	mapAndMask( target, smoothedTargetMask, mappedScaledTarget, lTarget );
+	    	mapAndMask( target, smoothedTargetMask, mappedScaledTarget, cTarget );
 		}
 
 		target = null;
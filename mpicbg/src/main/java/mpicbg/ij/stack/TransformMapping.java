@@ -51,13 +51,17 @@ public class TransformMapping< T extends CoordinateTransform > extends AbstractT
 			final ImageStack source,
 			final ImageProcessor target )
 	{
-		final double[] t = new double[ 3 ];
 		final int sw = source.getWidth() - 1;
 		final int sh = source.getHeight() - 1;
 		final int sd = source.getSize();
 		final int tw = target.getWidth();
 		final int th = target.getHeight();
 
+		/* rows of target coordinates, transformed in bulk */
+		final double[] xs = new double[ tw ];
+		final double[] ys = new double[ tw ];
+		final double[] zs = new double[ tw ];
+
 		/* ImageJ creates a !NEW! ImageProcessor for each call to getProcessor() */
 		final ImageProcessor slice = source.getProcessor( 1 );
 
@@ -65,13 +69,16 @@ public class TransformMapping< T extends CoordinateTransform > extends AbstractT
 		{
 			for ( int x = 0; x < tw; ++x )
 			{
-				t[ 0 ] = x;
-				t[ 1 ] = y;
-				t[ 2 ] = z;
-				transform.applyInPlace( t );
-				final int tx = ( int )( t[ 0 ] + 0.5f );
-				final int ty = ( int )( t[ 1 ] + 0.5f );
-				final int tz = ( int )( t[ 2 ] + 1.5f );
+				xs[ x ] = x;
+				ys[ x ] = y;
+				zs[ x ] = z;
+			}
+			transform.applyInPlace( xs, ys, zs, 0, tw );
+			for ( int x = 0; x < tw; ++x )
+			{
+				final int tx = ( int )( xs[ x ] + 0.5f );
+				final int ty = ( int )( ys[ x ] + 0.5f );
+				final int tz = ( int )( zs[ x ] + 1.5f );
 				if (
 						tx >= 0 &&
 						tx <= sw &&
@@ -93,13 +100,17 @@ public class TransformMapping< T extends CoordinateTransform > extends AbstractT
 			final ImageStack source,
 			final ImageProcessor target )
 	{
-		final double[] t = new double[ 3 ];
 		final int sw = source.getWidth() - 1;
 		final int sh = source.getHeight() - 1;
 		final int sd = source.getSize();
 		final int tw = target.getWidth();
 		final int th = target.getHeight();
 
+		/* rows of target coordinates, transformed in bulk */
+		final double[] xs = new double[ tw ];
+		final double[] ys = new double[ tw ];
+		final double[] zs = new double[ tw ];
+
 		/* ImageJ creates a !NEW! ImageProcessor for each call to getProcessor() */
 		final ImageProcessor slice = source.getProcessor( 1 );
 		slice.setInterpolationMethod( ImageProcessor.BILINEAR );
@@ -110,27 +121,32 @@ public class TransformMapping< T extends CoordinateTransform > extends AbstractT
 		{
 			for ( int x = 0; x < tw; ++x )
 			{
-				t[ 0 ] = x;
-				t[ 1 ] = y;
-				t[ 2 ] = z;
-
-				transform.applyInPlace( t );
-				final int tza = ( int )( t[ 2 ] + 1.0f );
-				final int tzb = ( int )( t[ 2 ] + 2.0f );
+				xs[ x ] = x;
+				ys[ x ] = y;
+				zs[ x ] = z;
+			}
+			transform.applyInPlace( xs, ys, zs, 0, tw );
+			for ( int x = 0; x < tw; ++x )
+			{
+				final double tx = xs[ x ];
+				final double ty = ys[ x ];
+				final double tz = zs[ x ];
+				final int tza = ( int )( tz + 1.0f );
+				final int tzb = ( int )( tz + 2.0f );
 				if (
-						t[ 0 ] >= 0 &&
-						t[ 0 ] <= sw &&
-						t[ 1 ] >= 0 &&
-						t[ 1 ] <= sh &&
+						tx >= 0 &&
+						tx <= sw &&
+						ty >= 0 &&
+						ty <= sh &&
 						tza >= 1 &&
 						tzb <= sd )
 				{
 					slice.setPixels( source.getPixels( tza ) );
-					final int a = slice.getPixelInterpolated( t[ 0 ], t[ 1 ] );
+					final int a = slice.getPixelInterpolated( tx, ty );
 					slice.setPixels( source.getPixels( tzb ) );
-					final int b = slice.getPixelInterpolated( t[ 0 ], t[ 1 ] );
+					final int b = slice.getPixelInterpolated( tx, ty );
 
-					target.putPixel( x, y, interpolator.interpolate( a, b, t[ 2 ] - tza + 1.0f ) );
+					target.putPixel( x, y, interpolator.interpolate( a, b, tz - tza + 1.0f ) );
 				}
 			}
 		}
@@ -39,10 +39,21 @@ package mpicbg.models;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mpicbg.util.KdTree;
+import mpicbg.util.Util;
 
 /**
  * Abstract class for arbitrary transformation models to be applied
@@ -52,9 +63,11 @@ import java.util.Random;
  * </p>
  * <p>
  * Provides methods for generic optimization and model extraction algorithms.
- * Currently, the Random Sample Consensus \cite{FischlerB81}, a robust
- * regression method and the Iterative Closest Point Algorithm \cite{Zhang94}
- * are implemented.
+ * Currently, the Random Sample Consensus \cite{FischlerB81} with optional
+ * progressive sampling \cite{ChumM05} and sequential probability ratio test
+ * \cite{ChumM08}, a robust regression
+ * method and the Iterative Closest Point Algorithm \cite{Zhang94} are
+ * implemented.
  * </p>
  * <p>
  * BibTeX:
@@ -73,6 +86,23 @@ import java.util.Random;
  *   issn      = {0001-0782},
  *   doi       = {http://doi.acm.org/10.1145/358669.358692},
  * }
+ * &#64;inproceedings{ChumM05,
+ *   author    = {Ond{\v r}ej Chum and Ji{\v r}{\'\i} Matas},
+ *   title     = {Matching with {PROSAC} -- Progressive Sample Consensus},
+ *   booktitle = {IEEE Computer Society Conference on Computer Vision and Pattern Recognition},
+ *   volume    = {1},
+ *   year      = {2005},
+ *   pages     = {220--226},
+ * }
+ * &#64;article{ChumM08,
+ *   author    = {Ond{\v r}ej Chum and Ji{\v r}{\'\i} Matas},
+ *   title     = {Optimal Randomized {RANSAC}},
+ *   journal   = {IEEE Transactions on Pattern Analysis and Machine Intelligence},
+ *   volume    = {30},
+ *   number    = {8},
+ *   year      = {2008},
+ *   pages     = {1472--1482},
+ * }
  * &#64;article{Zhang94,
  *   author    = {{Zhengyou Zhang}},
  *   title     = {Iterative point matching for registration of free-form curves and surfaces},
@@ -94,8 +124,11 @@ public abstract class AbstractModel< M extends AbstractModel< M > > implements M
 	/* real random */
 //	final Random random = new Random( System.currentTimeMillis() );
 
-	/* repeatable results */
-	final static protected Random rnd = new Random( 69997 );
+	/*
+	 * repeatable results for single threaded use, concurrent callers should
+	 * pass their own random source
+	 */
+	final static protected Random rnd = new Random( RansacParam.DEFAULT_SEED );
 
 	/**
 	 * The cost depends on what kind of algorithm is running.  It is always
@@ -172,6 +205,31 @@ public abstract class AbstractModel< M extends AbstractModel< M > > implements M
 		return test( candidates, inliers, epsilon, minInlierRatio, getMinNumMatches() );
 	}
 
+	/**
+	 * Test the {@link AbstractModel} for the matches of a
+	 * {@link PointMatchBuffer}.  Fills inliers with the storage indices of
+	 * all candidates whose transfer error is smaller than epsilon.
+	 *
+	 * Sets {@link #getCost() cost} = 1.0 - |inliers| / |candidates|.
+	 *
+	 * @param candidates point correspondence candidates
+	 * @param inliers storage indices of inliers, at least |candidates| long
+	 * @param epsilon maximal allowed transfer error
+	 *
+	 * @return number of inliers
+	 */
+	@Override
+	final public int test(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
+			final double epsilon )
+	{
+		final int numInliers = testIndices( candidates, inliers, epsilon, new double[ candidates.numDimensions() ][ candidates.size() ], new double[ candidates.size() ] );
+		for ( int k = 0; k < numInliers; ++k )
+			inliers[ k ] = candidates.index( inliers[ k ] );
+		return numInliers;
+	}
+
 	/**
 	 * Estimate the {@link AbstractModel} and filter potential outliers by robust
 	 * iterative regression.
@@ -200,6 +258,37 @@ public abstract class AbstractModel< M extends AbstractModel< M > > implements M
 			final double maxTrust,
 			final int minNumInliers )
 		throws NotEnoughDataPointsException
+	{
+		return filter( candidates, inliers, maxTrust, minNumInliers, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Estimate the {@link AbstractModel} and filter potential outliers by
+	 * robust iterative regression in at most maxRounds rounds.  The median
+	 * transfer error of each round is found by selection on a primitive
+	 * error array instead of sorting.
+	 * <p>
+	 * Sets {@link #getCost() cost} to the average point transfer error.
+	 * </p>
+	 *
+	 * @param candidates Candidate data points eventually inluding some outliers
+	 * @param inliers Remaining after the robust regression filter
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxRounds maximal number of fit and reject rounds
+	 *
+	 * @return true if {@link AbstractModel} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link AbstractModel} remains unchanged.
+	 */
+	@Override
+	final public < P extends PointMatch >boolean filter(
+			final Collection< P > candidates,
+			final Collection< P > inliers,
+			final double maxTrust,
+			final int minNumInliers,
+			final int maxRounds )
+		throws NotEnoughDataPointsException
 	{
 		if ( candidates.size() < getMinNumMatches() )
 			throw new NotEnoughDataPointsException( candidates.size() + " data points are not enough to solve the Model, at least " + getMinNumMatches() + " data points required." );
@@ -208,8 +297,11 @@ public abstract class AbstractModel< M extends AbstractModel< M > > implements M
 
 		inliers.clear();
 		inliers.addAll( candidates );
-		final ArrayList< P > temp = new ArrayList< P >();
+		final ArrayList< P > temp = new ArrayList< P >( candidates.size() );
+		final double[] errors = new double[ candidates.size() ];
+		final double[] selectErrors = new double[ candidates.size() ];
 		int numInliers;
+		int round = 0;
 		do
 		{
 			temp.clear();
@@ -227,25 +319,28 @@ public abstract class AbstractModel< M extends AbstractModel< M > > implements M
 			{
 				return false;
 			}
-			final ErrorStatistic observer = new ErrorStatistic( temp.size() );
-			for ( final PointMatch m : temp )
+			double mean = 0;
+			for ( int k = 0; k < numInliers; ++k )
 			{
+				final PointMatch m = temp.get( k );
 				m.apply( copy );
-				observer.add( m.getDistance() );
+				errors[ k ] = m.getDistance();
+				mean += ( errors[ k ] - mean ) / ( k + 1 );
 			}
+			System.arraycopy( errors, 0, selectErrors, 0, numInliers );
+			final double t = Util.median( selectErrors, numInliers ) * maxTrust;
 			inliers.clear();
-			final double t = observer.getMedian() * maxTrust;
-			for ( final P m : temp )
+			for ( int k = 0; k < numInliers; ++k )
 			{
-				if ( m.getDistance() <= t )
-					inliers.add( m );
+				if ( errors[ k ] <= t )
+					inliers.add( temp.get( k ) );
 			}
 
-			copy.cost = observer.mean;
+			copy.cost = mean;
 		}
-		while ( numInliers > inliers.size() );
+		while ( numInliers > inliers.size() && ++round < maxRounds );
 
-		if ( numInliers < minNumInliers )
+		if ( inliers.size() < minNumInliers )
 			return false;
 
 		set( copy );
@@ -278,6 +373,135 @@ public abstract class AbstractModel< M extends AbstractModel< M > > implements M
 		return filter( candidates, inliers, 4f, getMinNumMatches() );
 	}
 
+	/**
+	 * Estimate the {@link AbstractModel} from the matches of a
+	 * {@link PointMatchBuffer} and filter potential outliers by robust
+	 * iterative regression as
+	 * {@link #filter(Collection, Collection, double, int)} does.
+	 * <p>
+	 * Sets {@link #getCost() cost} to the average point transfer error.
+	 * </p>
+	 *
+	 * @param candidates Candidate data points eventually inluding some outliers
+	 * @param inliers storage indices of the candidates remaining after the
+	 *   robust regression filter, at least |candidates| long
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param minNumInliers minimally required absolute number of inliers
+	 *
+	 * @return number of inliers if {@link AbstractModel} could be estimated,
+	 *   0 otherwise.  If 0, {@link AbstractModel} remains unchanged.
+	 */
+	@Override
+	final public int filter(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
+			final double maxTrust,
+			final int minNumInliers )
+		throws NotEnoughDataPointsException
+	{
+		return filter( candidates, inliers, maxTrust, minNumInliers, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * {@link #filter(PointMatchBuffer, int[], double, int)} with at most
+	 * maxRounds fit and reject rounds.
+	 * <p>
+	 * Sets {@link #getCost() cost} to the average point transfer error.
+	 * </p>
+	 *
+	 * @param candidates Candidate data points eventually inluding some outliers
+	 * @param inliers storage indices of the candidates remaining after the
+	 *   robust regression filter, at least |candidates| long
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxRounds maximal number of fit and reject rounds
+	 *
+	 * @return number of inliers if {@link AbstractModel} could be estimated,
+	 *   0 otherwise.  If 0, {@link AbstractModel} remains unchanged.
+	 */
+	@Override
+	final public int filter(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
+			final double maxTrust,
+			final int minNumInliers,
+			final int maxRounds )
+		throws NotEnoughDataPointsException
+	{
+		final int n = candidates.size();
+		if ( n < getMinNumMatches() )
+			throw new NotEnoughDataPointsException( n + " data points are not enough to solve the Model, at least " + getMinNumMatches() + " data points required." );
+
+		final M copy = copy();
+
+		final int[] temp = new int[ n ];
+		final PointMatchBuffer tempMatches = candidates.view( temp, 0 );
+		final double[] errors = new double[ n ];
+		final double[] selectErrors = new double[ n ];
+		final double[][] scratch = new double[ candidates.numDimensions() ][ n ];
+
+		/* 2d models that can be fitted to moments are updated incrementally */
+		final PointMatchMoments2D moments =
+				copy instanceof MomentsFittable2D && candidates.numDimensions() == 2 ?
+						new PointMatchMoments2D() : null;
+
+		for ( int k = 0; k < n; ++k )
+		{
+			inliers[ k ] = candidates.index( k );
+			if ( moments != null )
+				moments.add( candidates, inliers[ k ] );
+		}
+		int numInliers = n;
+		int numPreviousInliers;
+		int round = 0;
+		do
+		{
+			numPreviousInliers = numInliers;
+			System.arraycopy( inliers, 0, temp, 0, numPreviousInliers );
+			tempMatches.setView( temp, numPreviousInliers );
+			try
+			{
+				if ( moments == null )
+					copy.fit( tempMatches );
+				else
+					( ( MomentsFittable2D )copy ).fit( moments );
+			}
+			catch ( final NotEnoughDataPointsException e )
+			{
+				return 0;
+			}
+			catch ( final IllDefinedDataPointsException e )
+			{
+				return 0;
+			}
+			tempMatches.transferErrors( copy, scratch, errors );
+			double mean = 0;
+			for ( int k = 0; k < numPreviousInliers; ++k )
+				mean += ( errors[ k ] - mean ) / ( k + 1 );
+			System.arraycopy( errors, 0, selectErrors, 0, numPreviousInliers );
+			final double t = Util.median( selectErrors, numPreviousInliers ) * maxTrust;
+			numInliers = 0;
+			for ( int k = 0; k < numPreviousInliers; ++k )
+			{
+				if ( errors[ k ] <= t )
+					inliers[ numInliers++ ] = temp[ k ];
+				else if ( moments != null )
+					moments.remove( candidates, temp[ k ] );
+			}
+
+			copy.cost = mean;
+		}
+		while ( numPreviousInliers > numInliers && ++round < maxRounds );
+
+		if ( numInliers < minNumInliers )
+			return 0;
+
+		set( copy );
+		return numInliers;
+	}
+
 
 	/**
 	 * Find the {@link AbstractModel} of a set of {@link PointMatch} candidates
@@ -305,6 +529,38 @@ public abstract class AbstractModel< M extends AbstractModel< M > > implements M
 			final double minInlierRatio,
 			final int minNumInliers )
 		throws NotEnoughDataPointsException
+	{
+		return ransac( candidates, inliers, iterations, epsilon, minInlierRatio, minNumInliers, rnd );
+	}
+
+	/**
+	 * Find the {@link AbstractModel} of a set of {@link PointMatch} candidates
+	 * containing a high number of outliers using
+	 * {@link #ransac(List, Collection, int, double, double, int) RANSAC}
+	 * \citet[{FischlerB81} drawing minimal samples from random.
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations number of iterations
+	 * @param epsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param random random source
+	 *
+	 * @return true if {@link AbstractModel} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link AbstractModel} remains unchanged.
+	 */
+	@Override
+	final public < P extends PointMatch >boolean ransac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double epsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final Random random )
+		throws NotEnoughDataPointsException
 	{
 		if ( candidates.size() < getMinNumMatches() )
 			throw new NotEnoughDataPointsException( candidates.size() + " data points are not enough to solve the Model, at least " + getMinNumMatches() + " data points required." );
@@ -328,7 +584,7 @@ A:		while ( i < iterations )
 				P p;
 				do
 				{
-					p = candidates.get( ( int )( rnd.nextDouble() * candidates.size() ) );
+					p = candidates.get( ( int )( random.nextDouble() * candidates.size() ) );
 				}
 				while ( minMatches.contains( p ) );
 				minMatches.add( p );
@@ -390,157 +646,1214 @@ A:		while ( i < iterations )
 	}
 
 	/**
-	 * Estimate a {@link AbstractModel} from a set with many outliers by first
-	 * filtering the worst outliers with {@link #ransac RANSAC}
-	 * \citet[{FischlerB81} and filter potential outliers by robust iterative
-	 * regression.
+	 * Find the {@link AbstractModel} of a set of {@link PointMatch} candidates
+	 * containing a high number of outliers using
+	 * {@link #ransac(List, Collection, int, double, double, int) RANSAC}
+	 * \citet[{FischlerB81} with hypotheses distributed over the threads of an
+	 * {@link ExecutorService}.
+	 * <p>
+	 * Each hypothesis draws its minimal sample from its own random stream that
+	 * depends only on {@link RansacParam#seed} and the index of the
+	 * hypothesis, and every worker uses its own copy of the model.  Candidates
+	 * are not modified while hypotheses are tested.  The best hypothesis is
+	 * that with the smallest cost and, for equal costs, the smallest index,
+	 * i.e. the one that a sequential pass over all hypotheses would have found
+	 * first.  The result is therefore reproducible for a given seed and
+	 * independent of the number of threads.  If
+	 * {@link RansacParam#executor} is null, all hypotheses are tested in the
+	 * calling thread.
+	 * </p>
+	 * <p>
+	 * For {@link RansacParam#confidence} &lt; 1, RANSAC stops early as soon
+	 * as the number of tested hypotheses reaches
+	 * {@link #requiredIterations(double, int, double)} for the inlier ratio of
+	 * the best hypothesis so far.  iterations remains the upper limit.  The
+	 * stopping point is computed as in a sequential pass, so early
+	 * termination does not affect reproducibility.
+	 * </p>
+	 * <p>
+	 * With {@link RansacParam#prosac}, candidates are sorted by decreasing
+	 * {@link PointMatch#getQuality() quality} and hypothesis i draws its
+	 * sample from the best {@link #prosacGrowth(int, int, int) n(i)}
+	 * candidates \cite{ChumM05}.  The sorted order is also the order of
+	 * inliers.
+	 * </p>
+	 * <p>
+	 * With {@link RansacParam#sprt}, hypotheses from minimal samples are
+	 * verified by a sequential probability ratio test \cite{ChumM08} that
+	 * rejects most bad hypotheses after having looked at a few candidates.
+	 * Only hypotheses that pass the test are tested completely and refined.
+	 * </p>
 	 *
 	 * @param candidates candidate data points inluding (many) outliers
 	 * @param inliers remaining candidates after RANSAC
-	 * @param iterations number of iterations
-	 * @param maxEpsilon maximal allowed transfer error
+	 * @param iterations maximal number of iterations
+	 * @param epsilon maximal allowed transfer error
 	 * @param minInlierRatio minimal number of inliers to number of
 	 *   candidates
 	 * @param minNumInliers minimally required absolute number of inliers
-	 * @param maxTrust reject candidates with a cost larger than
-	 *   maxTrust * median cost
+	 * @param param options
 	 *
 	 * @return true if {@link AbstractModel} could be estimated and inliers is not
 	 *   empty, false otherwise.  If false, {@link AbstractModel} remains unchanged.
 	 */
 	@Override
-	final public < P extends PointMatch >boolean filterRansac(
+	final public < P extends PointMatch >boolean ransac(
 			final List< P > candidates,
 			final Collection< P > inliers,
 			final int iterations,
-			final double maxEpsilon,
+			final double epsilon,
 			final double minInlierRatio,
 			final int minNumInliers,
-			final double maxTrust )
+			final RansacParam param )
 		throws NotEnoughDataPointsException
 	{
-		final ArrayList< P > temp = new ArrayList< P >();
-		if (
-				ransac(
-						candidates,
-						temp,
-						iterations,
-						maxEpsilon,
-						minInlierRatio,
-						minNumInliers ) &&
-				filter( temp, inliers, maxTrust, minNumInliers ) )
-			return true;
-		return false;
+		if ( candidates.size() < getMinNumMatches() )
+			throw new NotEnoughDataPointsException( candidates.size() + " data points are not enough to solve the Model, at least " + getMinNumMatches() + " data points required." );
+
+		final ArrayList< P > candidateList = new ArrayList< P >( candidates );
+
+		/* PROSAC samples from the best candidates first */
+		if ( param.prosac )
+			Collections.sort( candidateList, ( a, b ) -> Double.compare( b.getQuality(), a.getQuality() ) );
+
+		final RansacHypothesis< M > best = ransacHypothesis( new PointMatchBuffer( candidateList ), iterations, epsilon, minInlierRatio, minNumInliers, param );
+
+		inliers.clear();
+		if ( best == null )
+			return false;
+
+		for ( int i = 0; i < best.numInliers; ++i )
+			inliers.add( candidateList.get( best.inliers[ i ] ) );
+
+		set( best.model );
+		return true;
 	}
 
 	/**
-	 * Call {@link #filterRansac(List, Collection, int, double, double, int, double)}
-	 * with maxTrust = 4.
+	 * Find the {@link AbstractModel} of the matches of a
+	 * {@link PointMatchBuffer} containing a high number of outliers as
+	 * {@link #ransac(List, Collection, int, double, double, int, RansacParam)}
+	 * does.  With {@link RansacParam#prosac}, candidates are expected in the
+	 * order of decreasing quality.
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers storage indices of the candidates remaining after
+	 *   RANSAC, at least |candidates| long
+	 * @param iterations maximal number of iterations
+	 * @param epsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param param options
+	 *
+	 * @return number of inliers if {@link AbstractModel} could be estimated,
+	 *   0 otherwise.  If 0, {@link AbstractModel} remains unchanged.
 	 */
 	@Override
-	final public < P extends PointMatch >boolean filterRansac(
-			final List< P > candidates,
-			final Collection< P > inliers,
+	final public int ransac(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
 			final int iterations,
-			final double maxEpsilon,
+			final double epsilon,
 			final double minInlierRatio,
-			final int minNumInliers )
+			final int minNumInliers,
+			final RansacParam param )
 		throws NotEnoughDataPointsException
 	{
-		return filterRansac( candidates, inliers, iterations, maxEpsilon, minInlierRatio, minNumInliers, 4f );
+		if ( candidates.size() < getMinNumMatches() )
+			throw new NotEnoughDataPointsException( candidates.size() + " data points are not enough to solve the Model, at least " + getMinNumMatches() + " data points required." );
+
+		final RansacHypothesis< M > best = ransacHypothesis( candidates, iterations, epsilon, minInlierRatio, minNumInliers, param );
+		if ( best == null )
+			return 0;
+
+		for ( int i = 0; i < best.numInliers; ++i )
+			inliers[ i ] = candidates.index( best.inliers[ i ] );
+
+		set( best.model );
+		return best.numInliers;
 	}
 
+	/**
+	 * Distribute the hypotheses of
+	 * {@link #ransac(PointMatchBuffer, int[], int, double, double, int, RansacParam)}
+	 * over {@link RansacParam#executor} and return the best in the order of a
+	 * sequential pass.
+	 *
+	 * @return the best hypothesis with inliers indexed by position in
+	 *   candidates or null if there is none
+	 */
+	protected RansacHypothesis< M > ransacHypothesis(
+			final PointMatchBuffer candidates,
+			final int iterations,
+			final double epsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final RansacParam param )
+	{
+		final AtomicInteger nextHypothesis = new AtomicInteger( 0 );
+		final AtomicInteger maxIterations = new AtomicInteger( iterations );
+
+		final int[] growth = param.prosac ? prosacGrowth( iterations, candidates.size(), getMinNumMatches() ) : null;
+
+		/* SPRT verifies candidates in random order */
+		final RansacSprt sprt = new RansacSprt( param, minInlierRatio, candidates.size() );
+
+		final ArrayList< RansacHypothesis< M > > hypotheses = new ArrayList< RansacHypothesis< M > >();
+		final ExecutorService executor = param.executor;
+		if ( executor == null )
+			hypotheses.addAll( ransacWorker( candidates, nextHypothesis, maxIterations, epsilon, minInlierRatio, minNumInliers, param, growth, sprt ) );
+		else
+		{
+			final int numWorkers = numWorkers( executor, iterations );
+
+			final ArrayList< Future< ArrayList< RansacHypothesis< M > > > > tasks = new ArrayList< Future< ArrayList< RansacHypothesis< M > > > >( numWorkers );
+			for ( int j = 0; j < numWorkers; ++j )
+				tasks.add( executor.submit( () -> ransacWorker( candidates, nextHypothesis, maxIterations, epsilon, minInlierRatio, minNumInliers, param, growth, sprt ) ) );
+
+			for ( final Future< ArrayList< RansacHypothesis< M > > > task : tasks )
+			{
+				try
+				{
+					hypotheses.addAll( task.get() );
+				}
+				catch ( final InterruptedException | ExecutionException e )
+				{
+					throw new RuntimeException( e );
+				}
+			}
+		}
+
+		/* replay the improvements in the order of a sequential pass */
+		Collections.sort( hypotheses, ( a, b ) -> Integer.compare( a.index, b.index ) );
+		RansacHypothesis< M > best = null;
+		int k = iterations;
+		for ( final RansacHypothesis< M > hypothesis : hypotheses )
+		{
+			if ( hypothesis.index >= k )
+				break;
+			if ( best == null || hypothesis.betterThan( best ) )
+			{
+				best = hypothesis;
+				k = Math.min( k, stoppingBound( best.index, best.inliers, best.numInliers, candidates.size(), getMinNumMatches(), param, growth, sprt ) );
+			}
+		}
+		return best;
+	}
 
 	/**
-	 * Call {@link #filterRansac(List, Collection, int, double, double, int, double)}
-	 * with minNumInliers = {@link #getMinNumMatches()}.
+	 * Call {@link #ransac(List, Collection, int, double, double, int, RansacParam)}
+	 * with the given confidence, seed and executor.
 	 */
 	@Override
-	final public < P extends PointMatch >boolean filterRansac(
+	final public < P extends PointMatch >boolean ransac(
 			final List< P > candidates,
 			final Collection< P > inliers,
 			final int iterations,
-			final double maxEpsilon,
+			final double epsilon,
 			final double minInlierRatio,
-			final double maxTrust )
+			final int minNumInliers,
+			final double confidence,
+			final long seed,
+			final ExecutorService executor )
 		throws NotEnoughDataPointsException
 	{
-		return filterRansac( candidates, inliers, iterations, maxEpsilon, minInlierRatio, getMinNumMatches(), maxTrust );
+		final RansacParam param = new RansacParam();
+		param.confidence = confidence;
+		param.seed = seed;
+		param.executor = executor;
+		return ransac( candidates, inliers, iterations, epsilon, minInlierRatio, minNumInliers, param );
 	}
 
-
 	/**
-	 * Call {@link #filterRansac(List, Collection, int, double, double, double)}
-	 * with maxTrust = 4.
+	 * Call
+	 * {@link #ransac(List, Collection, int, double, double, int, double, long, ExecutorService)}
+	 * with confidence = 1, i.e. test all iterations hypotheses.
 	 */
 	@Override
-	final public < P extends PointMatch >boolean filterRansac(
+	final public < P extends PointMatch >boolean ransac(
 			final List< P > candidates,
 			final Collection< P > inliers,
 			final int iterations,
-			final double maxEpsilon,
-			final double minInlierRatio )
+			final double epsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final long seed,
+			final ExecutorService executor )
 		throws NotEnoughDataPointsException
 	{
-		return filterRansac( candidates, inliers, iterations, maxEpsilon, minInlierRatio, 4f );
+		return ransac( candidates, inliers, iterations, epsilon, minInlierRatio, minNumInliers, 1.0, seed, executor );
 	}
 
-
 	/**
-	 * Estimate the best model in terms of the Iterative Closest Point
-	 * Algorithm \cite{Zhang94} for matching two point clouds into each other.
-	 * {@code
-	 * p -> q
-	 * }
+	 * Number of tasks to distribute work over the threads of an
+	 * {@link ExecutorService}: the core pool size of a
+	 * {@link ThreadPoolExecutor} or the parallelism of a
+	 * {@link ForkJoinPool}, but not more than the number of available
+	 * processors and the number of work items, and at least one.  Unbounded
+	 * pools like {@link java.util.concurrent.Executors#newCachedThreadPool()}
+	 * get one task per processor.
 	 *
-	 * @param p source
-	 * @param q target
+	 * @param executor
+	 * @param numItems number of work items to distribute
+	 */
+	static protected int numWorkers( final ExecutorService executor, final long numItems )
+	{
+		int numWorkers = Runtime.getRuntime().availableProcessors();
+		if ( executor instanceof ThreadPoolExecutor )
+		{
+			final int corePoolSize = ( ( ThreadPoolExecutor )executor ).getCorePoolSize();
+			if ( corePoolSize > 0 )
+				numWorkers = Math.min( numWorkers, corePoolSize );
+		}
+		else if ( executor instanceof ForkJoinPool )
+			numWorkers = Math.min( numWorkers, ( ( ForkJoinPool )executor ).getParallelism() );
+
+		return ( int )Math.max( 1, Math.min( numWorkers, numItems ) );
+	}
+
+	/**
+	 * Number of RANSAC iterations required to draw at least one minimal
+	 * sample that contains only inliers with the given confidence
+	 * \cite{FischlerB81}:
+	 * {@code log( 1 - confidence ) / log( 1 - inlierRatio^minNumMatches )}.
+	 *
+	 * @param inlierRatio ratio of inliers to candidates
+	 * @param minNumMatches size of a minimal sample
+	 * @param confidence requested probability of an outlier-free sample
+	 *
+	 * @return required number of iterations, {@link Integer#MAX_VALUE} if
+	 *   it cannot be bounded
+	 */
+	static public int requiredIterations(
+			final double inlierRatio,
+			final int minNumMatches,
+			final double confidence )
+	{
+		return requiredIterations( inlierRatio, minNumMatches, confidence, 1.0 );
+	}
+
+	/**
+	 * Number of RANSAC iterations required to draw and accept at least one
+	 * outlier-free minimal sample with the given confidence if an
+	 * outlier-free hypothesis is accepted with probability acceptance, e.g.
+	 * by a sequential probability ratio test \cite{ChumM08}.
+	 */
+	static protected int requiredIterations(
+			final double inlierRatio,
+			final int minNumMatches,
+			final double confidence,
+			final double acceptance )
+	{
+		if ( confidence >= 1.0 || inlierRatio <= 0.0 || acceptance <= 0.0 )
+			return Integer.MAX_VALUE;
+		if ( inlierRatio >= 1.0 && acceptance >= 1.0 )
+			return 1;
+
+		final double goodSample = Math.pow( inlierRatio, minNumMatches ) * acceptance;
+		final double n = Math.log( 1.0 - confidence ) / Math.log1p( -goodSample );
+		if ( !( n < Integer.MAX_VALUE ) )
+			return Integer.MAX_VALUE;
+
+		return Math.max( 1, ( int )Math.ceil( n ) );
+	}
+
+	/**
+	 * PROSAC growth function \cite{ChumM05}.  Entry n is the number of
+	 * hypotheses T'_n after which samples are drawn from the best n + 1
+	 * instead of the best n candidates.  Hypothesis t (counted from 1) draws
+	 * the n-th best candidate and minNumMatches - 1 candidates from the
+	 * best n - 1 for the smallest n with t &lt;= T'_n, and from all
+	 * candidates once t &gt; T'_numCandidates.
+	 *
+	 * @param iterations number of hypotheses after which PROSAC draws
+	 *   uniformly like RANSAC
+	 * @param numCandidates
+	 * @param minNumMatches size of a minimal sample
+	 *
+	 * @return T'_n for n in [0, numCandidates], entries below minNumMatches
+	 *   are 0
+	 */
+	static public int[] prosacGrowth(
+			final int iterations,
+			final int numCandidates,
+			final int minNumMatches )
+	{
+		final int[] growth = new int[ numCandidates + 1 ];
+
+		/* T_m, the expected number of samples from the best m among iterations */
+		double tn = iterations;
+		for ( int i = 0; i < minNumMatches; ++i )
+			tn *= ( double )( minNumMatches - i ) / ( numCandidates - i );
+
+		long tnPrime = 1;
+		growth[ minNumMatches ] = 1;
+		for ( int n = minNumMatches; n < numCandidates; ++n )
+		{
+			final double tn1 = tn * ( n + 1 ) / ( n + 1 - minNumMatches );
+			tnPrime += ( long )Math.ceil( tn1 - tn );
+			growth[ n + 1 ] = ( int )Math.min( Integer.MAX_VALUE, tnPrime );
+			tn = tn1;
+		}
+		return growth;
+	}
+
+	/**
+	 * Number of hypotheses after which RANSAC can stop if hypothesis index
+	 * found the given inliers.  This is the number of iterations required to
+	 * have drawn an outlier-free sample with {@link RansacParam#confidence}
+	 * but at least index + 1.  For PROSAC, it is the smaller of this and
+	 * T'_n for the smallest n for which the inliers among the best n
+	 * candidates are non-random and T'_n samples from the best n suffice
+	 * to have drawn an outlier-free sample with
+	 * {@link RansacParam#confidence} \cite{ChumM05}.  A support of the best
+	 * n candidates is considered non-random if it exceeds the expected
+	 * support of a bad model ({@link RansacParam#sprtDelta}) by more than
+	 * 1.645 standard deviations (normal approximation of the binomial tail at
+	 * 5%).
+	 *
+	 * @param index index of the hypothesis
+	 * @param inliers indices of inliers in increasing order
+	 * @param numInliers
+	 * @param numCandidates
+	 * @param minNumMatches size of a minimal sample
+	 * @param param
+	 * @param growth {@link #prosacGrowth(int, int, int) PROSAC growth
+	 *   function}, null for uniform sampling
+	 * @param sprt
+	 */
+	static protected int stoppingBound(
+			final int index,
+			final int[] inliers,
+			final int numInliers,
+			final int numCandidates,
+			final int minNumMatches,
+			final RansacParam param,
+			final int[] growth,
+			final RansacSprt sprt )
+	{
+		if ( param.confidence >= 1.0 )
+			return Integer.MAX_VALUE;
+
+		int bound = requiredIterations( ( double )numInliers / numCandidates, minNumMatches, param.confidence, sprt.acceptance );
+		if ( growth != null )
+		{
+			final double beta = param.sprtDelta;
+			int numSubsetInliers = 0;
+			for ( int n = 1; n <= numCandidates && growth[ n ] < bound; ++n )
+			{
+				if ( numSubsetInliers < numInliers && inliers[ numSubsetInliers ] == n - 1 )
+					++numSubsetInliers;
+				if ( n < minNumMatches )
+					continue;
+
+				final double randomMean = minNumMatches + ( n - minNumMatches ) * beta;
+				final double randomStd = Math.sqrt( ( n - minNumMatches ) * beta * ( 1.0 - beta ) );
+				if (
+						numSubsetInliers > randomMean + 1.645 * randomStd &&
+						requiredIterations( ( double )numSubsetInliers / n, minNumMatches, param.confidence, sprt.acceptance ) <= growth[ n ] )
+				{
+					bound = growth[ n ];
+					break;
+				}
+			}
+		}
+		return Math.max( index + 1, bound );
+	}
+
+	/**
+	 * Draw numSamples disjunctive indices from [0, n) that are not yet in
+	 * sample[0, offset) and store them in sample[offset, offset + numSamples).
+	 */
+	static protected void drawSample(
+			final Random random,
+			final int[] sample,
+			final int offset,
+			final int numSamples,
+			final int n )
+	{
+		for ( int j = offset; j < offset + numSamples; ++j )
+		{
+			int k;
+			boolean isDrawn;
+			do
+			{
+				k = ( int )( random.nextDouble() * n );
+				isDrawn = false;
+				for ( int jj = 0; jj < j; ++jj )
+					isDrawn |= sample[ jj ] == k;
+			}
+			while ( isDrawn );
+			sample[ j ] = k;
+		}
+	}
+
+	/**
+	 * An improving hypothesis found by one worker of
+	 * {@link AbstractModel#ransac(List, Collection, int, double, double, int, RansacParam)}.
+	 */
+	static protected class RansacHypothesis< M extends AbstractModel< M > >
+	{
+		final protected int index;
+		final protected M model;
+		final protected int[] inliers;
+		final protected int numInliers;
+
+		protected RansacHypothesis( final int index, final M model, final int[] inliers, final int numInliers )
+		{
+			this.index = index;
+			this.model = model;
+			this.inliers = inliers;
+			this.numInliers = numInliers;
+		}
+
+		/**
+		 * Smaller cost is better, equal cost is decided by the smaller index.
+		 */
+		protected boolean betterThan( final RansacHypothesis< M > h )
+		{
+			final double c = model.getCost();
+			final double hc = h.model.getCost();
+			return c < hc || ( c == hc && index < h.index );
+		}
+	}
+
+	/**
+	 * Fixed state of the sequential probability ratio test of one call to
+	 * {@link AbstractModel#ransac(List, Collection, int, double, double, int, RansacParam)}.
+	 * Shared by all workers.
+	 */
+	static protected class RansacSprt
+	{
+		/**
+		 * likelihood ratio factor for consistent candidates,
+		 * {@code delta / epsilon}
+		 */
+		final protected double inlierFactor;
+
+		/**
+		 * likelihood ratio factor for inconsistent candidates,
+		 * {@code ( 1 - delta ) / ( 1 - epsilon )}
+		 */
+		final protected double outlierFactor;
+
+		/**
+		 * decision threshold, infinite if the test is disabled
+		 */
+		final protected double threshold;
+
+		/**
+		 * probability that an outlier-free hypothesis passes the test
+		 */
+		final protected double acceptance;
+
+		/**
+		 * order in which candidates are verified
+		 */
+		final protected int[] order;
+
+		protected RansacSprt( final RansacParam param, final double minInlierRatio, final int numCandidates )
+		{
+			/* a good model has at least minInlierRatio inliers */
+			final double epsilon = minInlierRatio;
+			threshold = param.sprtThreshold( epsilon );
+			if ( threshold < Double.POSITIVE_INFINITY )
+			{
+				inlierFactor = param.sprtDelta / epsilon;
+				outlierFactor = ( 1.0 - param.sprtDelta ) / ( 1.0 - epsilon );
+				acceptance = 1.0 - 1.0 / threshold;
+
+				order = new int[ numCandidates ];
+				for ( int i = 0; i < numCandidates; ++i )
+					order[ i ] = i;
+				final Random random = new Random( hypothesisSeed( param.seed, -1 ) );
+				for ( int i = numCandidates - 1; i > 0; --i )
+				{
+					final int j = random.nextInt( i + 1 );
+					final int t = order[ i ];
+					order[ i ] = order[ j ];
+					order[ j ] = t;
+				}
+			}
+			else
+			{
+				inlierFactor = outlierFactor = 1.0;
+				acceptance = 1.0;
+				order = null;
+			}
+		}
+
+		protected boolean isEnabled()
+		{
+			return order != null;
+		}
+	}
+
+	/**
+	 * Generate the seed of the random stream of hypothesis i from a common
+	 * seed (SplitMix64 finalizer).  Consecutive indices give uncorrelated
+	 * streams.
+	 */
+	static protected long hypothesisSeed( final long seed, final int i )
+	{
+		long z = seed + ( i + 1L ) * 0x9e3779b97f4a7c15L;
+		z = ( z ^ ( z >>> 30 ) ) * 0xbf58476d1ce4e5b9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94d049bb133111ebL;
+		return z ^ ( z >>> 31 );
+	}
+
+	/**
+	 * Transfer error of the match at storage index i of a
+	 * {@link PointMatchBuffer} under this {@link AbstractModel}.
+	 *
+	 * @param matches
+	 * @param i storage index
+	 * @param location temporary storage of at least the dimensionality of
+	 *   matches
+	 */
+	final protected double transferError( final PointMatchBuffer matches, final int i, final double[] location )
+	{
+		final double[][] p = matches.getP();
+		final double[][] q = matches.getQ();
+		final int n = matches.numDimensions();
+		for ( int d = 0; d < n; ++d )
+			location[ d ] = p[ d ][ i ];
+		applyInPlace( location );
+		double sum = 0.0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double dd = location[ d ] - q[ d ][ i ];
+			sum += dd * dd;
+		}
+		return Math.sqrt( sum );
+	}
+
+	/**
+	 * Test this {@link AbstractModel} for the matches of a
+	 * {@link PointMatchBuffer}.  Fills inliers with the positions in
+	 * candidates of all candidates whose transfer error is smaller than
+	 * epsilon and sets
+	 * {@link #getCost() cost} = 1.0 - |inliers| / |candidates| as
+	 * {@link #test(Collection, Collection, double, double, int)} does.
+	 *
+	 * @param candidates
+	 * @param inliers indices of inliers, at least |candidates| long
+	 * @param epsilon maximal allowed transfer error
+	 * @param scratch temporary storage for
+	 *   {@link PointMatchBuffer#transferErrors(CoordinateTransform, double[][], double[])}
+	 * @param errors temporary storage of at least |candidates|
+	 *
+	 * @return number of inliers
+	 */
+	protected int testIndices(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
+			final double epsilon,
+			final double[][] scratch,
+			final double[] errors )
+	{
+		final int n = candidates.size();
+		candidates.transferErrors( this, scratch, errors );
+		int numInliers = 0;
+		for ( int k = 0; k < n; ++k )
+		{
+			if ( errors[ k ] < epsilon )
+				inliers[ numInliers++ ] = k;
+		}
+
+		final double ir = ( double )numInliers / ( double )n;
+		setCost( Math.max( 0.0, Math.min( 1.0, 1.0 - ir ) ) );
+
+		return numInliers;
+	}
+
+	/**
+	 * Sequential probability ratio test (Wald's SPRT) of this
+	 * {@link AbstractModel} for the matches of a {@link PointMatchBuffer}
+	 * \cite{ChumM08}.  Candidates are verified in the order of
+	 * {@link RansacSprt#order} and the test stops as soon as the likelihood
+	 * ratio of the model being bad over being good exceeds the decision
+	 * threshold.
+	 *
+	 * @param candidates
+	 * @param epsilon maximal allowed transfer error
+	 * @param sprt test state
+	 * @param location temporary storage of at least the dimensionality of
+	 *   the candidates
+	 *
+	 * @return false if the model was rejected, true if all candidates were
+	 *   verified without rejection
+	 */
+	protected boolean testSprt(
+			final PointMatchBuffer candidates,
+			final double epsilon,
+			final RansacSprt sprt,
+			final double[] location )
+	{
+		double lambda = 1.0;
+		for ( final int k : sprt.order )
+		{
+			if ( transferError( candidates, candidates.index( k ), location ) < epsilon )
+				lambda *= sprt.inlierFactor;
+			else
+			{
+				lambda *= sprt.outlierFactor;
+				if ( lambda > sprt.threshold )
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Test hypotheses with the next index available from nextHypothesis
+	 * until maxIterations is reached and return all hypotheses that improved
+	 * over the previous best of this worker in the order they were found.
+	 * This is the same procedure as
+	 * {@link #ransac(List, Collection, int, double, double, int)} but
+	 * with a private model copy and a random stream per hypothesis.  Minimal
+	 * samples and inliers are fitted through an index view of candidates, so
+	 * testing a hypothesis does not allocate memory.
+	 * <p>
+	 * For {@link RansacParam#confidence} &lt; 1, each improvement lowers
+	 * maxIterations to an upper bound of the stopping point of a sequential
+	 * pass.  This bound ignores PROSAC's non-randomness criterion, which the
+	 * replay of the improvements applies.
+	 * </p>
+	 */
+	protected ArrayList< RansacHypothesis< M > > ransacWorker(
+			final PointMatchBuffer candidates,
+			final AtomicInteger nextHypothesis,
+			final AtomicInteger maxIterations,
+			final double epsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final RansacParam param,
+			final int[] growth,
+			final RansacSprt sprt )
+	{
+		final int n = candidates.size();
+		final int minNumMatches = getMinNumMatches();
+
+		final M m = copy();
+		final Random random = new Random();
+		final ArrayList< RansacHypothesis< M > > improvements = new ArrayList< RansacHypothesis< M > >();
+
+		final int[] sample = new int[ minNumMatches ];
+		final int[] subsetIndices = new int[ n ];
+		final PointMatchBuffer view = candidates.view( subsetIndices, 0 );
+		final int[] inlierIndices = new int[ n ];
+		final double[] location = new double[ candidates.numDimensions() ];
+		final double[][] scratch = new double[ candidates.numDimensions() ][ n ];
+		final double[] errors = new double[ n ];
+
+		/* 2d models that can be fitted to moments are refined incrementally */
+		final PointMatchMoments2D moments =
+				m instanceof MomentsFittable2D && candidates.numDimensions() == 2 ?
+						new PointMatchMoments2D() : null;
+		final int[] momentIndices = moments == null ? null : new int[ n ];
+
+A:		for ( int i = nextHypothesis.getAndIncrement(); i < maxIterations.get(); i = nextHypothesis.getAndIncrement() )
+		{
+			random.setSeed( hypothesisSeed( param.seed, i ) );
+
+			// choose model.MIN_SET_SIZE disjunctive matches randomly
+			if ( growth == null || i >= growth[ n ] )
+				drawSample( random, sample, 0, minNumMatches, n );
+			else
+			{
+				/* smallest subset size with i < T'_subset */
+				int subset = minNumMatches;
+				for ( int upper = n; subset < upper; )
+				{
+					final int mid = ( subset + upper ) >>> 1;
+					if ( i < growth[ mid ] )
+						upper = mid;
+					else
+						subset = mid + 1;
+				}
+				sample[ 0 ] = subset - 1;
+				drawSample( random, sample, 1, minNumMatches - 1, subset - 1 );
+			}
+			for ( int j = 0; j < minNumMatches; ++j )
+				subsetIndices[ j ] = candidates.index( sample[ j ] );
+			view.setView( subsetIndices, minNumMatches );
+			try { m.fit( view ); }
+			catch ( final NotEnoughDataPointsException | IllDefinedDataPointsException e )
+			{
+				continue;
+			}
+
+			if ( sprt.isEnabled() && !m.testSprt( candidates, epsilon, sprt, location ) )
+				continue;
+
+			int numInliers = m.testIndices( candidates, inlierIndices, epsilon, scratch, errors );
+			int numPreviousInliers = 0;
+			boolean isGood = numInliers >= minNumMatches && ( double )numInliers / n > minInlierRatio;
+			int numMomentIndices = 0;
+			if ( moments != null )
+				moments.clear();
+			while ( isGood && numPreviousInliers < numInliers )
+			{
+				numPreviousInliers = numInliers;
+				try
+				{
+					if ( moments == null )
+					{
+						for ( int k = 0; k < numInliers; ++k )
+							subsetIndices[ k ] = candidates.index( inlierIndices[ k ] );
+						view.setView( subsetIndices, numInliers );
+						m.fit( view );
+					}
+					else
+					{
+						moments.update( candidates, momentIndices, numMomentIndices, inlierIndices, numInliers );
+						System.arraycopy( inlierIndices, 0, momentIndices, 0, numInliers );
+						numMomentIndices = numInliers;
+						( ( MomentsFittable2D )m ).fit( moments );
+					}
+				}
+				catch ( final NotEnoughDataPointsException | IllDefinedDataPointsException e )
+				{
+					continue A;
+				}
+				numInliers = m.testIndices( candidates, inlierIndices, epsilon, scratch, errors );
+				isGood = numInliers >= minNumInliers && ( double )numInliers / n > minInlierRatio;
+			}
+			if (
+					isGood &&
+					( improvements.isEmpty() || m.betterThan( improvements.get( improvements.size() - 1 ).model ) ) &&
+					numInliers >= minNumInliers )
+			{
+				improvements.add( new RansacHypothesis< M >( i, m.copy(), Arrays.copyOf( inlierIndices, numInliers ), numInliers ) );
+
+				/*
+				 * Only the bound by inlier ratio is shared between workers
+				 * because it decreases monotonically with the number of
+				 * inliers and therefore never undercuts a sequential pass.
+				 * The PROSAC bound depends on the order of the inliers and
+				 * is applied in the replay only.
+				 */
+				final int bound = stoppingBound( i, inlierIndices, numInliers, n, minNumMatches, param, null, sprt );
+				maxIterations.accumulateAndGet( bound, Math::min );
+			}
+		}
+		return improvements;
+	}
+
+	/**
+	 * Estimate a {@link AbstractModel} from a set with many outliers by first
+	 * filtering the worst outliers with {@link #ransac RANSAC}
+	 * \citet[{FischlerB81} and filter potential outliers by robust iterative
+	 * regression.
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations number of iterations
+	 * @param maxEpsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 *
+	 * @return true if {@link AbstractModel} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link AbstractModel} remains unchanged.
+	 */
+	@Override
+	final public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust )
+		throws NotEnoughDataPointsException
+	{
+		return filterRansac( candidates, inliers, iterations, maxEpsilon, minInlierRatio, minNumInliers, maxTrust, rnd );
+	}
+
+	/**
+	 * Estimate a {@link AbstractModel} from a set with many outliers by first
+	 * filtering the worst outliers with
+	 * {@link #ransac(List, Collection, int, double, double, int, Random) RANSAC}
+	 * \citet[{FischlerB81} drawing from random and filter potential outliers
+	 * by robust iterative regression.
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations number of iterations
+	 * @param maxEpsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param random random source
+	 *
+	 * @return true if {@link AbstractModel} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link AbstractModel} remains unchanged.
+	 */
+	@Override
+	final public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust,
+			final Random random )
+		throws NotEnoughDataPointsException
+	{
+		final ArrayList< P > temp = new ArrayList< P >();
+		if (
+				ransac(
+						candidates,
+						temp,
+						iterations,
+						maxEpsilon,
+						minInlierRatio,
+						minNumInliers,
+						random ) &&
+				filter( temp, inliers, maxTrust, minNumInliers ) )
+			return true;
+		return false;
+	}
+
+	/**
+	 * Estimate a {@link AbstractModel} from a set with many outliers by first
+	 * filtering the worst outliers with
+	 * {@link #ransac(List, Collection, int, double, double, int, RansacParam) parallel RANSAC}
+	 * \citet[{FischlerB81} and filter potential outliers by robust iterative
+	 * regression.
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations maximal number of iterations
+	 * @param maxEpsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param param RANSAC options
+	 *
+	 * @return true if {@link AbstractModel} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link AbstractModel} remains unchanged.
+	 */
+	@Override
+	final public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust,
+			final RansacParam param )
+		throws NotEnoughDataPointsException
+	{
+		final ArrayList< P > temp = new ArrayList< P >();
+		if (
+				ransac(
+						candidates,
+						temp,
+						iterations,
+						maxEpsilon,
+						minInlierRatio,
+						minNumInliers,
+						param ) &&
+				filter( temp, inliers, maxTrust, minNumInliers ) )
+			return true;
+		return false;
+	}
+
+	/**
+	 * Estimate a {@link AbstractModel} from the matches of a
+	 * {@link PointMatchBuffer} with many outliers by first filtering the
+	 * worst outliers with
+	 * {@link #ransac(PointMatchBuffer, int[], int, double, double, int, RansacParam) RANSAC}
+	 * \citet[{FischlerB81} and filter potential outliers by robust iterative
+	 * regression.
 	 *
-	 * @return the list of matches
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers storage indices of the remaining candidates, at least
+	 *   |candidates| long
+	 * @param iterations maximal number of iterations
+	 * @param maxEpsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param param options
 	 *
-	 * TODO Test---at least once!
+	 * @return number of inliers if {@link AbstractModel} could be estimated,
+	 *   0 otherwise.  If 0, {@link AbstractModel} remains unchanged.
+	 */
+	@Override
+	final public int filterRansac(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust,
+			final RansacParam param )
+		throws NotEnoughDataPointsException
+	{
+		final int[] temp = new int[ candidates.size() ];
+		final int numRansacInliers = ransac( candidates, temp, iterations, maxEpsilon, minInlierRatio, minNumInliers, param );
+		if ( numRansacInliers == 0 )
+			return 0;
+
+		return filter( candidates.view( temp, numRansacInliers ), inliers, maxTrust, minNumInliers );
+	}
+
+	/**
+	 * Call
+	 * {@link #filterRansac(List, Collection, int, double, double, int, double, RansacParam)}
+	 * with the given confidence, seed and executor.
+	 */
+	@Override
+	final public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust,
+			final double confidence,
+			final long seed,
+			final ExecutorService executor )
+		throws NotEnoughDataPointsException
+	{
+		final RansacParam param = new RansacParam();
+		param.confidence = confidence;
+		param.seed = seed;
+		param.executor = executor;
+		return filterRansac( candidates, inliers, iterations, maxEpsilon, minInlierRatio, minNumInliers, maxTrust, param );
+	}
+
+	/**
+	 * Call
+	 * {@link #filterRansac(List, Collection, int, double, double, int, double, double, long, ExecutorService)}
+	 * with confidence = 1, i.e. test all iterations hypotheses.
+	 */
+	@Override
+	final public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust,
+			final long seed,
+			final ExecutorService executor )
+		throws NotEnoughDataPointsException
+	{
+		return filterRansac( candidates, inliers, iterations, maxEpsilon, minInlierRatio, minNumInliers, maxTrust, 1.0, seed, executor );
+	}
+
+	/**
+	 * Call {@link #filterRansac(List, Collection, int, double, double, int, double)}
+	 * with maxTrust = 4.
+	 */
+	@Override
+	final public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers )
+		throws NotEnoughDataPointsException
+	{
+		return filterRansac( candidates, inliers, iterations, maxEpsilon, minInlierRatio, minNumInliers, 4f );
+	}
+
+
+	/**
+	 * Call {@link #filterRansac(List, Collection, int, double, double, int, double)}
+	 * with minNumInliers = {@link #getMinNumMatches()}.
+	 */
+	@Override
+	final public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final double maxTrust )
+		throws NotEnoughDataPointsException
+	{
+		return filterRansac( candidates, inliers, iterations, maxEpsilon, minInlierRatio, getMinNumMatches(), maxTrust );
+	}
+
+
+	/**
+	 * Call {@link #filterRansac(List, Collection, int, double, double, double)}
+	 * with maxTrust = 4.
+	 */
+	@Override
+	final public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio )
+		throws NotEnoughDataPointsException
+	{
+		return filterRansac( candidates, inliers, iterations, maxEpsilon, minInlierRatio, 4f );
+	}
+
+
+	/**
+	 * Call {@link #icp(List, List, int, double)} with maxIterations = 100
+	 * and minErrorChange = 0, i.e. iterate until the correspondences or the
+	 * error do not change anymore.
 	 */
 	@Override
 	final public Collection< PointMatch > icp(
 			final List< Point > p,
 			final List< Point > q )
 	{
+		return icp( p, q, 100, 0 );
+	}
+
+	/**
+	 * Estimate the best model in terms of the Iterative Closest Point
+	 * Algorithm \cite{Zhang94} for matching two point clouds into each other.
+	 * {@code
+	 * p -> q
+	 * }
+	 * <p>
+	 * Starting with this model, each iteration matches the local
+	 * coordinates of each point in p, transferred by the current model, with
+	 * the closest world coordinates in q, and fits the model to these
+	 * matches.  Closest points are found with a {@link KdTree} that is built
+	 * once over q, and matches are stored in a single
+	 * {@link PointMatchBuffer} for all iterations.  Iteration stops when the
+	 * correspondences do not change, when the mean transfer error decreases
+	 * by no more than minErrorChange, or after maxIterations iterations.  If
+	 * an iteration increases the error, the model and correspondences of the
+	 * previous iteration are kept.
+	 * </p>
+	 *
+	 * @param p source
+	 * @param q target
+	 * @param maxIterations maximal number of iterations
+	 * @param minErrorChange minimal decrease of the mean transfer error to
+	 *   continue
+	 *
+	 * @return the list of matches, null if the model could not be estimated
+	 *   or maxIterations &lt; 1.  If null, {@link AbstractModel} remains
+	 *   unchanged.
+	 */
+	@Override
+	final public Collection< PointMatch > icp(
+			final List< Point > p,
+			final List< Point > q,
+			final int maxIterations,
+			final double minErrorChange )
+	{
+		if ( p.isEmpty() || q.isEmpty() || maxIterations < 1 )
+			return null;
+
+		final int n = p.get( 0 ).getL().length;
+		final int np = p.size();
+		final int nq = q.size();
+
+		final double[][] qCoordinates = new double[ n ][ nq ];
+		for ( int j = 0; j < nq; ++j )
+		{
+			final double[] w = q.get( j ).getW();
+			for ( int d = 0; d < n; ++d )
+				qCoordinates[ d ][ j ] = w[ d ];
+		}
+		final KdTree tree = new KdTree( qCoordinates, nq );
+
+		final PointMatchBuffer matches = new PointMatchBuffer( n, np );
+		for ( final Point pi : p )
+			matches.add( pi.getL(), pi.getL(), 1.0 );
+		final double[][] mp = matches.getP();
+		final double[][] mq = matches.getQ();
+
+		final int[] closest = new int[ np ];
+		Arrays.fill( closest, -1 );
+		final int[] previousClosest = new int[ np ];
+		final double[] location = new double[ n ];
+		final double[][] scratch = new double[ n ][ np ];
+		final double[] errors = new double[ np ];
+
 		final M m = copy();
-		final List< PointMatch > currentMatches = new ArrayList< PointMatch >();
-		final List< PointMatch > previousMatches = new ArrayList< PointMatch >();
-		do
+		final M previous = copy();
+		double previousError = Double.MAX_VALUE;
+		for ( int i = 0; i < maxIterations; ++i )
 		{
-			previousMatches.clear();
-			previousMatches.addAll( currentMatches );
-			currentMatches.clear();
+			previous.set( m );
+			System.arraycopy( closest, 0, previousClosest, 0, np );
 
 			/* Match by Euclidean distance in space */
-			for ( final Point pi : p )
+			boolean changed = false;
+			for ( int k = 0; k < np; ++k )
 			{
-				double minimalDistance = Double.MAX_VALUE;
-				Point closestPoint = null;
-				for ( final Point qi : q )
+				for ( int d = 0; d < n; ++d )
+					location[ d ] = mp[ d ][ k ];
+				m.applyInPlace( location );
+				final int j = tree.nearest( location );
+				if ( j != closest[ k ] )
 				{
-					final double d = Point.distance( pi, qi );
-					if ( d < minimalDistance )
-					{
-						minimalDistance = d;
-						closestPoint = qi;
-					}
+					changed = true;
+					closest[ k ] = j;
+					for ( int d = 0; d < n; ++d )
+						mq[ d ][ k ] = qCoordinates[ d ][ j ];
 				}
-				currentMatches.add( new PointMatch( pi, closestPoint ) );
 			}
+			if ( !changed )
+				break;
+
 			try
 			{
-				m.fit( currentMatches );
+				m.fit( matches );
+			}
+			catch ( final NotEnoughDataPointsException e )
+			{
+				return null;
 			}
-			catch ( final Exception e )
+			catch ( final IllDefinedDataPointsException e )
 			{
-				e.printStackTrace();
 				return null;
 			}
+
+			matches.transferErrors( m, scratch, errors );
+			double error = 0;
+			for ( int k = 0; k < np; ++k )
+				error += errors[ k ];
+			error /= np;
+
+			if ( error > previousError )
+			{
+				/* keep the better fit of the previous iteration */
+				m.set( previous );
+				System.arraycopy( previousClosest, 0, closest, 0, np );
+				break;
+			}
+			if ( previousError - error <= minErrorChange )
+				break;
+			previousError = error;
 		}
-		while ( currentMatches.equals( previousMatches ) );
+
+		final ArrayList< PointMatch > currentMatches = new ArrayList< PointMatch >( np );
+		for ( int k = 0; k < np; ++k )
+			currentMatches.add( new PointMatch( p.get( k ), q.get( closest[ k ] ) ) );
+
 		this.set( m );
 		return currentMatches;
 	}
@@ -638,6 +1951,47 @@ A:		while ( i < iterations )
 	}
 
 
+	/**
+	 * Default fit implementation for {@link PointMatchBuffer PointMatchBuffers}.
+	 * Uses {@link #fit(Collection)} with the
+	 * {@link PointMatchBuffer#getMatches() PointMatches} that the buffer was
+	 * created from if available and
+	 * {@link #fit(double[][], double[][], double[])} otherwise.  Both
+	 * allocate memory, you should better implement it directly.
+	 */
+	@Override
+	public void fit( final PointMatchBuffer matches )
+		throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		if ( matches.getMatches() != null )
+		{
+			fit( matches.asList() );
+			return;
+		}
+
+		final int n = matches.numDimensions();
+		final int l = matches.size();
+		final double[][] mp = matches.getP();
+		final double[][] mq = matches.getQ();
+		final double[] mw = matches.getW();
+		final double[][] p = new double[ n ][ l ];
+		final double[][] q = new double[ n ][ l ];
+		final double[] w = new double[ l ];
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+			for ( int d = 0; d < n; ++d )
+			{
+				p[ d ][ k ] = mp[ d ][ i ];
+				q[ d ][ k ] = mq[ d ][ i ];
+			}
+			w[ k ] = mw[ i ];
+		}
+
+		fit( p, q, w );
+	}
+
+
 	/**
 	 * <p>Default implementation of
 	 * {@link #localSmoothnessFilter(Collection, Collection, double, double, double)}.
@@ -757,4 +2111,189 @@ A:		while ( i < iterations )
 
 		return inliers.size() >= getMinNumMatches();
 	}
+
+	/**
+	 * <p>Spatially indexed and parallel implementation of
+	 * {@link #localSmoothnessFilter(Collection, Collection, double, double, double)}.
+	 * Each candidate is tested against a locally weighted fit to only those
+	 * other candidates whose local coordinates are within 3&sigma; of it,
+	 * found with a {@link KdTree}.  Weights are the
+	 * {@link PointMatch#getWeight() weights} of the matches multiplied by
+	 * the Gaussian of their distance to the candidate.  Candidates without
+	 * enough neighbors to estimate the local model are rejected.</p>
+	 *
+	 * <p>The candidates of a pass are tested in parallel on the threads of
+	 * executor, or in the calling thread if executor is null.  All
+	 * candidates of a pass are tested against the inliers of the previous
+	 * pass and rejected candidates are removed between passes, so the result
+	 * does not depend on the number of threads.  Neither the candidates nor
+	 * this {@link AbstractModel} are modified.</p>
+	 *
+	 * @param candidates
+	 * @param inliers
+	 * @param sigma
+	 * @param maxEpsilon
+	 * @param maxTrust
+	 * @param executor
+	 */
+	@Override
+	public < P extends PointMatch > boolean localSmoothnessFilter(
+			final Collection< P > candidates,
+			final Collection< P > inliers,
+			final double sigma,
+			final double maxEpsilon,
+			final double maxTrust,
+			final ExecutorService executor )
+	{
+		ArrayList< P > currentInliers = new ArrayList< P >( candidates );
+
+		boolean hasChanged;
+		do
+		{
+			final int n = currentInliers.size();
+			final PointMatchBuffer matches = new PointMatchBuffer( currentInliers );
+			final KdTree tree = new KdTree( matches.getP(), n );
+			final boolean[] isOutlier = new boolean[ n ];
+			final AtomicInteger nextCandidate = new AtomicInteger( 0 );
+
+			if ( executor == null )
+				localSmoothnessWorker( matches, tree, nextCandidate, isOutlier, sigma, maxEpsilon, maxTrust );
+			else
+			{
+				final int numWorkers = numWorkers( executor, n );
+				final ArrayList< Future< ? > > tasks = new ArrayList< Future< ? > >( numWorkers );
+				for ( int j = 0; j < numWorkers; ++j )
+					tasks.add( executor.submit( () -> localSmoothnessWorker( matches, tree, nextCandidate, isOutlier, sigma, maxEpsilon, maxTrust ) ) );
+
+				for ( final Future< ? > task : tasks )
+				{
+					try
+					{
+						task.get();
+					}
+					catch ( final InterruptedException | ExecutionException e )
+					{
+						throw new RuntimeException( e );
+					}
+				}
+			}
+
+			final ArrayList< P > remainingInliers = new ArrayList< P >( n );
+			for ( int i = 0; i < n; ++i )
+				if ( !isOutlier[ i ] )
+					remainingInliers.add( currentInliers.get( i ) );
+
+			hasChanged = remainingInliers.size() < n;
+			currentInliers = remainingInliers;
+		}
+		while ( hasChanged );
+
+		inliers.clear();
+		inliers.addAll( currentInliers );
+
+		return inliers.size() >= getMinNumMatches();
+	}
+
+	/**
+	 * Test candidates with the next index available from nextCandidate for
+	 * {@link #localSmoothnessFilter(Collection, Collection, double, double, double, ExecutorService)}
+	 * with a private model copy and mark those that are not smooth in
+	 * isOutlier.
+	 */
+	protected void localSmoothnessWorker(
+			final PointMatchBuffer matches,
+			final KdTree tree,
+			final AtomicInteger nextCandidate,
+			final boolean[] isOutlier,
+			final double sigma,
+			final double maxEpsilon,
+			final double maxTrust )
+	{
+		final int n = matches.size();
+		final int numDimensions = matches.numDimensions();
+		final double var2 = 2 * sigma * sigma;
+		final double radius = 3 * sigma;
+
+		final double[][] p = matches.getP();
+		final double[][] q = matches.getQ();
+		final double[] w = matches.getW();
+
+		final M m = copy();
+		final PointMatchBuffer localMatches = new PointMatchBuffer( numDimensions, n );
+		final int[] neighbors = new int[ n ];
+		final double[] squaredDistances = new double[ n ];
+		final int[] localInliers = new int[ n ];
+		final double[][] scratch = new double[ numDimensions ][ n ];
+		final double[] errors = new double[ n ];
+		final double[] pj = new double[ numDimensions ];
+		final double[] qj = new double[ numDimensions ];
+		final double[] location = new double[ numDimensions ];
+
+		for ( int i = nextCandidate.getAndIncrement(); i < n; i = nextCandidate.getAndIncrement() )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				location[ d ] = p[ d ][ i ];
+
+			/* weights by square distance to reference in local space */
+			final int numNeighbors = tree.withinRadius( location, radius, neighbors, squaredDistances );
+			localMatches.clear();
+			for ( int k = 0; k < numNeighbors; ++k )
+			{
+				final int j = neighbors[ k ];
+				if ( j == i )
+					continue;
+				for ( int d = 0; d < numDimensions; ++d )
+				{
+					pj[ d ] = p[ d ][ j ];
+					qj[ d ] = q[ d ][ j ];
+				}
+				localMatches.add( pj, qj, w[ j ] * Math.exp( -squaredDistances[ k ] / var2 ) );
+			}
+
+			int numLocalInliers = 0;
+			if ( localMatches.size() >= getMinNumMatches() )
+			{
+				try
+				{
+					numLocalInliers = m.filter( localMatches, localInliers, maxTrust, getMinNumMatches() );
+				}
+				catch ( final NotEnoughDataPointsException e ) {}
+			}
+			if ( numLocalInliers == 0 )
+			{
+				isOutlier[ i ] = true;
+				continue;
+			}
+
+			m.applyInPlace( location );
+			double candidateDistance = 0;
+			for ( int d = 0; d < numDimensions; ++d )
+			{
+				final double dd = location[ d ] - q[ d ][ i ];
+				candidateDistance += dd * dd;
+			}
+			candidateDistance = Math.sqrt( candidateDistance );
+
+			if ( candidateDistance <= maxEpsilon )
+			{
+				/* weighed mean Euclidean distances */
+				final int numLocalMatches = localMatches.size();
+				final double[] lw = localMatches.getW();
+				localMatches.transferErrors( m, scratch, errors );
+				double meanDistance = 0, ws = 0;
+				for ( int k = 0; k < numLocalMatches; ++k )
+				{
+					ws += lw[ k ];
+					meanDistance += errors[ k ] * lw[ k ];
+				}
+				meanDistance /= ws;
+
+				if ( candidateDistance > maxTrust * meanDistance )
+					isOutlier[ i ] = true;
+			}
+			else
+				isOutlier[ i ] = true;
+		}
+	}
+
 };
@@ -38,7 +38,12 @@
 package mpicbg.models;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Smooth coordinate transformation interpolating between a set of control
@@ -62,6 +67,11 @@ import java.util.Collection;
  * }
  * </pre>
  *
+ * <p>The local fits are performed with a copy of the {@link #getModel() model}
+ * and scratch space private to the calling thread, so that
+ * {@link #applyInPlace(double[])} can be called concurrently and does not
+ * allocate after the first call of a thread.</p>
+ *
  * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
  */
 public abstract class AbstractMovingLeastSquaresTransform implements CoordinateTransform, Serializable
@@ -83,6 +93,53 @@ public abstract class AbstractMovingLeastSquaresTransform implements CoordinateT
 	abstract public void setMatches( final Collection< PointMatch > matches )
 		throws NotEnoughDataPointsException, IllDefinedDataPointsException;
 
+	/**
+	 * Workspace of one thread for the local fits.
+	 */
+	static protected class Scratch
+	{
+		/* private copy of source */
+		protected Model< ? > model = null;
+		protected Model< ? > source = null;
+
+		protected PointMatchBuffer matches = null;
+		protected float[] weights = new float[ 0 ];
+		protected int[] indices = new int[ 0 ];
+		protected double[] squaredDistances = new double[ 0 ];
+		protected double[] pi = new double[ 0 ];
+		protected double[] qi = new double[ 0 ];
+	}
+
+	/* number of locations per task of the parallel bulk transfer */
+	final static protected int CHUNK_SIZE = 256;
+
+	transient private volatile ThreadLocal< Scratch > scratch = null;
+
+	/**
+	 * The {@link Scratch} of the calling thread with a copy of the current
+	 * {@link #model}.
+	 */
+	protected Scratch scratch()
+	{
+		ThreadLocal< Scratch > threadScratch = scratch;
+		if ( threadScratch == null )
+		{
+			synchronized ( this )
+			{
+				threadScratch = scratch;
+				if ( threadScratch == null )
+					scratch = threadScratch = ThreadLocal.withInitial( Scratch::new );
+			}
+		}
+		final Scratch local = threadScratch.get();
+		if ( local.source != model )
+		{
+			local.source = model;
+			local.model = model.copy();
+		}
+		return local;
+	}
+
 	protected double weigh( final double d )
 	{
 		return 1.0 / Math.pow( d, alpha );
@@ -95,4 +152,56 @@ public abstract class AbstractMovingLeastSquaresTransform implements CoordinateT
 		applyInPlace( a );
 		return a;
 	}
+
+	/**
+	 * Apply in place to the 2d locations
+	 * (xs[ offset + i ], ys[ offset + i ]) for i in [0, length), in parallel
+	 * on the threads of executor, or in the calling thread if executor is
+	 * null.  Use this to evaluate whole grids of locations, e.g. the
+	 * vertices of a {@link CoordinateTransformMesh}.
+	 *
+	 * @param xs
+	 * @param ys
+	 * @param offset
+	 * @param length
+	 * @param executor
+	 */
+	public void applyInPlace(
+			final double[] xs,
+			final double[] ys,
+			final int offset,
+			final int length,
+			final ExecutorService executor )
+	{
+		if ( executor == null )
+		{
+			applyInPlace( xs, ys, offset, length );
+			return;
+		}
+
+		final int numChunks = ( length + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+		final AtomicInteger nextChunk = new AtomicInteger( 0 );
+		final int numWorkers = AbstractModel.numWorkers( executor, numChunks );
+		final ArrayList< Future< ? > > tasks = new ArrayList< Future< ? > >( numWorkers );
+		for ( int j = 0; j < numWorkers; ++j )
+			tasks.add( executor.submit( () -> {
+				for ( int c = nextChunk.getAndIncrement(); c < numChunks; c = nextChunk.getAndIncrement() )
+				{
+					final int from = offset + c * CHUNK_SIZE;
+					applyInPlace( xs, ys, from, Math.min( CHUNK_SIZE, offset + length - from ) );
+				}
+			} ) );
+
+		for ( final Future< ? > task : tasks )
+		{
+			try
+			{
+				task.get();
+			}
+			catch ( final InterruptedException | ExecutionException e )
+			{
+				throw new RuntimeException( e );
+			}
+		}
+	}
 }
@@ -63,7 +63,7 @@ import java.util.Collection;
  *
  * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
  */
-public class AffineModel2D extends AbstractAffineModel2D< AffineModel2D >
+public class AffineModel2D extends AbstractAffineModel2D< AffineModel2D > implements MomentsFittable2D
 {
 	private static final long serialVersionUID = 2323673888015396528L;
 
@@ -103,6 +103,32 @@ public class AffineModel2D extends AbstractAffineModel2D< AffineModel2D >
 		l[ 1 ] = l0 * m10 + l[ 1 ] * m11 + m12;
 	}
 
+	@Override
+	final public void applyInPlace( final double[] xs, final double[] ys, final int offset, final int length )
+	{
+		for ( int i = offset; i < offset + length; ++i )
+		{
+			final double x = xs[ i ];
+			final double y = ys[ i ];
+			xs[ i ] = x * m00 + y * m01 + m02;
+			ys[ i ] = x * m10 + y * m11 + m12;
+		}
+	}
+
+	@Override
+	final public void applyInPlaceInterleaved( final double[] locations, final int n, final int offset, final int length )
+	{
+		assert n >= 2 : "2d affine transformations can be applied to 2d points only.";
+
+		for ( int i = offset * n; i < ( offset + length ) * n; i += n )
+		{
+			final double x = locations[ i ];
+			final double y = locations[ i + 1 ];
+			locations[ i ] = x * m00 + y * m01 + m02;
+			locations[ i + 1 ] = x * m10 + y * m11 + m12;
+		}
+	}
+
 	@Override
 	final public double[] applyInverse( final double[] l ) throws NoninvertibleModelException
 	{
@@ -378,6 +404,115 @@ public class AffineModel2D extends AbstractAffineModel2D< AffineModel2D >
 		invert();
 	}
 
+	/**
+	 * Fit to the matches of a {@link PointMatchBuffer} without allocating
+	 * memory.  Same as {@link #fit(Collection)}.
+	 */
+	@Override
+	final public void fit( final PointMatchBuffer matches )
+		throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		final int l = matches.size();
+		if ( l < MIN_NUM_MATCHES )
+			throw new NotEnoughDataPointsException( l + " data points are not enough to estimate a 2d affine model, at least " + MIN_NUM_MATCHES + " data points required." );
+
+		final double[] pX = matches.getP()[ 0 ];
+		final double[] pY = matches.getP()[ 1 ];
+		final double[] qX = matches.getQ()[ 0 ];
+		final double[] qY = matches.getQ()[ 1 ];
+		final double[] ww = matches.getW();
+
+		double pcx = 0, pcy = 0;
+		double qcx = 0, qcy = 0;
+
+		double ws = 0.0;
+
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+
+			final double w = ww[ i ];
+			ws += w;
+
+			pcx += w * pX[ i ];
+			pcy += w * pY[ i ];
+			qcx += w * qX[ i ];
+			qcy += w * qY[ i ];
+		}
+		pcx /= ws;
+		pcy /= ws;
+		qcx /= ws;
+		qcy /= ws;
+
+		double a00, a01, a11;
+		double b00, b01, b10, b11;
+		a00 = a01 = a11 = b00 = b01 = b10 = b11 = 0;
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+			final double w = ww[ i ];
+
+			final double px = pX[ i ] - pcx, py = pY[ i ] - pcy;
+			final double qx = qX[ i ] - qcx, qy = qY[ i ] - qcy;
+			a00 += w * px * px;
+			a01 += w * px * py;
+			a11 += w * py * py;
+			b00 += w * px * qx;
+			b01 += w * px * qy;
+			b10 += w * py * qx;
+			b11 += w * py * qy;
+		}
+
+		final double det = a00 * a11 - a01 * a01;
+
+		if ( det == 0 )
+			throw new IllDefinedDataPointsException();
+
+		m00 = ( a11 * b00 - a01 * b10 ) / det;
+		m01 = ( a00 * b10 - a01 * b00 ) / det;
+		m10 = ( a11 * b01 - a01 * b11 ) / det;
+		m11 = ( a00 * b11 - a01 * b01 ) / det;
+
+		m02 = qcx - m00 * pcx - m01 * pcy;
+		m12 = qcy - m10 * pcx - m11 * pcy;
+
+		invert();
+	}
+
+	/**
+	 * Fit to {@link PointMatchMoments2D} in constant time.
+	 */
+	@Override
+	final public void fit( final PointMatchMoments2D moments )
+		throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		if ( moments.size() < MIN_NUM_MATCHES )
+			throw new NotEnoughDataPointsException( moments.size() + " data points are not enough to estimate a 2d affine model, at least " + MIN_NUM_MATCHES + " data points required." );
+
+		final double pcx = moments.pcx(), pcy = moments.pcy();
+		final double qcx = moments.qcx(), qcy = moments.qcy();
+
+		final double a00 = moments.a00(), a01 = moments.a01(), a11 = moments.a11();
+		final double b00 = moments.b00(), b01 = moments.b01(), b10 = moments.b10(), b11 = moments.b11();
+
+		final double det = a00 * a11 - a01 * a01;
+
+		/* exactly degenerate sets have a determinant of rounding noise */
+		final double t = moments.aTolerance();
+		if ( det <= t * ( 2 * ( Math.abs( a00 ) + Math.abs( a11 ) ) + t ) )
+			throw new IllDefinedDataPointsException();
+
+		m00 = ( a11 * b00 - a01 * b10 ) / det;
+		m01 = ( a00 * b10 - a01 * b00 ) / det;
+		m10 = ( a11 * b01 - a01 * b11 ) / det;
+		m11 = ( a00 * b11 - a01 * b01 ) / det;
+
+		m02 = qcx - m00 * pcx - m01 * pcy;
+		m12 = qcy - m10 * pcx - m11 * pcy;
+
+		invert();
+	}
+
 	@Override
 	final public void set( final AffineModel2D m )
 	{
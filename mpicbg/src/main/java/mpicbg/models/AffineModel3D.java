@@ -133,6 +133,36 @@ public class AffineModel3D extends AbstractAffineModel3D< AffineModel3D > implem
 		l[ 2 ] = l0 * m20 + l1 * m21 + l[ 2 ] * m22 + m23;
 	}
 
+	@Override
+	final public void applyInPlace( final double[] xs, final double[] ys, final double[] zs, final int offset, final int length )
+	{
+		for ( int i = offset; i < offset + length; ++i )
+		{
+			final double x = xs[ i ];
+			final double y = ys[ i ];
+			final double z = zs[ i ];
+			xs[ i ] = x * m00 + y * m01 + z * m02 + m03;
+			ys[ i ] = x * m10 + y * m11 + z * m12 + m13;
+			zs[ i ] = x * m20 + y * m21 + z * m22 + m23;
+		}
+	}
+
+	@Override
+	final public void applyInPlaceInterleaved( final double[] locations, final int n, final int offset, final int length )
+	{
+		assert n >= 3 : "3d affine transformations can be applied to 3d points only.";
+
+		for ( int i = offset * n; i < ( offset + length ) * n; i += n )
+		{
+			final double x = locations[ i ];
+			final double y = locations[ i + 1 ];
+			final double z = locations[ i + 2 ];
+			locations[ i ] = x * m00 + y * m01 + z * m02 + m03;
+			locations[ i + 1 ] = x * m10 + y * m11 + z * m12 + m13;
+			locations[ i + 2 ] = x * m20 + y * m21 + z * m22 + m23;
+		}
+	}
+
 	@Override
 	final public double[] applyInverse( final double[] l ) throws NoninvertibleModelException
 	{
@@ -546,6 +576,126 @@ public class AffineModel3D extends AbstractAffineModel3D< AffineModel3D > implem
 		invert();
 	}
 
+	/**
+	 * Fit to the matches of a {@link PointMatchBuffer} without allocating
+	 * memory.  Same as {@link #fit(Collection)}.
+	 */
+	@Override
+	final public void fit( final PointMatchBuffer matches )
+		throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		final int l = matches.size();
+		if ( l < MIN_NUM_MATCHES )
+			throw new NotEnoughDataPointsException( l + " data points are not enough to estimate a 3d affine model, at least " + MIN_NUM_MATCHES + " data points required." );
+
+		final double[] pX = matches.getP()[ 0 ];
+		final double[] pY = matches.getP()[ 1 ];
+		final double[] pZ = matches.getP()[ 2 ];
+		final double[] qX = matches.getQ()[ 0 ];
+		final double[] qY = matches.getQ()[ 1 ];
+		final double[] qZ = matches.getQ()[ 2 ];
+		final double[] ww = matches.getW();
+
+		double pcx = 0, pcy = 0, pcz = 0;
+		double qcx = 0, qcy = 0, qcz = 0;
+
+		double ws = 0.0;
+
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+
+			final double w = ww[ i ];
+			ws += w;
+
+			pcx += w * pX[ i ];
+			pcy += w * pY[ i ];
+			pcz += w * pZ[ i ];
+			qcx += w * qX[ i ];
+			qcy += w * qY[ i ];
+			qcz += w * qZ[ i ];
+		}
+		pcx /= ws;
+		pcy /= ws;
+		pcz /= ws;
+		qcx /= ws;
+		qcy /= ws;
+		qcz /= ws;
+
+		double
+			a00, a01, a02,
+			     a11, a12,
+			          a22;
+		double
+			b00, b01, b02,
+			b10, b11, b12,
+			b20, b21, b22;
+
+		a00 = a01 = a02 = a11 = a12 = a22 = b00 = b01 = b02 = b10 = b11 = b12 = b20 = b21 = b22 = 0;
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+			final double w = ww[ i ];
+
+			final double px = pX[ i ] - pcx, py = pY[ i ] - pcy, pz = pZ[ i ] - pcz;
+			final double qx = qX[ i ] - qcx, qy = qY[ i ] - qcy, qz = qZ[ i ] - qcz;
+			a00 += w * px * px;
+			a01 += w * px * py;
+			a02 += w * px * pz;
+			a11 += w * py * py;
+			a12 += w * py * pz;
+			a22 += w * pz * pz;
+
+			b00 += w * px * qx;
+			b01 += w * px * qy;
+			b02 += w * px * qz;
+			b10 += w * py * qx;
+			b11 += w * py * qy;
+			b12 += w * py * qz;
+			b20 += w * pz * qx;
+			b21 += w * pz * qy;
+			b22 += w * pz * qz;
+		}
+
+		final double det =
+			a00 * a11 * a22 +
+			a01 * a12 * a02 +
+			a02 * a01 * a12 -
+			a02 * a11 * a02 -
+			a12 * a12 * a00 -
+			a22 * a01 * a01;
+
+		if ( det == 0 )
+			throw new IllDefinedDataPointsException();
+
+		final double idet = 1.0 / det;
+
+		final double ai00 = ( a11 * a22 - a12 * a12 ) * idet;
+		final double ai01 = ( a02 * a12 - a01 * a22 ) * idet;
+		final double ai02 = ( a01 * a12 - a02 * a11 ) * idet;
+		final double ai11 = ( a00 * a22 - a02 * a02 ) * idet;
+		final double ai12 = ( a02 * a01 - a00 * a12 ) * idet;
+		final double ai22 = ( a00 * a11 - a01 * a01 ) * idet;
+
+		m00 = ai00 * b00 + ai01 * b10 + ai02 * b20;
+		m01 = ai01 * b00 + ai11 * b10 + ai12 * b20;
+		m02 = ai02 * b00 + ai12 * b10 + ai22 * b20;
+
+		m10 = ai00 * b01 + ai01 * b11 + ai02 * b21;
+		m11 = ai01 * b01 + ai11 * b11 + ai12 * b21;
+		m12 = ai02 * b01 + ai12 * b11 + ai22 * b21;
+
+		m20 = ai00 * b02 + ai01 * b12 + ai02 * b22;
+		m21 = ai01 * b02 + ai11 * b12 + ai12 * b22;
+		m22 = ai02 * b02 + ai12 * b12 + ai22 * b22;
+
+		m03 = qcx - m00 * pcx - m01 * pcy - m02 * pcz;
+		m13 = qcy - m10 * pcx - m11 * pcy - m12 * pcz;
+		m23 = qcz - m20 * pcx - m21 * pcy - m22 * pcz;
+
+		invert();
+	}
+
 	@Override
 	final public void set( final AffineModel3D m )
 	{
@@ -60,4 +60,84 @@ public interface CoordinateTransform extends Serializable
 	 * @param location
 	 */
 	public void applyInPlace( double[] location );
+
+	/**
+	 * Apply the {@link CoordinateTransform} to the 2d locations
+	 * (xs[i], ys[i]) for i in [offset, offset + length).
+	 * <p>
+	 * The default implementation calls {@link #applyInPlace(double[])} for
+	 * each location.  Implementations should override it with a direct loop.
+	 * </p>
+	 *
+	 * @param xs
+	 * @param ys
+	 * @param offset index of the first location
+	 * @param length number of locations
+	 */
+	default public void applyInPlace( final double[] xs, final double[] ys, final int offset, final int length )
+	{
+		final double[] location = new double[ 2 ];
+		for ( int i = offset; i < offset + length; ++i )
+		{
+			location[ 0 ] = xs[ i ];
+			location[ 1 ] = ys[ i ];
+			applyInPlace( location );
+			xs[ i ] = location[ 0 ];
+			ys[ i ] = location[ 1 ];
+		}
+	}
+
+	/**
+	 * Apply the {@link CoordinateTransform} to the 3d locations
+	 * (xs[i], ys[i], zs[i]) for i in [offset, offset + length).
+	 * <p>
+	 * The default implementation calls {@link #applyInPlace(double[])} for
+	 * each location.  Implementations should override it with a direct loop.
+	 * </p>
+	 *
+	 * @param xs
+	 * @param ys
+	 * @param zs
+	 * @param offset index of the first location
+	 * @param length number of locations
+	 */
+	default public void applyInPlace( final double[] xs, final double[] ys, final double[] zs, final int offset, final int length )
+	{
+		final double[] location = new double[ 3 ];
+		for ( int i = offset; i < offset + length; ++i )
+		{
+			location[ 0 ] = xs[ i ];
+			location[ 1 ] = ys[ i ];
+			location[ 2 ] = zs[ i ];
+			applyInPlace( location );
+			xs[ i ] = location[ 0 ];
+			ys[ i ] = location[ 1 ];
+			zs[ i ] = location[ 2 ];
+		}
+	}
+
+	/**
+	 * Apply the {@link CoordinateTransform} to n-dimensional locations that
+	 * are stored interleaved, i.e. coordinate d of location i is
+	 * locations[i * n + d], for i in [offset, offset + length).
+	 * <p>
+	 * The default implementation calls {@link #applyInPlace(double[])} for
+	 * each location.  Implementations should override it with a direct loop.
+	 * </p>
+	 *
+	 * @param locations
+	 * @param n number of dimensions
+	 * @param offset index of the first location
+	 * @param length number of locations
+	 */
+	default public void applyInPlaceInterleaved( final double[] locations, final int n, final int offset, final int length )
+	{
+		final double[] location = new double[ n ];
+		for ( int i = offset * n; i < ( offset + length ) * n; i += n )
+		{
+			System.arraycopy( locations, i, location, 0, n );
+			applyInPlace( location );
+			System.arraycopy( location, 0, locations, i, n );
+		}
+	}
 }
@@ -88,6 +88,146 @@ public class CoordinateTransformList< E extends CoordinateTransform > implements
 			t.applyInPlace( location );
 	}
 
+	@Override
+	final public void applyInPlace( final double[] xs, final double[] ys, final int offset, final int length )
+	{
+		for ( final E t : transforms )
+			t.applyInPlace( xs, ys, offset, length );
+	}
+
+	@Override
+	final public void applyInPlace( final double[] xs, final double[] ys, final double[] zs, final int offset, final int length )
+	{
+		for ( final E t : transforms )
+			t.applyInPlace( xs, ys, zs, offset, length );
+	}
+
+	@Override
+	final public void applyInPlaceInterleaved( final double[] locations, final int n, final int offset, final int length )
+	{
+		for ( final E t : transforms )
+			t.applyInPlaceInterleaved( locations, n, offset, length );
+	}
+
+	/**
+	 * Create an equivalent transform that is cheaper to apply.  Nested
+	 * {@link CoordinateTransformList CoordinateTransformLists} and
+	 * {@link InvertibleCoordinateTransformList InvertibleCoordinateTransformLists}
+	 * are flattened and each maximal run of consecutive {@link Affine2D} or
+	 * {@link Affine3D} members is concatenated into a single
+	 * {@link AffineModel2D} or {@link AffineModel3D}.  Members that are not
+	 * collapsed are used by reference, collapsed runs are copies that do not
+	 * reflect later changes of their members.
+	 *
+	 * @return the only remaining transform or a
+	 *   {@link CoordinateTransformList} of the remaining transforms
+	 */
+	public CoordinateTransform compile()
+	{
+		final CoordinateTransformList< CoordinateTransform > compiled = new CoordinateTransformList< CoordinateTransform >();
+		compile( transforms, compiled.transforms );
+		return compiled.transforms.size() == 1 ? compiled.transforms.get( 0 ) : compiled;
+	}
+
+	/**
+	 * Append the members of transforms to flat, replacing nested
+	 * {@link CoordinateTransformList CoordinateTransformLists} and
+	 * {@link InvertibleCoordinateTransformList InvertibleCoordinateTransformLists}
+	 * by their members recursively.
+	 */
+	static protected void flatten( final List< ? extends CoordinateTransform > transforms, final List< CoordinateTransform > flat )
+	{
+		for ( final CoordinateTransform t : transforms )
+		{
+			if ( t instanceof CoordinateTransformList )
+				flatten( ( ( CoordinateTransformList< ? > )t ).transforms, flat );
+			else if ( t instanceof InvertibleCoordinateTransformList )
+				flatten( ( ( InvertibleCoordinateTransformList< ? > )t ).transforms, flat );
+			else
+				flat.add( t );
+		}
+	}
+
+	/**
+	 * Append the flattened members of transforms to compiled with each
+	 * maximal run of consecutive {@link Affine2D} or {@link Affine3D}
+	 * members replaced by its concatenation.  Runs of length 1 are appended
+	 * as they are.
+	 */
+	static protected void compile( final List< ? extends CoordinateTransform > transforms, final List< CoordinateTransform > compiled )
+	{
+		final ArrayList< CoordinateTransform > flat = new ArrayList< CoordinateTransform >();
+		flatten( transforms, flat );
+
+		final double[] data = new double[ 12 ];
+		AffineModel2D affine2d = null;
+		AffineModel3D affine3d = null;
+		CoordinateTransform first = null;
+		for ( final CoordinateTransform t : flat )
+		{
+			if ( t instanceof Affine2D )
+			{
+				if ( affine3d != null )
+				{
+					compiled.add( first == null ? affine3d : first );
+					affine3d = null;
+				}
+				( ( Affine2D< ? > )t ).toArray( data );
+				if ( affine2d == null )
+				{
+					affine2d = new AffineModel2D();
+					affine2d.set( data[ 0 ], data[ 1 ], data[ 2 ], data[ 3 ], data[ 4 ], data[ 5 ] );
+					first = t;
+				}
+				else
+				{
+					final AffineModel2D a = new AffineModel2D();
+					a.set( data[ 0 ], data[ 1 ], data[ 2 ], data[ 3 ], data[ 4 ], data[ 5 ] );
+					affine2d.preConcatenate( a );
+					first = null;
+				}
+			}
+			else if ( t instanceof Affine3D )
+			{
+				if ( affine2d != null )
+				{
+					compiled.add( first == null ? affine2d : first );
+					affine2d = null;
+				}
+				( ( Affine3D< ? > )t ).toArray( data );
+				final AffineModel3D a = new AffineModel3D();
+				a.set(
+						data[ 0 ], data[ 3 ], data[ 6 ], data[ 9 ],
+						data[ 1 ], data[ 4 ], data[ 7 ], data[ 10 ],
+						data[ 2 ], data[ 5 ], data[ 8 ], data[ 11 ] );
+				if ( affine3d == null )
+				{
+					affine3d = a;
+					first = t;
+				}
+				else
+				{
+					affine3d.preConcatenate( a );
+					first = null;
+				}
+			}
+			else
+			{
+				if ( affine2d != null )
+					compiled.add( first == null ? affine2d : first );
+				else if ( affine3d != null )
+					compiled.add( first == null ? affine3d : first );
+				affine2d = null;
+				affine3d = null;
+				compiled.add( t );
+			}
+		}
+		if ( affine2d != null )
+			compiled.add( first == null ? affine2d : first );
+		else if ( affine3d != null )
+			compiled.add( first == null ? affine3d : first );
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
@@ -37,12 +37,26 @@
  */
 package mpicbg.models;
 
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link CoordinateTransform} that is saved as a LUT on integer coordinates.
+ * <p>
+ * The file format starts with width and height as big-endian unsigned 32 bit
+ * integers followed by the rows of the LUT as interleaved big-endian 32 bit
+ * floats x, y.  Use {@link MappedCoordinateTransformMap2D} to use such files
+ * without loading them into memory.
+ * </p>
  *
  * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
  */
@@ -71,109 +85,163 @@ public class CoordinateTransformMap2D implements CoordinateTransform
 	}
 
 	public CoordinateTransformMap2D( final CoordinateTransform t, final int width, final int height )
+	{
+		this( t, width, height, null );
+	}
+
+	/**
+	 * Tabulate a {@link CoordinateTransform} on the integer coordinates of
+	 * [0, width) &times; [0, height).  Bands of rows are filled in parallel
+	 * by the executor, so t must be safe for concurrent use.
+	 *
+	 * @param t
+	 * @param width
+	 * @param height
+	 * @param executor if null, the map is filled by the calling thread
+	 */
+	public CoordinateTransformMap2D(
+			final CoordinateTransform t,
+			final int width,
+			final int height,
+			final ExecutorService executor )
 	{
 		this.width = width;
 		this.height = height;
 		map = new float[ height ][ width * 2 ];
-		final double[] l = new double[ 2 ];
-		for ( int y = 0; y < height; ++y )
+		fillBands(
+				height,
+				( minY, maxY ) -> {
+					final double[] l = new double[ 2 ];
+					for ( int y = minY; y < maxY; ++y )
+					{
+						final float[] row = map[ y ];
+						for ( int x = 0; x < width; ++x )
+						{
+							l[ 0 ] = x;
+							l[ 1 ] = y;
+							t.applyInPlace( l );
+							row[ 2 * x ] = ( float )l[ 0 ];
+							row[ 2 * x + 1 ] = ( float )l[ 1 ];
+						}
+					}
+				},
+				executor );
+	}
+
+	/**
+	 * Fills the rows [minY, maxY) of a LUT.
+	 */
+	protected interface RowBand
+	{
+		public void fill( final int minY, final int maxY );
+	}
+
+	/**
+	 * Split [0, height) into bands of rows and fill them with the executor.
+	 * Bands are disjoint, so the result does not depend on scheduling as long
+	 * as band only writes into its own rows.
+	 *
+	 * @param height
+	 * @param band
+	 * @param executor if null, all rows are filled by the calling thread
+	 */
+	static protected void fillBands( final int height, final RowBand band, final ExecutorService executor )
+	{
+		if ( executor == null )
 		{
-			for ( int x = 0; x < width; ++x )
+			band.fill( 0, height );
+			return;
+		}
+
+		final int numWorkers = AbstractModel.numWorkers( executor, height );
+		final int bandHeight = Math.max( 1, ( height + 8 * numWorkers - 1 ) / ( 8 * numWorkers ) );
+		final int numBands = ( height + bandHeight - 1 ) / bandHeight;
+		final AtomicInteger nextBand = new AtomicInteger( 0 );
+		final ArrayList< Future< ? > > tasks = new ArrayList< Future< ? > >( numWorkers );
+		for ( int j = 0; j < Math.min( numBands, numWorkers ); ++j )
+			tasks.add( executor.submit( () -> {
+				for ( int b = nextBand.getAndIncrement(); b < numBands; b = nextBand.getAndIncrement() )
+				{
+					final int minY = b * bandHeight;
+					band.fill( minY, Math.min( height, minY + bandHeight ) );
+				}
+			} ) );
+
+		for ( final Future< ? > task : tasks )
+		{
+			try
+			{
+				task.get();
+			}
+			catch ( final InterruptedException | ExecutionException e )
 			{
-				l[ 0 ] = x;
-				l[ 1 ] = y;
-				t.applyInPlace( l );
-				map[ y ][ 2 * x ] = ( float )l[ 0 ];
-				map[ y ][ 2 * x + 1 ] = ( float )l[ 1 ];
+				throw new RuntimeException( e );
 			}
 		}
 	}
 
 	public CoordinateTransformMap2D( final FileInputStream fis ) throws IOException
 	{
-		final byte[] header = new byte[ 8 ];
-		fis.read( header );
+		final FileChannel channel = fis.getChannel();
+		final ByteBuffer header = ByteBuffer.allocate( 8 );
+		readFully( channel, header );
 
 		/*
 		 * Unsigned integers have to be calculated as long thanks Java's lack
 		 * of unsigned basic types.
 		 */
-		final long longWidth = ( ( 0xffl & header[ 0 ] ) << 24 ) + ( ( 0xffl & header[ 1 ] ) << 16 ) + ( ( 0xffl & header[ 2 ] ) << 8 ) + ( 0xffl & header[ 3 ] );
-		this.width = ( int )longWidth;
-		final long longHeight = ( ( 0xffL & header[ 4 ] ) << 24 ) + ( ( 0xffL & header[ 5 ] ) << 16 ) + ( ( 0xffL & header[ 6 ] ) << 8 ) + ( 0xffL & header[ 7 ] );
-		this.height = ( int )longHeight;
+		this.width = ( int )( 0xffffffffL & header.getInt( 0 ) );
+		this.height = ( int )( 0xffffffffL & header.getInt( 4 ) );
 
 		map = new float[ height ][ 2 * width ];
 
-		final byte[] byteRow = new byte[ width * 8 ];
+		final ByteBuffer byteRow = ByteBuffer.allocate( width * 8 );
 		for ( int y = 0; y < height; ++y )
 		{
-			fis.read( byteRow );
-
-			final float[] row = map[ y ];
-			for ( int i = 0; i < row.length; i += 2 )
-			{
-				final int j = 4 * i;
-				final int tx =
-					( ( 0xff & byteRow[ j ] ) << 24 ) |
-					( ( 0xff & byteRow[ j + 1 ] ) << 16 ) |
-					( ( 0xff & byteRow[ j + 2 ] ) << 8 ) |
-					( 0xff & byteRow[ j + 3 ] );
-				final int ty =
-					( ( 0xff & byteRow[ j + 4 ] ) << 24 ) |
-					( ( 0xff & byteRow[ j + 5 ] ) << 16 ) |
-					( ( 0xff & byteRow[ j + 6 ] ) << 8 ) |
-					( 0xff & byteRow[ j + 7 ] );
-
-				row[ i ] = Float.intBitsToFloat( tx );
-				row[ i + 1 ] = Float.intBitsToFloat( ty );
-			}
+			byteRow.clear();
+			readFully( channel, byteRow );
+			byteRow.flip();
+			byteRow.asFloatBuffer().get( map[ y ] );
 		}
 	}
 
 	final public void export( final FileOutputStream fos ) throws IOException
 	{
-		final byte[] header = new byte[ 8 ];
-
-		header[ 0 ] = ( byte )( width >> 24 );
-		header[ 1 ] = ( byte )( width >> 16 );
-		header[ 2 ] = ( byte )( width >> 8 );
-		header[ 3 ] = ( byte )width;
-
-		header[ 4 ] = ( byte )( height >> 24 );
-		header[ 5 ] = ( byte )( height >> 16 );
-		header[ 6 ] = ( byte )( height >> 8 );
-		header[ 7 ] = ( byte )height;
-
-		fos.write( header );
+		final FileChannel channel = fos.getChannel();
+		final ByteBuffer header = ByteBuffer.allocate( 8 );
+		header.putInt( 0, width );
+		header.putInt( 4, height );
+		writeFully( channel, header );
 
-		final byte[] byteRow = new byte[ width * 8 ];
+		final ByteBuffer byteRow = ByteBuffer.allocate( width * 8 );
 		for ( int y = 0; y < height; ++y )
 		{
-			final float[] row = map[ y ];
-			for ( int i = 0; i < row.length; i += 2 )
-			{
-				final int j = 4 * i;
-
-				final int tx = Float.floatToIntBits( row[ i ] );
-				final int ty = Float.floatToIntBits( row[ i + 1 ] );
-
-				byteRow[ j ] = ( byte )( tx >> 24 );
-				byteRow[ j + 1 ] = ( byte )( tx >> 16 );
-				byteRow[ j + 2 ] = ( byte )( tx >> 8 );
-				byteRow[ j + 3 ] = ( byte )tx;
-
-				byteRow[ j + 4 ] = ( byte )( ty >> 24 );
-				byteRow[ j + 5 ] = ( byte )( ty >> 16 );
-				byteRow[ j + 6 ] = ( byte )( ty >> 8 );
-				byteRow[ j + 7 ] = ( byte )ty;
-			}
-
-			fos.write( byteRow );
+			byteRow.clear();
+			byteRow.asFloatBuffer().put( map[ y ] );
+			writeFully( channel, byteRow );
 		}
 		fos.close();
 	}
 
+	/**
+	 * Read from channel until buffer is full.
+	 */
+	static protected void readFully( final FileChannel channel, final ByteBuffer buffer ) throws IOException
+	{
+		while ( buffer.hasRemaining() )
+			if ( channel.read( buffer ) < 0 )
+				throw new EOFException( "Unexpected end of coordinate transform map." );
+	}
+
+	/**
+	 * Write all remaining bytes of buffer to channel.
+	 */
+	static protected void writeFully( final FileChannel channel, final ByteBuffer buffer ) throws IOException
+	{
+		while ( buffer.hasRemaining() )
+			channel.write( buffer );
+	}
+
 	@Override
 	final public double[] apply( final double[] location )
 	{
@@ -38,6 +38,7 @@
 package mpicbg.models;
 
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -47,6 +48,17 @@ public class CoordinateTransformMesh extends TransformMesh
 {
 	private static final long serialVersionUID = 678862124003647263L;
 
+	/**
+	 * Create an empty mesh without vertices and triangles.
+	 *
+	 * @param width
+	 * @param height
+	 */
+	protected CoordinateTransformMesh( final double width, final double height )
+	{
+		super( width, height );
+	}
+
 	public CoordinateTransformMesh(
 			final CoordinateTransform t,
 			final int numX,
@@ -61,4 +73,49 @@ public class CoordinateTransformMesh extends TransformMesh
 
 		updateAffines();
 	}
+
+	/**
+	 * Create a mesh with the vertices transferred by a 2d
+	 * {@link AbstractMovingLeastSquaresTransform} that is evaluated in
+	 * parallel on the threads of executor.
+	 *
+	 * @param t
+	 * @param numX
+	 * @param width
+	 * @param height
+	 * @param executor
+	 */
+	public CoordinateTransformMesh(
+			final AbstractMovingLeastSquaresTransform t,
+			final int numX,
+			final double width,
+			final double height,
+			final ExecutorService executor )
+	{
+		super( numX, numY( numX, width, height ), width, height );
+
+		final Set< PointMatch > vertices = va.keySet();
+		final int n = vertices.size();
+		final double[] xs = new double[ n ];
+		final double[] ys = new double[ n ];
+		int i = 0;
+		for ( final PointMatch vertex : vertices )
+		{
+			final double[] l = vertex.getP2().getL();
+			xs[ i ] = l[ 0 ];
+			ys[ i++ ] = l[ 1 ];
+		}
+
+		t.applyInPlace( xs, ys, 0, n, executor );
+
+		i = 0;
+		for ( final PointMatch vertex : vertices )
+		{
+			final double[] w = vertex.getP2().getW();
+			w[ 0 ] = xs[ i ];
+			w[ 1 ] = ys[ i++ ];
+		}
+
+		updateAffines();
+	}
 }
@@ -337,7 +337,7 @@ public class ElasticMovingLeastSquaresMesh< M extends AbstractModel< M > > exten
 			ipPlot.set(
 					( int )( i * ( double )ipPlot.getWidth() / ( double )maxIterations ),
 					//( int )( ( double )observer.values.get( observer.values.size() - 1 ) ),
-					Math.min( ipPlot.getHeight() - 1, Math.max( 0, ipPlot.getHeight() / 2 - ( int )( Math.log( ( double )observer.values.get( observer.values.size() - 1 ) ) * 10 ) ) ),
+					Math.min( ipPlot.getHeight() - 1, Math.max( 0, ipPlot.getHeight() / 2 - ( int )( Math.log( observer.values.get( observer.values.size() - 1 ) ) * 10 ) ) ),
 					//( int )( 10 * error ),
 					0 );
 			impPlot.updateAndDraw();
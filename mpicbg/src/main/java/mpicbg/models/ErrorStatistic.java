@@ -21,24 +21,43 @@
  */
 package mpicbg.models;
 
-import java.util.Collections;
 import java.lang.IndexOutOfBoundsException;
 
+import mpicbg.util.DoubleRingBuffer;
 import mpicbg.util.RingBuffer;
 
+/**
+ * Statistics of the error of an iterative optimizer.  The last capacity
+ * values and their differences are kept in primitive ring buffers
+ * {@link #valueBuffer} and {@link #slopeBuffer}, the median of these values
+ * is maintained incrementally.  {@link #values}, {@link #slope} and
+ * {@link #sortedValues} are read-only views of these buffers.  Mean, variances and
+ * range refer to all values added since construction or {@link #clear()}.
+ * An instance is not synchronized, concurrent optimizers should use one
+ * each.
+ */
 public class ErrorStatistic
 {
 	final static IndexOutOfBoundsException tooWide = new IndexOutOfBoundsException( "Cannot estimate a wide slope for width larger than than the number of sample." );
 	
+	final public DoubleRingBuffer valueBuffer;
+	final public DoubleRingBuffer slopeBuffer;
+
 	final public RingBuffer< Double > values;
 	final public RingBuffer< Double > slope;
+
+	/**
+	 * The last capacity values in ascending order.
+	 */
 	final public RingBuffer< Double > sortedValues;
 	
 	public ErrorStatistic( final int capacity )
 	{
-		values = new RingBuffer< Double >( capacity );
-		slope = new RingBuffer< Double >( capacity );
-		sortedValues = new RingBuffer< Double >( capacity );
+		valueBuffer = new DoubleRingBuffer( capacity );
+		slopeBuffer = new DoubleRingBuffer( capacity );
+		values = valueBuffer.view();
+		slope = slopeBuffer.view();
+		sortedValues = valueBuffer.sortedView();
 	}
 	
 	public double var0 = 0;		// variance relative to 0
@@ -51,17 +70,12 @@ public class ErrorStatistic
 	private double squareDifferences = 0;
 	private double squares = 0;
 
+	/**
+	 * The median of the last capacity values.
+	 */
 	public double getMedian()
 	{
-		Collections.sort( sortedValues );
-		if ( sortedValues.size() % 2 == 0 )
-		{
-			int m = sortedValues.size() / 2;
-			median = ( sortedValues.get( m - 1 ) + sortedValues.get( m ) ) / 2.0;
-		}
-		else
-			median = sortedValues.get( sortedValues.size() / 2 );
-		
+		median = valueBuffer.median();
 		return median;
 	}
 	
@@ -70,25 +84,24 @@ public class ErrorStatistic
 	
 	final public void add( final double new_value )
 	{
-		values.add(new_value);
-		sortedValues.add( new_value );
+		valueBuffer.add(new_value);
 
-		if (values.lastIndex() == 0) {
-			slope.add(0.0);
+		if (valueBuffer.lastIndex() == 0) {
+			slopeBuffer.add(0.0);
 			mean = new_value;
 			var = 0.0;
 			var0 = 0.0;
 		} else {
-			slope.add(new_value - values.get(values.lastIndex()));
+			slopeBuffer.add(new_value - valueBuffer.get(valueBuffer.lastIndex()));
 
 			final double delta = new_value - mean;
-			mean += delta / values.nextIndex();
+			mean += delta / valueBuffer.nextIndex();
 
 			squareDifferences += delta * (new_value - mean);
-			var = squareDifferences / values.lastIndex();
+			var = squareDifferences / valueBuffer.lastIndex();
 
 			squares += new_value * new_value;
-			var0 = squares / values.lastIndex();
+			var0 = squares / valueBuffer.lastIndex();
 		}
 
 		std0 = Math.sqrt(var0);
@@ -100,16 +113,15 @@ public class ErrorStatistic
 	
 	final public double getWideSlope( final int width ) throws IndexOutOfBoundsException
 	{
-		return ( values.get( values.lastIndex() ) - values.get( values.lastIndex() - width ) ) / width;
+		return ( valueBuffer.get( valueBuffer.lastIndex() ) - valueBuffer.get( valueBuffer.lastIndex() - width ) ) / width;
 	}
 	
-	public int n() { return values.nextIndex(); }
+	public int n() { return valueBuffer.nextIndex(); }
 	
 	public void clear()
 	{
-		values.clear();
-		slope.clear();
-		sortedValues.clear();
+		valueBuffer.clear();
+		slopeBuffer.clear();
 		
 		var0 = 0;		// variance relative to 0
 		var = 0;		// variance relative to mean
@@ -40,8 +40,7 @@ package mpicbg.models;
 import java.util.Collection;
 
 import mpicbg.util.Matrix3x3;
-import Jama.Matrix;
-import Jama.SingularValueDecomposition;
+import mpicbg.util.SymmetricEigen;
 
 /**
  * 2d-homography {@link AbstractModel} to be applied to points in 2d-space.
@@ -86,6 +85,8 @@ public class HomographyModel2D extends AbstractModel< HomographyModel2D > implem
 			m10 = 0, m11 = 1, m12 = 0,
 			m20 = 0, m21 = 0, m22 = 1;
 
+	transient private double[] ata, ataEigenVectors, ataEigenValues;
+
 	public void set(
 			final double m00, final double m01, final double m02,
 			final double m10, final double m11, final double m12,
@@ -195,6 +196,38 @@ public class HomographyModel2D extends AbstractModel< HomographyModel2D > implem
 		point[ 1 ] = t1 / s;
 	}
 
+	@Override
+	final public void applyInPlace( final double[] xs, final double[] ys, final int offset, final int length )
+	{
+		for ( int i = offset; i < offset + length; ++i )
+		{
+			final double x = xs[ i ];
+			final double y = ys[ i ];
+			final double s = m20 * x + m21 * y + m22;
+			final double t0 = m00 * x + m01 * y + m02;
+			final double t1 = m10 * x + m11 * y + m12;
+			xs[ i ] = t0 / s;
+			ys[ i ] = t1 / s;
+		}
+	}
+
+	@Override
+	final public void applyInPlaceInterleaved( final double[] locations, final int n, final int offset, final int length )
+	{
+		assert n >= 2 : "2d homographies can be applied to 2d points only.";
+
+		for ( int i = offset * n; i < ( offset + length ) * n; i += n )
+		{
+			final double x = locations[ i ];
+			final double y = locations[ i + 1 ];
+			final double s = m20 * x + m21 * y + m22;
+			final double t0 = m00 * x + m01 * y + m02;
+			final double t1 = m10 * x + m11 * y + m12;
+			locations[ i ] = t0 / s;
+			locations[ i + 1 ] = t1 / s;
+		}
+	}
+
 	//@Override
 	@Override
 	final public double[] applyInverse( final double[] point ) throws NoninvertibleModelException
@@ -334,70 +367,204 @@ public class HomographyModel2D extends AbstractModel< HomographyModel2D > implem
 		}
 		else
 		{
-			final int n = matches.size() * 2;
-			final double[][] a = new double[ n ][ 9 ];
-			int i = 0;
-
+			/*
+			 * Normalized DLT: both point sets are translated to their centroid
+			 * and scaled to mean distance sqrt(2) from it, then the homography
+			 * is the right singular vector of the smallest singular value of
+			 * the 2n x 9 design matrix A, i.e. the eigenvector of the smallest
+			 * eigenvalue of the 9 x 9 matrix A^T A that we accumulate directly.
+			 */
+			double pcx = 0, pcy = 0, qcx = 0, qcy = 0;
 			for ( final P pm : matches )
 			{
 				final double[] p = pm.getP1().getL();
 				final double[] q = pm.getP2().getW();
+				pcx += finite( p[ 0 ] );
+				pcy += finite( p[ 1 ] );
+				qcx += finite( q[ 0 ] );
+				qcy += finite( q[ 1 ] );
+			}
+			final int numMatches = matches.size();
+			pcx /= numMatches;
+			pcy /= numMatches;
+			qcx /= numMatches;
+			qcy /= numMatches;
 
-				double px = p[ 0 ];
-				double py = p[ 1 ];
-				double qx = q[ 0 ];
-				double qy = q[ 1 ];
-
-				// without testing that, it will send the SingularValueDecomposition
-				// into an infinite loop if one of them is NaN or Infinite
-				if ( Double.isInfinite( px ) || Double.isNaN( px ) )
-					px = 1;
-
-				if ( Double.isInfinite( py ) || Double.isNaN( py ))
-					py = 1;
-
-				if ( Double.isInfinite( qx ) || Double.isNaN( qx ))
-					qx = 1;
-
-				if ( Double.isInfinite( qy ) || Double.isNaN( qy ))
-					qy = 1;
-
-				a[ i ][ 0 ] = -px;
-				a[ i ][ 1 ] = -py;
-				a[ i ][ 2 ] = -1;
-				a[ i ][ 6 ] = qx * px;
-				a[ i ][ 7 ] = qx * py;
-				a[ i++ ][ 8 ] = qx;
-
-				a[ i ][ 3 ] = -px;
-				a[ i ][ 4 ] = -py;
-				a[ i ][ 5 ] = -1;
-				a[ i ][ 6 ] = qy * px;
-				a[ i ][ 7 ] = qy * py;
-				a[ i++ ][ 8 ] = qy;
+			double pd = 0, qd = 0;
+			for ( final P pm : matches )
+			{
+				final double[] p = pm.getP1().getL();
+				final double[] q = pm.getP2().getW();
+				pd += Math.hypot( finite( p[ 0 ] ) - pcx, finite( p[ 1 ] ) - pcy );
+				qd += Math.hypot( finite( q[ 0 ] ) - qcx, finite( q[ 1 ] ) - qcy );
 			}
+			/* coincident points, up to the rounding error of the centroid */
+			if (
+					pd <= 1e-12 * numMatches * Math.max( Math.abs( pcx ), Math.abs( pcy ) ) ||
+					qd <= 1e-12 * numMatches * Math.max( Math.abs( qcx ), Math.abs( qcy ) ) )
+				throw new IllDefinedDataPointsException();
+
+			final double ps = Math.sqrt( 2 ) * numMatches / pd;
+			final double qs = Math.sqrt( 2 ) * numMatches / qd;
 
-			final Matrix mA = new Matrix( a );
-			final SingularValueDecomposition svd = new SingularValueDecomposition( mA );
-			final Matrix s = svd.getS();
-			final Matrix v = svd.getV();
+			final double[] ata = scratchAtA();
+			for ( int k = 0; k < 81; ++k )
+				ata[ k ] = 0;
 
-			cost = s.get( 8, 8 );
+			for ( final P pm : matches )
+			{
+				final double[] p = pm.getP1().getL();
+				final double[] q = pm.getP2().getW();
 
-			m00 = v.get( 0, 8 );
-			m01 = v.get( 1, 8 );
-			m02 = v.get( 2, 8 );
-			m10 = v.get( 3, 8 );
-			m11 = v.get( 4, 8 );
-			m12 = v.get( 5, 8 );
-			m20 = v.get( 6, 8 );
-			m21 = v.get( 7, 8 );
-			m22 = v.get( 8, 8 );
+				final double px = ( finite( p[ 0 ] ) - pcx ) * ps;
+				final double py = ( finite( p[ 1 ] ) - pcy ) * ps;
+				final double qx = ( finite( q[ 0 ] ) - qcx ) * qs;
+				final double qy = ( finite( q[ 1 ] ) - qcy ) * qs;
+
+				/*
+				 * rows of A
+				 * ( -px, -py, -1,   0,   0,  0, qx * px, qx * py, qx )
+				 * (   0,   0,  0, -px, -py, -1, qy * px, qy * py, qy )
+				 *
+				 * the blocks 0..2 x 0..2 and 3..5 x 3..5 are identical and
+				 * 0..2 x 3..5 is zero
+				 */
+				final double pxx = px * px, pxy = px * py, pyy = py * py;
+				ata[ 0 ] += pxx;
+				ata[ 1 ] += pxy;
+				ata[ 2 ] += px;
+				ata[ 10 ] += pyy;
+				ata[ 11 ] += py;
+				ata[ 20 ] += 1;
+
+				/* 0..2 x 6..8 and 3..5 x 6..8 */
+				ata[ 6 ] -= qx * pxx;
+				ata[ 7 ] -= qx * pxy;
+				ata[ 8 ] -= qx * px;
+				ata[ 15 ] -= qx * pxy;
+				ata[ 16 ] -= qx * pyy;
+				ata[ 17 ] -= qx * py;
+				ata[ 24 ] -= qx * px;
+				ata[ 25 ] -= qx * py;
+				ata[ 26 ] -= qx;
+
+				ata[ 33 ] -= qy * pxx;
+				ata[ 34 ] -= qy * pxy;
+				ata[ 35 ] -= qy * px;
+				ata[ 42 ] -= qy * pxy;
+				ata[ 43 ] -= qy * pyy;
+				ata[ 44 ] -= qy * py;
+				ata[ 51 ] -= qy * px;
+				ata[ 52 ] -= qy * py;
+				ata[ 53 ] -= qy;
+
+				/* 6..8 x 6..8 */
+				final double qq = qx * qx + qy * qy;
+				ata[ 60 ] += qq * pxx;
+				ata[ 61 ] += qq * pxy;
+				ata[ 62 ] += qq * px;
+				ata[ 70 ] += qq * pyy;
+				ata[ 71 ] += qq * py;
+				ata[ 80 ] += qq;
+			}
+
+			/* copy the identical block and mirror the upper triangle */
+			ata[ 30 ] = ata[ 0 ];
+			ata[ 31 ] = ata[ 1 ];
+			ata[ 32 ] = ata[ 2 ];
+			ata[ 40 ] = ata[ 10 ];
+			ata[ 41 ] = ata[ 11 ];
+			ata[ 50 ] = ata[ 20 ];
+			for ( int r = 1; r < 9; ++r )
+				for ( int c = 0; c < r; ++c )
+					ata[ r * 9 + c ] = ata[ c * 9 + r ];
+
+			SymmetricEigen.decompose( ata, 9, ataEigenVectors, ataEigenValues );
+			final int index = SymmetricEigen.argMin( ataEigenValues, 9 );
+
+			/*
+			 * a null space of more than one dimension, e.g. for collinear
+			 * points, leaves the homography undefined
+			 */
+			double second = Double.MAX_VALUE, max = 0;
+			for ( int i = 0; i < 9; ++i )
+			{
+				if ( i != index )
+					second = Math.min( second, ataEigenValues[ i ] );
+				max = Math.max( max, ataEigenValues[ i ] );
+			}
+			if ( second <= 1e-12 * max )
+				throw new IllDefinedDataPointsException();
+
+			cost = Math.sqrt( Math.max( 0, ataEigenValues[ index ] ) );
+
+			/* denormalize, H = T_q^-1 H_n T_p */
+			final double[] h = ataEigenVectors;
+			final double h00 = h[ index ] * ps;
+			final double h01 = h[ 9 + index ] * ps;
+			final double h02 = h[ 18 + index ] - h00 * pcx - h01 * pcy;
+			final double h10 = h[ 27 + index ] * ps;
+			final double h11 = h[ 36 + index ] * ps;
+			final double h12 = h[ 45 + index ] - h10 * pcx - h11 * pcy;
+			final double h20 = h[ 54 + index ] * ps;
+			final double h21 = h[ 63 + index ] * ps;
+			final double h22 = h[ 72 + index ] - h20 * pcx - h21 * pcy;
+
+			m00 = h00 / qs + qcx * h20;
+			m01 = h01 / qs + qcx * h21;
+			m02 = h02 / qs + qcx * h22;
+			m10 = h10 / qs + qcy * h20;
+			m11 = h11 / qs + qcy * h21;
+			m12 = h12 / qs + qcy * h22;
+			m20 = h20;
+			m21 = h21;
+			m22 = h22;
+
+			/* unit Frobenius norm as returned by the SVD of A */
+			final double norm = Math.sqrt(
+					m00 * m00 + m01 * m01 + m02 * m02 +
+					m10 * m10 + m11 * m11 + m12 * m12 +
+					m20 * m20 + m21 * m21 + m22 * m22 );
+			m00 /= norm;
+			m01 /= norm;
+			m02 /= norm;
+			m10 /= norm;
+			m11 /= norm;
+			m12 /= norm;
+			m20 /= norm;
+			m21 /= norm;
+			m22 /= norm;
 
 			invert();
 		}
 	}
 
+	/**
+	 * Replace NaN and infinite coordinates by 1, otherwise they would render
+	 * the whole estimate NaN.
+	 */
+	static private double finite( final double a )
+	{
+		return Double.isInfinite( a ) || Double.isNaN( a ) ? 1 : a;
+	}
+
+	/**
+	 * Scratch space for the normalized DLT, allocated on first use such that
+	 * fits do not allocate.
+	 *
+	 * @return A^T A
+	 */
+	private double[] scratchAtA()
+	{
+		if ( ata == null )
+		{
+			ata = new double[ 81 ];
+			ataEigenVectors = new double[ 81 ];
+			ataEigenValues = new double[ 9 ];
+		}
+		return ata;
+	}
+
 	@Override
 	public String toString()
 	{
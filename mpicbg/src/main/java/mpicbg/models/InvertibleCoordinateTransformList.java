@@ -86,6 +86,27 @@ public class InvertibleCoordinateTransformList< E extends InvertibleCoordinateTr
 			t.applyInPlace( location );
 	}
 
+	@Override
+	final public void applyInPlace( final double[] xs, final double[] ys, final int offset, final int length )
+	{
+		for ( final E t : transforms )
+			t.applyInPlace( xs, ys, offset, length );
+	}
+
+	@Override
+	final public void applyInPlace( final double[] xs, final double[] ys, final double[] zs, final int offset, final int length )
+	{
+		for ( final E t : transforms )
+			t.applyInPlace( xs, ys, zs, offset, length );
+	}
+
+	@Override
+	final public void applyInPlaceInterleaved( final double[] locations, final int n, final int offset, final int length )
+	{
+		for ( final E t : transforms )
+			t.applyInPlaceInterleaved( locations, n, offset, length );
+	}
+
 	@Override
 	final public double[] applyInverse( final double[] location ) throws NoninvertibleModelException
 	{
@@ -224,6 +245,27 @@ public class InvertibleCoordinateTransformList< E extends InvertibleCoordinateTr
 		}
 	}
 
+	/**
+	 * Create an equivalent transform that is cheaper to apply as
+	 * {@link CoordinateTransformList#compile()} does.
+	 *
+	 * @return the only remaining transform or an
+	 *   {@link InvertibleCoordinateTransformList} of the remaining transforms
+	 */
+	public InvertibleCoordinateTransform compile()
+	{
+		final ArrayList< CoordinateTransform > compiled = new ArrayList< CoordinateTransform >();
+		CoordinateTransformList.compile( transforms, compiled );
+
+		/* all members and concatenated affines are invertible */
+		if ( compiled.size() == 1 )
+			return ( InvertibleCoordinateTransform )compiled.get( 0 );
+		final InvertibleCoordinateTransformList< InvertibleCoordinateTransform > list = new InvertibleCoordinateTransformList< InvertibleCoordinateTransform >();
+		for ( final CoordinateTransform t : compiled )
+			list.add( ( InvertibleCoordinateTransform )t );
+		return list;
+	}
+
 	@SuppressWarnings( "unchecked" )
 	@Override
 	public InvertibleCoordinateTransformList< E > createInverse()
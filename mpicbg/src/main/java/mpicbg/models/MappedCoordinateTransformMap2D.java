@@ -0,0 +1,255 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A {@link CoordinateTransform} that is saved as a LUT on integer coordinates
+ * in a memory mapped file of the format of {@link CoordinateTransformMap2D}.
+ * The LUT is not loaded into the heap and can be shared read-only by many
+ * threads and processes.  Locations between the integer coordinates are
+ * interpolated bilinearly, locations outside of the LUT are clamped to its
+ * border.
+ * <p>
+ * A single mapping cannot be larger than 2GB, so the LUT is mapped as a
+ * sequence of {@link FloatBuffer FloatBuffers} of whole rows.
+ * </p>
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class MappedCoordinateTransformMap2D implements CoordinateTransform
+{
+	private static final long serialVersionUID = -1738283734738212547L;
+
+	final static protected int HEADER_SIZE = 8;
+
+	final protected File file;
+
+	final protected int width;
+	final protected int height;
+
+	final public int getWidth(){ return width; }
+	final public int getHeight(){ return height; }
+
+	/* number of rows per mapped chunk */
+	final protected int chunkRows;
+
+	/*
+	 * chunks of target coordinates addressed interleaved as
+	 * chunks[ row / chunkRows ].get( 2 * ( ( row % chunkRows ) * width + column ) ) = x
+	 * chunks[ row / chunkRows ].get( 2 * ( ( row % chunkRows ) * width + column ) + 1 ) = y
+	 */
+	transient protected FloatBuffer[] chunks;
+
+	/**
+	 * Map a file written by {@link CoordinateTransformMap2D#export} or
+	 * {@link #create} read-only.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public MappedCoordinateTransformMap2D( final File file ) throws IOException
+	{
+		this.file = file;
+		try ( final RandomAccessFile raf = new RandomAccessFile( file, "r" ) )
+		{
+			final FileChannel channel = raf.getChannel();
+			final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+			CoordinateTransformMap2D.readFully( channel, header );
+			width = ( int )( 0xffffffffL & header.getInt( 0 ) );
+			height = ( int )( 0xffffffffL & header.getInt( 4 ) );
+			chunkRows = chunkRows( width );
+			chunks = map( channel, MapMode.READ_ONLY, width, height, chunkRows );
+		}
+	}
+
+	static protected int chunkRows( final int width )
+	{
+		return ( int )Math.max( 1, Integer.MAX_VALUE / ( 8L * Math.max( 1, width ) ) );
+	}
+
+	static protected FloatBuffer[] map(
+			final FileChannel channel,
+			final MapMode mode,
+			final int width,
+			final int height,
+			final int chunkRows ) throws IOException
+	{
+		final int numChunks = ( height + chunkRows - 1 ) / chunkRows;
+		final FloatBuffer[] chunks = new FloatBuffer[ numChunks ];
+		final long rowSize = 8L * width;
+		for ( int c = 0; c < numChunks; ++c )
+		{
+			final int rows = Math.min( chunkRows, height - c * chunkRows );
+			chunks[ c ] = channel.map( mode, HEADER_SIZE + c * chunkRows * rowSize, rows * rowSize ).asFloatBuffer();
+		}
+		return chunks;
+	}
+
+	/**
+	 * Tabulate a {@link CoordinateTransform} on the integer coordinates of
+	 * [0, width) &times; [0, height) into file and map it read-only.  The
+	 * table is written directly into the mapped file, so it does not have to
+	 * fit into the heap.
+	 *
+	 * @param t
+	 * @param width
+	 * @param height
+	 * @param file will be overwritten
+	 *
+	 * @return the mapped LUT
+	 * @throws IOException
+	 */
+	static public MappedCoordinateTransformMap2D create(
+			final CoordinateTransform t,
+			final int width,
+			final int height,
+			final File file ) throws IOException
+	{
+		return create( t, width, height, file, null );
+	}
+
+	/**
+	 * Tabulate a {@link CoordinateTransform} into file like
+	 * {@link #create(CoordinateTransform, int, int, File)} with bands of rows
+	 * filled in parallel by the executor, so t must be safe for concurrent
+	 * use.
+	 *
+	 * @param t
+	 * @param width
+	 * @param height
+	 * @param file will be overwritten
+	 * @param executor if null, the file is filled by the calling thread
+	 *
+	 * @return the mapped LUT
+	 * @throws IOException
+	 */
+	static public MappedCoordinateTransformMap2D create(
+			final CoordinateTransform t,
+			final int width,
+			final int height,
+			final File file,
+			final ExecutorService executor ) throws IOException
+	{
+		try ( final RandomAccessFile raf = new RandomAccessFile( file, "rw" ) )
+		{
+			final FileChannel channel = raf.getChannel();
+			raf.setLength( HEADER_SIZE + 8L * width * height );
+
+			final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+			header.putInt( 0, width );
+			header.putInt( 4, height );
+			channel.position( 0 );
+			CoordinateTransformMap2D.writeFully( channel, header );
+
+			final int chunkRows = chunkRows( width );
+			final FloatBuffer[] chunks = map( channel, MapMode.READ_WRITE, width, height, chunkRows );
+			CoordinateTransformMap2D.fillBands(
+					height,
+					( minY, maxY ) -> {
+						final double[] xs = new double[ width ];
+						final double[] ys = new double[ width ];
+						for ( int y = minY; y < maxY; ++y )
+						{
+							for ( int x = 0; x < width; ++x )
+							{
+								xs[ x ] = x;
+								ys[ x ] = y;
+							}
+							t.applyInPlace( xs, ys, 0, width );
+
+							final FloatBuffer chunk = chunks[ y / chunkRows ];
+							int i = 2 * ( y % chunkRows ) * width;
+							for ( int x = 0; x < width; ++x )
+							{
+								chunk.put( i++, ( float )xs[ x ] );
+								chunk.put( i++, ( float )ys[ x ] );
+							}
+						}
+					},
+					executor );
+		}
+		return new MappedCoordinateTransformMap2D( file );
+	}
+
+	private void readObject( final ObjectInputStream in ) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		try ( final RandomAccessFile raf = new RandomAccessFile( file, "r" ) )
+		{
+			chunks = map( raf.getChannel(), MapMode.READ_ONLY, width, height, chunkRows );
+		}
+	}
+
+	@Override
+	final public double[] apply( final double[] location )
+	{
+		final double[] t = location.clone();
+		applyInPlace( t );
+		return t;
+	}
+
+	@Override
+	final public void applyInPlace( final double[] location )
+	{
+		final double x = Math.max( 0, Math.min( width - 1, location[ 0 ] ) );
+		final double y = Math.max( 0, Math.min( height - 1, location[ 1 ] ) );
+
+		final int x0 = Math.min( ( int )x, Math.max( 0, width - 2 ) );
+		final int y0 = Math.min( ( int )y, Math.max( 0, height - 2 ) );
+		final int x1 = Math.min( x0 + 1, width - 1 );
+		final int y1 = Math.min( y0 + 1, height - 1 );
+		final double dx = x - x0;
+		final double dy = y - y0;
+
+		final FloatBuffer chunk0 = chunks[ y0 / chunkRows ];
+		final FloatBuffer chunk1 = chunks[ y1 / chunkRows ];
+		final int row0 = 2 * ( y0 % chunkRows ) * width;
+		final int row1 = 2 * ( y1 % chunkRows ) * width;
+
+		final int i00 = row0 + 2 * x0;
+		final int i01 = row0 + 2 * x1;
+		final int i10 = row1 + 2 * x0;
+		final int i11 = row1 + 2 * x1;
+
+		final double w00 = ( 1.0 - dx ) * ( 1.0 - dy );
+		final double w01 = dx * ( 1.0 - dy );
+		final double w10 = ( 1.0 - dx ) * dy;
+		final double w11 = dx * dy;
+
+		location[ 0 ] =
+				w00 * chunk0.get( i00 ) + w01 * chunk0.get( i01 ) +
+				w10 * chunk1.get( i10 ) + w11 * chunk1.get( i11 );
+		location[ 1 ] =
+				w00 * chunk0.get( i00 + 1 ) + w01 * chunk0.get( i01 + 1 ) +
+				w10 * chunk1.get( i10 + 1 ) + w11 * chunk1.get( i11 + 1 );
+	}
+}
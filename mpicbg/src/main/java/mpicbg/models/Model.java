@@ -37,8 +37,12 @@
  */
 package mpicbg.models;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
 
 /**
  * {@link CoordinateTransform} whose parameters can be estimated through
@@ -182,6 +186,32 @@ public interface Model< M extends Model< M > > extends CoordinateTransform
 	public < P extends PointMatch >void fit( final Collection< P > matches )
 		throws NotEnoughDataPointsException, IllDefinedDataPointsException;
 
+	/**
+	 * Fit the {@link Model} to the matches of a {@link PointMatchBuffer} or
+	 * of an index view of it minimizing the global transfer error.  This is
+	 * the same as {@link #fit(Collection)} for the
+	 * {@link PointMatch PointMatches} that the buffer represents but does not
+	 * require {@link PointMatch} objects, and it does not allocate memory if
+	 * implemented directly.
+	 * <p>
+	 * The estimated model transfers p to q.
+	 * </p>
+	 * <p>
+	 * The default implementation fits to {@link PointMatchBuffer#asList()}.
+	 * </p>
+	 *
+	 * @param matches point correspondences
+	 * @throws NotEnoughDataPointsException if matches does not contain
+	 *   enough data points
+	 * @throws IllDefinedDataPointsException if the set of data points is
+	 *   inappropriate to solve the Model
+	 */
+	default public void fit( final PointMatchBuffer matches )
+		throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		fit( matches.asList() );
+	}
+
 
 
 	/**
@@ -246,6 +276,38 @@ public interface Model< M extends Model< M > > extends CoordinateTransform
 			final int minNumInliers )
 		throws NotEnoughDataPointsException;
 
+	/**
+	 * Estimate the {@link Model} and filter potential outliers by robust
+	 * iterative regression as
+	 * {@link #filter(Collection, Collection, double, int)} does but stop
+	 * after at most maxRounds rounds.  If the filter did not converge until
+	 * then, the {@link Model} is estimated from the candidates of the last
+	 * round and inliers are those of them that pass its threshold.
+	 * <p>
+	 * The default implementation ignores maxRounds.
+	 * </p>
+	 *
+	 * @param candidates Candidate data points eventually inluding some outliers
+	 * @param inliers Remaining after the robust regression filter
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   {@code maxTrust * median cost}
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxRounds maximal number of fit and reject rounds
+	 *
+	 * @return true if {@link Model} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link Model} remains unchanged.
+	 */
+	default public < P extends PointMatch >boolean filter(
+			final Collection< P > candidates,
+			final Collection< P > inliers,
+			final double maxTrust,
+			final int minNumInliers,
+			final int maxRounds )
+		throws NotEnoughDataPointsException
+	{
+		return filter( candidates, inliers, maxTrust, minNumInliers );
+	}
+
 	/**
 	 * Call {@link #filter(Collection, Collection, double, int)} with minNumInliers = {@link Model#getMinNumMatches()}.
 	 */
@@ -263,6 +325,121 @@ public interface Model< M extends Model< M > > extends CoordinateTransform
 			final Collection< P > inliers )
 		throws NotEnoughDataPointsException;
 
+	/**
+	 * Test the {@link Model} for the matches of a {@link PointMatchBuffer}.
+	 * Fills inliers with the storage indices of all candidates whose transfer
+	 * error is smaller than epsilon, in the order of candidates.
+	 * <p>
+	 * Sets {@code cost = 1.0 - |inliers| / |candidates|}.
+	 * </p>
+	 * <p>
+	 * The default implementation tests each match individually.
+	 * </p>
+	 *
+	 * @param candidates point correspondence candidates
+	 * @param inliers storage indices of inliers, at least |candidates| long
+	 * @param epsilon maximal allowed transfer error
+	 *
+	 * @return number of inliers
+	 */
+	default public int test(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
+			final double epsilon )
+	{
+		final int n = candidates.size();
+		final double[][] p = candidates.getP();
+		final double[][] q = candidates.getQ();
+		final double[] location = new double[ candidates.numDimensions() ];
+		int numInliers = 0;
+		for ( int k = 0; k < n; ++k )
+		{
+			final int i = candidates.index( k );
+			for ( int d = 0; d < location.length; ++d )
+				location[ d ] = p[ d ][ i ];
+			applyInPlace( location );
+			double sum = 0;
+			for ( int d = 0; d < location.length; ++d )
+			{
+				final double dd = location[ d ] - q[ d ][ i ];
+				sum += dd * dd;
+			}
+			if ( Math.sqrt( sum ) < epsilon )
+				inliers[ numInliers++ ] = i;
+		}
+		setCost( n == 0 ? 1.0 : 1.0 - ( double )numInliers / n );
+		return numInliers;
+	}
+
+	/**
+	 * Estimate the {@link Model} from the matches of a
+	 * {@link PointMatchBuffer} and filter potential outliers by robust
+	 * iterative regression as
+	 * {@link #filter(Collection, Collection, double, int)} does.
+	 * <p>
+	 * The default implementation calls the {@link Collection} based method on
+	 * {@link PointMatchBuffer#asList()}.
+	 * </p>
+	 *
+	 * @param candidates Candidate data points eventually inluding some outliers
+	 * @param inliers storage indices of the candidates remaining after the
+	 *   robust regression filter, at least |candidates| long
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   {@code maxTrust * median cost}
+	 * @param minNumInliers minimally required absolute number of inliers
+	 *
+	 * @return number of inliers if {@link Model} could be estimated, 0
+	 *   otherwise.  If 0, {@link Model} remains unchanged.
+	 */
+	default public int filter(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
+			final double maxTrust,
+			final int minNumInliers )
+		throws NotEnoughDataPointsException
+	{
+		final List< PointMatch > matches = new ArrayList< PointMatch >( candidates.asList() );
+		final ArrayList< PointMatch > inlierMatches = new ArrayList< PointMatch >();
+		if ( !filter( matches, inlierMatches, maxTrust, minNumInliers ) )
+			return 0;
+		return candidates.indicesOf( matches, inlierMatches, inliers );
+	}
+
+	/**
+	 * {@link #filter(PointMatchBuffer, int[], double, int)} with at most
+	 * maxRounds fit and reject rounds, see
+	 * {@link #filter(Collection, Collection, double, int, int)}.
+	 * <p>
+	 * The default implementation calls the {@link Collection} based method on
+	 * {@link PointMatchBuffer#asList()}.
+	 * </p>
+	 *
+	 * @param candidates Candidate data points eventually inluding some outliers
+	 * @param inliers storage indices of the candidates remaining after the
+	 *   robust regression filter, at least |candidates| long
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   {@code maxTrust * median cost}
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxRounds maximal number of fit and reject rounds
+	 *
+	 * @return number of inliers if {@link Model} could be estimated, 0
+	 *   otherwise.  If 0, {@link Model} remains unchanged.
+	 */
+	default public int filter(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
+			final double maxTrust,
+			final int minNumInliers,
+			final int maxRounds )
+		throws NotEnoughDataPointsException
+	{
+		final List< PointMatch > matches = new ArrayList< PointMatch >( candidates.asList() );
+		final ArrayList< PointMatch > inlierMatches = new ArrayList< PointMatch >();
+		if ( !filter( matches, inlierMatches, maxTrust, minNumInliers, maxRounds ) )
+			return 0;
+		return candidates.indicesOf( matches, inlierMatches, inliers );
+	}
+
 
 	/**
 	 * Find the {@link Model} of a set of {@link PointMatch} candidates
@@ -290,6 +467,254 @@ public interface Model< M extends Model< M > > extends CoordinateTransform
 			final int minNumInliers )
 		throws NotEnoughDataPointsException;
 
+	/**
+	 * Find the {@link Model} of a set of {@link PointMatch} candidates
+	 * containing a high number of outliers using
+	 * {@link #ransac(List, Collection, int, double, double, int) RANSAC}
+	 * \citet[{FischlerB81} drawing minimal samples from a caller supplied
+	 * random source.  Other than the shared random source of
+	 * {@link #ransac(List, Collection, int, double, double, int)}, a
+	 * random source per call is not contended by concurrent calls and makes
+	 * the result independent of their interleaving.
+	 * <p>
+	 * The default implementation tests the hypotheses sequentially
+	 * drawing all samples from random.
+	 * </p>
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations number of iterations
+	 * @param epsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param random random source
+	 *
+	 * @return true if {@link Model} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link Model} remains unchanged.
+	 */
+	default public < P extends PointMatch >boolean ransac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double epsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final Random random )
+		throws NotEnoughDataPointsException
+	{
+		if ( candidates.size() < getMinNumMatches() )
+			throw new NotEnoughDataPointsException( candidates.size() + " data points are not enough to solve the Model, at least " + getMinNumMatches() + " data points required." );
+
+		final M best = copy();
+		best.setCost( Double.MAX_VALUE );
+		final M m = copy();
+
+		inliers.clear();
+
+		final HashSet< P > minMatches = new HashSet< P >();
+		for ( int i = 0; i < iterations; ++i )
+		{
+			// choose model.MIN_SET_SIZE disjunctive matches randomly
+			minMatches.clear();
+			while ( minMatches.size() < getMinNumMatches() )
+				minMatches.add( candidates.get( ( int )( random.nextDouble() * candidates.size() ) ) );
+
+			try
+			{
+				m.fit( minMatches );
+				final ArrayList< P > tempInliers = new ArrayList< P >();
+				int numInliers = 0;
+				boolean isGood = m.test( candidates, tempInliers, epsilon, minInlierRatio );
+				while ( isGood && numInliers < tempInliers.size() )
+				{
+					numInliers = tempInliers.size();
+					m.fit( tempInliers );
+					isGood = m.test( candidates, tempInliers, epsilon, minInlierRatio, minNumInliers );
+				}
+				if (
+						isGood &&
+						m.betterThan( best ) &&
+						tempInliers.size() >= minNumInliers )
+				{
+					best.set( m );
+					inliers.clear();
+					inliers.addAll( tempInliers );
+				}
+			}
+			catch ( final IllDefinedDataPointsException e ) {}
+		}
+		if ( inliers.size() == 0 )
+			return false;
+
+		set( best );
+		return true;
+	}
+
+	/**
+	 * Find the {@link Model} of a set of {@link PointMatch} candidates
+	 * containing a high number of outliers using
+	 * {@link #ransac(List, Collection, int, double, double, int) RANSAC}
+	 * \citet[{FischlerB81} with the extensions configured in
+	 * {@link RansacParam}: reproducible parallel hypothesis testing,
+	 * confidence-based early termination and early rejection of bad
+	 * hypotheses by a sequential probability ratio test.
+	 * <p>
+	 * The default implementation ignores the PROSAC and SPRT options and
+	 * calls {@link #ransac(List, Collection, int, double, double, int, double, long, ExecutorService)}.
+	 * </p>
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations maximal number of iterations
+	 * @param epsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param param RANSAC options
+	 *
+	 * @return true if {@link Model} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link Model} remains unchanged.
+	 */
+	default public < P extends PointMatch >boolean ransac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double epsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final RansacParam param )
+		throws NotEnoughDataPointsException
+	{
+		return ransac( candidates, inliers, iterations, epsilon, minInlierRatio, minNumInliers, param.confidence, param.seed, param.executor );
+	}
+
+	/**
+	 * Find the {@link Model} of the matches of a {@link PointMatchBuffer}
+	 * containing a high number of outliers as
+	 * {@link #ransac(List, Collection, int, double, double, int, RansacParam)}
+	 * does.  With {@link RansacParam#prosac}, candidates are expected in the
+	 * order of decreasing quality.
+	 * <p>
+	 * The default implementation calls the {@link Collection} based method on
+	 * {@link PointMatchBuffer#asList()}.
+	 * </p>
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers storage indices of the candidates remaining after
+	 *   RANSAC, at least |candidates| long
+	 * @param iterations maximal number of iterations
+	 * @param epsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param param RANSAC options
+	 *
+	 * @return number of inliers if {@link Model} could be estimated, 0
+	 *   otherwise.  If 0, {@link Model} remains unchanged.
+	 */
+	default public int ransac(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
+			final int iterations,
+			final double epsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final RansacParam param )
+		throws NotEnoughDataPointsException
+	{
+		final List< PointMatch > matches = new ArrayList< PointMatch >( candidates.asList() );
+		final ArrayList< PointMatch > inlierMatches = new ArrayList< PointMatch >();
+		if ( !ransac( matches, inlierMatches, iterations, epsilon, minInlierRatio, minNumInliers, param ) )
+			return 0;
+		return candidates.indicesOf( matches, inlierMatches, inliers );
+	}
+
+	/**
+	 * Find the {@link Model} of a set of {@link PointMatch} candidates
+	 * containing a high number of outliers using
+	 * {@link #ransac(List, Collection, int, double, double, int) RANSAC}
+	 * \citet[{FischlerB81} with hypotheses tested in parallel and early
+	 * termination once enough hypotheses were tested to have drawn an
+	 * outlier-free sample with the given confidence.
+	 * <p>
+	 * The default implementation ignores confidence and calls
+	 * {@link #ransac(List, Collection, int, double, double, int, long, ExecutorService)}.
+	 * </p>
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations maximal number of iterations
+	 * @param epsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param confidence probability to have drawn at least one outlier-free
+	 *   sample when stopping early, 1.0 disables early termination
+	 * @param seed seed for the random streams of all hypotheses
+	 * @param executor executor to test hypotheses in parallel, null to
+	 *   test all hypotheses in the calling thread
+	 *
+	 * @return true if {@link Model} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link Model} remains unchanged.
+	 */
+	default public < P extends PointMatch >boolean ransac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double epsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double confidence,
+			final long seed,
+			final ExecutorService executor )
+		throws NotEnoughDataPointsException
+	{
+		return ransac( candidates, inliers, iterations, epsilon, minInlierRatio, minNumInliers, seed, executor );
+	}
+
+	/**
+	 * Find the {@link Model} of a set of {@link PointMatch} candidates
+	 * containing a high number of outliers using
+	 * {@link #ransac(List, Collection, int, double, double, int) RANSAC}
+	 * \citet[{FischlerB81} with hypotheses tested in parallel.  Each
+	 * hypothesis draws from its own random stream generated from seed, such
+	 * that the result is reproducible and independent of the number of
+	 * threads.
+	 * <p>
+	 * The default implementation tests all hypotheses sequentially in the
+	 * calling thread drawing all samples from one random source seeded
+	 * with seed.
+	 * </p>
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations number of iterations
+	 * @param epsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param seed seed for the random streams of all hypotheses
+	 * @param executor executor to test hypotheses in parallel, null to
+	 *   test all hypotheses in the calling thread
+	 *
+	 * @return true if {@link Model} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link Model} remains unchanged.
+	 */
+	default public < P extends PointMatch >boolean ransac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double epsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final long seed,
+			final ExecutorService executor )
+		throws NotEnoughDataPointsException
+	{
+		return ransac( candidates, inliers, iterations, epsilon, minInlierRatio, minNumInliers, new Random( seed ) );
+	}
+
 	/**
 	 * Call {@link #ransac(List, Collection, int, double, double, int)} with
 	 * minNumInliers = {@link #getMinNumMatches()}.
@@ -331,6 +756,227 @@ public interface Model< M extends Model< M > > extends CoordinateTransform
 			final double maxTrust )
 		throws NotEnoughDataPointsException;
 
+	/**
+	 * Estimate a {@link Model} from a set with many outliers by first
+	 * filtering the worst outliers with
+	 * {@link #ransac(List, Collection, int, double, double, int, Random) RANSAC}
+	 * \citet[{FischlerB81} drawing from a caller supplied random source and
+	 * filter potential outliers by robust iterative regression.
+	 * <p>
+	 * The default implementation filters the inliers of
+	 * {@link #ransac(List, Collection, int, double, double, int, Random)}.
+	 * </p>
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations number of iterations
+	 * @param maxEpsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param random random source
+	 *
+	 * @return true if {@link Model} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link Model} remains unchanged.
+	 */
+	default public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust,
+			final Random random )
+		throws NotEnoughDataPointsException
+	{
+		final ArrayList< P > temp = new ArrayList< P >();
+		return
+				ransac( candidates, temp, iterations, maxEpsilon, minInlierRatio, minNumInliers, random ) &&
+				filter( temp, inliers, maxTrust, minNumInliers );
+	}
+
+	/**
+	 * Estimate a {@link Model} from a set with many outliers by first
+	 * filtering the worst outliers with
+	 * {@link #ransac(List, Collection, int, double, double, int, RansacParam) RANSAC}
+	 * \citet[{FischlerB81} configured by {@link RansacParam} and filter
+	 * potential outliers by robust iterative regression.
+	 * <p>
+	 * The default implementation filters the inliers of
+	 * {@link #ransac(List, Collection, int, double, double, int, RansacParam)}.
+	 * </p>
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations maximal number of iterations
+	 * @param maxEpsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param param RANSAC options
+	 *
+	 * @return true if {@link Model} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link Model} remains unchanged.
+	 */
+	default public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust,
+			final RansacParam param )
+		throws NotEnoughDataPointsException
+	{
+		final ArrayList< P > temp = new ArrayList< P >();
+		return
+				ransac( candidates, temp, iterations, maxEpsilon, minInlierRatio, minNumInliers, param ) &&
+				filter( temp, inliers, maxTrust, minNumInliers );
+	}
+
+	/**
+	 * Estimate a {@link Model} from the matches of a {@link PointMatchBuffer}
+	 * with many outliers by first filtering the worst outliers with
+	 * {@link #ransac(PointMatchBuffer, int[], int, double, double, int, RansacParam) RANSAC}
+	 * \citet[{FischlerB81} and filter potential outliers by robust iterative
+	 * regression.
+	 * <p>
+	 * The default implementation calls the {@link Collection} based method on
+	 * {@link PointMatchBuffer#asList()}.
+	 * </p>
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers storage indices of the remaining candidates, at least
+	 *   |candidates| long
+	 * @param iterations maximal number of iterations
+	 * @param maxEpsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param param RANSAC options
+	 *
+	 * @return number of inliers if {@link Model} could be estimated, 0
+	 *   otherwise.  If 0, {@link Model} remains unchanged.
+	 */
+	default public int filterRansac(
+			final PointMatchBuffer candidates,
+			final int[] inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust,
+			final RansacParam param )
+		throws NotEnoughDataPointsException
+	{
+		final List< PointMatch > matches = new ArrayList< PointMatch >( candidates.asList() );
+		final ArrayList< PointMatch > inlierMatches = new ArrayList< PointMatch >();
+		if ( !filterRansac( matches, inlierMatches, iterations, maxEpsilon, minInlierRatio, minNumInliers, maxTrust, param ) )
+			return 0;
+		return candidates.indicesOf( matches, inlierMatches, inliers );
+	}
+
+	/**
+	 * Estimate a {@link Model} from a set with many outliers by first
+	 * filtering the worst outliers with
+	 * {@link #ransac(List, Collection, int, double, double, int, double, long, ExecutorService) adaptive parallel RANSAC}
+	 * \citet[{FischlerB81} and filter potential outliers by robust iterative
+	 * regression.
+	 * <p>
+	 * The default implementation filters the inliers of
+	 * {@link #ransac(List, Collection, int, double, double, int, double, long, ExecutorService)}.
+	 * </p>
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations maximal number of iterations
+	 * @param maxEpsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param confidence probability to have drawn at least one outlier-free
+	 *   sample when stopping early, 1.0 disables early termination
+	 * @param seed seed for the random streams of all hypotheses
+	 * @param executor executor to test hypotheses in parallel, null to
+	 *   test all hypotheses in the calling thread
+	 *
+	 * @return true if {@link Model} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link Model} remains unchanged.
+	 */
+	default public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust,
+			final double confidence,
+			final long seed,
+			final ExecutorService executor )
+		throws NotEnoughDataPointsException
+	{
+		final ArrayList< P > temp = new ArrayList< P >();
+		return
+				ransac( candidates, temp, iterations, maxEpsilon, minInlierRatio, minNumInliers, confidence, seed, executor ) &&
+				filter( temp, inliers, maxTrust, minNumInliers );
+	}
+
+	/**
+	 * Estimate a {@link Model} from a set with many outliers by first
+	 * filtering the worst outliers with
+	 * {@link #ransac(List, Collection, int, double, double, int, long, ExecutorService) parallel RANSAC}
+	 * \citet[{FischlerB81} and filter potential outliers by robust iterative
+	 * regression.
+	 * <p>
+	 * The default implementation filters the inliers of
+	 * {@link #ransac(List, Collection, int, double, double, int, long, ExecutorService)}.
+	 * </p>
+	 *
+	 * @param candidates candidate data points inluding (many) outliers
+	 * @param inliers remaining candidates after RANSAC
+	 * @param iterations number of iterations
+	 * @param maxEpsilon maximal allowed transfer error
+	 * @param minInlierRatio minimal number of inliers to number of
+	 *   candidates
+	 * @param minNumInliers minimally required absolute number of inliers
+	 * @param maxTrust reject candidates with a cost larger than
+	 *   maxTrust * median cost
+	 * @param seed seed for the random streams of all hypotheses
+	 * @param executor executor to test hypotheses in parallel, null to
+	 *   test all hypotheses in the calling thread
+	 *
+	 * @return true if {@link Model} could be estimated and inliers is not
+	 *   empty, false otherwise.  If false, {@link Model} remains unchanged.
+	 */
+	default public < P extends PointMatch >boolean filterRansac(
+			final List< P > candidates,
+			final Collection< P > inliers,
+			final int iterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final int minNumInliers,
+			final double maxTrust,
+			final long seed,
+			final ExecutorService executor )
+		throws NotEnoughDataPointsException
+	{
+		final ArrayList< P > temp = new ArrayList< P >();
+		return
+				ransac( candidates, temp, iterations, maxEpsilon, minInlierRatio, minNumInliers, seed, executor ) &&
+				filter( temp, inliers, maxTrust, minNumInliers );
+	}
+
 	/**
 	 * Call {@link #filterRansac(List, Collection, int, double, double, int, double)}
 	 * with maxTrust = 4.
@@ -397,6 +1043,44 @@ public interface Model< M extends Model< M > > extends CoordinateTransform
 			final double maxTrust )
 		throws NotEnoughDataPointsException, IllDefinedDataPointsException;
 
+	/**
+	 * Filter a {@link Collection} of {@link PointMatch PointMatches} by the
+	 * smoothness of their support for the given {@link Model} as
+	 * {@link #localSmoothnessFilter(Collection, Collection, double, double, double)}
+	 * does but considering only neighbors within 3&sigma; and testing the
+	 * candidates of each pass in parallel.
+	 * <p>
+	 * The default implementation ignores executor, and returns false if the
+	 * {@link Model} cannot be estimated.
+	 * </p>
+	 *
+	 * @param candidates
+	 * @param inliers
+	 * @param sigma
+	 * @param maxEpsilon
+	 * @param maxTrust
+	 * @param executor null for the calling thread
+	 * @return
+	 */
+	default public < P extends PointMatch > boolean localSmoothnessFilter(
+			final Collection< P > candidates,
+			final Collection< P > inliers,
+			final double sigma,
+			final double maxEpsilon,
+			final double maxTrust,
+			final ExecutorService executor )
+	{
+		try
+		{
+			return localSmoothnessFilter( candidates, inliers, sigma, maxEpsilon, maxTrust );
+		}
+		catch ( final NotEnoughDataPointsException | IllDefinedDataPointsException e )
+		{
+			inliers.clear();
+			return false;
+		}
+	}
+
 
 	/**
 	 * Estimate the best model in terms of the Iterative Closest Point
@@ -409,13 +1093,39 @@ public interface Model< M extends Model< M > > extends CoordinateTransform
 	 * @param q target
 	 *
 	 * @return the list of matches
-	 *
-	 * TODO Test---at least once!
 	 */
 	public Collection< PointMatch > icp(
 			final List< Point > p,
 			final List< Point > q );
 
+	/**
+	 * Estimate the best model in terms of the Iterative Closest Point
+	 * Algorithm \cite{Zhang94} for matching two point clouds into each other
+	 * with explicit convergence criteria.
+	 * <pre>{@code
+	 * p -> q
+	 * }</pre>
+	 * <p>
+	 * The default implementation ignores the convergence criteria.
+	 * </p>
+	 *
+	 * @param p source
+	 * @param q target
+	 * @param maxIterations maximal number of iterations
+	 * @param minErrorChange minimal decrease of the mean transfer error to
+	 *   continue
+	 *
+	 * @return the list of matches, null if the model could not be estimated
+	 */
+	default public Collection< PointMatch > icp(
+			final List< Point > p,
+			final List< Point > q,
+			final int maxIterations,
+			final double minErrorChange )
+	{
+		return icp( p, q );
+	}
+
 	/**
 	 * Set the model to m
 	 * @param m
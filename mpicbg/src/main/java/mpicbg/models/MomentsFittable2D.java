@@ -0,0 +1,44 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+/**
+ * A 2d {@link Model} that can be fitted to the {@link PointMatchMoments2D}
+ * of a set of {@link PointMatch PointMatches} in constant time.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public interface MomentsFittable2D
+{
+	/**
+	 * Fit to the matches summarized by moments minimizing the weighted
+	 * square transfer error.  Equivalent to {@link Model#fit(java.util.Collection)}
+	 * for these matches up to rounding.
+	 *
+	 * @param moments
+	 * @throws NotEnoughDataPointsException if moments summarize not enough
+	 *   data points
+	 * @throws IllDefinedDataPointsException if the set of data points is
+	 *   inappropriate to solve the Model
+	 */
+	public void fit( final PointMatchMoments2D moments ) throws NotEnoughDataPointsException, IllDefinedDataPointsException;
+}
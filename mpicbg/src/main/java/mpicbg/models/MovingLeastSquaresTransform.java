@@ -37,7 +37,6 @@
  */
 package mpicbg.models;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -50,7 +49,9 @@ import java.util.Set;
  *
  * <p>This implementation internally stores the passed {@link PointMatch}
  * objects per reference and is thus best suited for an interactive application
- * where these matches are changed from an external context.</p>
+ * where these matches are changed from an external context.  The weighted
+ * matches of a local fit are collected in a {@link PointMatchBuffer} private
+ * to the calling thread instead of new {@link PointMatch} objects.</p>
  *
  * <p>BibTeX:</p>
  * <pre>
@@ -89,7 +90,11 @@ public class MovingLeastSquaresTransform extends AbstractMovingLeastSquaresTrans
 	@Override
 	public void applyInPlace( final double[] location )
 	{
-		final Collection< PointMatch > weightedMatches = new ArrayList< PointMatch >();
+		final Scratch scratch = scratch();
+		if ( scratch.matches == null || scratch.matches.numDimensions() != location.length )
+			scratch.matches = new PointMatchBuffer( location.length, matches.size() );
+		final PointMatchBuffer weightedMatches = scratch.matches;
+		weightedMatches.clear();
 		for ( final PointMatch m : matches )
 		{
 			final double[] l = m.getP1().getL();
@@ -114,14 +119,13 @@ public class MovingLeastSquaresTransform extends AbstractMovingLeastSquaresTrans
 				return;
 			}
 			final double weight = m.getWeight() * weigh( s );
-			final PointMatch mw = new PointMatch( m.getP1(), m.getP2(), weight );
-			weightedMatches.add( mw );
+			weightedMatches.add( l, m.getP2().getW(), weight );
 		}
 
 		try
 		{
-			model.fit( weightedMatches );
-			model.applyInPlace( location );
+			scratch.model.fit( weightedMatches );
+			scratch.model.applyInPlace( location );
 		}
 		catch ( final IllDefinedDataPointsException e ){}
 		catch ( final NotEnoughDataPointsException e ){}
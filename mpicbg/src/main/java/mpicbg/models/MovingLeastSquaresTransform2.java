@@ -39,6 +39,8 @@ package mpicbg.models;
 
 import java.util.Collection;
 
+import mpicbg.util.KdTree;
+
 /**
  * <p>Alternative implementation of the smooth coordinate transformation
  * interpolating between a set of control points that are maped exactly on top
@@ -50,9 +52,14 @@ import java.util.Collection;
  * {@link MovingLeastSquaresTransform}.  The object count is constant and does
  * not depend on the number of control points.</p>
  *
- * <p>Note, the {@link #apply(double[])} and {@link #applyInPlace(double[])}
- * methods are not concurrency safe because they use the same {@link Model}
- * instance to execute the local least squares fit.</p>
+ * <p>The support of the local fits can be bounded to the
+ * {@link #setNumNeighbors(int) k nearest} control points and/or those within
+ * a {@link #setSupportRadius(double) radius} which are found with a
+ * {@link KdTree}.  This approximates the global fit, the more
+ * closely the faster the weights decay with {@link #setAlpha(double) alpha},
+ * but makes the evaluation cost independent of the number of control points.
+ * Locations with not enough control points in their support remain
+ * unchanged.</p>
  *
  * BibTeX:
  * <pre>
@@ -81,6 +88,19 @@ public class MovingLeastSquaresTransform2 extends AbstractMovingLeastSquaresTran
 	protected float[][] q;
 	protected float[] w;
 
+	/* number of nearest control points in the support, 0 for all */
+	protected int numNeighbors = 0;
+	final public int getNumNeighbors(){ return numNeighbors; }
+	final public void setNumNeighbors( final int numNeighbors ){ this.numNeighbors = numNeighbors; }
+
+	/* maximal distance of control points in the support */
+	protected double supportRadius = Double.POSITIVE_INFINITY;
+	final public double getSupportRadius(){ return supportRadius; }
+	final public void setSupportRadius( final double supportRadius ){ this.supportRadius = supportRadius; }
+
+	/* spatial index over the control points for bounded support */
+	transient private volatile KdTree index = null;
+
 	/**
 	 * Set the control points.  {@link PointMatch PointMatches} are not stored
 	 * by reference but their data is copied into internal data buffers.
@@ -115,6 +135,7 @@ public class MovingLeastSquaresTransform2 extends AbstractMovingLeastSquaresTran
 			w[ i ] = ( float )match.getWeight();
 			++i;
 		}
+		index = null;
 		if ( n > 0 )
 			model.fit( p, q, w );
 		else
@@ -144,14 +165,49 @@ public class MovingLeastSquaresTransform2 extends AbstractMovingLeastSquaresTran
 		this.p = p;
 		this.q = q;
 		this.w = w;
+		index = null;
 
 		model.fit( p, q, w );
 	}
 
+	/**
+	 * The {@link KdTree} over the control points, built on first use after
+	 * the control points have been set.
+	 */
+	protected KdTree index()
+	{
+		KdTree tree = index;
+		if ( tree == null )
+		{
+			synchronized ( this )
+			{
+				tree = index;
+				if ( tree == null )
+				{
+					final double[][] coordinates = new double[ p.length ][ w.length ];
+					for ( int d = 0; d < p.length; ++d )
+						for ( int i = 0; i < w.length; ++i )
+							coordinates[ d ][ i ] = p[ d ][ i ];
+					index = tree = new KdTree( coordinates, w.length );
+				}
+			}
+		}
+		return tree;
+	}
+
 	@Override
 	public void applyInPlace( final double[] location )
 	{
-		final float[] ww = new float[ w.length ];
+		final Scratch scratch = scratch();
+		if ( numNeighbors > 0 || supportRadius < Double.POSITIVE_INFINITY )
+		{
+			applyInPlaceBounded( location, scratch );
+			return;
+		}
+
+		if ( scratch.weights.length != w.length )
+			scratch.weights = new float[ w.length ];
+		final float[] ww = scratch.weights;
 		for ( int i = 0; i < w.length; ++i )
 		{
 			double s = 0;
@@ -171,8 +227,72 @@ public class MovingLeastSquaresTransform2 extends AbstractMovingLeastSquaresTran
 
 		try
 		{
-			model.fit( p, q, ww );
-			model.applyInPlace( location );
+			scratch.model.fit( p, q, ww );
+			scratch.model.applyInPlace( location );
+		}
+		catch ( final IllDefinedDataPointsException e ){}
+		catch ( final NotEnoughDataPointsException e ){}
+	}
+
+	/**
+	 * Local fit to the control points in the bounded support of location.
+	 */
+	protected void applyInPlaceBounded( final double[] location, final Scratch scratch )
+	{
+		final KdTree tree = index();
+		final int n = location.length;
+		if ( scratch.indices.length < w.length )
+		{
+			scratch.indices = new int[ w.length ];
+			scratch.squaredDistances = new double[ w.length ];
+		}
+		if ( scratch.matches == null || scratch.matches.numDimensions() != n )
+		{
+			scratch.matches = new PointMatchBuffer( n );
+			scratch.pi = new double[ n ];
+			scratch.qi = new double[ n ];
+		}
+		final int[] indices = scratch.indices;
+		final double[] squaredDistances = scratch.squaredDistances;
+
+		int numSupport;
+		if ( numNeighbors > 0 )
+		{
+			/* sorted by distance, cut at the radius */
+			numSupport = tree.kNearest( location, numNeighbors, indices, squaredDistances );
+			final double r2 = supportRadius * supportRadius;
+			while ( numSupport > 0 && squaredDistances[ numSupport - 1 ] > r2 )
+				--numSupport;
+		}
+		else
+			numSupport = tree.withinRadius( location, supportRadius, indices, squaredDistances );
+
+		final PointMatchBuffer matches = scratch.matches;
+		final double[] pi = scratch.pi;
+		final double[] qi = scratch.qi;
+		matches.clear();
+		for ( int k = 0; k < numSupport; ++k )
+		{
+			final int i = indices[ k ];
+			final double s = squaredDistances[ k ];
+			if ( s <= 0 )
+			{
+				for ( int d = 0; d < n; ++d )
+					location[ d ] = q[ d ][ i ];
+				return;
+			}
+			for ( int d = 0; d < n; ++d )
+			{
+				pi[ d ] = p[ d ][ i ];
+				qi[ d ] = q[ d ][ i ];
+			}
+			matches.add( pi, qi, w[ i ] * weigh( s ) );
+		}
+
+		try
+		{
+			scratch.model.fit( matches );
+			scratch.model.applyInPlace( location );
 		}
 		catch ( final IllDefinedDataPointsException e ){}
 		catch ( final NotEnoughDataPointsException e ){}
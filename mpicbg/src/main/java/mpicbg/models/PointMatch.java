@@ -55,6 +55,15 @@ public class PointMatch implements Serializable
 
 	protected double strength = 1.0f;
 
+	/**
+	 * Quality of the match, larger is better, e.g. 1 - ratio of descriptor
+	 * distances of the closest and second closest feature.  Used to order
+	 * candidates for guided sampling.
+	 */
+	protected double quality = 0;
+	public double getQuality(){ return quality; }
+	public void setQuality( final double quality ){ this.quality = quality; }
+
 	final protected Point p1;
 	public Point getP1() { return p1; }
 
@@ -317,13 +326,47 @@ public class PointMatch implements Serializable
 	 * Apply a {@link CoordinateTransform} to {@link #p1} a {@link Collection}
 	 * of {@link PointMatch PointMatches}, update their distances.
 	 *
+	 * 2d and 3d local coordinates are gathered into packed arrays and
+	 * transformed by the bulk methods of {@link CoordinateTransform}, the
+	 * result is identical to applying t to each match individually.
+	 *
 	 * @param matches
 	 * @param t
 	 */
 	static public void apply( final Collection< ? extends PointMatch > matches, final CoordinateTransform t )
 	{
+		final int n = matches.size();
+		final int numDimensions = n == 0 ? 0 : matches.iterator().next().p1.l.length;
+		if ( numDimensions != 2 && numDimensions != 3 )
+		{
+			for ( final PointMatch match : matches )
+				match.apply( t );
+			return;
+		}
+
+		final double[][] scratch = new double[ numDimensions ][ n ];
+		int k = 0;
 		for ( final PointMatch match : matches )
-			match.apply( t );
+		{
+			final double[] l = match.p1.l;
+			for ( int d = 0; d < numDimensions; ++d )
+				scratch[ d ][ k ] = l[ d ];
+			++k;
+		}
+
+		if ( numDimensions == 2 )
+			t.applyInPlace( scratch[ 0 ], scratch[ 1 ], 0, n );
+		else
+			t.applyInPlace( scratch[ 0 ], scratch[ 1 ], scratch[ 2 ], 0, n );
+
+		k = 0;
+		for ( final PointMatch match : matches )
+		{
+			final double[] w = match.p1.w;
+			for ( int d = 0; d < numDimensions; ++d )
+				w[ d ] = scratch[ d ][ k ];
+			++k;
+		}
 	}
 
 	/**
@@ -340,11 +383,15 @@ public class PointMatch implements Serializable
 			final Collection< PointMatch > flippedMatches )
 	{
 		for ( final PointMatch match : matches )
-			flippedMatches.add(
+		{
+			final PointMatch flippedMatch =
 					new PointMatch(
 							match.p2,
 							match.p1,
-							match.weights ) );
+							match.weights );
+			flippedMatch.quality = match.quality;
+			flippedMatches.add( flippedMatch );
+		}
 	}
 
 	/**
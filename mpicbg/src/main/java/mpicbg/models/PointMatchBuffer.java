@@ -0,0 +1,373 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A packed set of point correspondences stored as structure of arrays.  For
+ * each dimension d, p[ d ][ i ] and q[ d ][ i ] are the local coordinates of
+ * the first and the world coordinates of the second point of match i, and
+ * w[ i ] is its weight.  This is the layout of
+ * {@link Model#fit(double[][], double[][], double[])}.
+ * <p>
+ * A {@link PointMatchBuffer} can be restricted to a subset of its matches by
+ * an index view.  Views share the storage with the buffer that they were
+ * created from, so neither fitting to a subset nor testing a subset
+ * allocates any memory.  Storage that grows by {@link #add} is not visible
+ * to views that were created earlier.
+ * </p>
+ * <p>
+ * A {@link PointMatchBuffer} created from a {@link Collection} of
+ * {@link PointMatch PointMatches} keeps a reference to them such that
+ * {@link Model Models} without a direct implementation of
+ * {@link Model#fit(PointMatchBuffer)} can fit to the original matches.
+ * The {@link PointMatch PointMatches} are copied on creation, later changes
+ * are not reflected by the buffer.
+ * </p>
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class PointMatchBuffer
+{
+	final protected int numDimensions;
+
+	protected double[][] p;
+	protected double[][] q;
+	protected double[] w;
+
+	/* number of stored matches */
+	protected int numStored = 0;
+
+	/* index view, null for all stored matches */
+	protected int[] indices = null;
+	protected int numIndices = 0;
+
+	/* the PointMatches that this buffer was created from if any */
+	protected List< ? extends PointMatch > matches = null;
+
+	public PointMatchBuffer( final int numDimensions, final int capacity )
+	{
+		this.numDimensions = numDimensions;
+		p = new double[ numDimensions ][ capacity ];
+		q = new double[ numDimensions ][ capacity ];
+		w = new double[ capacity ];
+	}
+
+	public PointMatchBuffer( final int numDimensions )
+	{
+		this( numDimensions, 16 );
+	}
+
+	/**
+	 * Create a {@link PointMatchBuffer} from the local coordinates of
+	 * {@link PointMatch#getP1() p1}, the world coordinates of
+	 * {@link PointMatch#getP2() p2} and the {@link PointMatch#getWeight()
+	 * weight} of a {@link Collection} of {@link PointMatch PointMatches}.
+	 *
+	 * @param matches
+	 */
+	public PointMatchBuffer( final Collection< ? extends PointMatch > matches )
+	{
+		this( matches.isEmpty() ? 0 : matches.iterator().next().getP1().getL().length, matches.size() );
+
+		for ( final PointMatch match : matches )
+		{
+			final double[] l = match.getP1().getL();
+			final double[] w = match.getP2().getW();
+			for ( int d = 0; d < numDimensions; ++d )
+			{
+				p[ d ][ numStored ] = l[ d ];
+				q[ d ][ numStored ] = w[ d ];
+			}
+			this.w[ numStored++ ] = match.getWeight();
+		}
+
+		if ( matches instanceof List && matches instanceof RandomAccess )
+			this.matches = ( List< ? extends PointMatch > )matches;
+		else
+			this.matches = new ArrayList< PointMatch >( matches );
+	}
+
+	/**
+	 * Create a view of source that shares its storage.
+	 */
+	protected PointMatchBuffer( final PointMatchBuffer source, final int[] indices, final int numIndices )
+	{
+		numDimensions = source.numDimensions;
+		p = source.p;
+		q = source.q;
+		w = source.w;
+		numStored = source.numStored;
+		matches = source.matches;
+		this.indices = indices;
+		this.numIndices = numIndices;
+	}
+
+	final public int numDimensions(){ return numDimensions; }
+
+	/**
+	 * Number of matches in this buffer or view.
+	 */
+	final public int size()
+	{
+		return indices == null ? numStored : numIndices;
+	}
+
+	/**
+	 * Storage index of the k-th match in this buffer or view.
+	 */
+	final public int index( final int k )
+	{
+		return indices == null ? k : indices[ k ];
+	}
+
+	/**
+	 * Local coordinates of the first points, p[ d ][ {@link #index(int)} ].
+	 */
+	final public double[][] getP(){ return p; }
+
+	/**
+	 * World coordinates of the second points, q[ d ][ {@link #index(int)} ].
+	 */
+	final public double[][] getQ(){ return q; }
+
+	/**
+	 * Weights, w[ {@link #index(int)} ].
+	 */
+	final public double[] getW(){ return w; }
+
+	/**
+	 * The {@link PointMatch PointMatches} that this buffer was created from,
+	 * indexed by storage index, or null.
+	 */
+	final public List< ? extends PointMatch > getMatches(){ return matches; }
+
+	/**
+	 * Append a match.  The buffer is no longer associated with
+	 * {@link PointMatch PointMatches}.
+	 *
+	 * @param pi local coordinates of the first point
+	 * @param qi world coordinates of the second point
+	 * @param wi weight
+	 */
+	public void add( final double[] pi, final double[] qi, final double wi )
+	{
+		if ( numStored == w.length )
+		{
+			final int capacity = Math.max( 16, w.length * 2 );
+			for ( int d = 0; d < numDimensions; ++d )
+			{
+				p[ d ] = Arrays.copyOf( p[ d ], capacity );
+				q[ d ] = Arrays.copyOf( q[ d ], capacity );
+			}
+			w = Arrays.copyOf( w, capacity );
+		}
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			p[ d ][ numStored ] = pi[ d ];
+			q[ d ][ numStored ] = qi[ d ];
+		}
+		w[ numStored++ ] = wi;
+		matches = null;
+	}
+
+	/**
+	 * Remove all matches and the index view.  The storage is kept for
+	 * reuse.
+	 */
+	public void clear()
+	{
+		numStored = 0;
+		indices = null;
+		numIndices = 0;
+		matches = null;
+	}
+
+	/**
+	 * Restrict this buffer to the matches at the storage indices
+	 * indices[0, numIndices).  indices is not copied.
+	 */
+	public void setView( final int[] indices, final int numIndices )
+	{
+		this.indices = indices;
+		this.numIndices = numIndices;
+	}
+
+	/**
+	 * Remove the index view such that this buffer contains all stored
+	 * matches.
+	 */
+	public void clearView()
+	{
+		indices = null;
+		numIndices = 0;
+	}
+
+	/**
+	 * Create a view of the matches at the storage indices
+	 * indices[0, numIndices) that shares the storage of this buffer.
+	 * indices is not copied.
+	 */
+	public PointMatchBuffer view( final int[] indices, final int numIndices )
+	{
+		return new PointMatchBuffer( this, indices, numIndices );
+	}
+
+	/**
+	 * Transfer errors of all matches in this buffer or view under a
+	 * {@link CoordinateTransform}, errors[k] = |t(p<sub>k</sub>) -
+	 * q<sub>k</sub>|.  The locations p are gathered into scratch and
+	 * transformed by the bulk methods of {@link CoordinateTransform} such
+	 * that all loops run over packed arrays.  The result is identical to
+	 * transforming each location individually.
+	 *
+	 * @param t
+	 * @param scratch temporary storage of at least
+	 *   [{@link #numDimensions()}][{@link #size()}]
+	 * @param errors at least {@link #size()} long
+	 */
+	public void transferErrors( final CoordinateTransform t, final double[][] scratch, final double[] errors )
+	{
+		final int l = size();
+
+		if ( indices == null )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				System.arraycopy( p[ d ], 0, scratch[ d ], 0, l );
+		}
+		else
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+			{
+				final double[] pd = p[ d ];
+				final double[] sd = scratch[ d ];
+				for ( int k = 0; k < l; ++k )
+					sd[ k ] = pd[ indices[ k ] ];
+			}
+		}
+
+		if ( numDimensions == 2 )
+			t.applyInPlace( scratch[ 0 ], scratch[ 1 ], 0, l );
+		else if ( numDimensions == 3 )
+			t.applyInPlace( scratch[ 0 ], scratch[ 1 ], scratch[ 2 ], 0, l );
+		else
+		{
+			final double[] location = new double[ numDimensions ];
+			for ( int k = 0; k < l; ++k )
+			{
+				for ( int d = 0; d < numDimensions; ++d )
+					location[ d ] = scratch[ d ][ k ];
+				t.applyInPlace( location );
+				for ( int d = 0; d < numDimensions; ++d )
+					scratch[ d ][ k ] = location[ d ];
+			}
+		}
+
+		Arrays.fill( errors, 0, l, 0.0 );
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			final double[] qd = q[ d ];
+			final double[] sd = scratch[ d ];
+			if ( indices == null )
+			{
+				for ( int k = 0; k < l; ++k )
+				{
+					final double dd = sd[ k ] - qd[ k ];
+					errors[ k ] += dd * dd;
+				}
+			}
+			else
+			{
+				for ( int k = 0; k < l; ++k )
+				{
+					final double dd = sd[ k ] - qd[ indices[ k ] ];
+					errors[ k ] += dd * dd;
+				}
+			}
+		}
+		for ( int k = 0; k < l; ++k )
+			errors[ k ] = Math.sqrt( errors[ k ] );
+	}
+
+	/**
+	 * A {@link List} view of the {@link PointMatch PointMatches} in this
+	 * buffer or view.  If this buffer was not created from
+	 * {@link PointMatch PointMatches}, new {@link PointMatch PointMatches}
+	 * are created on access.
+	 */
+	public List< PointMatch > asList()
+	{
+		return new AbstractList< PointMatch >()
+		{
+			@Override
+			public PointMatch get( final int k )
+			{
+				final int i = index( k );
+				if ( matches != null )
+					return matches.get( i );
+
+				final double[] pi = new double[ numDimensions ];
+				final double[] qi = new double[ numDimensions ];
+				for ( int d = 0; d < numDimensions; ++d )
+				{
+					pi[ d ] = p[ d ][ i ];
+					qi[ d ] = q[ d ][ i ];
+				}
+				return new PointMatch( new Point( pi ), new Point( qi ), w[ i ] );
+			}
+
+			@Override
+			public int size()
+			{
+				return PointMatchBuffer.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Write the storage indices of those elements of matches, a copy of
+	 * {@link #asList()} of this buffer or view, that are contained in subset
+	 * into indices in the order of matches.  This maps the result of a
+	 * {@link Collection} based method back to the indices of this buffer.
+	 *
+	 * @return number of indices written
+	 */
+	int indicesOf( final List< PointMatch > matches, final Collection< PointMatch > subset, final int[] indices )
+	{
+		final Set< PointMatch > set = Collections.newSetFromMap( new IdentityHashMap< PointMatch, Boolean >() );
+		set.addAll( subset );
+		int n = 0;
+		for ( int k = 0; k < matches.size(); ++k )
+			if ( set.contains( matches.get( k ) ) )
+				indices[ n++ ] = index( k );
+		return n;
+	}
+}
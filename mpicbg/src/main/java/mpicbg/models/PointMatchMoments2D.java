@@ -0,0 +1,226 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+/**
+ * Weighted zeroth, first and second order moments of a set of 2d
+ * {@link PointMatch PointMatches}, i.e. the sufficient statistics of a
+ * weighted least squares fit of an affine, similarity, rigid or translation
+ * model.  Matches can be added and removed in constant time and
+ * {@link MomentsFittable2D} models fit to the moments in constant time.
+ * <p>
+ * Moments are accumulated relative to the first match added to an empty
+ * set to reduce cancellation for large coordinates.  Adding and removing
+ * many matches accumulates rounding errors, {@link #clear()} and re-adding
+ * the current set resets them.  {@link #aTolerance()} and
+ * {@link #bTolerance()} bound these errors such that fits can tell
+ * degenerate sets from rounding noise.
+ * </p>
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class PointMatchMoments2D
+{
+	/**
+	 * relative rounding error of accumulated sums, a small multiple of the
+	 * machine epsilon
+	 */
+	final static public double ROUNDOFF = 1.0e-14;
+
+	protected int size = 0;
+
+	/* reference locations */
+	protected double rpx, rpy, rqx, rqy;
+
+	protected double sw;
+	protected double spx, spy, sqx, sqy;
+	protected double spxpx, spxpy, spypy;
+	protected double spxqx, spxqy, spyqx, spyqy;
+
+	/* weighted square sums of all added and removed matches */
+	protected double snp, snq;
+
+	/**
+	 * Number of matches.
+	 */
+	final public int size(){ return size; }
+
+	final public double weightSum(){ return sw; }
+
+	public void clear()
+	{
+		size = 0;
+		sw = spx = spy = sqx = sqy = spxpx = spxpy = spypy = spxqx = spxqy = spyqx = spyqy = 0;
+		snp = snq = 0;
+	}
+
+	protected void accumulate( final double px, final double py, final double qx, final double qy, final double w )
+	{
+		final double x1 = px - rpx;
+		final double y1 = py - rpy;
+		final double x2 = qx - rqx;
+		final double y2 = qy - rqy;
+
+		sw += w;
+		spx += w * x1;
+		spy += w * y1;
+		sqx += w * x2;
+		sqy += w * y2;
+		spxpx += w * x1 * x1;
+		spxpy += w * x1 * y1;
+		spypy += w * y1 * y1;
+		spxqx += w * x1 * x2;
+		spxqy += w * x1 * y2;
+		spyqx += w * y1 * x2;
+		spyqy += w * y1 * y2;
+		snp += Math.abs( w ) * ( x1 * x1 + y1 * y1 );
+		snq += Math.abs( w ) * ( x2 * x2 + y2 * y2 );
+	}
+
+	/**
+	 * Add a match p -&gt; q with weight w.
+	 */
+	public void add( final double px, final double py, final double qx, final double qy, final double w )
+	{
+		if ( size == 0 )
+		{
+			clear();
+			rpx = px;
+			rpy = py;
+			rqx = qx;
+			rqy = qy;
+		}
+		++size;
+		accumulate( px, py, qx, qy, w );
+	}
+
+	/**
+	 * Remove a match p -&gt; q with weight w that was added before.
+	 */
+	public void remove( final double px, final double py, final double qx, final double qy, final double w )
+	{
+		if ( --size == 0 )
+			clear();
+		else
+			accumulate( px, py, qx, qy, -w );
+	}
+
+	/**
+	 * Add match.p1.local -&gt; match.p2.world.
+	 */
+	public void add( final PointMatch match )
+	{
+		final double[] p = match.getP1().getL();
+		final double[] q = match.getP2().getW();
+		add( p[ 0 ], p[ 1 ], q[ 0 ], q[ 1 ], match.getWeight() );
+	}
+
+	/**
+	 * Remove match.p1.local -&gt; match.p2.world.
+	 */
+	public void remove( final PointMatch match )
+	{
+		final double[] p = match.getP1().getL();
+		final double[] q = match.getP2().getW();
+		remove( p[ 0 ], p[ 1 ], q[ 0 ], q[ 1 ], match.getWeight() );
+	}
+
+	/**
+	 * Add the match at storage index i of a {@link PointMatchBuffer}.
+	 */
+	public void add( final PointMatchBuffer matches, final int i )
+	{
+		final double[][] p = matches.getP();
+		final double[][] q = matches.getQ();
+		add( p[ 0 ][ i ], p[ 1 ][ i ], q[ 0 ][ i ], q[ 1 ][ i ], matches.getW()[ i ] );
+	}
+
+	/**
+	 * Remove the match at storage index i of a {@link PointMatchBuffer}.
+	 */
+	public void remove( final PointMatchBuffer matches, final int i )
+	{
+		final double[][] p = matches.getP();
+		final double[][] q = matches.getQ();
+		remove( p[ 0 ][ i ], p[ 1 ][ i ], q[ 0 ][ i ], q[ 1 ][ i ], matches.getW()[ i ] );
+	}
+
+	/**
+	 * Replace the matches at positions from[0, numFrom) of a
+	 * {@link PointMatchBuffer} by those at positions to[0, numTo).  Both
+	 * position lists must be in increasing order.  Only the matches that
+	 * differ between both lists are added or removed.
+	 */
+	public void update(
+			final PointMatchBuffer matches,
+			final int[] from,
+			final int numFrom,
+			final int[] to,
+			final int numTo )
+	{
+		int i = 0, j = 0;
+		while ( i < numFrom || j < numTo )
+		{
+			if ( j == numTo || ( i < numFrom && from[ i ] < to[ j ] ) )
+				remove( matches, matches.index( from[ i++ ] ) );
+			else if ( i == numFrom || to[ j ] < from[ i ] )
+				add( matches, matches.index( to[ j++ ] ) );
+			else
+			{
+				++i;
+				++j;
+			}
+		}
+	}
+
+	/* centroids */
+	final public double pcx(){ return rpx + spx / sw; }
+	final public double pcy(){ return rpy + spy / sw; }
+	final public double qcx(){ return rqx + sqx / sw; }
+	final public double qcy(){ return rqy + sqy / sw; }
+
+	/* centered second moments of p */
+	final public double a00(){ return spxpx - spx * spx / sw; }
+	final public double a01(){ return spxpy - spx * spy / sw; }
+	final public double a11(){ return spypy - spy * spy / sw; }
+
+	/* centered mixed moments of p and q */
+	final public double b00(){ return spxqx - spx * sqx / sw; }
+	final public double b01(){ return spxqy - spx * sqy / sw; }
+	final public double b10(){ return spyqx - spy * sqx / sw; }
+	final public double b11(){ return spyqy - spy * sqy / sw; }
+
+	/**
+	 * Bound of the absolute rounding error of the centered second moments of
+	 * p, {@link #a00()}, {@link #a01()} and {@link #a11()}.  Grows with the
+	 * squared distances of all added and removed matches from the reference
+	 * location.
+	 */
+	final public double aTolerance(){ return ROUNDOFF * snp; }
+
+	/**
+	 * Bound of the absolute rounding error of the centered mixed moments of
+	 * p and q, {@link #b00()}, {@link #b01()}, {@link #b10()} and
+	 * {@link #b11()}.
+	 */
+	final public double bTolerance(){ return ROUNDOFF * Math.sqrt( snp * snq ); }
+}
@@ -0,0 +1,173 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Options for
+ * {@link Model#ransac(java.util.List, java.util.Collection, int, double, double, int, RansacParam)}
+ * and
+ * {@link Model#filterRansac(java.util.List, java.util.Collection, int, double, double, int, double, RansacParam)}
+ * that go beyond the classic RANSAC parameters.
+ * <p>
+ * Optional progressive sampling (PROSAC) draws minimal samples from the
+ * candidates with the highest {@link PointMatch#getQuality() quality} first
+ * and then from progressively larger sets until it samples uniformly from
+ * all candidates after the maximal number of iterations \cite{ChumM05}.  If
+ * the quality correlates with being an inlier, good hypotheses are found
+ * after very few iterations.
+ * </p>
+ * <p>
+ * The optional sequential probability ratio test (SPRT) rejects hypotheses
+ * after having verified only a few candidates \cite{ChumM08}.  Candidates are
+ * verified in a random order (generated from {@link #seed}), the likelihood
+ * ratio of the hypothesis being bad over being good is updated after each
+ * candidate, and the hypothesis is rejected as soon as it exceeds a
+ * decision threshold.  All SPRT parameters are held fixed during one call,
+ * such that results remain independent of the number of threads.
+ * </p>
+ * <p>
+ * BibTeX:
+ * </p>
+ * <pre>
+ * &#64;inproceedings{ChumM05,
+ *   author    = {Ond{\v r}ej Chum and Ji{\v r}{\'\i} Matas},
+ *   title     = {Matching with {PROSAC} -- Progressive Sample Consensus},
+ *   booktitle = {IEEE Computer Society Conference on Computer Vision and Pattern Recognition},
+ *   volume    = {1},
+ *   year      = {2005},
+ *   pages     = {220--226},
+ * }
+ * &#64;article{ChumM08,
+ *   author    = {Ond{\v r}ej Chum and Ji{\v r}{\'\i} Matas},
+ *   title     = {Optimal Randomized {RANSAC}},
+ *   journal   = {IEEE Transactions on Pattern Analysis and Machine Intelligence},
+ *   volume    = {30},
+ *   number    = {8},
+ *   year      = {2008},
+ *   pages     = {1472--1482},
+ * }
+ * </pre>
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class RansacParam
+{
+	/**
+	 * Probability to have drawn at least one outlier-free sample when
+	 * stopping early, 1.0 disables early termination.
+	 */
+	public double confidence = 1.0;
+
+	/**
+	 * Seed of the shared random source of the sequential RANSAC.
+	 */
+	final static public long DEFAULT_SEED = 69997;
+
+	/**
+	 * Seed for the random streams of all hypotheses.
+	 */
+	public long seed = DEFAULT_SEED;
+
+	/**
+	 * Executor to test hypotheses in parallel, null to test all hypotheses
+	 * in the calling thread.
+	 */
+	public ExecutorService executor = null;
+
+	/**
+	 * Draw early hypotheses from the candidates with the highest
+	 * {@link PointMatch#getQuality() quality} first (PROSAC) and progressively
+	 * extend the sampled set to all candidates \cite{ChumM05}.
+	 */
+	public boolean prosac = false;
+
+	/**
+	 * Reject hypotheses early with the sequential probability ratio test.
+	 * The probability of a candidate to be consistent with a good model is
+	 * the minimal inlier ratio of a call, such that no model with at least
+	 * that many inliers is rejected more often than anticipated by the
+	 * stopping criterion.  The test is disabled if the minimal inlier ratio
+	 * does not exceed {@link #sprtDelta}.
+	 */
+	public boolean sprt = false;
+
+	/**
+	 * SPRT and PROSAC termination: probability of a candidate to be
+	 * consistent with a bad model.
+	 */
+	public double sprtDelta = 0.05;
+
+	/**
+	 * SPRT: time to fit a model from a minimal sample in units of the time to
+	 * verify one candidate.
+	 */
+	public double sprtModelCost = 200;
+
+	/**
+	 * SPRT decision threshold \cite{ChumM08}, the fix point of
+	 * {@code A = modelCost / C + 1 + log( A )} with
+	 * {@code C = ( 1 - delta ) log( ( 1 - delta ) / ( 1 - epsilon ) ) + delta log( delta / epsilon )}.
+	 *
+	 * @param epsilon probability of a candidate to be consistent with a good
+	 *   model
+	 *
+	 * @return threshold for the likelihood ratio,
+	 *   {@link Double#POSITIVE_INFINITY} if the test cannot discriminate good
+	 *   from bad models
+	 */
+	public double sprtThreshold( final double epsilon )
+	{
+		if ( !sprt || epsilon <= sprtDelta || epsilon >= 1.0 || sprtDelta <= 0.0 )
+			return Double.POSITIVE_INFINITY;
+
+		final double c =
+				( 1.0 - sprtDelta ) * Math.log( ( 1.0 - sprtDelta ) / ( 1.0 - epsilon ) ) +
+				sprtDelta * Math.log( sprtDelta / epsilon );
+		final double k = sprtModelCost / c + 1.0;
+
+		double a = k;
+		for ( int i = 0; i < 100; ++i )
+		{
+			final double b = k + Math.log( a );
+			if ( Math.abs( b - a ) < 1.0e-6 )
+				return b;
+			a = b;
+		}
+		return a;
+	}
+
+	@Override
+	public RansacParam clone()
+	{
+		final RansacParam p = new RansacParam();
+		p.confidence = confidence;
+		p.seed = seed;
+		p.executor = executor;
+		p.prosac = prosac;
+		p.sprt = sprt;
+		p.sprtDelta = sprtDelta;
+		p.sprtModelCost = sprtModelCost;
+		return p;
+	}
+}
@@ -63,7 +63,7 @@ import java.util.Collection;
  *
  * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
  */
-public class RigidModel2D extends AbstractAffineModel2D< RigidModel2D >
+public class RigidModel2D extends AbstractAffineModel2D< RigidModel2D > implements MomentsFittable2D
 {
 	private static final long serialVersionUID = 294104229960804720L;
 
@@ -102,6 +102,32 @@ public class RigidModel2D extends AbstractAffineModel2D< RigidModel2D >
 		l[ 1 ] = sin * l0 + cos * l[ 1 ] + ty;
 	}
 
+	@Override
+	final public void applyInPlace( final double[] xs, final double[] ys, final int offset, final int length )
+	{
+		for ( int i = offset; i < offset + length; ++i )
+		{
+			final double x = xs[ i ];
+			final double y = ys[ i ];
+			xs[ i ] = cos * x - sin * y + tx;
+			ys[ i ] = sin * x + cos * y + ty;
+		}
+	}
+
+	@Override
+	final public void applyInPlaceInterleaved( final double[] locations, final int n, final int offset, final int length )
+	{
+		assert n >= 2 : "2d rigid transformations can be applied to 2d points only.";
+
+		for ( int i = offset * n; i < ( offset + length ) * n; i += n )
+		{
+			final double x = locations[ i ];
+			final double y = locations[ i + 1 ];
+			locations[ i ] = cos * x - sin * y + tx;
+			locations[ i + 1 ] = sin * x + cos * y + ty;
+		}
+	}
+
 	@Override
 	final public double[] applyInverse( final double[] l )
 	{
@@ -356,6 +382,109 @@ public class RigidModel2D extends AbstractAffineModel2D< RigidModel2D >
 		invert();
 	}
 
+	/**
+	 * Fit to the matches of a {@link PointMatchBuffer} without allocating
+	 * memory.  Same as {@link #fit(Collection)}.
+	 */
+	@Override
+	final public void fit( final PointMatchBuffer matches )
+		throws NotEnoughDataPointsException
+	{
+		final int l = matches.size();
+		if ( l < MIN_NUM_MATCHES )
+			throw new NotEnoughDataPointsException( l + " data points are not enough to estimate a 2d rigid model, at least " + MIN_NUM_MATCHES + " data points required." );
+
+		final double[] pX = matches.getP()[ 0 ];
+		final double[] pY = matches.getP()[ 1 ];
+		final double[] qX = matches.getQ()[ 0 ];
+		final double[] qY = matches.getQ()[ 1 ];
+		final double[] ww = matches.getW();
+
+		double pcx = 0, pcy = 0;
+		double qcx = 0, qcy = 0;
+
+		double ws = 0.0f;
+
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+
+			final double w = ww[ i ];
+			ws += w;
+
+			pcx += w * pX[ i ];
+			pcy += w * pY[ i ];
+			qcx += w * qX[ i ];
+			qcy += w * qY[ i ];
+		}
+		pcx /= ws;
+		pcy /= ws;
+		qcx /= ws;
+		qcy /= ws;
+
+		final double dx = pcx - qcx;
+		final double dy = pcy - qcy;
+
+		double cosd = 0;
+		double sind = 0;
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+			final double w = ww[ i ];
+
+			final double x1 = pX[ i ] - pcx;
+			final double y1 = pY[ i ] - pcy;
+			final double x2 = qX[ i ] - qcx + dx;
+			final double y2 = qY[ i ] - qcy + dy;
+			sind += w * ( x1 * y2 - y1 * x2 );
+			cosd += w * ( x1 * x2 + y1 * y2 );
+		}
+		final double norm = Math.sqrt( cosd * cosd + sind * sind );
+		cosd /= norm;
+		sind /= norm;
+
+		cos = cosd;
+		sin = sind;
+
+		tx = qcx - cosd * pcx + sind * pcy;
+		ty = qcy - sind * pcx - cosd * pcy;
+
+		invert();
+	}
+
+	/**
+	 * Fit to {@link PointMatchMoments2D} in constant time.
+	 */
+	@Override
+	final public void fit( final PointMatchMoments2D moments )
+		throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		if ( moments.size() < MIN_NUM_MATCHES )
+			throw new NotEnoughDataPointsException( moments.size() + " data points are not enough to estimate a 2d rigid model, at least " + MIN_NUM_MATCHES + " data points required." );
+
+		final double pcx = moments.pcx(), pcy = moments.pcy();
+		final double qcx = moments.qcx(), qcy = moments.qcy();
+
+		double cosd = moments.b00() + moments.b11();
+		double sind = moments.b01() - moments.b10();
+		final double norm = Math.sqrt( cosd * cosd + sind * sind );
+
+		/* no rotation is preferred if all p or all q coincide */
+		if ( norm <= 2 * moments.bTolerance() )
+			throw new IllDefinedDataPointsException();
+
+		cosd /= norm;
+		sind /= norm;
+
+		cos = cosd;
+		sin = sind;
+
+		tx = qcx - cosd * pcx + sind * pcy;
+		ty = qcy - sind * pcx - cosd * pcy;
+
+		invert();
+	}
+
 	@Override
 	public RigidModel2D copy()
 	{
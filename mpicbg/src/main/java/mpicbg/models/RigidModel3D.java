@@ -40,8 +40,7 @@ package mpicbg.models;
 import java.util.Collection;
 
 import mpicbg.util.Matrix3x3;
-import Jama.EigenvalueDecomposition;
-import Jama.Matrix;
+import mpicbg.util.SymmetricEigen;
 
 /**
  *
@@ -65,6 +64,8 @@ public class RigidModel3D extends AbstractAffineModel3D< RigidModel3D > implemen
 		i10 = 0.0, i11 = 1.0, i12 = 0.0, i13 = 0.0,
 		i20 = 0.0, i21 = 0.0, i22 = 1.0, i23 = 0.0;
 
+	transient private double[] N, eigenVectors, eigenValues;
+
 	@Override
 	public double[] getMatrix( final double[] m )
 	{
@@ -117,6 +118,36 @@ public class RigidModel3D extends AbstractAffineModel3D< RigidModel3D > implemen
 		l[ 2 ] = l0 * m20 + l1 * m21 + l[ 2 ] * m22 + m23;
 	}
 
+	@Override
+	final public void applyInPlace( final double[] xs, final double[] ys, final double[] zs, final int offset, final int length )
+	{
+		for ( int i = offset; i < offset + length; ++i )
+		{
+			final double x = xs[ i ];
+			final double y = ys[ i ];
+			final double z = zs[ i ];
+			xs[ i ] = x * m00 + y * m01 + z * m02 + m03;
+			ys[ i ] = x * m10 + y * m11 + z * m12 + m13;
+			zs[ i ] = x * m20 + y * m21 + z * m22 + m23;
+		}
+	}
+
+	@Override
+	final public void applyInPlaceInterleaved( final double[] locations, final int n, final int offset, final int length )
+	{
+		assert n >= 3 : "3d affine transformations can be applied to 3d points only.";
+
+		for ( int i = offset * n; i < ( offset + length ) * n; i += n )
+		{
+			final double x = locations[ i ];
+			final double y = locations[ i + 1 ];
+			final double z = locations[ i + 2 ];
+			locations[ i ] = x * m00 + y * m01 + z * m02 + m03;
+			locations[ i + 1 ] = x * m10 + y * m11 + z * m12 + m13;
+			locations[ i + 2 ] = x * m20 + y * m21 + z * m22 + m23;
+		}
+	}
+
 	@Override
 	final public double[] applyInverse( final double[] l ) throws NoninvertibleModelException
 	{
@@ -153,6 +184,23 @@ public class RigidModel3D extends AbstractAffineModel3D< RigidModel3D > implemen
 			m20 + ", " + m21 + ", " + m22 + ", " + m23 + ")";
 	}
 
+	/**
+	 * Scratch space for the eigen-decomposition of Horn's 4&times;4 matrix N,
+	 * allocated on first use such that fits do not allocate.
+	 *
+	 * @return N
+	 */
+	private double[] scratchN()
+	{
+		if ( N == null )
+		{
+			N = new double[ 16 ];
+			eigenVectors = new double[ 16 ];
+			eigenValues = new double[ 4 ];
+		}
+		return N;
+	}
+
 	@Override
 	final public <P extends PointMatch> void fit( final Collection< P > matches ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
 	{
@@ -213,39 +261,32 @@ public class RigidModel3D extends AbstractAffineModel3D< RigidModel3D > implemen
 			Szz += z1 * z2;
 		}
 
-		final double[][] N = new double[ 4 ][ 4 ];
-		N[0][0] = Sxx + Syy + Szz;
-		N[0][1] = Syz - Szy;
-		N[0][2] = Szx - Sxz;
-		N[0][3] = Sxy - Syx;
-		N[1][0] = Syz - Szy;
-		N[1][1] = Sxx - Syy - Szz;
-		N[1][2] = Sxy + Syx;
-		N[1][3] = Szx + Sxz;
-		N[2][0] = Szx - Sxz;
-		N[2][1] = Sxy + Syx;
-		N[2][2] = -Sxx + Syy - Szz;
-		N[2][3] = Syz + Szy;
-		N[3][0] = Sxy - Syx;
-		N[3][1] = Szx + Sxz;
-		N[3][2] = Syz + Szy;
-		N[3][3] = -Sxx - Syy + Szz;
+		final double[] N = scratchN();
+		N[ 0 ] = Sxx + Syy + Szz;
+		N[ 1 ] = Syz - Szy;
+		N[ 2 ] = Szx - Sxz;
+		N[ 3 ] = Sxy - Syx;
+		N[ 4 ] = Syz - Szy;
+		N[ 5 ] = Sxx - Syy - Szz;
+		N[ 6 ] = Sxy + Syx;
+		N[ 7 ] = Szx + Sxz;
+		N[ 8 ] = Szx - Sxz;
+		N[ 9 ] = Sxy + Syx;
+		N[ 10 ] = -Sxx + Syy - Szz;
+		N[ 11 ] = Syz + Szy;
+		N[ 12 ] = Sxy - Syx;
+		N[ 13 ] = Szx + Sxz;
+		N[ 14 ] = Syz + Szy;
+		N[ 15 ] = -Sxx - Syy + Szz;
 
 		// calculate eigenvector with maximal eigenvalue
-		final EigenvalueDecomposition evd = new EigenvalueDecomposition( new Matrix( N ) );
-
-		final double[] eigenvalues = evd.getRealEigenvalues();
-		final Matrix eigenVectors = evd.getV();
-
-		int index = 0;
-		for (int i = 1; i < 4; i++)
-			if (eigenvalues[i] > eigenvalues[index])
-				index = i;
+		SymmetricEigen.decompose( N, 4, eigenVectors, eigenValues );
+		final int index = SymmetricEigen.argMax( eigenValues, 4 );
 
-		final double q0 = eigenVectors.get( 0, index );
-		final double qx = eigenVectors.get( 1, index );
-		final double qy = eigenVectors.get( 2, index );
-		final double qz = eigenVectors.get( 3, index );
+		final double q0 = eigenVectors[ index ];
+		final double qx = eigenVectors[ 4 + index ];
+		final double qy = eigenVectors[ 8 + index ];
+		final double qz = eigenVectors[ 12 + index ];
 
 		// set result
 		m00 = q0 * q0 + qx * qx - qy * qy - qz * qz;
@@ -63,7 +63,7 @@ import java.util.Collection;
  *
  * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
  */
-public class SimilarityModel2D extends AbstractAffineModel2D< SimilarityModel2D >
+public class SimilarityModel2D extends AbstractAffineModel2D< SimilarityModel2D > implements MomentsFittable2D
 {
 	private static final long serialVersionUID = -2002621576568975203L;
 
@@ -368,6 +368,111 @@ public class SimilarityModel2D extends AbstractAffineModel2D< SimilarityModel2D
 		invert();
 	}
 
+	/**
+	 * Fit to the matches of a {@link PointMatchBuffer} without allocating
+	 * memory.  Same as {@link #fit(Collection)}.
+	 */
+	@Override
+	final public void fit( final PointMatchBuffer matches )
+		throws NotEnoughDataPointsException
+	{
+		final int l = matches.size();
+		if ( l < MIN_NUM_MATCHES )
+			throw new NotEnoughDataPointsException( l + " data points are not enough to estimate a 2d similarity model, at least " + MIN_NUM_MATCHES + " data points required." );
+
+		final double[] pX = matches.getP()[ 0 ];
+		final double[] pY = matches.getP()[ 1 ];
+		final double[] qX = matches.getQ()[ 0 ];
+		final double[] qY = matches.getQ()[ 1 ];
+		final double[] ww = matches.getW();
+
+		double pcx = 0, pcy = 0;
+		double qcx = 0, qcy = 0;
+
+		double ws = 0.0f;
+
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+
+			final double w = ww[ i ];
+			ws += w;
+
+			pcx += w * pX[ i ];
+			pcy += w * pY[ i ];
+			qcx += w * qX[ i ];
+			qcy += w * qY[ i ];
+		}
+		pcx /= ws;
+		pcy /= ws;
+		qcx /= ws;
+		qcy /= ws;
+
+		final double dx = pcx - qcx;
+		final double dy = pcy - qcy;
+
+		double scosd = 0;
+		double ssind = 0;
+
+		ws = 0.0f;
+
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+			final double w = ww[ i ];
+
+			final double x1 = pX[ i ] - pcx;
+			final double y1 = pY[ i ] - pcy;
+			final double x2 = qX[ i ] - qcx + dx;
+			final double y2 = qY[ i ] - qcy + dy;
+			ssind += w * ( x1 * y2 - y1 * x2 );
+			scosd += w * ( x1 * x2 + y1 * y2 );
+
+			ws += w * ( x1 * x1 + y1 * y1 );
+		}
+		scosd /= ws;
+		ssind /= ws;
+
+		scos = scosd;
+		ssin = ssind;
+
+		tx = qcx - scosd * pcx + ssind * pcy;
+		ty = qcy - ssind * pcx - scosd * pcy;
+
+		invert();
+	}
+
+	/**
+	 * Fit to {@link PointMatchMoments2D} in constant time.
+	 */
+	@Override
+	final public void fit( final PointMatchMoments2D moments )
+		throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		if ( moments.size() < MIN_NUM_MATCHES )
+			throw new NotEnoughDataPointsException( moments.size() + " data points are not enough to estimate a 2d similarity model, at least " + MIN_NUM_MATCHES + " data points required." );
+
+		final double pcx = moments.pcx(), pcy = moments.pcy();
+		final double qcx = moments.qcx(), qcy = moments.qcy();
+
+		final double ws = moments.a00() + moments.a11();
+
+		/* all p coincide */
+		if ( ws <= 2 * moments.aTolerance() )
+			throw new IllDefinedDataPointsException();
+
+		final double scosd = ( moments.b00() + moments.b11() ) / ws;
+		final double ssind = ( moments.b01() - moments.b10() ) / ws;
+
+		scos = scosd;
+		ssin = ssind;
+
+		tx = qcx - scosd * pcx + ssind * pcy;
+		ty = qcy - ssind * pcx - scosd * pcy;
+
+		invert();
+	}
+
 	@Override
 	public SimilarityModel2D copy()
 	{
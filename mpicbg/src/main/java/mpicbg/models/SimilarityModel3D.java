@@ -21,15 +21,13 @@
  */
 package mpicbg.models;
 
-import Jama.EigenvalueDecomposition;
-import Jama.Matrix;
-
 import java.util.Collection;
 
 import mpicbg.models.IllDefinedDataPointsException;
 import mpicbg.models.NotEnoughDataPointsException;
 import mpicbg.models.PointMatch;
 import mpicbg.util.Matrix3x3;
+import mpicbg.util.SymmetricEigen;
 
 /**
  * 3d-rigid transformation models to be applied to points in 3d-space.
@@ -61,7 +59,7 @@ public class SimilarityModel3D extends AbstractAffineModel3D< SimilarityModel3D
 		i10 = 0.0, i11 = 1.0, i12 = 0.0, i13 = 0.0,
 		i20 = 0.0, i21 = 0.0, i22 = 1.0, i23 = 0.0;
 
-	final protected double[][] N = new double[4][4];
+	transient private double[] N, eigenVectors, eigenValues;
 
 	protected boolean isInvertible;
 	
@@ -139,23 +137,16 @@ public class SimilarityModel3D extends AbstractAffineModel3D< SimilarityModel3D
 			Szz += z1 * z2;
 		}
 		
-		computeN( N, Sxx, Sxz, Sxy, Syx, Syy, Syz, Szx, Szy, Szz );
+		computeN( scratchN(), Sxx, Sxz, Sxy, Syx, Syy, Syz, Szx, Szy, Szz );
 
 		// calculate eigenvector with maximal eigenvalue
-		final EigenvalueDecomposition evd = new EigenvalueDecomposition( new Matrix( N ) );
-		
-		final double[] eigenvalues = evd.getRealEigenvalues();
-		final Matrix eigenVectors = evd.getV();
-
-		int index = 0;
-		for (int i = 1; i < 4; i++)
-			if (eigenvalues[i] > eigenvalues[index])
-				index = i;
+		SymmetricEigen.decompose( N, 4, eigenVectors, eigenValues );
+		final int index = SymmetricEigen.argMax( eigenValues, 4 );
 
-		final double q0 = eigenVectors.get( 0, index ); 
-		final double qx = eigenVectors.get( 1, index );
-		final double qy = eigenVectors.get( 2, index );
-		final double qz = eigenVectors.get( 3, index );
+		final double q0 = eigenVectors[ index ];
+		final double qx = eigenVectors[ 4 + index ];
+		final double qy = eigenVectors[ 8 + index ];
+		final double qz = eigenVectors[ 12 + index ];
 
 		// compute result
 		rotationTranslationPart( 
@@ -237,23 +228,16 @@ public class SimilarityModel3D extends AbstractAffineModel3D< SimilarityModel3D
 			Szz += z1 * z2;
 		}
 		
-		computeN( N, Sxx, Sxz, Sxy, Syx, Syy, Syz, Szx, Szy, Szz );
+		computeN( scratchN(), Sxx, Sxz, Sxy, Syx, Syy, Syz, Szx, Szy, Szz );
 
 		// calculate eigenvector with maximal eigenvalue
-		final EigenvalueDecomposition evd = new EigenvalueDecomposition( new Matrix( N ) );
-		
-		final double[] eigenvalues = evd.getRealEigenvalues();
-		final Matrix eigenVectors = evd.getV();
-
-		int index = 0;
-		for (int i = 1; i < 4; i++)
-			if (eigenvalues[i] > eigenvalues[index])
-				index = i;
+		SymmetricEigen.decompose( N, 4, eigenVectors, eigenValues );
+		final int index = SymmetricEigen.argMax( eigenValues, 4 );
 
-		final double q0 = eigenVectors.get( 0, index ); 
-		final double qx = eigenVectors.get( 1, index );
-		final double qy = eigenVectors.get( 2, index );
-		final double qz = eigenVectors.get( 3, index );
+		final double q0 = eigenVectors[ index ];
+		final double qx = eigenVectors[ 4 + index ];
+		final double qy = eigenVectors[ 8 + index ];
+		final double qz = eigenVectors[ 12 + index ];
 
 		// compute result
 		rotationTranslationPart( 
@@ -339,23 +323,16 @@ public class SimilarityModel3D extends AbstractAffineModel3D< SimilarityModel3D
 			Szz += z1 * z2;
 		}
 
-		computeN( N, Sxx, Sxz, Sxy, Syx, Syy, Syz, Szx, Szy, Szz );
+		computeN( scratchN(), Sxx, Sxz, Sxy, Syx, Syy, Syz, Szx, Szy, Szz );
 
 		// calculate eigenvector with maximal eigenvalue
-		final EigenvalueDecomposition evd = new EigenvalueDecomposition( new Matrix( N ) );
-		
-		final double[] eigenvalues = evd.getRealEigenvalues();
-		final Matrix eigenVectors = evd.getV();
+		SymmetricEigen.decompose( N, 4, eigenVectors, eigenValues );
+		final int index = SymmetricEigen.argMax( eigenValues, 4 );
 
-		int index = 0;
-		for (int i = 1; i < 4; i++)
-			if (eigenvalues[i] > eigenvalues[index])
-				index = i;
-
-		final double q0 = eigenVectors.get( 0, index ); 
-		final double qx = eigenVectors.get( 1, index );
-		final double qy = eigenVectors.get( 2, index );
-		final double qz = eigenVectors.get( 3, index );
+		final double q0 = eigenVectors[ index ];
+		final double qx = eigenVectors[ 4 + index ];
+		final double qy = eigenVectors[ 8 + index ];
+		final double qz = eigenVectors[ 12 + index ];
 
 		// compute result
 		rotationTranslationPart( 
@@ -365,6 +342,23 @@ public class SimilarityModel3D extends AbstractAffineModel3D< SimilarityModel3D
 		invert();
 	}
 	
+	/**
+	 * Scratch space for the eigen-decomposition of Horn's 4&times;4 matrix N,
+	 * allocated on first use such that fits do not allocate.
+	 *
+	 * @return N
+	 */
+	private double[] scratchN()
+	{
+		if ( N == null )
+		{
+			N = new double[ 16 ];
+			eigenVectors = new double[ 16 ];
+			eigenValues = new double[ 4 ];
+		}
+		return N;
+	}
+
 	private void rotationTranslationPart( double s, double q0, double qx, double qy, double qz, 
 			double pcx, double pcy, double pcz, double qcx, double qcy, double qcz )
 	{
@@ -390,24 +384,24 @@ public class SimilarityModel3D extends AbstractAffineModel3D< SimilarityModel3D
 		
 	}
 	
-	private static void computeN( double[][] N, double Sxx, double Sxz, double Sxy, double Syx, double Syy, double Syz, double Szx, double Szy, double Szz )
+	private static void computeN( final double[] N, double Sxx, double Sxz, double Sxy, double Syx, double Syy, double Syz, double Szx, double Szy, double Szz )
 	{
-		N[0][0] = Sxx + Syy + Szz;
-		N[0][1] = Syz - Szy;
-		N[0][2] = Szx - Sxz;
-		N[0][3] = Sxy - Syx;
-		N[1][0] = Syz - Szy;
-		N[1][1] = Sxx - Syy - Szz;
-		N[1][2] = Sxy + Syx;
-		N[1][3] = Szx + Sxz;
-		N[2][0] = Szx - Sxz;
-		N[2][1] = Sxy + Syx;
-		N[2][2] = -Sxx + Syy - Szz;
-		N[2][3] = Syz + Szy;
-		N[3][0] = Sxy - Syx;
-		N[3][1] = Szx + Sxz;
-		N[3][2] = Syz + Szy;
-		N[3][3] = -Sxx - Syy + Szz;
+		N[ 0 ] = Sxx + Syy + Szz;
+		N[ 1 ] = Syz - Szy;
+		N[ 2 ] = Szx - Sxz;
+		N[ 3 ] = Sxy - Syx;
+		N[ 4 ] = Syz - Szy;
+		N[ 5 ] = Sxx - Syy - Szz;
+		N[ 6 ] = Sxy + Syx;
+		N[ 7 ] = Szx + Sxz;
+		N[ 8 ] = Szx - Sxz;
+		N[ 9 ] = Sxy + Syx;
+		N[ 10 ] = -Sxx + Syy - Szz;
+		N[ 11 ] = Syz + Szy;
+		N[ 12 ] = Sxy - Syx;
+		N[ 13 ] = Szx + Sxz;
+		N[ 14 ] = Syz + Szy;
+		N[ 15 ] = -Sxx - Syy + Szz;
 	}
 	
 	@Override
@@ -91,6 +91,14 @@ public class SpringMesh extends TransformMesh
 
 	final static private DecimalFormat decimalFormat = new DecimalFormat();
 	final static private DecimalFormatSymbols decimalFormatSymbols = new DecimalFormatSymbols();
+	static
+	{
+		decimalFormatSymbols.setGroupingSeparator( ',' );
+		decimalFormatSymbols.setDecimalSeparator( '.' );
+		decimalFormat.setDecimalFormatSymbols( decimalFormatSymbols );
+		decimalFormat.setMaximumFractionDigits( 3 );
+		decimalFormat.setMinimumFractionDigits( 3 );
+	}
 
 	protected double force = 0.0;
 	protected double minForce = Double.MAX_VALUE;
@@ -114,12 +122,6 @@ public class SpringMesh extends TransformMesh
 
 		this.damp = damp;
 
-		decimalFormatSymbols.setGroupingSeparator( ',' );
-		decimalFormatSymbols.setDecimalSeparator( '.' );
-		decimalFormat.setDecimalFormatSymbols( decimalFormatSymbols );
-		decimalFormat.setMaximumFractionDigits( 3 );
-		decimalFormat.setMinimumFractionDigits( 3 );
-
 		final Set< PointMatch > s = va.keySet();
 
 		for ( final PointMatch p : s )
@@ -207,6 +209,19 @@ public class SpringMesh extends TransformMesh
 //		}
 	}
 
+	/**
+	 * Create an empty mesh without vertices, triangles and springs.
+	 *
+	 * @param width
+	 * @param height
+	 * @param damp
+	 */
+	protected SpringMesh( final double width, final double height, final double damp )
+	{
+		super( width, height );
+		this.damp = damp;
+	}
+
 	public SpringMesh(
 			final int numX,
 			final double width,
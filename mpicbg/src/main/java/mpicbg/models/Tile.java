@@ -39,6 +39,7 @@ package mpicbg.models;
 
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -230,8 +231,7 @@ public class Tile< M extends Model< M > > implements Serializable
 	 */
 	final public void apply()
 	{
-		for ( final PointMatch match : matches )
-			match.apply( model );
+		PointMatch.apply( matches, model );
 	}
 
 	/**
@@ -285,10 +285,10 @@ public class Tile< M extends Model< M > > implements Serializable
 		final int numMatches = matches.size();
 		if ( numMatches > 0 )
 		{
+			PointMatch.apply( matches, model );
 			double sumWeight = 0.0;
 			for ( final PointMatch match : matches )
 			{
-				match.apply( model );
 				final double dl = match.getDistance();
 				d += dl;
 				c += dl * dl * match.getWeight();
@@ -343,17 +343,23 @@ public class Tile< M extends Model< M > > implements Serializable
 
 	/**
 	 * Find all {@link Tile}s that represent one connectivity graph by
-	 * recursively tracing the {@link #connectedTiles}.
+	 * tracing the {@link #connectedTiles}.  Uses an explicit stack such that
+	 * long chains of tiles do not overflow the call stack.
 	 *
 	 * @param graph
 	 */
 	final protected void traceConnectedGraph( final Set< Tile< ? > > graph )
 	{
+		final ArrayDeque< Tile< ? > > stack = new ArrayDeque< Tile< ? > >();
 		graph.add( this );
-		for ( final Tile< ? > t : connectedTiles )
+		stack.push( this );
+		while ( !stack.isEmpty() )
 		{
-			if ( !graph.contains( t ) )
-				t.traceConnectedGraph( graph );
+			for ( final Tile< ? > t : stack.pop().connectedTiles )
+			{
+				if ( graph.add( t ) )
+					stack.push( t );
+			}
 		}
 	}
 
@@ -376,6 +382,8 @@ public class Tile< M extends Model< M > > implements Serializable
 
 	/**
 	 * Identify the set of connected graphs that contains all given tiles.
+	 * The graphs include connected tiles that are not in the given
+	 * collection.
 	 *
 	 * @param tiles
 	 * @return
@@ -384,16 +392,14 @@ public class Tile< M extends Model< M > > implements Serializable
 			final Collection< ? extends Tile< ? > > tiles )
 	{
 		final ArrayList< Set< Tile< ? > > > graphs = new ArrayList< Set< Tile< ? > > >();
-		int numInspectedTiles = 0;
-A:		for ( final Tile< ? > tile : tiles )
+		final HashSet< Tile< ? > > inspectedTiles = new HashSet< Tile< ? > >();
+		for ( final Tile< ? > tile : tiles )
 		{
-			for ( final Set< Tile< ? > > knownGraph : graphs )
-				if ( knownGraph.contains( tile ) ) continue A;
+			if ( inspectedTiles.contains( tile ) ) continue;
 			final Set< Tile< ? > > current_graph = new HashSet< Tile< ? > >();
 			tile.traceConnectedGraph( current_graph );
-			numInspectedTiles += current_graph.size();
+			inspectedTiles.addAll( current_graph );
 			graphs.add( current_graph );
-			if ( numInspectedTiles == tiles.size() ) break;
 		}
 		return graphs;
 	}
@@ -44,12 +44,14 @@ import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -202,6 +204,28 @@ public class TileConfiguration implements Serializable
 		error = cd;
 	}
 
+	/**
+	 * Estimate min/max/average displacement of all {@link Tile Tiles} of a
+	 * {@link TileGraph} from their distances as of the last
+	 * {@link TileGraph#updateCost(int)}.
+	 */
+	protected void updateErrors( final TileGraph graph )
+	{
+		double cd = 0.0;
+		minError = Double.MAX_VALUE;
+		maxError = 0.0;
+		final int numTiles = graph.numTiles();
+		for ( int t = 0; t < numTiles; ++t )
+		{
+			final double d = graph.getDistance( t );
+			if ( d < minError ) minError = d;
+			if ( d > maxError ) maxError = d;
+			cd += d;
+		}
+		cd /= numTiles;
+		error = cd;
+	}
+
 	/**
 	 * Estimate min/max/average displacement of all
 	 * {@link PointMatch PointMatches} in all {@link Tile Tiles} using
@@ -305,6 +329,9 @@ public class TileConfiguration implements Serializable
 	 *   slope in an interval of this size and half this size is smaller than
 	 *   0.0001 (in double accuracy).  This is assumed to prevent the algorithm
 	 *   from stopping at plateaus smaller than this value.
+	 *
+	 * The iterations run over a packed {@link TileGraph} of the configuration
+	 * that is written back into the {@link Tile Tiles} when done.
 	 */
 	public void optimizeSilently(
 			final ErrorStatistic observer,
@@ -312,26 +339,51 @@ public class TileConfiguration implements Serializable
 			final int maxIterations,
 			final int maxPlateauwidth,
 			final double damp ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		final TileGraph graph = new TileGraph( tiles, fixedTiles );
+
+		/* initialize the configuration with the current model of each tile */
+		final double[][] scratch = graph.createScratch();
+		for ( int t = 0; t < graph.numTiles(); ++t )
+			graph.apply( t, scratch );
+
+		relax( graph, observer, maxAllowedError, maxIterations, maxPlateauwidth, damp );
+
+		graph.writeBack();
+	}
+
+	/**
+	 * Minimize the displacement of all {@link PointMatch Correspondence pairs}
+	 * of a {@link TileGraph} by iteratively fitting and applying the models
+	 * of all non-fixed tiles.  Convergence criteria are those of
+	 * {@link #optimizeSilently(ErrorStatistic, double, int, int, double)}.
+	 *
+	 * @return number of iterations
+	 */
+	protected int relax(
+			final TileGraph graph,
+			final ErrorStatistic observer,
+			final double maxAllowedError,
+			final int maxIterations,
+			final int maxPlateauwidth,
+			final double damp ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
 	{
 		int i = 0;
 
 		boolean proceed = i < maxIterations;
 
-		/* initialize the configuration with the current model of each tile */
-		apply();
-
+		final PointMatchBuffer buffer = graph.createBuffer();
+		final double[][] scratch = graph.createScratch();
+		final int numTiles = graph.numTiles();
 
 //		println( "i mean min max" );
 
 		while ( proceed )
 		{
-			for ( final Tile< ? > tile : tiles )
-			{
-				if ( fixedTiles.contains( tile ) ) continue;
-				tile.fitModel();
-				tile.apply( damp );
-			}
-			updateErrors();
+			sweep( graph, buffer, scratch, damp );
+			for ( int t = 0; t < numTiles; ++t )
+				graph.updateCost( t );
+			updateErrors( graph );
 			observer.add( error );
 
 			if ( i > maxPlateauwidth )
@@ -354,6 +406,186 @@ public class TileConfiguration implements Serializable
 
 			proceed &= ++i < maxIterations;
 		}
+		return i;
+	}
+
+	/**
+	 * Fit and apply the models of all non-fixed tiles of a {@link TileGraph}
+	 * once.
+	 */
+	protected void sweep(
+			final TileGraph graph,
+			final PointMatchBuffer buffer,
+			final double[][] scratch,
+			final double damp ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		for ( int t = 0; t < graph.numTiles(); ++t )
+		{
+			if ( graph.isFixed( t ) ) continue;
+			graph.fitModel( t, buffer );
+			graph.apply( t, damp, scratch );
+		}
+	}
+
+	/**
+	 * One multigrid V-cycle on a {@link TileGraph}.  A few relaxation sweeps
+	 * remove the local errors, then adjacent tiles are clustered into the
+	 * super-tiles of a coarse graph (see {@link TileGraph#coarsen(int[], int)})
+	 * whose corrections are found by a V-cycle on that graph and prolonged
+	 * into the models of this graph.  The finest graph is then smoothed by a
+	 * few more sweeps, coarse graphs, that are small, are relaxed until they
+	 * reach a plateau.  The coarsest graph, that cannot be clustered
+	 * substantially any more, is only relaxed.
+	 *
+	 * @param numSweeps number of relaxation sweeps before and after the
+	 *   coarse correction
+	 * @param finest whether graph is the finest level
+	 */
+	protected void cycle(
+			final TileGraph graph,
+			final int numSweeps,
+			final int maxIterations,
+			final int maxPlateauwidth,
+			final double damp,
+			final boolean finest ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		final int numTiles = graph.numTiles();
+		final int[] clusters = new int[ numTiles ];
+		final int numClusters = graph.numFreeTiles() > 4 ? graph.aggregate( clusters ) : numTiles;
+		if ( numClusters > 0.75 * numTiles )
+		{
+			/* super-tiles cannot resolve the errors within their clusters, so stop at a plateau only */
+			relax( graph, new ErrorStatistic( maxPlateauwidth + 1 ), Double.MAX_VALUE, maxIterations, maxPlateauwidth, damp );
+			return;
+		}
+
+		final PointMatchBuffer buffer = graph.createBuffer();
+		final double[][] scratch = graph.createScratch();
+		for ( int i = 0; i < numSweeps; ++i )
+			sweep( graph, buffer, scratch, damp );
+
+		/* coarsening requires the models to be fully applied */
+		for ( int t = 0; t < numTiles; ++t )
+			graph.apply( t, scratch );
+
+		final TileGraph coarse = graph.coarsen( clusters, numClusters );
+		cycle( coarse, numSweeps, maxIterations, maxPlateauwidth, damp, false );
+		graph.prolong( coarse, clusters );
+
+		if ( finest )
+			for ( int i = 0; i < numSweeps; ++i )
+				sweep( graph, buffer, scratch, damp );
+		else
+			relax( graph, new ErrorStatistic( maxPlateauwidth + 1 ), Double.MAX_VALUE, maxIterations, maxPlateauwidth, damp );
+	}
+
+	/**
+	 * Minimize the displacement of all {@link PointMatch Correspondence pairs}
+	 * of all {@link Tile Tiles} by multigrid V-cycles, see
+	 * {@link #cycle(TileGraph, int, int, int, double, boolean)}, on a hierarchy of
+	 * coarsened {@link TileGraph TileGraphs}.  Relaxation on the tiles
+	 * propagates corrections by one neighbour per iteration, on the coarse
+	 * levels, low frequency errors across large configurations are removed
+	 * in few iterations.  V-cycles are repeated while they reduce the error
+	 * by more than 1%, the result is then relaxed with the convergence
+	 * criteria of
+	 * {@link #optimizeSilently(ErrorStatistic, double, int, int, double)}.
+	 *
+	 * @param observer collects the error after each V-cycle and after each
+	 *   iteration of the final relaxation
+	 * @param numSweeps number of relaxation sweeps before and after each
+	 *   coarse correction
+	 *
+	 * @return number of V-cycles
+	 */
+	public int optimizeMultilevelSilently(
+			final ErrorStatistic observer,
+			final double maxAllowedError,
+			final int maxIterations,
+			final int maxPlateauwidth,
+			final double damp,
+			final int numSweeps ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		final TileGraph graph = new TileGraph( tiles, fixedTiles );
+		final int numTiles = graph.numTiles();
+
+		/* initialize the configuration with the current model of each tile */
+		final double[][] scratch = graph.createScratch();
+		for ( int t = 0; t < numTiles; ++t )
+		{
+			graph.apply( t, scratch );
+			graph.updateCost( t );
+		}
+		updateErrors( graph );
+
+		int numCycles = 0;
+		double lastError = error;
+		while ( numCycles < maxIterations && error > maxAllowedError )
+		{
+			cycle( graph, numSweeps, maxIterations, maxPlateauwidth, damp, true );
+			++numCycles;
+
+			for ( int t = 0; t < numTiles; ++t )
+				graph.updateCost( t );
+			updateErrors( graph );
+			observer.add( error );
+
+			if ( lastError - error < 0.01 * lastError )
+				break;
+			lastError = error;
+		}
+
+		relax( graph, observer, maxAllowedError, maxIterations, maxPlateauwidth, damp );
+
+		graph.writeBack();
+
+		return numCycles;
+	}
+
+	/**
+	 * Minimize the displacement of all {@link PointMatch Correspondence pairs}
+	 * of all {@link Tile Tiles} by multigrid V-cycles with four relaxation
+	 * sweeps before and after each coarse correction.
+	 *
+	 * @return number of V-cycles
+	 */
+	public int optimizeMultilevelSilently(
+			final ErrorStatistic observer,
+			final double maxAllowedError,
+			final int maxIterations,
+			final int maxPlateauwidth,
+			final double damp ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		return optimizeMultilevelSilently( observer, maxAllowedError, maxIterations, maxPlateauwidth, damp, 4 );
+	}
+
+	/**
+	 * Minimize the displacement of all {@link PointMatch Correspondence pairs}
+	 * of all {@link Tile Tiles} on a hierarchy of coarsened
+	 * {@link TileGraph TileGraphs} and tell about it.
+	 *
+	 * @param maxAllowedError
+	 * @param maxIterations
+	 * @param maxPlateauwidth
+	 * @param damp
+	 * @throws NotEnoughDataPointsException
+	 * @throws IllDefinedDataPointsException
+	 */
+	public void optimizeMultilevel(
+			final double maxAllowedError,
+			final int maxIterations,
+			final int maxPlateauwidth,
+			final double damp ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		println( "Optimizing on multiple levels..." );
+
+		final ErrorStatistic observer = new ErrorStatistic( maxPlateauwidth + 1 );
+		final int numCycles = optimizeMultilevelSilently( observer, maxAllowedError, maxIterations, maxPlateauwidth, damp );
+
+		println( new StringBuffer( "Successfully optimized configuration of " ).append( tiles.size() ).append( " tiles after " ).append( numCycles ).append( " V-cycles and " ).append( observer.n() - numCycles ).append( " iterations:" ).toString() );
+		println( new StringBuffer( "  average displacement: " ).append( decimalFormat.format( error ) ).append( "px" ).toString() );
+		println( new StringBuffer( "  minimal displacement: " ).append( decimalFormat.format( minError ) ).append( "px" ).toString() );
+		println( new StringBuffer( "  maximal displacement: " ).append( decimalFormat.format( maxError ) ).append( "px" ).toString() );
 	}
 
 	public void optimizeSilentlyConcurrent(
@@ -443,6 +675,214 @@ public class TileConfiguration implements Serializable
 	}
 
 
+	/**
+	 * Minimize the displacement of all {@link PointMatch Correspondence pairs}
+	 * of all {@link Tile Tiles} by solving the global least squares problem
+	 * with a {@link TileSolver} instead of fitting tiles one by one.  Linear
+	 * models are solved in one iteration, {@link RigidModel2D} and
+	 * {@link InterpolatedAffineModel2D} require a few.
+	 *
+	 * @param observer collects the error after each iteration
+	 * @param maxIterations stop after that many iterations
+	 * @param maxErrorChange stop when the error changes less than that
+	 *
+	 * @return number of iterations
+	 *
+	 * @throws IllegalArgumentException if a non-fixed tile has a model that
+	 *   is not supported by {@link TileSolver}
+	 */
+	public int solveSilently(
+			final ErrorStatistic observer,
+			final int maxIterations,
+			final double maxErrorChange )
+	{
+		final TileSolver solver = new TileSolver( tiles, fixedTiles );
+
+		/* initialize the configuration with the current model of each tile */
+		apply();
+
+		int i = 0;
+		boolean proceed = i < maxIterations;
+		while ( proceed )
+		{
+			final double lastError = error;
+			solver.iterate();
+			apply();
+			updateErrors();
+			observer.add( error );
+
+			proceed = !solver.isLinear() && Math.abs( lastError - error ) > maxErrorChange;
+			proceed &= ++i < maxIterations;
+		}
+		return i;
+	}
+
+	/**
+	 * Minimize the displacement of all {@link PointMatch Correspondence pairs}
+	 * of all {@link Tile Tiles} with a {@link TileSolver} and tell about it.
+	 *
+	 * @param maxIterations
+	 * @param maxErrorChange
+	 */
+	public void solve(
+			final int maxIterations,
+			final double maxErrorChange )
+	{
+		println( "Solving..." );
+
+		/* only the most recent iterations are of interest, bound the window */
+		final ErrorStatistic observer = new ErrorStatistic( Math.min( maxIterations, 100 ) + 1 );
+		final int i = solveSilently( observer, maxIterations, maxErrorChange );
+
+		println( new StringBuffer( "Successfully solved configuration of " ).append( tiles.size() ).append( " tiles after " ).append( i ).append( " iterations:" ).toString() );
+		println( new StringBuffer( "  average displacement: " ).append( decimalFormat.format( error ) ).append( "px" ).toString() );
+		println( new StringBuffer( "  minimal displacement: " ).append( decimalFormat.format( minError ) ).append( "px" ).toString() );
+		println( new StringBuffer( "  maximal displacement: " ).append( decimalFormat.format( maxError ) ).append( "px" ).toString() );
+	}
+
+	/**
+	 * Result of the optimization of one connected component of a
+	 * {@link TileConfiguration}.
+	 */
+	static public class ComponentStatistic
+	{
+		final protected TileConfiguration configuration;
+		final protected ErrorStatistic observer;
+
+		protected ComponentStatistic( final TileConfiguration configuration, final ErrorStatistic observer )
+		{
+			this.configuration = configuration;
+			this.observer = observer;
+		}
+
+		final public Set< Tile< ? > > getTiles(){ return configuration.getTiles(); }
+		final public int getNumTiles(){ return configuration.getTiles().size(); }
+		final public int getNumFixedTiles(){ return configuration.getFixedTiles().size(); }
+		final public int getNumIterations(){ return observer.n(); }
+		final public double getError(){ return configuration.getError(); }
+		final public double getMinError(){ return configuration.getMinError(); }
+		final public double getMaxError(){ return configuration.getMaxError(); }
+	}
+
+	/**
+	 * Minimize the displacement of all {@link PointMatch Correspondence pairs}
+	 * of all {@link Tile Tiles} separately for each connected component as
+	 * identified by {@link Tile#identifyConnectedGraphs(Collection)}.  Each
+	 * component is optimized by
+	 * {@link #optimizeSilently(ErrorStatistic, double, int, int, double)} with
+	 * its own convergence test, such that components that converge early do
+	 * not iterate until the slowest has converged.  Components are processed
+	 * in parallel, largest first.  Errors of this configuration are updated
+	 * over all tiles when done.
+	 *
+	 * @param maxAllowedError
+	 * @param maxIterations
+	 * @param maxPlateauwidth
+	 * @param damp
+	 * @param executor processes the components, null processes them
+	 *   sequentially in the calling thread
+	 *
+	 * @return statistics of each component, largest first
+	 */
+	public List< ComponentStatistic > optimizeComponentsSilently(
+			final double maxAllowedError,
+			final int maxIterations,
+			final int maxPlateauwidth,
+			final double damp,
+			final ExecutorService executor ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		final ArrayList< Set< Tile< ? > > > graphs = Tile.identifyConnectedGraphs( tiles );
+		Collections.sort( graphs, ( a, b ) -> Integer.compare( b.size(), a.size() ) );
+
+		final ArrayList< ComponentStatistic > components = new ArrayList< ComponentStatistic >( graphs.size() );
+		for ( final Set< Tile< ? > > graph : graphs )
+		{
+			final TileConfiguration component = new TileConfiguration();
+			for ( final Tile< ? > tile : graph )
+			{
+				/* tiles outside of this configuration remain untouched */
+				if ( !tiles.contains( tile ) )
+					continue;
+				component.addTile( tile );
+				if ( fixedTiles.contains( tile ) )
+					component.fixTile( tile );
+			}
+			components.add( new ComponentStatistic( component, new ErrorStatistic( maxPlateauwidth + 1 ) ) );
+		}
+
+		if ( executor == null )
+		{
+			for ( final ComponentStatistic c : components )
+				c.configuration.optimizeSilently( c.observer, maxAllowedError, maxIterations, maxPlateauwidth, damp );
+		}
+		else
+		{
+			final ArrayList< Future< Void > > futures = new ArrayList< Future< Void > >( components.size() );
+			for ( final ComponentStatistic c : components )
+				futures.add( executor.submit( () -> {
+					c.configuration.optimizeSilently( c.observer, maxAllowedError, maxIterations, maxPlateauwidth, damp );
+					return null;
+				} ) );
+			try
+			{
+				for ( final Future< Void > future : futures )
+					future.get();
+			}
+			catch ( final InterruptedException e )
+			{
+				throw new RuntimeException( e );
+			}
+			catch ( final ExecutionException e )
+			{
+				final Throwable cause = e.getCause();
+				if ( cause instanceof NotEnoughDataPointsException )
+					throw ( NotEnoughDataPointsException )cause;
+				else if ( cause instanceof IllDefinedDataPointsException )
+					throw ( IllDefinedDataPointsException )cause;
+				else
+					throw new RuntimeException( cause );
+			}
+		}
+
+		updateErrors();
+
+		return components;
+	}
+
+	/**
+	 * Minimize the displacement of all {@link PointMatch Correspondence pairs}
+	 * of all {@link Tile Tiles} separately and in parallel for each connected
+	 * component and tell about it.
+	 *
+	 * @param maxAllowedError
+	 * @param maxIterations
+	 * @param maxPlateauwidth
+	 * @param damp
+	 * @param executor
+	 * @throws NotEnoughDataPointsException
+	 * @throws IllDefinedDataPointsException
+	 */
+	public void optimizeComponents(
+			final double maxAllowedError,
+			final int maxIterations,
+			final int maxPlateauwidth,
+			final double damp,
+			final ExecutorService executor ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		println( "Optimizing connected components..." );
+
+		final List< ComponentStatistic > components = optimizeComponentsSilently( maxAllowedError, maxIterations, maxPlateauwidth, damp, executor );
+
+		int i = 0;
+		for ( final ComponentStatistic c : components )
+			println( new StringBuffer( "  component " ).append( i++ ).append( ": " ).append( c.getNumTiles() ).append( " tiles, " ).append( c.getNumIterations() ).append( " iterations, average displacement: " ).append( decimalFormat.format( c.getError() ) ).append( "px, maximal displacement: " ).append( decimalFormat.format( c.getMaxError() ) ).append( "px" ).toString() );
+
+		println( new StringBuffer( "Successfully optimized configuration of " ).append( tiles.size() ).append( " tiles in " ).append( components.size() ).append( " connected components:" ).toString() );
+		println( new StringBuffer( "  average displacement: " ).append( decimalFormat.format( error ) ).append( "px" ).toString() );
+		println( new StringBuffer( "  minimal displacement: " ).append( decimalFormat.format( minError ) ).append( "px" ).toString() );
+		println( new StringBuffer( "  maximal displacement: " ).append( decimalFormat.format( maxError ) ).append( "px" ).toString() );
+	}
+
 	public void optimizeAndFilter(
 			final double maxAllowedError,
 			final int maxIterations,
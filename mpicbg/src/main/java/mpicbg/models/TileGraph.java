@@ -0,0 +1,687 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Indexed, packed representation of a configuration of {@link Tile Tiles}
+ * for fast optimization.  Tiles are numbered in iteration order.  The
+ * {@link PointMatch PointMatches} of tile i are stored at the match indices
+ * [{@link #matchOffset(int) matchOffset}(i),
+ * {@link #matchOffset(int) matchOffset}(i + 1)) as local and world
+ * coordinates of their first point, weight, strength, and the world index
+ * of their second point.  The second point of a match is the first point of
+ * a match of the connected tile if the tiles were
+ * {@link Tile#connect(Tile, Collection) connected} and thus shares its world
+ * coordinates.  Second points that are not first points of any tile get
+ * constant world coordinates appended after those of all matches.
+ * Neighbours of tile i are at
+ * [{@link #neighbourOffset(int) neighbourOffset}(i),
+ * {@link #neighbourOffset(int) neighbourOffset}(i + 1)) of
+ * {@link #getNeighbours()}.
+ * <p>
+ * Models are fit and applied to the packed coordinates,
+ * {@link #writeBack()} copies world coordinates and costs back into the
+ * {@link PointMatch PointMatches} and {@link Tile Tiles}.  Tiles and matches
+ * must not be changed while a {@link TileGraph} is in use.
+ * </p>
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class TileGraph
+{
+	final protected int numDimensions;
+
+	final protected Tile< ? >[] tiles;
+	final protected boolean[] fixed;
+
+	final protected int[] matchOffsets;
+	final protected int[] neighbourOffsets;
+	final protected int[] neighbours;
+
+	/* [numDimensions][numMatches] */
+	final protected double[][] local;
+
+	/* [numDimensions][numMatches + number of constant second points] */
+	final protected double[][] world;
+
+	final protected double[] weights;
+	final protected double[] strengths;
+
+	/* world index of the second point of each match */
+	final protected int[] targets;
+
+	final protected int maxTileMatches;
+
+	final protected double[] distances;
+	final protected double[] costs;
+
+	/**
+	 * @param tiles
+	 * @param fixedTiles tiles that are marked {@link #isFixed(int) fixed}
+	 */
+	public TileGraph(
+			final Collection< ? extends Tile< ? > > tiles,
+			final Collection< ? extends Tile< ? > > fixedTiles )
+	{
+		final int numTiles = tiles.size();
+		this.tiles = new Tile< ? >[ numTiles ];
+		fixed = new boolean[ numTiles ];
+		matchOffsets = new int[ numTiles + 1 ];
+		neighbourOffsets = new int[ numTiles + 1 ];
+		distances = new double[ numTiles ];
+		costs = new double[ numTiles ];
+
+		final HashMap< Tile< ? >, Integer > indices = new HashMap< Tile< ? >, Integer >();
+		final IdentityHashMap< Point, Integer > firstPoints = new IdentityHashMap< Point, Integer >();
+		int i = 0, numMatches = 0, maxTileMatches = 0, numDimensions = 0;
+		for ( final Tile< ? > tile : tiles )
+		{
+			this.tiles[ i ] = tile;
+			fixed[ i ] = fixedTiles.contains( tile );
+			indices.put( tile, i );
+			matchOffsets[ i ] = numMatches;
+			for ( final PointMatch match : tile.getMatches() )
+			{
+				firstPoints.put( match.getP1(), numMatches++ );
+				numDimensions = match.getP1().getL().length;
+			}
+			maxTileMatches = Math.max( maxTileMatches, tile.getMatches().size() );
+			++i;
+		}
+		matchOffsets[ numTiles ] = numMatches;
+		this.numDimensions = numDimensions;
+		this.maxTileMatches = maxTileMatches;
+
+		/* neighbours */
+		int numNeighbours = 0;
+		for ( final Tile< ? > tile : tiles )
+			for ( final Tile< ? > neighbour : tile.getConnectedTiles() )
+				if ( indices.containsKey( neighbour ) )
+					++numNeighbours;
+		neighbours = new int[ numNeighbours ];
+		i = 0;
+		int k = 0;
+		for ( final Tile< ? > tile : tiles )
+		{
+			neighbourOffsets[ i++ ] = k;
+			for ( final Tile< ? > neighbour : tile.getConnectedTiles() )
+			{
+				final Integer j = indices.get( neighbour );
+				if ( j != null )
+					neighbours[ k++ ] = j;
+			}
+		}
+		neighbourOffsets[ numTiles ] = k;
+
+		/* matches */
+		local = new double[ numDimensions ][ numMatches ];
+		weights = new double[ numMatches ];
+		strengths = new double[ numMatches ];
+		targets = new int[ numMatches ];
+		final ArrayList< double[] > constants = new ArrayList< double[] >();
+		k = 0;
+		for ( final Tile< ? > tile : tiles )
+		{
+			for ( final PointMatch match : tile.getMatches() )
+			{
+				final double[] l = match.getP1().getL();
+				for ( int d = 0; d < numDimensions; ++d )
+					local[ d ][ k ] = l[ d ];
+				weights[ k ] = match.getWeight();
+				strengths[ k ] = match.strength;
+				final Integer t = firstPoints.get( match.getP2() );
+				if ( t == null )
+				{
+					targets[ k ] = numMatches + constants.size();
+					constants.add( match.getP2().getW() );
+				}
+				else
+					targets[ k ] = t;
+				++k;
+			}
+		}
+
+		world = new double[ numDimensions ][ numMatches + constants.size() ];
+		k = 0;
+		for ( final Tile< ? > tile : tiles )
+		{
+			for ( final PointMatch match : tile.getMatches() )
+			{
+				final double[] w = match.getP1().getW();
+				for ( int d = 0; d < numDimensions; ++d )
+					world[ d ][ k ] = w[ d ];
+				++k;
+			}
+		}
+		for ( final double[] w : constants )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				world[ d ][ k ] = w[ d ];
+			++k;
+		}
+	}
+
+	final public int numDimensions(){ return numDimensions; }
+	final public int numTiles(){ return tiles.length; }
+	final public Tile< ? > getTile( final int i ){ return tiles[ i ]; }
+	final public boolean isFixed( final int i ){ return fixed[ i ]; }
+	final public int matchOffset( final int i ){ return matchOffsets[ i ]; }
+	final public int neighbourOffset( final int i ){ return neighbourOffsets[ i ]; }
+	final public int[] getNeighbours(){ return neighbours; }
+	final public int[] getTargets(){ return targets; }
+	final public double[][] getLocal(){ return local; }
+	final public double[][] getWorld(){ return world; }
+	final public double[] getWeights(){ return weights; }
+	final public int maxTileMatches(){ return maxTileMatches; }
+
+	/**
+	 * Mean distance of the matches of tile i as of the last
+	 * {@link #updateCost(int)}.
+	 */
+	final public double getDistance( final int i ){ return distances[ i ]; }
+
+	/**
+	 * Weighted mean square distance of the matches of tile i as of the last
+	 * {@link #updateCost(int)}.
+	 */
+	final public double getCost( final int i ){ return costs[ i ]; }
+
+	/**
+	 * Create a {@link PointMatchBuffer} large enough for
+	 * {@link #fitModel(int, PointMatchBuffer)} of any tile.  Each thread
+	 * needs its own.
+	 */
+	public PointMatchBuffer createBuffer()
+	{
+		return new PointMatchBuffer( numDimensions, maxTileMatches );
+	}
+
+	/**
+	 * Create scratch storage large enough for {@link #apply(int, double[][])}
+	 * of any tile.  Each thread needs its own.
+	 */
+	public double[][] createScratch()
+	{
+		return new double[ numDimensions ][ maxTileMatches ];
+	}
+
+	/**
+	 * Fit the model of tile i to its matches.
+	 *
+	 * @param i
+	 * @param buffer temporary storage, its contents are replaced
+	 */
+	public void fitModel( final int i, final PointMatchBuffer buffer ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		final double[] p = new double[ numDimensions ];
+		final double[] q = new double[ numDimensions ];
+		buffer.clear();
+		for ( int k = matchOffsets[ i ]; k < matchOffsets[ i + 1 ]; ++k )
+		{
+			final int t = targets[ k ];
+			for ( int d = 0; d < numDimensions; ++d )
+			{
+				p[ d ] = local[ d ][ k ];
+				q[ d ] = world[ d ][ t ];
+			}
+			buffer.add( p, q, weights[ k ] );
+		}
+		tiles[ i ].getModel().fit( buffer );
+	}
+
+	/**
+	 * Transform the local coordinates of the matches of tile i into scratch
+	 * [0, number of matches).
+	 */
+	protected void transform( final int i, final double[][] scratch )
+	{
+		final int offset = matchOffsets[ i ];
+		final int length = matchOffsets[ i + 1 ] - offset;
+		for ( int d = 0; d < numDimensions; ++d )
+			System.arraycopy( local[ d ], offset, scratch[ d ], 0, length );
+
+		final CoordinateTransform t = tiles[ i ].getModel();
+		if ( numDimensions == 2 )
+			t.applyInPlace( scratch[ 0 ], scratch[ 1 ], 0, length );
+		else if ( numDimensions == 3 )
+			t.applyInPlace( scratch[ 0 ], scratch[ 1 ], scratch[ 2 ], 0, length );
+		else
+		{
+			final double[] location = new double[ numDimensions ];
+			for ( int k = 0; k < length; ++k )
+			{
+				for ( int d = 0; d < numDimensions; ++d )
+					location[ d ] = scratch[ d ][ k ];
+				t.applyInPlace( location );
+				for ( int d = 0; d < numDimensions; ++d )
+					scratch[ d ][ k ] = location[ d ];
+			}
+		}
+	}
+
+	/**
+	 * Apply the model of tile i to the local coordinates of its matches,
+	 * same as {@link Tile#apply()}.
+	 *
+	 * @param i
+	 * @param scratch temporary storage
+	 */
+	public void apply( final int i, final double[][] scratch )
+	{
+		final int offset = matchOffsets[ i ];
+		final int length = matchOffsets[ i + 1 ] - offset;
+		transform( i, scratch );
+		for ( int d = 0; d < numDimensions; ++d )
+			System.arraycopy( scratch[ d ], 0, world[ d ], offset, length );
+	}
+
+	/**
+	 * Apply the model of tile i to the local coordinates of its matches
+	 * with a given amount, same as {@link Tile#apply(double)}.
+	 *
+	 * @param i
+	 * @param amount
+	 * @param scratch temporary storage
+	 */
+	public void apply( final int i, final double amount, final double[][] scratch )
+	{
+		final int offset = matchOffsets[ i ];
+		final int length = matchOffsets[ i + 1 ] - offset;
+		transform( i, scratch );
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			final double[] s = scratch[ d ];
+			final double[] w = world[ d ];
+			for ( int k = 0; k < length; ++k )
+				w[ offset + k ] += strengths[ offset + k ] * amount * ( s[ k ] - w[ offset + k ] );
+		}
+	}
+
+	/**
+	 * Update distance and cost of tile i and the cost of its model, same as
+	 * {@link Tile#updateCost()}.
+	 */
+	public void updateCost( final int i )
+	{
+		double dSum = 0.0;
+		double c = 0.0;
+		double sumWeight = 0.0;
+		final int offset = matchOffsets[ i ];
+		final int numMatches = matchOffsets[ i + 1 ] - offset;
+		for ( int k = offset; k < offset + numMatches; ++k )
+		{
+			final int t = targets[ k ];
+			double s = 0;
+			for ( int d = 0; d < numDimensions; ++d )
+			{
+				final double dd = world[ d ][ t ] - world[ d ][ k ];
+				s += dd * dd;
+			}
+			final double dl = Math.sqrt( s );
+			dSum += dl;
+			c += dl * dl * weights[ k ];
+			sumWeight += weights[ k ];
+		}
+		if ( numMatches > 0 )
+		{
+			dSum /= numMatches;
+			c /= sumWeight;
+		}
+		distances[ i ] = dSum;
+		costs[ i ] = c;
+		tiles[ i ].getModel().setCost( c );
+	}
+
+	/**
+	 * Partitions the tiles into colour classes of a greedy colouring of the
+	 * tile graph, i.e. no two tiles of the same class are connected.  Tiles
+	 * are coloured in order of decreasing degree, each with the smallest
+	 * colour that none of its already coloured neighbours has.  Fixed tiles
+	 * are skipped.
+	 *
+	 * Fitting and applying the models of all tiles of one class does not
+	 * touch any world coordinate that another tile of that class reads, so
+	 * the tiles of one class can be processed in parallel without any
+	 * locking.
+	 *
+	 * @return tile indices of each colour class
+	 */
+	public int[][] colourClasses()
+	{
+		final int numTiles = tiles.length;
+		final Integer[] order = new Integer[ numTiles ];
+		for ( int i = 0; i < numTiles; ++i )
+			order[ i ] = i;
+		Arrays.sort( order, ( a, b ) -> Integer.compare(
+				neighbourOffsets[ b + 1 ] - neighbourOffsets[ b ],
+				neighbourOffsets[ a + 1 ] - neighbourOffsets[ a ] ) );
+
+		final int[] colours = new int[ numTiles ];
+		Arrays.fill( colours, -1 );
+		final BitSet taken = new BitSet();
+		int numColours = 0;
+		for ( final int i : order )
+		{
+			if ( fixed[ i ] )
+				continue;
+			taken.clear();
+			for ( int k = neighbourOffsets[ i ]; k < neighbourOffsets[ i + 1 ]; ++k )
+			{
+				final int c = colours[ neighbours[ k ] ];
+				if ( c >= 0 )
+					taken.set( c );
+			}
+			colours[ i ] = taken.nextClearBit( 0 );
+			numColours = Math.max( numColours, colours[ i ] + 1 );
+		}
+
+		final int[] sizes = new int[ numColours ];
+		for ( final int c : colours )
+			if ( c >= 0 )
+				++sizes[ c ];
+		final int[][] classes = new int[ numColours ][];
+		for ( int c = 0; c < numColours; ++c )
+			classes[ c ] = new int[ sizes[ c ] ];
+		Arrays.fill( sizes, 0 );
+		for ( final int i : order )
+		{
+			final int c = colours[ i ];
+			if ( c >= 0 )
+				classes[ c ][ sizes[ c ]++ ] = i;
+		}
+		return classes;
+	}
+
+	/**
+	 * Number of tiles that are not {@link #isFixed(int) fixed}.
+	 */
+	public int numFreeTiles()
+	{
+		int n = 0;
+		for ( final boolean f : fixed )
+			if ( !f ) ++n;
+		return n;
+	}
+
+	/**
+	 * Cluster adjacent tiles by greedy aggregation.  Each free tile whose free
+	 * neighbours are all not yet clustered, in index order, starts a cluster
+	 * with all its free neighbours.  Remaining free tiles are then added to
+	 * the cluster of an adjacent tile if any.  Fixed tiles remain singletons.
+	 * On a regular grid, clusters have about five tiles.
+	 *
+	 * @param clusters cluster index of each tile, output
+	 * @return number of clusters
+	 */
+	public int aggregate( final int[] clusters )
+	{
+		final int numTiles = tiles.length;
+		Arrays.fill( clusters, -1 );
+		int numClusters = 0;
+		for ( int i = 0; i < numTiles; ++i )
+		{
+			if ( fixed[ i ] || clusters[ i ] >= 0 )
+				continue;
+			boolean free = true;
+			for ( int k = neighbourOffsets[ i ]; k < neighbourOffsets[ i + 1 ] && free; ++k )
+				free = clusters[ neighbours[ k ] ] < 0;
+			if ( !free )
+				continue;
+			final int c = numClusters++;
+			clusters[ i ] = c;
+			for ( int k = neighbourOffsets[ i ]; k < neighbourOffsets[ i + 1 ]; ++k )
+			{
+				final int j = neighbours[ k ];
+				if ( !fixed[ j ] )
+					clusters[ j ] = c;
+			}
+		}
+
+		/* attach leftovers to an adjacent cluster */
+		for ( int i = 0; i < numTiles; ++i )
+		{
+			if ( fixed[ i ] || clusters[ i ] >= 0 )
+				continue;
+			for ( int k = neighbourOffsets[ i ]; k < neighbourOffsets[ i + 1 ]; ++k )
+			{
+				final int j = neighbours[ k ];
+				if ( !fixed[ j ] && clusters[ j ] >= 0 )
+				{
+					clusters[ i ] = clusters[ j ];
+					break;
+				}
+			}
+		}
+
+		for ( int i = 0; i < numTiles; ++i )
+			if ( clusters[ i ] < 0 )
+				clusters[ i ] = numClusters++;
+
+		return numClusters;
+	}
+
+	/**
+	 * Create a {@link Tile} with a copy of the model of a template tile that
+	 * is set to identity by fitting it to the first points of matches.
+	 *
+	 * @return the tile or null if matches are not sufficient to fit the model
+	 */
+	static protected < M extends Model< M > > Tile< M > createCorrectionTile(
+			final Tile< M > template,
+			final Collection< PointMatch > matches )
+	{
+		final M correction = template.getModel().copy();
+		final ArrayList< PointMatch > identity = new ArrayList< PointMatch >();
+		for ( final PointMatch match : matches )
+			identity.add( new PointMatch( match.getP1(), match.getP1(), match.getWeight() ) );
+		try
+		{
+			correction.fit( identity );
+		}
+		catch ( final NotEnoughDataPointsException | IllDefinedDataPointsException e )
+		{
+			return null;
+		}
+		final Tile< M > tile = new Tile< M >( correction );
+		tile.addMatches( matches );
+		return tile;
+	}
+
+	static protected < M extends Model< M > > Tile< M > createFixedTile(
+			final Tile< M > template,
+			final Collection< PointMatch > matches )
+	{
+		final Tile< M > tile = new Tile< M >( template.getModel().copy() );
+		tile.addMatches( matches );
+		return tile;
+	}
+
+	/**
+	 * Create the coarse {@link TileGraph} of a clustering.  Each cluster
+	 * becomes one super-tile whose model is a correction of the current world
+	 * coordinates of its members.  It is of the same type as the model of
+	 * the first tile of the cluster and starts as identity.  The matches of
+	 * a super-tile are those matches of its members that connect to other
+	 * clusters or to points outside of this graph, with the current world
+	 * coordinates as local coordinates.  Matches within a cluster are
+	 * dropped.  Super-tiles are fixed if they contain a fixed tile or if
+	 * their matches are not sufficient to determine their model.
+	 * <p>
+	 * The current world coordinates must be the models applied to the local
+	 * coordinates, i.e. {@link #apply(int, double[][])} has been called for
+	 * all tiles.
+	 * </p>
+	 *
+	 * @param clusters cluster index of each tile as computed by
+	 *   {@link #aggregate(int[])}
+	 * @param numClusters
+	 */
+	public TileGraph coarsen( final int[] clusters, final int numClusters )
+	{
+		final int numMatches = weights.length;
+		final int numTiles = tiles.length;
+
+		final int[] owners = new int[ numMatches ];
+		final int[] representatives = new int[ numClusters ];
+		final boolean[] fixedClusters = new boolean[ numClusters ];
+		Arrays.fill( representatives, -1 );
+		for ( int i = 0; i < numTiles; ++i )
+		{
+			Arrays.fill( owners, matchOffsets[ i ], matchOffsets[ i + 1 ], i );
+			final int c = clusters[ i ];
+			if ( representatives[ c ] < 0 )
+				representatives[ c ] = i;
+			fixedClusters[ c ] |= fixed[ i ];
+		}
+
+		/* coarse points for all matches that leave their cluster */
+		final Point[] points = new Point[ numMatches ];
+		for ( int k = 0; k < numMatches; ++k )
+		{
+			final int t = targets[ k ];
+			if ( t >= numMatches || clusters[ owners[ t ] ] != clusters[ owners[ k ] ] )
+			{
+				final double[] l = new double[ numDimensions ];
+				for ( int d = 0; d < numDimensions; ++d )
+					l[ d ] = world[ d ][ k ];
+				points[ k ] = new Point( l );
+			}
+		}
+
+		final ArrayList< ArrayList< PointMatch > > matches = new ArrayList< ArrayList< PointMatch > >( numClusters );
+		for ( int c = 0; c < numClusters; ++c )
+			matches.add( new ArrayList< PointMatch >() );
+		for ( int k = 0; k < numMatches; ++k )
+		{
+			if ( points[ k ] == null )
+				continue;
+			final int t = targets[ k ];
+			Point q = t < numMatches ? points[ t ] : null;
+			if ( q == null )
+			{
+				/* constant */
+				final double[] l = new double[ numDimensions ];
+				for ( int d = 0; d < numDimensions; ++d )
+					l[ d ] = world[ d ][ t ];
+				q = new Point( l );
+			}
+			matches.get( clusters[ owners[ k ] ] ).add( new PointMatch( points[ k ], q, weights[ k ] ) );
+		}
+
+		final ArrayList< Tile< ? > > coarseTiles = new ArrayList< Tile< ? > >( numClusters );
+		final ArrayList< Tile< ? > > coarseFixedTiles = new ArrayList< Tile< ? > >();
+		for ( int c = 0; c < numClusters; ++c )
+		{
+			Tile< ? > tile = fixedClusters[ c ] ? null : createCorrectionTile( tiles[ representatives[ c ] ], matches.get( c ) );
+			if ( tile == null )
+			{
+				/* the model is never fit or applied */
+				tile = createFixedTile( tiles[ representatives[ c ] ], matches.get( c ) );
+				coarseFixedTiles.add( tile );
+			}
+			coarseTiles.add( tile );
+		}
+
+		/* connect */
+		for ( int k = 0; k < numMatches; ++k )
+		{
+			final int t = targets[ k ];
+			if ( points[ k ] != null && t < numMatches )
+				coarseTiles.get( clusters[ owners[ k ] ] ).addConnectedTile( coarseTiles.get( clusters[ owners[ t ] ] ) );
+		}
+
+		return new TileGraph( coarseTiles, coarseFixedTiles );
+	}
+
+	/**
+	 * Prolong the corrections of a coarse {@link TileGraph} into the models of
+	 * this graph.  The model of each free tile is fit to its current
+	 * transformation followed by the correction of its cluster, and applied.
+	 * This is exact if the model family is closed under composition and
+	 * the best approximation otherwise.  Tiles whose cluster is fixed in the
+	 * coarse graph remain unchanged.
+	 *
+	 * @param coarse as created by {@link #coarsen(int[], int)}
+	 * @param clusters the clustering that coarse was created with
+	 */
+	public void prolong( final TileGraph coarse, final int[] clusters ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		final PointMatchBuffer buffer = createBuffer();
+		final double[][] scratch = createScratch();
+		final double[] p = new double[ numDimensions ];
+		final double[] q = new double[ numDimensions ];
+		for ( int i = 0; i < tiles.length; ++i )
+		{
+			final int c = clusters[ i ];
+			if ( fixed[ i ] || coarse.isFixed( c ) )
+				continue;
+
+			final CoordinateTransform correction = coarse.getTile( c ).getModel();
+			final int offset = matchOffsets[ i ];
+			final int length = matchOffsets[ i + 1 ] - offset;
+			transform( i, scratch );
+			buffer.clear();
+			for ( int k = 0; k < length; ++k )
+			{
+				for ( int d = 0; d < numDimensions; ++d )
+				{
+					p[ d ] = local[ d ][ offset + k ];
+					q[ d ] = scratch[ d ][ k ];
+				}
+				correction.applyInPlace( q );
+				buffer.add( p, q, weights[ offset + k ] );
+			}
+			tiles[ i ].getModel().fit( buffer );
+			apply( i, scratch );
+		}
+	}
+
+	/**
+	 * Copy the world coordinates of all matches back into the first points
+	 * of the {@link PointMatch PointMatches} and update the cost of all
+	 * {@link Tile Tiles}.
+	 */
+	public void writeBack()
+	{
+		int k = 0;
+		for ( final Tile< ? > tile : tiles )
+		{
+			for ( final PointMatch match : tile.getMatches() )
+			{
+				final double[] w = match.getP1().getW();
+				for ( int d = 0; d < numDimensions; ++d )
+					w[ d ] = world[ d ][ k ];
+				++k;
+			}
+		}
+		/* costs depend on the world coordinates of the connected tiles */
+		for ( final Tile< ? > tile : tiles )
+			tile.updateCost();
+	}
+}
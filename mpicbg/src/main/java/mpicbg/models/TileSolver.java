@@ -0,0 +1,980 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Solves the global least squares problem of a configuration of
+ * {@link Tile Tiles} directly instead of iteratively fitting each tile to its
+ * neighbours.  All {@link Tile#getMatches() matches} of all non-fixed tiles
+ * contribute to sparse normal equations in the parameters of all tile models
+ * that are solved by conjugate gradients with a block Jacobi preconditioner.
+ * Each match contributes to the equations of its own tile only, the reverse
+ * match that {@link Tile#connect(Tile, java.util.Collection)} adds to the
+ * neighbour contributes to the neighbour's, so that each connection counts
+ * once as in the relaxation.  A match whose second point does not belong to
+ * a non-fixed tile pulls towards that point's current world coordinates, so
+ * fixed tiles stay as they are.
+ * <p>
+ * Supported are {@link TranslationModel2D}, {@link SimilarityModel2D},
+ * {@link AffineModel2D}, {@link TranslationModel3D}, {@link AffineModel3D}
+ * which are linear in their parameters and solved in one
+ * {@link #iterate() iteration}, {@link RigidModel2D} which is linearized
+ * around its current rotation and refined by Gauss-Newton iterations, and
+ * {@link InterpolatedAffineModel2D} of these 2d models.  For the latter, the
+ * interpolated transformation t and the regularizer b are both unknowns and
+ * t is pulled towards b by lambda / ( 1 - lambda ) times their squared
+ * distance at all match locations of the tile.  This has the same minimum as
+ * fitting model and regularizer independently and interpolating them, as
+ * {@link TileConfiguration#optimize(double, int, int) relaxation} does.
+ * The model is then set to ( t - lambda b ) / ( 1 - lambda ) which requires
+ * that its family is closed under linear combination and contains the
+ * regularizer family.
+ * </p>
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class TileSolver
+{
+	/**
+	 * Linear parameterization x' = J( x ) p + c( x ) of an n-dimensional
+	 * affine transformation in a model family around its current state.
+	 * Local coordinates are centered at the mean location of the matches of
+	 * the tile for better conditioning.
+	 */
+	static abstract protected class Parameterization
+	{
+		final protected int n;
+
+		/* current transformation, n x ( n + 1 ) row-major */
+		final protected double[] affine;
+
+		final protected double[] center;
+
+		protected Parameterization( final double[] affine, final double[] center )
+		{
+			this.affine = affine;
+			this.center = center;
+			n = center.length;
+		}
+
+		abstract public int size();
+
+		/**
+		 * @param l local location
+		 * @param j n x {@link #size()} row-major Jacobian
+		 * @param c constant
+		 */
+		abstract public void linearize( final double[] l, final double[] j, final double[] c );
+
+		/**
+		 * Current parameters.
+		 */
+		abstract public void get( final double[] x, final int offset );
+
+		/**
+		 * Set {@link #affine} from parameters.
+		 */
+		abstract public void set( final double[] x, final int offset );
+
+		public boolean isLinear(){ return true; }
+
+		final public void apply( final double[] l, final double[] t )
+		{
+			for ( int d = 0, k = 0; d < n; ++d )
+			{
+				double s = 0;
+				for ( int e = 0; e < n; ++e )
+					s += affine[ k++ ] * l[ e ];
+				t[ d ] = s + affine[ k++ ];
+			}
+		}
+	}
+
+	static protected class TranslationParameterization extends Parameterization
+	{
+		protected TranslationParameterization( final double[] affine, final double[] center )
+		{
+			super( affine, center );
+		}
+
+		@Override
+		public int size(){ return n; }
+
+		@Override
+		public void linearize( final double[] l, final double[] j, final double[] c )
+		{
+			Arrays.fill( j, 0, n * n, 0 );
+			for ( int d = 0; d < n; ++d )
+			{
+				j[ d * n + d ] = 1;
+				c[ d ] = l[ d ];
+			}
+		}
+
+		@Override
+		public void get( final double[] x, final int offset )
+		{
+			for ( int d = 0; d < n; ++d )
+				x[ offset + d ] = affine[ d * ( n + 1 ) + n ];
+		}
+
+		@Override
+		public void set( final double[] x, final int offset )
+		{
+			for ( int d = 0; d < n; ++d )
+				affine[ d * ( n + 1 ) + n ] = x[ offset + d ];
+		}
+	}
+
+	/**
+	 * Parameters are the rows of [M | M center + t].
+	 */
+	static protected class AffineParameterization extends Parameterization
+	{
+		protected AffineParameterization( final double[] affine, final double[] center )
+		{
+			super( affine, center );
+		}
+
+		@Override
+		public int size(){ return n * ( n + 1 ); }
+
+		@Override
+		public void linearize( final double[] l, final double[] j, final double[] c )
+		{
+			final int m = size();
+			Arrays.fill( j, 0, n * m, 0 );
+			for ( int d = 0; d < n; ++d )
+			{
+				final int k = d * m + d * ( n + 1 );
+				for ( int e = 0; e < n; ++e )
+					j[ k + e ] = l[ e ] - center[ e ];
+				j[ k + n ] = 1;
+				c[ d ] = 0;
+			}
+		}
+
+		@Override
+		public void get( final double[] x, final int offset )
+		{
+			for ( int d = 0, k = 0; d < n; ++d )
+			{
+				double t = 0;
+				for ( int e = 0; e < n; ++e, ++k )
+				{
+					x[ offset + k ] = affine[ k ];
+					t += affine[ k ] * center[ e ];
+				}
+				x[ offset + k ] = affine[ k ] + t;
+				++k;
+			}
+		}
+
+		@Override
+		public void set( final double[] x, final int offset )
+		{
+			for ( int d = 0, k = 0; d < n; ++d )
+			{
+				double t = 0;
+				for ( int e = 0; e < n; ++e, ++k )
+				{
+					affine[ k ] = x[ offset + k ];
+					t += affine[ k ] * center[ e ];
+				}
+				affine[ k ] = x[ offset + k ] - t;
+				++k;
+			}
+		}
+	}
+
+	/**
+	 * Parameters are a = s cos, b = s sin, and R center + t.
+	 */
+	static protected class SimilarityParameterization2D extends Parameterization
+	{
+		protected SimilarityParameterization2D( final double[] affine, final double[] center )
+		{
+			super( affine, center );
+		}
+
+		@Override
+		public int size(){ return 4; }
+
+		@Override
+		public void linearize( final double[] l, final double[] j, final double[] c )
+		{
+			final double u = l[ 0 ] - center[ 0 ];
+			final double v = l[ 1 ] - center[ 1 ];
+			j[ 0 ] = u; j[ 1 ] = -v; j[ 2 ] = 1; j[ 3 ] = 0;
+			j[ 4 ] = v; j[ 5 ] = u; j[ 6 ] = 0; j[ 7 ] = 1;
+			c[ 0 ] = 0;
+			c[ 1 ] = 0;
+		}
+
+		@Override
+		public void get( final double[] x, final int offset )
+		{
+			final double a = affine[ 0 ];
+			final double b = affine[ 3 ];
+			x[ offset ] = a;
+			x[ offset + 1 ] = b;
+			x[ offset + 2 ] = a * center[ 0 ] - b * center[ 1 ] + affine[ 2 ];
+			x[ offset + 3 ] = b * center[ 0 ] + a * center[ 1 ] + affine[ 5 ];
+		}
+
+		@Override
+		public void set( final double[] x, final int offset )
+		{
+			final double a = x[ offset ];
+			final double b = x[ offset + 1 ];
+			affine[ 0 ] = a;
+			affine[ 1 ] = -b;
+			affine[ 2 ] = x[ offset + 2 ] - a * center[ 0 ] + b * center[ 1 ];
+			affine[ 3 ] = b;
+			affine[ 4 ] = a;
+			affine[ 5 ] = x[ offset + 3 ] - b * center[ 0 ] - a * center[ 1 ];
+		}
+	}
+
+	/**
+	 * Parameters are the change of the rotation angle and R center + t.  The
+	 * rotation is linearized around the current angle.
+	 */
+	static protected class RigidParameterization2D extends Parameterization
+	{
+		protected double cos, sin;
+
+		protected RigidParameterization2D( final double[] affine, final double[] center )
+		{
+			super( affine, center );
+			final double theta = Math.atan2( affine[ 3 ], affine[ 0 ] );
+			cos = Math.cos( theta );
+			sin = Math.sin( theta );
+		}
+
+		@Override
+		public int size(){ return 3; }
+
+		@Override
+		public boolean isLinear(){ return false; }
+
+		@Override
+		public void linearize( final double[] l, final double[] j, final double[] c )
+		{
+			final double u = l[ 0 ] - center[ 0 ];
+			final double v = l[ 1 ] - center[ 1 ];
+			final double ru = cos * u - sin * v;
+			final double rv = sin * u + cos * v;
+			j[ 0 ] = -rv; j[ 1 ] = 1; j[ 2 ] = 0;
+			j[ 3 ] = ru; j[ 4 ] = 0; j[ 5 ] = 1;
+			c[ 0 ] = ru;
+			c[ 1 ] = rv;
+		}
+
+		@Override
+		public void get( final double[] x, final int offset )
+		{
+			x[ offset ] = 0;
+			x[ offset + 1 ] = cos * center[ 0 ] - sin * center[ 1 ] + affine[ 2 ];
+			x[ offset + 2 ] = sin * center[ 0 ] + cos * center[ 1 ] + affine[ 5 ];
+		}
+
+		@Override
+		public void set( final double[] x, final int offset )
+		{
+			final double theta = Math.atan2( sin, cos ) + x[ offset ];
+			cos = Math.cos( theta );
+			sin = Math.sin( theta );
+			affine[ 0 ] = cos;
+			affine[ 1 ] = -sin;
+			affine[ 2 ] = x[ offset + 1 ] - cos * center[ 0 ] + sin * center[ 1 ];
+			affine[ 3 ] = sin;
+			affine[ 4 ] = cos;
+			affine[ 5 ] = x[ offset + 2 ] - sin * center[ 0 ] - cos * center[ 1 ];
+		}
+	}
+
+	/**
+	 * Rank of the 2d model families by inclusion, -1 for unsupported.
+	 */
+	static protected int family2D( final Object model )
+	{
+		final Class< ? > c = model.getClass();
+		if ( c == TranslationModel2D.class ) return 0;
+		else if ( c == RigidModel2D.class ) return 1;
+		else if ( c == SimilarityModel2D.class ) return 2;
+		else if ( c == AffineModel2D.class ) return 3;
+		else return -1;
+	}
+
+	static protected Parameterization parameterize2D( final int family, final double[] affine, final double[] center )
+	{
+		switch ( family )
+		{
+		case 0: return new TranslationParameterization( affine, center );
+		case 1: return new RigidParameterization2D( affine, center );
+		case 2: return new SimilarityParameterization2D( affine, center );
+		default: return new AffineParameterization( affine, center );
+		}
+	}
+
+	/**
+	 * Set a supported model from an n x ( n + 1 ) row-major affine.
+	 */
+	static protected void set( final Object model, final double[] a )
+	{
+		if ( model instanceof TranslationModel2D )
+			( ( TranslationModel2D )model ).set( a[ 2 ], a[ 5 ] );
+		else if ( model instanceof RigidModel2D )
+			( ( RigidModel2D )model ).set( a[ 0 ], a[ 3 ], a[ 2 ], a[ 5 ] );
+		else if ( model instanceof SimilarityModel2D )
+			( ( SimilarityModel2D )model ).set( a[ 0 ], a[ 3 ], a[ 2 ], a[ 5 ] );
+		else if ( model instanceof AffineModel2D )
+			( ( AffineModel2D )model ).set( a[ 0 ], a[ 3 ], a[ 1 ], a[ 4 ], a[ 2 ], a[ 5 ] );
+		else if ( model instanceof TranslationModel3D )
+			( ( TranslationModel3D )model ).set( a[ 3 ], a[ 7 ], a[ 11 ] );
+		else if ( model instanceof AffineModel3D )
+			( ( AffineModel3D )model ).set( a[ 0 ], a[ 1 ], a[ 2 ], a[ 3 ], a[ 4 ], a[ 5 ], a[ 6 ], a[ 7 ], a[ 8 ], a[ 9 ], a[ 10 ], a[ 11 ] );
+	}
+
+	static protected double[] affine2D( final Affine2D< ? > model )
+	{
+		final double[][] m = new double[ 2 ][ 3 ];
+		model.toMatrix( m );
+		return new double[]{ m[ 0 ][ 0 ], m[ 0 ][ 1 ], m[ 0 ][ 2 ], m[ 1 ][ 0 ], m[ 1 ][ 1 ], m[ 1 ][ 2 ] };
+	}
+
+	static protected double[] affine3D( final Affine3D< ? > model )
+	{
+		final double[][] m = new double[ 3 ][ 4 ];
+		model.toMatrix( m );
+		final double[] a = new double[ 12 ];
+		for ( int d = 0; d < 3; ++d )
+			System.arraycopy( m[ d ], 0, a, d * 4, 4 );
+		return a;
+	}
+
+	/**
+	 * A block of unknowns, either the model of a non-fixed {@link Tile} or
+	 * the regularizer of an {@link InterpolatedAffineModel2D}.
+	 */
+	static protected class Variable
+	{
+		final protected Tile< ? > tile;
+		final protected Parameterization parameterization;
+		protected int index;
+		protected int offset;
+
+		/* interpolated models only */
+		protected InterpolatedAffineModel2D< ?, ? > interpolated = null;
+		protected double regularization = 0;
+		protected Variable regularizer = null;
+
+		protected Variable( final Parameterization parameterization )
+		{
+			tile = null;
+			this.parameterization = parameterization;
+		}
+
+		protected Variable( final Tile< ? > tile )
+		{
+			this.tile = tile;
+			final Object model = tile.getModel();
+
+			final int n;
+			if ( model instanceof Affine3D )
+				n = 3;
+			else
+				n = 2;
+
+			final double[] center = new double[ n ];
+			double sumWeights = 0;
+			for ( final PointMatch match : tile.getMatches() )
+			{
+				final double[] l = match.getP1().getL();
+				final double w = match.getWeight();
+				for ( int d = 0; d < n; ++d )
+					center[ d ] += w * l[ d ];
+				sumWeights += w;
+			}
+			if ( sumWeights > 0 )
+				for ( int d = 0; d < n; ++d )
+					center[ d ] /= sumWeights;
+
+			final Class< ? > c = model.getClass();
+			if ( c == TranslationModel3D.class )
+				parameterization = new TranslationParameterization( affine3D( ( TranslationModel3D )model ), center );
+			else if ( c == AffineModel3D.class )
+				parameterization = new AffineParameterization( affine3D( ( AffineModel3D )model ), center );
+			else if ( c == InterpolatedAffineModel2D.class )
+			{
+				interpolated = ( InterpolatedAffineModel2D< ?, ? > )model;
+				final int a = family2D( interpolated.getA() );
+				final int b = family2D( interpolated.getB() );
+				if ( a < 0 || b < 0 || a == 1 || b > a )
+					throw new IllegalArgumentException( "Cannot solve interpolated models of " + interpolated.getA().getClass().getSimpleName() + " and " + interpolated.getB().getClass().getSimpleName() + "." );
+				final double lambda = interpolated.getLambda();
+				if ( lambda < 1.0 )
+				{
+					parameterization = parameterize2D( a, affine2D( interpolated ), center );
+					regularization = lambda / ( 1.0 - lambda );
+					regularizer = new Variable( parameterize2D( b, affine2D( ( Affine2D< ? > )interpolated.getB() ), center ) );
+				}
+				else
+					parameterization = parameterize2D( b, affine2D( interpolated ), center );
+			}
+			else
+			{
+				final int family = family2D( model );
+				if ( family < 0 )
+					throw new IllegalArgumentException( "Cannot solve tiles with " + c.getSimpleName() + "." );
+				parameterization = parameterize2D( family, affine2D( ( Affine2D< ? > )model ), center );
+			}
+		}
+
+		final public int size(){ return parameterization.size(); }
+
+		/**
+		 * Write the parameterization back into the model of the tile.
+		 */
+		protected void writeBack()
+		{
+			final double[] t = parameterization.affine;
+			if ( interpolated == null )
+				set( tile.getModel(), t );
+			else
+			{
+				if ( regularizer != null )
+				{
+					/* ( 1 - lambda ) a + lambda b = t */
+					final double lambda = interpolated.getLambda();
+					final double[] b = regularizer.parameterization.affine;
+					final double[] a = new double[ 6 ];
+					for ( int i = 0; i < 6; ++i )
+						a[ i ] = ( t[ i ] - lambda * b[ i ] ) / ( 1.0 - lambda );
+					set( interpolated.getA(), a );
+					set( interpolated.getB(), b );
+				}
+				else
+				{
+					set( interpolated.getA(), t );
+					set( interpolated.getB(), t );
+				}
+				interpolated.interpolate();
+			}
+		}
+	}
+
+	final protected ArrayList< Variable > variables = new ArrayList< Variable >();
+	final protected HashMap< Point, Variable > owners = new HashMap< Point, Variable >();
+	final protected int numParameters;
+	final protected boolean linear;
+
+	/* relative residual norm to stop conjugate gradients */
+	protected double tolerance = 1e-10;
+	public double getTolerance(){ return tolerance; }
+	public void setTolerance( final double tolerance ){ this.tolerance = tolerance; }
+
+	protected int add( final Variable v, final int offset )
+	{
+		v.index = variables.size();
+		v.offset = offset;
+		variables.add( v );
+		return offset + v.size();
+	}
+
+	/**
+	 * @param tiles
+	 * @param fixedTiles tiles whose models remain unchanged
+	 *
+	 * @throws IllegalArgumentException if a non-fixed tile has an
+	 *   unsupported model
+	 */
+	public TileSolver(
+			final Collection< ? extends Tile< ? > > tiles,
+			final Collection< ? extends Tile< ? > > fixedTiles )
+	{
+		int offset = 0;
+		boolean linear = true;
+		for ( final Tile< ? > tile : tiles )
+		{
+			if ( fixedTiles.contains( tile ) )
+				continue;
+			final Variable v = new Variable( tile );
+			offset = add( v, offset );
+			linear &= v.parameterization.isLinear();
+			if ( v.regularizer != null )
+			{
+				offset = add( v.regularizer, offset );
+				linear &= v.regularizer.parameterization.isLinear();
+			}
+			for ( final PointMatch match : tile.getMatches() )
+				owners.put( match.getP1(), v );
+		}
+		numParameters = offset;
+		this.linear = linear;
+	}
+
+	/**
+	 * @return true if a single {@link #iterate() iteration} solves the
+	 *   problem, i.e. there are no rigid models or regularizers
+	 */
+	public boolean isLinear(){ return linear; }
+
+	static protected double[] block(
+			final ArrayList< TreeMap< Integer, double[] > > rows,
+			final Variable vi,
+			final Variable vj )
+	{
+		final TreeMap< Integer, double[] > row = rows.get( vi.index );
+		double[] block = row.get( vj.index );
+		if ( block == null )
+		{
+			block = new double[ vi.size() * vj.size() ];
+			row.put( vj.index, block );
+		}
+		return block;
+	}
+
+	/**
+	 * Add w J<sub>a</sub><sup>T</sup>J<sub>b</sub> to a block.
+	 */
+	final static protected void addJtJ(
+			final double[] block,
+			final double w,
+			final double[] ja,
+			final int ka,
+			final double[] jb,
+			final int kb,
+			final int n )
+	{
+		for ( int r = 0; r < ka; ++r )
+			for ( int c = 0; c < kb; ++c )
+			{
+				double s = 0;
+				for ( int d = 0; d < n; ++d )
+					s += ja[ d * ka + r ] * jb[ d * kb + c ];
+				block[ r * kb + c ] += w * s;
+			}
+	}
+
+	/**
+	 * Add w J<sup>T</sup>r to a segment of the right hand side.
+	 */
+	final static protected void addJtr(
+			final double[] g,
+			final int offset,
+			final double w,
+			final double[] j,
+			final int k,
+			final double[] r,
+			final int n )
+	{
+		for ( int c = 0; c < k; ++c )
+		{
+			double s = 0;
+			for ( int d = 0; d < n; ++d )
+				s += j[ d * k + c ] * r[ d ];
+			g[ offset + c ] += w * s;
+		}
+	}
+
+	/**
+	 * Add the contribution of w |c<sub>i</sub> + J<sub>i</sub>x<sub>i</sub>
+	 * - c<sub>j</sub> - J<sub>j</sub>x<sub>j</sub>|<sup>2</sup> to the row
+	 * of x<sub>i</sub> of the normal equations only.  The row of
+	 * x<sub>j</sub> receives the same residual through the reverse match of
+	 * the neighbour tile.
+	 */
+	static protected void addRow(
+			final ArrayList< TreeMap< Integer, double[] > > rows,
+			final double[] g,
+			final double w,
+			final Variable vi,
+			final double[] ji,
+			final double[] ci,
+			final Variable vj,
+			final double[] jj,
+			final double[] cj,
+			final double[] r )
+	{
+		final int n = vi.parameterization.n;
+		final int ki = vi.size();
+		final int kj = vj.size();
+		for ( int d = 0; d < n; ++d )
+			r[ d ] = cj[ d ] - ci[ d ];
+		addJtJ( block( rows, vi, vi ), w, ji, ki, ji, ki, n );
+		addJtJ( block( rows, vi, vj ), -w, ji, ki, jj, kj, n );
+		addJtr( g, vi.offset, w, ji, ki, r, n );
+	}
+
+	/**
+	 * Add the contribution of w |c<sub>i</sub> + J<sub>i</sub>x<sub>i</sub>
+	 * - c<sub>j</sub> - J<sub>j</sub>x<sub>j</sub>|<sup>2</sup> to the normal
+	 * equations.
+	 */
+	static protected void add(
+			final ArrayList< TreeMap< Integer, double[] > > rows,
+			final double[] g,
+			final double w,
+			final Variable vi,
+			final double[] ji,
+			final double[] ci,
+			final Variable vj,
+			final double[] jj,
+			final double[] cj,
+			final double[] r )
+	{
+		final int n = vi.parameterization.n;
+		final int ki = vi.size();
+		final int kj = vj.size();
+		for ( int d = 0; d < n; ++d )
+			r[ d ] = cj[ d ] - ci[ d ];
+		addJtJ( block( rows, vi, vi ), w, ji, ki, ji, ki, n );
+		addJtJ( block( rows, vj, vj ), w, jj, kj, jj, kj, n );
+		addJtJ( block( rows, vi, vj ), -w, ji, ki, jj, kj, n );
+		addJtJ( block( rows, vj, vi ), -w, jj, kj, ji, ki, n );
+		addJtr( g, vi.offset, w, ji, ki, r, n );
+		addJtr( g, vj.offset, -w, jj, kj, r, n );
+	}
+
+	/**
+	 * Invert a k x k row-major matrix in place by Gauss-Jordan elimination
+	 * with partial pivoting.
+	 */
+	static protected void invert( final double[] a, final int k )
+	{
+		final int[] perm = new int[ k ];
+		for ( int i = 0; i < k; ++i )
+			perm[ i ] = i;
+
+		for ( int c = 0; c < k; ++c )
+		{
+			int p = c;
+			double max = Math.abs( a[ c * k + c ] );
+			for ( int r = c + 1; r < k; ++r )
+			{
+				final double v = Math.abs( a[ r * k + c ] );
+				if ( v > max )
+				{
+					max = v;
+					p = r;
+				}
+			}
+			if ( p != c )
+			{
+				for ( int i = 0; i < k; ++i )
+				{
+					final double t = a[ c * k + i ];
+					a[ c * k + i ] = a[ p * k + i ];
+					a[ p * k + i ] = t;
+				}
+				final int t = perm[ c ];
+				perm[ c ] = perm[ p ];
+				perm[ p ] = t;
+			}
+
+			final double pivot = a[ c * k + c ];
+			final double s = pivot == 0 ? 0 : 1.0 / pivot;
+			a[ c * k + c ] = 1;
+			for ( int i = 0; i < k; ++i )
+				a[ c * k + i ] *= s;
+
+			for ( int r = 0; r < k; ++r )
+			{
+				if ( r == c ) continue;
+				final double f = a[ r * k + c ];
+				if ( f == 0 ) continue;
+				a[ r * k + c ] = 0;
+				for ( int i = 0; i < k; ++i )
+					a[ r * k + i ] -= f * a[ c * k + i ];
+			}
+		}
+
+		/* undo the row permutation as a column permutation of the inverse */
+		final double[] row = new double[ k ];
+		for ( int r = 0; r < k; ++r )
+		{
+			for ( int i = 0; i < k; ++i )
+				row[ perm[ i ] ] = a[ r * k + i ];
+			System.arraycopy( row, 0, a, r * k, k );
+		}
+	}
+
+	/**
+	 * Symmetric block sparse matrix in compressed row storage.
+	 */
+	static protected class BlockMatrix
+	{
+		final protected ArrayList< Variable > variables;
+
+		final protected int[] rowStart;
+		final protected int[] cols;
+		final protected int[] valueOffsets;
+		final protected double[] values;
+
+		/* inverse diagonal blocks */
+		final protected double[][] preconditioner;
+
+		protected BlockMatrix( final ArrayList< Variable > variables, final ArrayList< TreeMap< Integer, double[] > > rows )
+		{
+			this.variables = variables;
+			final int numVariables = variables.size();
+
+			rowStart = new int[ numVariables + 1 ];
+			int numBlocks = 0, numValues = 0;
+			for ( final TreeMap< Integer, double[] > row : rows )
+			{
+				numBlocks += row.size();
+				for ( final double[] block : row.values() )
+					numValues += block.length;
+			}
+			cols = new int[ numBlocks ];
+			valueOffsets = new int[ numBlocks ];
+			values = new double[ numValues ];
+			preconditioner = new double[ numVariables ][];
+
+			int b = 0, v = 0;
+			for ( int i = 0; i < numVariables; ++i )
+			{
+				rowStart[ i ] = b;
+				for ( final Entry< Integer, double[] > entry : rows.get( i ).entrySet() )
+				{
+					final double[] block = entry.getValue();
+					cols[ b ] = entry.getKey();
+					valueOffsets[ b ] = v;
+					System.arraycopy( block, 0, values, v, block.length );
+					if ( cols[ b ] == i )
+					{
+						preconditioner[ i ] = block.clone();
+						invert( preconditioner[ i ], variables.get( i ).size() );
+					}
+					v += block.length;
+					++b;
+				}
+			}
+			rowStart[ numVariables ] = b;
+		}
+
+		/**
+		 * y = A x
+		 */
+		protected void multiply( final double[] x, final double[] y )
+		{
+			for ( int i = 0; i < preconditioner.length; ++i )
+			{
+				final Variable vi = variables.get( i );
+				final int ki = vi.size();
+				Arrays.fill( y, vi.offset, vi.offset + ki, 0 );
+				for ( int b = rowStart[ i ]; b < rowStart[ i + 1 ]; ++b )
+				{
+					final Variable vj = variables.get( cols[ b ] );
+					final int kj = vj.size();
+					for ( int r = 0, k = valueOffsets[ b ]; r < ki; ++r )
+					{
+						double s = 0;
+						for ( int c = 0; c < kj; ++c, ++k )
+							s += values[ k ] * x[ vj.offset + c ];
+						y[ vi.offset + r ] += s;
+					}
+				}
+			}
+		}
+
+		/**
+		 * z = M<sup>-1</sup> r
+		 */
+		protected void precondition( final double[] r, final double[] z )
+		{
+			for ( int i = 0; i < preconditioner.length; ++i )
+			{
+				final Variable vi = variables.get( i );
+				final int ki = vi.size();
+				final double[] p = preconditioner[ i ];
+				for ( int a = 0, k = 0; a < ki; ++a )
+				{
+					double s = 0;
+					for ( int c = 0; c < ki; ++c, ++k )
+						s += p[ k ] * r[ vi.offset + c ];
+					z[ vi.offset + a ] = s;
+				}
+			}
+		}
+	}
+
+	final static protected double dot( final double[] a, final double[] b )
+	{
+		double s = 0;
+		for ( int i = 0; i < a.length; ++i )
+			s += a[ i ] * b[ i ];
+		return s;
+	}
+
+	/**
+	 * Preconditioned conjugate gradients for A x = b starting at x.
+	 *
+	 * @return number of iterations
+	 */
+	protected int solve( final BlockMatrix a, final double[] b, final double[] x )
+	{
+		final int m = x.length;
+		final double[] r = new double[ m ];
+		final double[] z = new double[ m ];
+		final double[] p = new double[ m ];
+		final double[] q = new double[ m ];
+
+		a.multiply( x, q );
+		for ( int i = 0; i < m; ++i )
+			r[ i ] = b[ i ] - q[ i ];
+
+		final double maxResidual = tolerance * tolerance * Math.max( dot( b, b ), Double.MIN_NORMAL );
+		a.precondition( r, z );
+		System.arraycopy( z, 0, p, 0, m );
+		double rz = dot( r, z );
+
+		int k = 0;
+		while ( k < m && dot( r, r ) > maxResidual )
+		{
+			a.multiply( p, q );
+			final double pq = dot( p, q );
+			if ( pq <= 0 )
+				break;
+			final double alpha = rz / pq;
+			for ( int i = 0; i < m; ++i )
+			{
+				x[ i ] += alpha * p[ i ];
+				r[ i ] -= alpha * q[ i ];
+			}
+			a.precondition( r, z );
+			final double rzNext = dot( r, z );
+			final double beta = rzNext / rz;
+			rz = rzNext;
+			for ( int i = 0; i < m; ++i )
+				p[ i ] = z[ i ] + beta * p[ i ];
+			++k;
+		}
+		return k;
+	}
+
+	/**
+	 * Linearize all models at their current state, solve the normal
+	 * equations and write the solution into the models of the tiles.  The
+	 * second points of all matches must be up to date, i.e. call
+	 * {@link Tile#apply()} on all tiles before.  World coordinates are not
+	 * updated, call {@link Tile#apply()} for that.
+	 *
+	 * @return number of conjugate gradient iterations
+	 */
+	public int iterate()
+	{
+		final int numVariables = variables.size();
+		final ArrayList< TreeMap< Integer, double[] > > rows = new ArrayList< TreeMap< Integer, double[] > >( numVariables );
+		for ( int i = 0; i < numVariables; ++i )
+			rows.add( new TreeMap< Integer, double[] >() );
+
+		final double[] g = new double[ numParameters ];
+		final double[] x = new double[ numParameters ];
+		final double[] ji = new double[ 3 * 12 ];
+		final double[] jj = new double[ 3 * 12 ];
+		final double[] ci = new double[ 3 ];
+		final double[] cj = new double[ 3 ];
+		final double[] r = new double[ 3 ];
+
+		for ( final Variable vi : variables )
+		{
+			vi.parameterization.get( x, vi.offset );
+			if ( vi.tile == null )
+				continue;
+
+			final int ki = vi.size();
+			final int n = vi.parameterization.n;
+			final double[] hii = block( rows, vi, vi );
+			final Variable vb = vi.regularizer;
+
+			for ( final PointMatch match : vi.tile.getMatches() )
+			{
+				final double w = match.getWeight();
+				final double[] l = match.getP1().getL();
+				final Point q = match.getP2();
+				vi.parameterization.linearize( l, ji, ci );
+				final Variable vj = owners.get( q );
+				if ( vj == null )
+				{
+					/* constant target */
+					final double[] target = q.getW();
+					for ( int d = 0; d < n; ++d )
+						r[ d ] = target[ d ] - ci[ d ];
+					addJtJ( hii, w, ji, ki, ji, ki, n );
+					addJtr( g, vi.offset, w, ji, ki, r, n );
+				}
+				else
+				{
+					/* the neighbour adds the reverse match to its own row */
+					vj.parameterization.linearize( q.getL(), jj, cj );
+					addRow( rows, g, w, vi, ji, ci, vj, jj, cj, r );
+				}
+
+				/* regularization towards the regularizer at the same location */
+				if ( vb != null )
+				{
+					vb.parameterization.linearize( l, jj, cj );
+					add( rows, g, vi.regularization * w, vi, ji, ci, vb, jj, cj, r );
+				}
+			}
+		}
+
+		/*
+		 * tiny ridge towards the current state for otherwise singular
+		 * systems, relative to each diagonal entry so that parameters of
+		 * different scale (linear part vs. translation) are damped alike
+		 */
+		for ( final Variable vi : variables )
+		{
+			final int ki = vi.size();
+			final double[] hii = block( rows, vi, vi );
+			for ( int i = 0; i < ki; ++i )
+			{
+				final double hi = hii[ i * ki + i ];
+				final double eps = hi > 0 ? 1e-12 * hi : 1.0;
+				hii[ i * ki + i ] += eps;
+				g[ vi.offset + i ] += eps * x[ vi.offset + i ];
+			}
+		}
+
+		final int k = solve( new BlockMatrix( variables, rows ), g, x );
+
+		for ( final Variable vi : variables )
+			vi.parameterization.set( x, vi.offset );
+		for ( final Variable vi : variables )
+			if ( vi.tile != null )
+				vi.writeBack();
+
+		return k;
+	}
+}
@@ -42,17 +42,16 @@ import ij.IJ;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -74,7 +73,13 @@ public class TileUtil
 	 * @param tiles The {@link Set} of {@link Tile}, where each {@link Tile} contains a {@link Set} of other {@link Tile} to whom it is connected with {@link PointMatch}es.
 	 * @param maxArrayElements The maximum number of tiles to include in any one of the returned arrays.
 	 * @return A {@link Collection} of {@link Tile} arrays, where, within each array, no one {@link Tile} is connected to any of the other {@link Tile} of the array.
+	 *
+	 * @deprecated Use the colour classes of {@link TileGraph#colourClasses()}
+	 *   by which
+	 *   {@link #optimizeConcurrently(ErrorStatistic, double, int, int, double, TileConfiguration, Set, Set, int)}
+	 *   schedules independent tiles.
 	 */
+	@Deprecated
 	static public final Iterable< Tile< ? >[] > generateIndependentGroups(
 			final Set< Tile < ? > > tiles,
 			final int maxArrayElements )
@@ -181,45 +186,42 @@ public class TileUtil
 		try {
 			final long t0 = System.currentTimeMillis();
 
-			final List<Tile<?>> freeTiles = new ArrayList<>(tiles.size() - fixedTiles.size());
-			for (final Tile<?> t : tiles) {
-				if (fixedTiles.contains(t)) continue;
-				freeTiles.add(t);
-			}
-			Collections.shuffle(freeTiles);
+			final TileGraph graph = new TileGraph(tiles, fixedTiles);
+			final int[][] colourClasses = graph.colourClasses();
+			final int nTiles = graph.numTiles();
 
 			final long t1 = System.currentTimeMillis();
-			System.out.println("Shuffling took " + (t1 - t0) + " ms");
+			System.out.println("Building the tile graph and colouring into " + colourClasses.length + " independent sets took " + (t1 - t0) + " ms");
 
 			/* initialize the configuration with the current model of each tile */
-			tc.apply(executor);
+			final AtomicInteger nextApply = new AtomicInteger();
+			runTasks(executor, nThreads, () -> {
+				final double[][] scratch = graph.createScratch();
+				for (int t = nextApply.getAndIncrement(); t < nTiles; t = nextApply.getAndIncrement())
+					graph.apply(t, scratch);
+				return null;
+			});
 
 			final long t2 = System.currentTimeMillis();
 			System.out.println("First apply took " + (t2 - t1) + " ms");
 
 			int i = 0;
 			boolean proceed = i < maxIterations;
-			final Set<Tile<?>> executingTiles = ConcurrentHashMap.newKeySet();
 
 			while (proceed) {
-				Collections.shuffle(freeTiles);
-				final Deque<Tile<?>> pending = new ConcurrentLinkedDeque<>(freeTiles);
-				final List<Future<Void>> tasks = new ArrayList<>(nThreads);
-
-				for (int j = 0; j < nThreads; j++) {
-					final boolean cleanUp = (j == 0);
-					tasks.add(executor.submit(() -> fitAndApplyWorker(pending, executingTiles, damp, cleanUp)));
-				}
-
-				for (final Future<Void> task : tasks) {
-					try {
-						task.get();
-					} catch (final InterruptedException | ExecutionException e) {
-						throw new RuntimeException(e);
-					}
+				/* one Gauss-Seidel sweep, the tiles of each colour class are independent */
+				for (final int[] colourClass : colourClasses) {
+					final AtomicInteger next = new AtomicInteger();
+					runTasks(executor, Math.min(nThreads, colourClass.length), () -> fitAndApplyWorker(graph, colourClass, next, damp));
 				}
 
-				tc.updateErrors(executor);
+				final AtomicInteger nextCost = new AtomicInteger();
+				runTasks(executor, nThreads, () -> {
+					for (int t = nextCost.getAndIncrement(); t < nTiles; t = nextCost.getAndIncrement())
+						graph.updateCost(t);
+					return null;
+				});
+				tc.updateErrors(graph);
 				observer.add(tc.getError());
 
 				if (verbose) {
@@ -243,6 +245,8 @@ public class TileUtil
 				proceed &= ++i < maxIterations;
 			}
 
+			graph.writeBack();
+
 			final long t3 = System.currentTimeMillis();
 
 			System.out.println("Concurrent tile optimization loop took " + (t3 - t2) + " ms, total took " + (t3 - t0) + " ms");
@@ -252,36 +256,38 @@ public class TileUtil
 		}
 	}
 
-	private static Void fitAndApplyWorker(
-			final Deque<Tile<?>> pendingTiles,
-			final Set<Tile<?>> executingTiles,
-			final double damp,
-			final boolean cleanUp
-	) throws NotEnoughDataPointsException, IllDefinedDataPointsException {
-
-		final int n = pendingTiles.size();
-		for (int i = 0; (i < n) || cleanUp; i++){
-			// the polled tile can only be null if the deque is empty, i.e., there is no more work
-			final Tile<?> tile = pendingTiles.pollFirst();
-			if (tile == null)
-				return null;
+	private static void runTasks(
+			final ThreadPoolExecutor executor,
+			final int nTasks,
+			final Callable<Void> task) {
 
-			executingTiles.add(tile);
-			final boolean canBeProcessed = Collections.disjoint(tile.getConnectedTiles(), executingTiles);
+		final List<Future<Void>> futures = new ArrayList<>(nTasks);
+		for (int j = 0; j < nTasks; j++)
+			futures.add(executor.submit(task));
 
-			if (canBeProcessed) {
-				try {
-					tile.fitModel();
-					tile.apply(damp);
-				} finally {
-					// clean up if there was an exception, otherwise this can cause a deadlock
-					executingTiles.remove(tile);
-				}
-			} else {
-				executingTiles.remove(tile);
-				pendingTiles.addLast(tile);
+		for (final Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (final InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
 			}
 		}
+	}
+
+	private static Void fitAndApplyWorker(
+			final TileGraph graph,
+			final int[] independentTiles,
+			final AtomicInteger next,
+			final double damp
+	) throws NotEnoughDataPointsException, IllDefinedDataPointsException {
+
+		final PointMatchBuffer buffer = graph.createBuffer();
+		final double[][] scratch = graph.createScratch();
+		for (int i = next.getAndIncrement(); i < independentTiles.length; i = next.getAndIncrement()) {
+			final int t = independentTiles[i];
+			graph.fitModel(t, buffer);
+			graph.apply(t, damp, scratch);
+		}
 		return null;
 	}
 }
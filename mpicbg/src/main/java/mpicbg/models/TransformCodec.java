@@ -0,0 +1,1167 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary encoding of {@link CoordinateTransform
+ * CoordinateTransforms}.
+ * <p>
+ * A stream starts with the 32 bit magic number {@link #MAGIC} and the 32 bit
+ * format {@link #VERSION} followed by any number of records and a terminating
+ * {@link #END} byte.  A record is a one byte type id followed by the packed
+ * big-endian parameters of the transform.  Models are stored with the
+ * doubles of their forward transformation, the inverse is recomputed on
+ * read.  Lists, {@link MovingLeastSquaresTransform moving least squares
+ * transforms} and {@link TransformMesh TransformMeshes} nest their
+ * components as records.  A {@link SpringMesh} is written as its
+ * {@link TransformMesh} followed by its damping and the {@link Spring
+ * Springs} between its vertices, such that a decoded mesh can be optimized
+ * further.  Springs to vertices of other meshes, passive vertices and the
+ * momentary forces and velocities of the vertices are not written.
+ * Transforms without a dedicated encoding (e.g. the
+ * interpolated models) are embedded as a length prefixed Java
+ * serialization record, so that every {@link CoordinateTransform} can be
+ * written.  {@link TileConfiguration TileConfigurations} are written as a
+ * record of their {@link Tile Tiles} with models, fixed flags and matches
+ * that keeps the {@link Point Points} shared between the matches of
+ * connected tiles shared.
+ * </p>
+ * <p>
+ * All transformation parameters round-trip exactly.  Vertices and triangles
+ * of a mesh are written in a canonical order such that equal meshes are
+ * encoded equally, but the mesh keeps its triangles in an identity hash map
+ * whose iteration order decides which of two triangles maps a location on
+ * their shared edge.  The affines of both agree there only up to rounding,
+ * so such locations may map differently in the last bits after reading
+ * (as after Java serialization).  For the same reason, the summation order
+ * of the local fits of {@link MovingLeastSquaresTransform} and of the
+ * matches of a {@link Tile} is not preserved.  The
+ * {@link Model#getCost() cost} of a model is not stored.
+ * </p>
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class TransformCodec
+{
+	/* "MPCT" */
+	static final public int MAGIC = 0x4d504354;
+	static final public int VERSION = 1;
+
+	static final public byte END = 0;
+	static final public byte IDENTITY = 1;
+	static final public byte TRANSLATION_1D = 2;
+	static final public byte AFFINE_1D = 3;
+	static final public byte TRANSLATION_2D = 4;
+	static final public byte RIGID_2D = 5;
+	static final public byte SIMILARITY_2D = 6;
+	static final public byte AFFINE_2D = 7;
+	static final public byte HOMOGRAPHY_2D = 8;
+	static final public byte TRANSLATION_3D = 9;
+	static final public byte RIGID_3D = 10;
+	static final public byte SIMILARITY_3D = 11;
+	static final public byte AFFINE_3D = 12;
+	static final public byte LIST = 13;
+	static final public byte INVERTIBLE_LIST = 14;
+	static final public byte MOVING_LEAST_SQUARES = 15;
+	static final public byte MOVING_LEAST_SQUARES_2 = 16;
+	static final public byte MESH = 17;
+	static final public byte COORDINATE_TRANSFORM_MESH = 18;
+	static final public byte TILE_CONFIGURATION = 19;
+	static final public byte SPRING_MESH = 20;
+	static final public byte SERIALIZED = 127;
+
+	/**
+	 * Unsynchronized big-endian output buffer.
+	 */
+	static protected class Output
+	{
+		final protected OutputStream out;
+		final protected ByteBuffer buffer = ByteBuffer.allocate( 1 << 16 );
+
+		protected Output( final OutputStream out )
+		{
+			this.out = out;
+		}
+
+		final protected void require( final int n ) throws IOException
+		{
+			if ( buffer.remaining() < n )
+				drain();
+		}
+
+		final protected void drain() throws IOException
+		{
+			out.write( buffer.array(), 0, buffer.position() );
+			buffer.clear();
+		}
+
+		final public void writeByte( final int value ) throws IOException
+		{
+			require( 1 );
+			buffer.put( ( byte )value );
+		}
+
+		final public void writeInt( final int value ) throws IOException
+		{
+			require( 4 );
+			buffer.putInt( value );
+		}
+
+		final public void writeDouble( final double value ) throws IOException
+		{
+			require( 8 );
+			buffer.putDouble( value );
+		}
+
+		final public void writeDoubles( final double... values ) throws IOException
+		{
+			for ( final double value : values )
+				writeDouble( value );
+		}
+
+		final public void writeFloats( final float[] values ) throws IOException
+		{
+			for ( final float value : values )
+			{
+				require( 4 );
+				buffer.putFloat( value );
+			}
+		}
+
+		final public void write( final byte[] bytes ) throws IOException
+		{
+			drain();
+			out.write( bytes );
+		}
+
+		final public void flush() throws IOException
+		{
+			drain();
+			out.flush();
+		}
+
+		final public void close() throws IOException
+		{
+			drain();
+			out.close();
+		}
+	}
+
+	/**
+	 * Unsynchronized big-endian input buffer.
+	 */
+	static protected class Input
+	{
+		final protected InputStream in;
+		final protected ByteBuffer buffer = ByteBuffer.allocate( 1 << 16 );
+
+		protected Input( final InputStream in )
+		{
+			this.in = in;
+			buffer.limit( 0 );
+		}
+
+		final protected void require( final int n ) throws IOException
+		{
+			if ( buffer.remaining() >= n )
+				return;
+			buffer.compact();
+			while ( buffer.position() < n )
+			{
+				final int r = in.read( buffer.array(), buffer.position(), buffer.remaining() );
+				if ( r < 0 )
+					throw new EOFException();
+				buffer.position( buffer.position() + r );
+			}
+			buffer.flip();
+		}
+
+		final public byte readByte() throws IOException
+		{
+			require( 1 );
+			return buffer.get();
+		}
+
+		final public int readUnsignedByte() throws IOException
+		{
+			return readByte() & 0xff;
+		}
+
+		final public int readInt() throws IOException
+		{
+			require( 4 );
+			return buffer.getInt();
+		}
+
+		final public double readDouble() throws IOException
+		{
+			require( 8 );
+			return buffer.getDouble();
+		}
+
+		final public double[] readDoubles( final int n ) throws IOException
+		{
+			final double[] values = new double[ n ];
+			for ( int i = 0; i < n; ++i )
+				values[ i ] = readDouble();
+			return values;
+		}
+
+		final public float[] readFloats( final int n ) throws IOException
+		{
+			final float[] values = new float[ n ];
+			for ( int i = 0; i < n; ++i )
+			{
+				require( 4 );
+				values[ i ] = buffer.getFloat();
+			}
+			return values;
+		}
+
+		final public void readFully( final byte[] bytes ) throws IOException
+		{
+			final int n = Math.min( buffer.remaining(), bytes.length );
+			buffer.get( bytes, 0, n );
+			int off = n;
+			while ( off < bytes.length )
+			{
+				final int r = in.read( bytes, off, bytes.length - off );
+				if ( r < 0 )
+					throw new EOFException();
+				off += r;
+			}
+		}
+
+		final public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes a stream of {@link CoordinateTransform CoordinateTransforms}.
+	 * The header is written on construction, the {@link TransformCodec#END}
+	 * marker on {@link #close()}.
+	 */
+	static public class Writer implements Closeable, Flushable
+	{
+		final protected Output out;
+
+		public Writer( final OutputStream out ) throws IOException
+		{
+			this.out = new Output( out );
+			this.out.writeInt( MAGIC );
+			this.out.writeInt( VERSION );
+		}
+
+		public void write( final CoordinateTransform t ) throws IOException
+		{
+			encode( out, t );
+		}
+
+		public void writeAll( final Iterable< ? extends CoordinateTransform > transforms ) throws IOException
+		{
+			for ( final CoordinateTransform t : transforms )
+				encode( out, t );
+		}
+
+		public void write( final TileConfiguration tc ) throws IOException
+		{
+			encode( out, tc );
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			out.writeByte( END );
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a stream of {@link CoordinateTransform CoordinateTransforms}
+	 * written by {@link Writer}.
+	 */
+	static public class Reader implements Closeable
+	{
+		final protected Input in;
+		final protected int version;
+		public int getVersion(){ return version; }
+
+		protected boolean end = false;
+
+		public Reader( final InputStream in ) throws IOException
+		{
+			this.in = new Input( in );
+			if ( this.in.readInt() != MAGIC )
+				throw new IOException( "Not a transform stream." );
+			version = this.in.readInt();
+			if ( version < 1 || version > VERSION )
+				throw new IOException( "Unsupported transform stream version " + version + "." );
+		}
+
+		/**
+		 * @return the next transform or null if the end of the stream has
+		 *   been reached
+		 */
+		public CoordinateTransform read() throws IOException
+		{
+			if ( end )
+				return null;
+			final CoordinateTransform t = decode( in );
+			end = t == null;
+			return t;
+		}
+
+		/**
+		 * @return the next {@link TileConfiguration} or null if the end of
+		 *   the stream has been reached
+		 * @throws IOException if the next record is not a
+		 *   {@link TileConfiguration}
+		 */
+		public TileConfiguration readTileConfiguration() throws IOException
+		{
+			if ( end )
+				return null;
+			final byte type = in.readByte();
+			if ( type == END )
+			{
+				end = true;
+				return null;
+			}
+			if ( type != TILE_CONFIGURATION )
+				throw new IOException( "Not a tile configuration record " + type + "." );
+			return decodeTileConfiguration( in );
+		}
+
+		/**
+		 * Read all remaining transforms.
+		 */
+		public ArrayList< CoordinateTransform > readAll() throws IOException
+		{
+			final ArrayList< CoordinateTransform > transforms = new ArrayList< CoordinateTransform >();
+			for ( CoordinateTransform t = read(); t != null; t = read() )
+				transforms.add( t );
+			return transforms;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Write a collection of transforms into a file.
+	 *
+	 * @param transforms
+	 * @param file
+	 * @throws IOException
+	 */
+	static public void write( final Collection< ? extends CoordinateTransform > transforms, final File file ) throws IOException
+	{
+		try ( final Writer writer = new Writer( new FileOutputStream( file ) ) )
+		{
+			writer.writeAll( transforms );
+		}
+	}
+
+	/**
+	 * Read all transforms from a file.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static public ArrayList< CoordinateTransform > read( final File file ) throws IOException
+	{
+		try ( final Reader reader = new Reader( new FileInputStream( file ) ) )
+		{
+			return reader.readAll();
+		}
+	}
+
+	/**
+	 * Write a {@link TileConfiguration} into a file.
+	 *
+	 * @param tc
+	 * @param file
+	 * @throws IOException
+	 */
+	static public void write( final TileConfiguration tc, final File file ) throws IOException
+	{
+		try ( final Writer writer = new Writer( new FileOutputStream( file ) ) )
+		{
+			writer.write( tc );
+		}
+	}
+
+	/**
+	 * Read the first {@link TileConfiguration} from a file.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static public TileConfiguration readTileConfiguration( final File file ) throws IOException
+	{
+		try ( final Reader reader = new Reader( new FileInputStream( file ) ) )
+		{
+			return reader.readTileConfiguration();
+		}
+	}
+
+	static protected void writePoint( final Output out, final Point p ) throws IOException
+	{
+		final double[] l = p.getL();
+		final double[] w = p.getW();
+		out.writeByte( l.length );
+		out.writeDoubles( l );
+		out.writeDoubles( w );
+	}
+
+	static protected Point readPoint( final Input in ) throws IOException
+	{
+		final int n = in.readUnsignedByte();
+		final double[] l = in.readDoubles( n );
+		return new Point( l, in.readDoubles( n ) );
+	}
+
+	static protected void writePointMatch( final Output out, final PointMatch m ) throws IOException
+	{
+		writePoint( out, m.getP1() );
+		writePoint( out, m.getP2() );
+		out.writeByte( m.weights.length );
+		out.writeDoubles( m.weights );
+		out.writeDouble( m.strength );
+	}
+
+	static protected PointMatch readPointMatch( final Input in ) throws IOException
+	{
+		final Point p1 = readPoint( in );
+		final Point p2 = readPoint( in );
+		final double[] weights = in.readDoubles( in.readUnsignedByte() );
+		return new PointMatch( p1, p2, weights, in.readDouble() );
+	}
+
+	/**
+	 * Orders mesh vertices by their source and then target coordinates.
+	 */
+	final static protected Comparator< PointMatch > VERTEX_ORDER = new Comparator< PointMatch >()
+	{
+		@Override
+		public int compare( final PointMatch a, final PointMatch b )
+		{
+			int c = compareArrays( a.getP1().getL(), b.getP1().getL() );
+			if ( c == 0 )
+				c = compareArrays( a.getP2().getW(), b.getP2().getW() );
+			if ( c == 0 )
+				c = compareArrays( a.getP1().getW(), b.getP1().getW() );
+			if ( c == 0 )
+				c = compareArrays( a.getP2().getL(), b.getP2().getL() );
+			return c;
+		}
+	};
+
+	/**
+	 * Orders triangles by their vertex ids, the last entry of each array is
+	 * the index of the affine and decides ties.
+	 */
+	final static protected Comparator< int[] > TRIANGLE_ORDER = new Comparator< int[] >()
+	{
+		@Override
+		public int compare( final int[] a, final int[] b )
+		{
+			final int n = Math.min( a.length, b.length ) - 1;
+			for ( int i = 0; i < n; ++i )
+				if ( a[ i ] != b[ i ] )
+					return a[ i ] < b[ i ] ? -1 : 1;
+			if ( a.length != b.length )
+				return a.length < b.length ? -1 : 1;
+			return Integer.compare( a[ n ], b[ n ] );
+		}
+	};
+
+	static protected int compareArrays( final double[] a, final double[] b )
+	{
+		final int n = Math.min( a.length, b.length );
+		for ( int i = 0; i < n; ++i )
+		{
+			final int c = Double.compare( a[ i ], b[ i ] );
+			if ( c != 0 )
+				return c;
+		}
+		return Integer.compare( a.length, b.length );
+	}
+
+	/**
+	 * Write the vertices and triangles with their affines of a
+	 * {@link TransformMesh} in canonical order.
+	 *
+	 * @param out
+	 * @param m
+	 * @return ids of the vertices
+	 * @throws IOException
+	 */
+	static protected HashMap< PointMatch, Integer > encodeMesh( final Output out, final TransformMesh m ) throws IOException
+	{
+		/* vertices in canonical order */
+		final ArrayList< PointMatch > vertices = new ArrayList< PointMatch >( m.va.keySet() );
+		Collections.sort( vertices, VERTEX_ORDER );
+		final HashMap< PointMatch, Integer > ids = new HashMap< PointMatch, Integer >();
+		out.writeInt( vertices.size() );
+		for ( final PointMatch vertex : vertices )
+		{
+			ids.put( vertex, ids.size() );
+			writePointMatch( out, vertex );
+		}
+
+		/* triangles with their affine in the order of their vertex ids */
+		final ArrayList< int[] > triangles = new ArrayList< int[] >( m.av.size() );
+		final ArrayList< AffineModel2D > affines = new ArrayList< AffineModel2D >( m.av.size() );
+		for ( final Map.Entry< AffineModel2D, ArrayList< PointMatch > > e : m.av.entrySet() )
+		{
+			final ArrayList< PointMatch > triangle = e.getValue();
+			final int[] triangleIds = new int[ triangle.size() + 1 ];
+			for ( int i = 0; i < triangle.size(); ++i )
+				triangleIds[ i ] = ids.get( triangle.get( i ) );
+			triangleIds[ triangle.size() ] = affines.size();
+			triangles.add( triangleIds );
+			affines.add( e.getKey() );
+		}
+		Collections.sort( triangles, TRIANGLE_ORDER );
+
+		out.writeInt( triangles.size() );
+		for ( final int[] triangleIds : triangles )
+		{
+			final int n = triangleIds.length - 1;
+			out.writeByte( n );
+			for ( int i = 0; i < n; ++i )
+				out.writeInt( triangleIds[ i ] );
+			final AffineModel2D a = affines.get( triangleIds[ n ] );
+			out.writeDoubles( a.m00, a.m10, a.m01, a.m11, a.m02, a.m12 );
+		}
+		return ids;
+	}
+
+	/**
+	 * Read the vertices and triangles with their affines written by
+	 * {@link #encodeMesh(Output, TransformMesh)} into an empty
+	 * {@link TransformMesh}.
+	 *
+	 * @param in
+	 * @param m
+	 * @return the vertices in the order of their ids
+	 * @throws IOException
+	 */
+	static protected PointMatch[] decodeMesh( final Input in, final TransformMesh m ) throws IOException
+	{
+		final PointMatch[] vertices = new PointMatch[ in.readInt() ];
+		for ( int i = 0; i < vertices.length; ++i )
+		{
+			vertices[ i ] = readPointMatch( in );
+			m.va.put( vertices[ i ], new ArrayList< AffineModel2D >() );
+		}
+
+		final int numTriangles = in.readInt();
+		for ( int i = 0; i < numTriangles; ++i )
+		{
+			final int n = in.readUnsignedByte();
+			final ArrayList< PointMatch > triangle = new ArrayList< PointMatch >( n );
+			for ( int j = 0; j < n; ++j )
+				triangle.add( vertices[ in.readInt() ] );
+			final AffineModel2D a = new AffineModel2D();
+			a.set( in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble() );
+			m.av.put( a, triangle );
+			for ( final PointMatch vertex : triangle )
+				m.va.get( vertex ).add( a );
+		}
+		m.invalidateIndex();
+		return vertices;
+	}
+
+	/**
+	 * Write one {@link TileConfiguration} record.  The
+	 * {@link TileConfiguration#getTiles() tiles}, the
+	 * {@link TileConfiguration#getFixedTiles() fixed tiles} and all tiles
+	 * connected to them are written with a flag byte (1 for tiles of the
+	 * configuration, 2 for fixed tiles), their model, their matches as ids
+	 * into a table of the distinct {@link Point Points} and the ids of their
+	 * connected tiles.
+	 *
+	 * @param out
+	 * @param tc
+	 * @throws IOException
+	 */
+	static protected void encode( final Output out, final TileConfiguration tc ) throws IOException
+	{
+		/* tiles and points with ids */
+		final ArrayList< Tile< ? > > tiles = new ArrayList< Tile< ? > >();
+		final HashMap< Tile< ? >, Integer > tileIds = new HashMap< Tile< ? >, Integer >();
+		final ArrayList< Point > points = new ArrayList< Point >();
+		final HashMap< Point, Integer > pointIds = new HashMap< Point, Integer >();
+		for ( final Tile< ? > tile : tc.getTiles() )
+			addTile( tile, tiles, tileIds );
+		for ( final Tile< ? > tile : tc.getFixedTiles() )
+			addTile( tile, tiles, tileIds );
+		for ( int i = 0; i < tiles.size(); ++i )
+		{
+			final Tile< ? > tile = tiles.get( i );
+			for ( final Tile< ? > connectedTile : tile.getConnectedTiles() )
+				addTile( connectedTile, tiles, tileIds );
+			for ( final PointMatch match : tile.getMatches() )
+			{
+				addPoint( match.getP1(), points, pointIds );
+				addPoint( match.getP2(), points, pointIds );
+			}
+		}
+
+		out.writeByte( TILE_CONFIGURATION );
+		out.writeInt( points.size() );
+		for ( final Point point : points )
+			writePoint( out, point );
+
+		out.writeInt( tiles.size() );
+		for ( final Tile< ? > tile : tiles )
+		{
+			out.writeByte(
+					( tc.getTiles().contains( tile ) ? 1 : 0 ) |
+					( tc.getFixedTiles().contains( tile ) ? 2 : 0 ) );
+			encode( out, tile.getModel() );
+			out.writeInt( tile.getMatches().size() );
+			for ( final PointMatch match : tile.getMatches() )
+			{
+				out.writeInt( pointIds.get( match.getP1() ) );
+				out.writeInt( pointIds.get( match.getP2() ) );
+				out.writeByte( match.weights.length );
+				out.writeDoubles( match.weights );
+				out.writeDouble( match.strength );
+			}
+		}
+
+		/* connections after all tiles such that the reader can resolve them */
+		for ( final Tile< ? > tile : tiles )
+		{
+			out.writeInt( tile.getConnectedTiles().size() );
+			for ( final Tile< ? > connectedTile : tile.getConnectedTiles() )
+				out.writeInt( tileIds.get( connectedTile ) );
+		}
+	}
+
+	static private void addTile( final Tile< ? > tile, final ArrayList< Tile< ? > > tiles, final HashMap< Tile< ? >, Integer > ids )
+	{
+		if ( !ids.containsKey( tile ) )
+		{
+			ids.put( tile, tiles.size() );
+			tiles.add( tile );
+		}
+	}
+
+	static private void addPoint( final Point point, final ArrayList< Point > points, final HashMap< Point, Integer > ids )
+	{
+		if ( !ids.containsKey( point ) )
+		{
+			ids.put( point, points.size() );
+			points.add( point );
+		}
+	}
+
+	/**
+	 * Read a {@link TileConfiguration} record written by
+	 * {@link #encode(Output, TileConfiguration)} after its type byte.
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	static protected TileConfiguration decodeTileConfiguration( final Input in ) throws IOException
+	{
+		final Point[] points = new Point[ in.readInt() ];
+		for ( int i = 0; i < points.length; ++i )
+			points[ i ] = readPoint( in );
+
+		final TileConfiguration tc = new TileConfiguration();
+		final Tile< ? >[] tiles = new Tile< ? >[ in.readInt() ];
+		for ( int i = 0; i < tiles.length; ++i )
+		{
+			final int flags = in.readUnsignedByte();
+			final CoordinateTransform model = decode( in );
+			if ( !( model instanceof Model ) )
+				throw new IOException( "Tile model expected." );
+			final Tile< ? > tile = createTile( ( Model< ? > )model );
+			final int numMatches = in.readInt();
+			for ( int j = 0; j < numMatches; ++j )
+			{
+				final Point p1 = points[ in.readInt() ];
+				final Point p2 = points[ in.readInt() ];
+				final double[] weights = in.readDoubles( in.readUnsignedByte() );
+				tile.addMatch( new PointMatch( p1, p2, weights, in.readDouble() ) );
+			}
+			if ( ( flags & 1 ) != 0 )
+				tc.addTile( tile );
+			if ( ( flags & 2 ) != 0 )
+				tc.fixTile( tile );
+			tiles[ i ] = tile;
+		}
+
+		for ( final Tile< ? > tile : tiles )
+		{
+			final int n = in.readInt();
+			for ( int j = 0; j < n; ++j )
+				tile.addConnectedTile( tiles[ in.readInt() ] );
+		}
+		return tc;
+	}
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	static private Tile< ? > createTile( final Model< ? > model )
+	{
+		return new Tile( model );
+	}
+
+	/**
+	 * Write one record.
+	 *
+	 * @param out
+	 * @param t
+	 * @throws IOException
+	 */
+	static protected void encode( final Output out, final CoordinateTransform t ) throws IOException
+	{
+		final Class< ? > c = t.getClass();
+		if ( c == IdentityModel.class )
+			out.writeByte( IDENTITY );
+		else if ( c == TranslationModel1D.class )
+		{
+			out.writeByte( TRANSLATION_1D );
+			out.writeDouble( ( ( TranslationModel1D )t ).t );
+		}
+		else if ( c == AffineModel1D.class )
+		{
+			final AffineModel1D m = ( AffineModel1D )t;
+			out.writeByte( AFFINE_1D );
+			out.writeDoubles( m.m00, m.m01 );
+		}
+		else if ( c == TranslationModel2D.class )
+		{
+			final TranslationModel2D m = ( TranslationModel2D )t;
+			out.writeByte( TRANSLATION_2D );
+			out.writeDoubles( m.tx, m.ty );
+		}
+		else if ( c == RigidModel2D.class )
+		{
+			final RigidModel2D m = ( RigidModel2D )t;
+			out.writeByte( RIGID_2D );
+			out.writeDoubles( m.cos, m.sin, m.tx, m.ty );
+		}
+		else if ( c == SimilarityModel2D.class )
+		{
+			final SimilarityModel2D m = ( SimilarityModel2D )t;
+			out.writeByte( SIMILARITY_2D );
+			out.writeDoubles( m.scos, m.ssin, m.tx, m.ty );
+		}
+		else if ( c == AffineModel2D.class )
+		{
+			final AffineModel2D m = ( AffineModel2D )t;
+			out.writeByte( AFFINE_2D );
+			out.writeDoubles( m.m00, m.m10, m.m01, m.m11, m.m02, m.m12 );
+		}
+		else if ( c == HomographyModel2D.class )
+		{
+			final HomographyModel2D m = ( HomographyModel2D )t;
+			out.writeByte( HOMOGRAPHY_2D );
+			out.writeDoubles(
+					m.m00, m.m01, m.m02,
+					m.m10, m.m11, m.m12,
+					m.m20, m.m21, m.m22 );
+		}
+		else if ( c == TranslationModel3D.class )
+		{
+			out.writeByte( TRANSLATION_3D );
+			out.writeDoubles( ( ( TranslationModel3D )t ).translation );
+		}
+		else if ( c == RigidModel3D.class )
+		{
+			final RigidModel3D m = ( RigidModel3D )t;
+			out.writeByte( RIGID_3D );
+			out.writeDoubles(
+					m.m00, m.m01, m.m02, m.m03,
+					m.m10, m.m11, m.m12, m.m13,
+					m.m20, m.m21, m.m22, m.m23 );
+		}
+		else if ( c == SimilarityModel3D.class )
+		{
+			final SimilarityModel3D m = ( SimilarityModel3D )t;
+			out.writeByte( SIMILARITY_3D );
+			out.writeDoubles(
+					m.m00, m.m01, m.m02, m.m03,
+					m.m10, m.m11, m.m12, m.m13,
+					m.m20, m.m21, m.m22, m.m23 );
+		}
+		else if ( c == AffineModel3D.class )
+		{
+			final AffineModel3D m = ( AffineModel3D )t;
+			out.writeByte( AFFINE_3D );
+			out.writeDoubles(
+					m.m00, m.m01, m.m02, m.m03,
+					m.m10, m.m11, m.m12, m.m13,
+					m.m20, m.m21, m.m22, m.m23 );
+		}
+		else if ( c == CoordinateTransformList.class )
+		{
+			final CoordinateTransformList< ? > l = ( CoordinateTransformList< ? > )t;
+			out.writeByte( LIST );
+			out.writeInt( l.transforms.size() );
+			for ( final CoordinateTransform ti : l.transforms )
+				encode( out, ti );
+		}
+		else if ( c == InvertibleCoordinateTransformList.class )
+		{
+			final InvertibleCoordinateTransformList< ? > l = ( InvertibleCoordinateTransformList< ? > )t;
+			out.writeByte( INVERTIBLE_LIST );
+			out.writeInt( l.transforms.size() );
+			for ( final CoordinateTransform ti : l.transforms )
+				encode( out, ti );
+		}
+		else if ( c == MovingLeastSquaresTransform.class )
+		{
+			final MovingLeastSquaresTransform m = ( MovingLeastSquaresTransform )t;
+			out.writeByte( MOVING_LEAST_SQUARES );
+			encode( out, m.model );
+			out.writeDouble( m.alpha );
+			out.writeInt( m.matches.size() );
+			for ( final PointMatch match : m.matches )
+				writePointMatch( out, match );
+		}
+		else if ( c == MovingLeastSquaresTransform2.class )
+		{
+			final MovingLeastSquaresTransform2 m = ( MovingLeastSquaresTransform2 )t;
+			out.writeByte( MOVING_LEAST_SQUARES_2 );
+			encode( out, m.model );
+			out.writeDouble( m.alpha );
+			out.writeInt( m.numNeighbors );
+			out.writeDouble( m.supportRadius );
+			if ( m.w == null )
+				out.writeInt( -1 );
+			else
+			{
+				out.writeInt( m.p.length );
+				out.writeInt( m.w.length );
+				for ( final float[] pd : m.p )
+					out.writeFloats( pd );
+				for ( final float[] qd : m.q )
+					out.writeFloats( qd );
+				out.writeFloats( m.w );
+			}
+		}
+		else if ( c == TransformMesh.class || c == CoordinateTransformMesh.class )
+		{
+			final TransformMesh m = ( TransformMesh )t;
+			out.writeByte( c == CoordinateTransformMesh.class ? COORDINATE_TRANSFORM_MESH : MESH );
+			out.writeDoubles( m.width, m.height );
+			encodeMesh( out, m );
+		}
+		else if ( c == SpringMesh.class )
+		{
+			final SpringMesh m = ( SpringMesh )t;
+			out.writeByte( SPRING_MESH );
+			out.writeDoubles( m.width, m.height, m.damp );
+			final HashMap< PointMatch, Integer > ids = encodeMesh( out, m );
+
+			/* springs between vertices of the mesh, each once, in the order of their vertex ids */
+			final ArrayList< int[] > pairs = new ArrayList< int[] >();
+			final ArrayList< Spring > springs = new ArrayList< Spring >();
+			for ( final Vertex vertex : m.vertices )
+			{
+				final int i = ids.get( m.vp.get( vertex ) );
+				for ( final Vertex other : vertex.getConnectedVertices() )
+				{
+					final PointMatch o = m.vp.get( other );
+					if ( o == null )
+						continue;
+					final int j = ids.get( o );
+					if ( i < j )
+					{
+						pairs.add( new int[]{ i, j, springs.size() } );
+						springs.add( vertex.getSpring( other ) );
+					}
+				}
+			}
+			Collections.sort( pairs, TRIANGLE_ORDER );
+
+			out.writeInt( pairs.size() );
+			for ( final int[] pair : pairs )
+			{
+				final Spring spring = springs.get( pair[ 2 ] );
+				out.writeInt( pair[ 0 ] );
+				out.writeInt( pair[ 1 ] );
+				out.writeDoubles( spring.length, spring.maxStretch );
+				if ( spring.weights == null )
+					out.writeByte( 0 );
+				else
+				{
+					out.writeByte( spring.weights.length );
+					out.writeDoubles( spring.weights );
+				}
+			}
+		}
+		else
+		{
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try ( final ObjectOutputStream oos = new ObjectOutputStream( bytes ) )
+			{
+				oos.writeObject( t );
+			}
+			out.writeByte( SERIALIZED );
+			out.writeInt( bytes.size() );
+			out.write( bytes.toByteArray() );
+		}
+	}
+
+	/**
+	 * Read one record.
+	 *
+	 * @param in
+	 * @return the transform or null if the record is the {@link #END}
+	 *   marker
+	 * @throws IOException
+	 */
+	static protected CoordinateTransform decode( final Input in ) throws IOException
+	{
+		final byte type = in.readByte();
+		switch ( type )
+		{
+		case END:
+			return null;
+		case IDENTITY:
+			return new IdentityModel();
+		case TRANSLATION_1D:
+		{
+			final TranslationModel1D m = new TranslationModel1D();
+			m.set( in.readDouble() );
+			return m;
+		}
+		case AFFINE_1D:
+		{
+			final AffineModel1D m = new AffineModel1D();
+			m.set( in.readDouble(), in.readDouble() );
+			return m;
+		}
+		case TRANSLATION_2D:
+		{
+			final TranslationModel2D m = new TranslationModel2D();
+			m.set( in.readDouble(), in.readDouble() );
+			return m;
+		}
+		case RIGID_2D:
+		{
+			final RigidModel2D m = new RigidModel2D();
+			m.set( in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble() );
+			return m;
+		}
+		case SIMILARITY_2D:
+		{
+			final SimilarityModel2D m = new SimilarityModel2D();
+			m.set( in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble() );
+			return m;
+		}
+		case AFFINE_2D:
+		{
+			final AffineModel2D m = new AffineModel2D();
+			m.set( in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble() );
+			return m;
+		}
+		case HOMOGRAPHY_2D:
+		{
+			final HomographyModel2D m = new HomographyModel2D();
+			m.set(
+					in.readDouble(), in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble(), in.readDouble() );
+			return m;
+		}
+		case TRANSLATION_3D:
+		{
+			final TranslationModel3D m = new TranslationModel3D();
+			m.set( in.readDouble(), in.readDouble(), in.readDouble() );
+			return m;
+		}
+		case RIGID_3D:
+		{
+			final RigidModel3D m = new RigidModel3D();
+			m.m00 = in.readDouble(); m.m01 = in.readDouble(); m.m02 = in.readDouble(); m.m03 = in.readDouble();
+			m.m10 = in.readDouble(); m.m11 = in.readDouble(); m.m12 = in.readDouble(); m.m13 = in.readDouble();
+			m.m20 = in.readDouble(); m.m21 = in.readDouble(); m.m22 = in.readDouble(); m.m23 = in.readDouble();
+			m.invert();
+			return m;
+		}
+		case SIMILARITY_3D:
+		{
+			final SimilarityModel3D m = new SimilarityModel3D();
+			m.m00 = in.readDouble(); m.m01 = in.readDouble(); m.m02 = in.readDouble(); m.m03 = in.readDouble();
+			m.m10 = in.readDouble(); m.m11 = in.readDouble(); m.m12 = in.readDouble(); m.m13 = in.readDouble();
+			m.m20 = in.readDouble(); m.m21 = in.readDouble(); m.m22 = in.readDouble(); m.m23 = in.readDouble();
+			m.invert();
+			return m;
+		}
+		case AFFINE_3D:
+		{
+			final AffineModel3D m = new AffineModel3D();
+			m.set(
+					in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(),
+					in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble() );
+			return m;
+		}
+		case LIST:
+		{
+			final CoordinateTransformList< CoordinateTransform > l = new CoordinateTransformList< CoordinateTransform >();
+			final int n = in.readInt();
+			for ( int i = 0; i < n; ++i )
+				l.add( decode( in ) );
+			return l;
+		}
+		case INVERTIBLE_LIST:
+		{
+			final InvertibleCoordinateTransformList< InvertibleCoordinateTransform > l = new InvertibleCoordinateTransformList< InvertibleCoordinateTransform >();
+			final int n = in.readInt();
+			for ( int i = 0; i < n; ++i )
+				l.add( ( InvertibleCoordinateTransform )decode( in ) );
+			return l;
+		}
+		case MOVING_LEAST_SQUARES:
+		{
+			final MovingLeastSquaresTransform m = new MovingLeastSquaresTransform();
+			m.setModel( ( Model< ? > )decode( in ) );
+			m.setAlpha( in.readDouble() );
+			final int n = in.readInt();
+			for ( int i = 0; i < n; ++i )
+				m.matches.add( readPointMatch( in ) );
+			return m;
+		}
+		case MOVING_LEAST_SQUARES_2:
+		{
+			final MovingLeastSquaresTransform2 m = new MovingLeastSquaresTransform2();
+			m.setModel( ( Model< ? > )decode( in ) );
+			m.setAlpha( in.readDouble() );
+			m.setNumNeighbors( in.readInt() );
+			m.setSupportRadius( in.readDouble() );
+			final int n = in.readInt();
+			if ( n >= 0 )
+			{
+				final int size = in.readInt();
+				m.p = new float[ n ][];
+				m.q = new float[ n ][];
+				for ( int d = 0; d < n; ++d )
+					m.p[ d ] = in.readFloats( size );
+				for ( int d = 0; d < n; ++d )
+					m.q[ d ] = in.readFloats( size );
+				m.w = in.readFloats( size );
+			}
+			return m;
+		}
+		case MESH:
+		case COORDINATE_TRANSFORM_MESH:
+		{
+			final double width = in.readDouble();
+			final double height = in.readDouble();
+			final TransformMesh m = type == MESH ?
+					new TransformMesh( width, height ) :
+					new CoordinateTransformMesh( width, height );
+			decodeMesh( in, m );
+			return m;
+		}
+		case SPRING_MESH:
+		{
+			final double width = in.readDouble();
+			final double height = in.readDouble();
+			final SpringMesh m = new SpringMesh( width, height, in.readDouble() );
+			final PointMatch[] vertices = decodeMesh( in, m );
+
+			final Vertex[] springVertices = new Vertex[ vertices.length ];
+			for ( int i = 0; i < vertices.length; ++i )
+			{
+				springVertices[ i ] = new Vertex( vertices[ i ].getP2() );
+				m.vp.put( springVertices[ i ], vertices[ i ] );
+				m.pv.put( vertices[ i ], springVertices[ i ] );
+				m.vertices.add( springVertices[ i ] );
+			}
+
+			final int numSprings = in.readInt();
+			for ( int i = 0; i < numSprings; ++i )
+			{
+				final Vertex v1 = springVertices[ in.readInt() ];
+				final Vertex v2 = springVertices[ in.readInt() ];
+				final double length = in.readDouble();
+				final double maxStretch = in.readDouble();
+				v1.addSpring( v2, new Spring( length, in.readDoubles( in.readUnsignedByte() ), maxStretch ) );
+			}
+			return m;
+		}
+		case TILE_CONFIGURATION:
+			throw new IOException( "Tile configuration record, use Reader.readTileConfiguration()." );
+		case SERIALIZED:
+		{
+			final byte[] bytes = new byte[ in.readInt() ];
+			in.readFully( bytes );
+			try ( final ObjectInputStream ois = new ObjectInputStream( new ByteArrayInputStream( bytes ) ) )
+			{
+				return ( CoordinateTransform )ois.readObject();
+			}
+			catch ( final ClassNotFoundException e )
+			{
+				throw new IOException( e );
+			}
+		}
+		default:
+			throw new IOException( "Unknown transform type " + type + "." );
+		}
+	}
+}
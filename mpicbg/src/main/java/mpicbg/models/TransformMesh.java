@@ -97,6 +97,136 @@ public class TransformMesh implements InvertibleCoordinateTransform
 	final protected HashMap< PointMatch, ArrayList< AffineModel2D > > va = new HashMap< PointMatch, ArrayList< AffineModel2D > >();
 	public HashMap< PointMatch, ArrayList< AffineModel2D > > getVA(){ return va; };
 
+	/*
+	 * Spatial indices over the source and target triangles, built on first
+	 * use and invalidated by updateAffine(s) and addTriangle.
+	 */
+	transient private volatile TriangleIndex sourceIndex = null;
+	transient private volatile TriangleIndex targetIndex = null;
+
+	/**
+	 * Uniform grid over the bounding boxes of the source or target triangles
+	 * of a {@link TransformMesh}.  The triangles are numbered in the
+	 * iteration order of {@link TransformMesh#av} and each cell lists the
+	 * triangles whose bounding box overlaps it in ascending order, so the
+	 * first triangle of a cell that contains a location is the same that a
+	 * linear search over {@link TransformMesh#av} would find.
+	 */
+	static protected class TriangleIndex
+	{
+		final protected ArrayList< AffineModel2D > affines;
+		final protected ArrayList< ArrayList< PointMatch > > triangles;
+
+		final protected double minX, minY, maxX, maxY, cellScaleX, cellScaleY;
+		final protected int numX, numY;
+
+		/* triangles of cell c are cellTriangles[ cellStart[ c ], cellStart[ c + 1 ] ) */
+		final protected int[] cellStart;
+		final protected int[] cellTriangles;
+
+		/**
+		 * @param av
+		 * @param target index the target triangles {@code p2.w} if true,
+		 *   the source triangles {@code p1.l} otherwise
+		 */
+		protected TriangleIndex( final HashMap< AffineModel2D, ArrayList< PointMatch > > av, final boolean target )
+		{
+			final int n = av.size();
+			affines = new ArrayList< AffineModel2D >( n );
+			triangles = new ArrayList< ArrayList< PointMatch > >( n );
+			final double[] bounds = new double[ 4 * n ];
+
+			double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+			for ( final Entry< AffineModel2D, ArrayList< PointMatch > > e : av.entrySet() )
+			{
+				final int t = affines.size();
+				affines.add( e.getKey() );
+				triangles.add( e.getValue() );
+
+				double tx0 = Double.MAX_VALUE, ty0 = Double.MAX_VALUE, tx1 = -Double.MAX_VALUE, ty1 = -Double.MAX_VALUE;
+				for ( final PointMatch pm : e.getValue() )
+				{
+					final double[] l = target ? pm.getP2().getW() : pm.getP1().getL();
+					tx0 = Math.min( tx0, l[ 0 ] );
+					ty0 = Math.min( ty0, l[ 1 ] );
+					tx1 = Math.max( tx1, l[ 0 ] );
+					ty1 = Math.max( ty1, l[ 1 ] );
+				}
+				bounds[ 4 * t ] = tx0;
+				bounds[ 4 * t + 1 ] = ty0;
+				bounds[ 4 * t + 2 ] = tx1;
+				bounds[ 4 * t + 3 ] = ty1;
+
+				x0 = Math.min( x0, tx0 );
+				y0 = Math.min( y0, ty0 );
+				x1 = Math.max( x1, tx1 );
+				y1 = Math.max( y1, ty1 );
+			}
+			minX = x0;
+			minY = y0;
+			maxX = x1;
+			maxY = y1;
+
+			/* about one cell per triangle */
+			final double w = Math.max( maxX - minX, Double.MIN_NORMAL );
+			final double h = Math.max( maxY - minY, Double.MIN_NORMAL );
+			final double cellSize = Math.sqrt( w * h / Math.max( 1, n ) );
+			numX = n == 0 ? 1 : ( int )Math.max( 1, Math.min( n, Math.ceil( w / cellSize ) ) );
+			numY = n == 0 ? 1 : ( int )Math.max( 1, Math.min( n, Math.ceil( h / cellSize ) ) );
+			cellScaleX = numX / w;
+			cellScaleY = numY / h;
+
+			cellStart = new int[ numX * numY + 1 ];
+			for ( int t = 0; t < n; ++t )
+			{
+				final int cx0 = cellX( bounds[ 4 * t ] ), cy0 = cellY( bounds[ 4 * t + 1 ] );
+				final int cx1 = cellX( bounds[ 4 * t + 2 ] ), cy1 = cellY( bounds[ 4 * t + 3 ] );
+				for ( int cy = cy0; cy <= cy1; ++cy )
+					for ( int cx = cx0; cx <= cx1; ++cx )
+						++cellStart[ cy * numX + cx + 1 ];
+			}
+			for ( int c = 0; c < numX * numY; ++c )
+				cellStart[ c + 1 ] += cellStart[ c ];
+
+			cellTriangles = new int[ cellStart[ numX * numY ] ];
+			final int[] fill = new int[ numX * numY ];
+			for ( int t = 0; t < n; ++t )
+			{
+				final int cx0 = cellX( bounds[ 4 * t ] ), cy0 = cellY( bounds[ 4 * t + 1 ] );
+				final int cx1 = cellX( bounds[ 4 * t + 2 ] ), cy1 = cellY( bounds[ 4 * t + 3 ] );
+				for ( int cy = cy0; cy <= cy1; ++cy )
+					for ( int cx = cx0; cx <= cx1; ++cx )
+					{
+						final int c = cy * numX + cx;
+						cellTriangles[ cellStart[ c ] + fill[ c ]++ ] = t;
+					}
+			}
+		}
+
+		final protected int cellX( final double x )
+		{
+			return Math.max( 0, Math.min( numX - 1, ( int )( ( x - minX ) * cellScaleX ) ) );
+		}
+
+		final protected int cellY( final double y )
+		{
+			return Math.max( 0, Math.min( numY - 1, ( int )( ( y - minY ) * cellScaleY ) ) );
+		}
+
+		/**
+		 * @return the cell containing location, -1 if location is outside
+		 *   of the grid or NaN
+		 */
+		final protected int cell( final double[] location )
+		{
+			final double x = location[ 0 ];
+			final double y = location[ 1 ];
+			if ( !( x >= minX && x <= maxX && y >= minY && y <= maxY ) )
+				return -1;
+			return cellY( y ) * numX + cellX( x );
+		}
+	}
+
 	final static protected PointFactory< Point > defaultPointFactory = new PointFactory< Point >()
 	{
 		private static final long serialVersionUID = -8338916724246569904L;
@@ -277,6 +407,18 @@ public class TransformMesh implements InvertibleCoordinateTransform
 		}
 	}
 
+	/**
+	 * Create an empty mesh without vertices and triangles.
+	 *
+	 * @param width
+	 * @param height
+	 */
+	protected TransformMesh( final double width, final double height )
+	{
+		this.width = width;
+		this.height = height;
+	}
+
 	public TransformMesh(
 			final int numX,
 			final int numY,
@@ -329,6 +471,7 @@ public class TransformMesh implements InvertibleCoordinateTransform
 		catch ( final NotEnoughDataPointsException e ) { e.printStackTrace(); }
 		catch ( final IllDefinedDataPointsException e ) { e.printStackTrace(); }
 		av.put( m, t );
+		invalidateIndex();
 
 		for ( final PointMatch pm : t )
 		{
@@ -461,6 +604,7 @@ public class TransformMesh implements InvertibleCoordinateTransform
 	 */
 	public void updateAffine( final PointMatch p )
 	{
+		invalidateIndex();
 		for ( final AffineModel2D ai : va.get( p ) )
 		{
 			try
@@ -478,6 +622,7 @@ public class TransformMesh implements InvertibleCoordinateTransform
 	 */
 	public void updateAffines()
 	{
+		invalidateIndex();
 		final Set< AffineModel2D > s = av.keySet();
 		for ( final AffineModel2D ai : s )
 		{
@@ -490,6 +635,48 @@ public class TransformMesh implements InvertibleCoordinateTransform
 		}
 	}
 
+	/**
+	 * Drop the spatial indices over the source and target triangles such
+	 * that they are rebuilt on next use.  Call this (or
+	 * {@link #updateAffines()}) after changing the vertices or triangles of
+	 * the mesh from outside.
+	 */
+	public void invalidateIndex()
+	{
+		sourceIndex = null;
+		targetIndex = null;
+	}
+
+	protected TriangleIndex sourceIndex()
+	{
+		TriangleIndex index = sourceIndex;
+		if ( index == null )
+		{
+			synchronized ( this )
+			{
+				index = sourceIndex;
+				if ( index == null )
+					sourceIndex = index = new TriangleIndex( av, false );
+			}
+		}
+		return index;
+	}
+
+	protected TriangleIndex targetIndex()
+	{
+		TriangleIndex index = targetIndex;
+		if ( index == null )
+		{
+			synchronized ( this )
+			{
+				index = targetIndex;
+				if ( index == null )
+					targetIndex = index = new TriangleIndex( av, true );
+			}
+		}
+		return index;
+	}
+
 	/**
 	 * Find the closest {@linkplain Point source point} to a given coordinate.
 	 * Each vertex being defined by a {@link PointMatch}, the source
@@ -628,13 +815,17 @@ public class TransformMesh implements InvertibleCoordinateTransform
 	{
 		assert location.length == 2 : "2d transform meshs can be applied to 2d points only.";
 
-		final Set< AffineModel2D > s = av.keySet();
-		for ( final AffineModel2D ai : s )
+		final TriangleIndex index = sourceIndex();
+		final int c = index.cell( location );
+		if ( c < 0 )
+			return;
+
+		for ( int k = index.cellStart[ c ]; k < index.cellStart[ c + 1 ]; ++k )
 		{
-			final ArrayList< PointMatch > pm = av.get( ai );
-			if ( isInSourcePolygon( pm, location ) )
+			final int t = index.cellTriangles[ k ];
+			if ( isInSourcePolygon( index.triangles.get( t ), location ) )
 			{
-				ai.applyInPlace( location );
+				index.affines.get( t ).applyInPlace( location );
 				return;
 			}
 		}
@@ -657,14 +848,18 @@ public class TransformMesh implements InvertibleCoordinateTransform
 	{
 		assert location.length == 2 : "2d transform meshs can be applied to 2d points only.";
 
-		final Set< AffineModel2D > s = av.keySet();
-		for ( final AffineModel2D ai : s )
+		final TriangleIndex index = targetIndex();
+		final int c = index.cell( location );
+		if ( c >= 0 )
 		{
-			final ArrayList< PointMatch > pm = av.get( ai );
-			if ( isInConvexTargetPolygon( pm, location ) )
+			for ( int k = index.cellStart[ c ]; k < index.cellStart[ c + 1 ]; ++k )
 			{
-				ai.applyInverseInPlace( location );
-				return;
+				final int t = index.cellTriangles[ k ];
+				if ( isInConvexTargetPolygon( index.triangles.get( t ), location ) )
+				{
+					index.affines.get( t ).applyInverseInPlace( location );
+					return;
+				}
 			}
 		}
 		throw new NoninvertibleModelException( "Noninvertible location ( " + location[ 0 ] + ", " + location[ 1 ] + " )" );
@@ -38,7 +38,10 @@
 package mpicbg.models;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -50,41 +53,75 @@ public class TransformMeshMap2D extends CoordinateTransformMap2D
 
 	public TransformMeshMap2D( final TransformMesh t, final int width, final int height )
 	{
-		super( new float[ height ][ width * 2 ] );
-		final double[] min = new double[ 2 ];
-		final double[] max = new double[ 2 ];
-		final double[] l = new double[ 2 ];
+		this( t, width, height, null );
+	}
 
-		for ( int y = 0; y < map.length; ++y )
-			for ( int x = 0; x < map[ y ].length; ++x )
-				map[ y ][ x ] = Float.NaN;
+	/**
+	 * Scan-convert all triangles of a {@link TransformMesh} into a LUT of
+	 * size width &times; height.  Pixels that are not covered by any triangle
+	 * are set to NaN.  Bands of rows are filled in parallel by the executor;
+	 * each band visits the triangles in the same order as the sequential
+	 * version, so the result does not depend on the number of threads.
+	 *
+	 * @param t
+	 * @param width
+	 * @param height
+	 * @param executor if null, the map is filled by the calling thread
+	 */
+	public TransformMeshMap2D(
+			final TransformMesh t,
+			final int width,
+			final int height,
+			final ExecutorService executor )
+	{
+		super( new float[ height ][ width * 2 ] );
 
-		final Set< AffineModel2D > s = t.getAV().keySet();
-		for ( final AffineModel2D ai : s )
+		final Set< Map.Entry< AffineModel2D, ArrayList< PointMatch > > > av = t.getAV().entrySet();
+		final int numTriangles = av.size();
+		final AffineModel2D[] affines = new AffineModel2D[ numTriangles ];
+		final ArrayList< ArrayList< PointMatch > > triangles = new ArrayList< ArrayList< PointMatch > >( numTriangles );
+		final double[][] min = new double[ numTriangles ][ 2 ];
+		final double[][] max = new double[ numTriangles ][ 2 ];
+		int k = 0;
+		for ( final Map.Entry< AffineModel2D, ArrayList< PointMatch > > e : av )
 		{
-			final ArrayList< PointMatch > pm = t.getAV().get( ai );
-			calculateBoundingBoxInverse( pm, min, max );
+			affines[ k ] = e.getKey();
+			triangles.add( e.getValue() );
+			calculateBoundingBoxInverse( e.getValue(), min[ k ], max[ k ] );
+			++k;
+		}
+
+		fillBands(
+				height,
+				( minY, maxY ) -> {
+					final double[] l = new double[ 2 ];
 
-			for ( int y = ( int )min[ 1 ]; y <= max[ 1 ]; ++y )
-			{
-				if ( y >= 0 && y < map.length )
-					for ( int x = ( int )min[ 0 ]; x <= max[ 0 ]; ++x )
+					for ( int y = minY; y < maxY; ++y )
+						Arrays.fill( map[ y ], Float.NaN );
+
+					for ( int i = 0; i < numTriangles; ++i )
 					{
-						final int xi = 2 * x;
-						if ( x >= 0 && xi < map[ y ].length )
+						final AffineModel2D ai = affines[ i ];
+						final ArrayList< PointMatch > pm = triangles.get( i );
+						for ( int y = Math.max( minY, ( int )min[ i ][ 1 ] ); y <= max[ i ][ 1 ] && y < maxY; ++y )
 						{
-							l[ 0 ] = x;
-							l[ 1 ] = y;
-							if ( TransformMesh.isInSourcePolygon( pm, l ) )
+							final float[] row = map[ y ];
+							for ( int x = Math.max( 0, ( int )min[ i ][ 0 ] ); x <= max[ i ][ 0 ] && x < width; ++x )
 							{
-								ai.applyInPlace( l );
-								map[ y ][ xi ] = ( float )l[ 0 ];
-								map[ y ][ xi + 1 ] = ( float )l[ 1 ];
+								l[ 0 ] = x;
+								l[ 1 ] = y;
+								if ( TransformMesh.isInSourcePolygon( pm, l ) )
+								{
+									ai.applyInPlace( l );
+									final int xi = 2 * x;
+									row[ xi ] = ( float )l[ 0 ];
+									row[ xi + 1 ] = ( float )l[ 1 ];
+								}
 							}
 						}
 					}
-			}
-		}
+				},
+				executor );
 	}
 
 	/**
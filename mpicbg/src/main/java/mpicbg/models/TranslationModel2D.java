@@ -45,7 +45,7 @@ import java.util.Collection;
  *
  * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
  */
-public class TranslationModel2D extends AbstractAffineModel2D< TranslationModel2D >
+public class TranslationModel2D extends AbstractAffineModel2D< TranslationModel2D > implements MomentsFittable2D
 {
 	private static final long serialVersionUID = -6412303652902075611L;
 
@@ -81,6 +81,28 @@ public class TranslationModel2D extends AbstractAffineModel2D< TranslationModel2
 		l[ 1 ] += ty;
 	}
 
+	@Override
+	final public void applyInPlace( final double[] xs, final double[] ys, final int offset, final int length )
+	{
+		for ( int i = offset; i < offset + length; ++i )
+		{
+			xs[ i ] += tx;
+			ys[ i ] += ty;
+		}
+	}
+
+	@Override
+	final public void applyInPlaceInterleaved( final double[] locations, final int n, final int offset, final int length )
+	{
+		assert n >= 2 : "2d translation transformations can be applied to 2d points only.";
+
+		for ( int i = offset * n; i < ( offset + length ) * n; i += n )
+		{
+			locations[ i ] += tx;
+			locations[ i + 1 ] += ty;
+		}
+	}
+
 	@Override
 	final public double[] applyInverse( final double[] l )
 	{
@@ -235,6 +257,65 @@ public class TranslationModel2D extends AbstractAffineModel2D< TranslationModel2
 		ty = qcy - pcy;
 	}
 
+	/**
+	 * Fit to the matches of a {@link PointMatchBuffer} without allocating
+	 * memory.  Same as {@link #fit(Collection)}.
+	 */
+	@Override
+	final public void fit( final PointMatchBuffer matches )
+		throws NotEnoughDataPointsException
+	{
+		final int l = matches.size();
+		if ( l < MIN_NUM_MATCHES )
+			throw new NotEnoughDataPointsException( l + " data points are not enough to estimate a 2d translation model, at least " + MIN_NUM_MATCHES + " data points required." );
+
+		final double[] pX = matches.getP()[ 0 ];
+		final double[] pY = matches.getP()[ 1 ];
+		final double[] qX = matches.getQ()[ 0 ];
+		final double[] qY = matches.getQ()[ 1 ];
+		final double[] ww = matches.getW();
+
+		// center of mass:
+		double pcx = 0, pcy = 0;
+		double qcx = 0, qcy = 0;
+
+		double ws = 0.0f;
+
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+
+			final double w = ww[ i ];
+			ws += w;
+
+			pcx += w * pX[ i ];
+			pcy += w * pY[ i ];
+			qcx += w * qX[ i ];
+			qcy += w * qY[ i ];
+		}
+		pcx /= ws;
+		pcy /= ws;
+		qcx /= ws;
+		qcy /= ws;
+
+		tx = qcx - pcx;
+		ty = qcy - pcy;
+	}
+
+	/**
+	 * Fit to {@link PointMatchMoments2D} in constant time.
+	 */
+	@Override
+	final public void fit( final PointMatchMoments2D moments )
+		throws NotEnoughDataPointsException
+	{
+		if ( moments.size() < MIN_NUM_MATCHES )
+			throw new NotEnoughDataPointsException( moments.size() + " data points are not enough to estimate a 2d translation model, at least " + MIN_NUM_MATCHES + " data points required." );
+
+		tx = moments.qcx() - moments.pcx();
+		ty = moments.qcy() - moments.pcy();
+	}
+
 	@Override
 	public TranslationModel2D copy()
 	{
@@ -142,6 +142,58 @@ public class TranslationModel3D extends AbstractAffineModel3D< TranslationModel3
 		translation[ 2 ] = qcz - pcz;
 	}
 
+	/**
+	 * Fit to the matches of a {@link PointMatchBuffer} without allocating
+	 * memory.  Same as {@link #fit(Collection)}.
+	 */
+	@Override
+	final public void fit( final PointMatchBuffer matches )
+		throws NotEnoughDataPointsException
+	{
+		final int l = matches.size();
+		if ( l < MIN_NUM_MATCHES )
+			throw new NotEnoughDataPointsException( l + " data points are not enough to estimate a 3d translation model, at least " + MIN_NUM_MATCHES + " data points required." );
+
+		final double[] pX = matches.getP()[ 0 ];
+		final double[] pY = matches.getP()[ 1 ];
+		final double[] pZ = matches.getP()[ 2 ];
+		final double[] qX = matches.getQ()[ 0 ];
+		final double[] qY = matches.getQ()[ 1 ];
+		final double[] qZ = matches.getQ()[ 2 ];
+		final double[] ww = matches.getW();
+
+		// center of mass:
+		double pcx = 0, pcy = 0, pcz = 0;
+		double qcx = 0, qcy = 0, qcz = 0;
+
+		double ws = 0.0;
+
+		for ( int k = 0; k < l; ++k )
+		{
+			final int i = matches.index( k );
+
+			final double w = ww[ i ];
+			ws += w;
+
+			pcx += w * pX[ i ];
+			pcy += w * pY[ i ];
+			pcz += w * pZ[ i ];
+			qcx += w * qX[ i ];
+			qcy += w * qY[ i ];
+			qcz += w * qZ[ i ];
+		}
+		pcx /= ws;
+		pcy /= ws;
+		pcz /= ws;
+		qcx /= ws;
+		qcy /= ws;
+		qcz /= ws;
+
+		translation[ 0 ] = qcx - pcx;
+		translation[ 1 ] = qcy - pcy;
+		translation[ 2 ] = qcz - pcz;
+	}
+
 	final public void set( final double tx, final double ty, final double tz )
 	{
 		translation[ 0 ] = tx;
@@ -0,0 +1,439 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A ring buffer of primitive doubles with the indexing of
+ * {@link RingBuffer}: elements are addressed by their real index, that is
+ * the number of elements that were added before them, and only the last
+ * {@link #capacity()} elements are available.
+ * <p>
+ * The buffer maintains the median of its contents in a pair of heaps whose
+ * nodes are the slots of the ring, such that {@link #add(double)} is
+ * O(log n) and {@link #median()} is O(1).
+ * </p>
+ * <p>
+ * {@link #view()} and {@link #sortedView()} present the contents as a
+ * read-only {@link RingBuffer RingBuffer&lt;Double&gt;} for code that
+ * expects one.
+ * </p>
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class DoubleRingBuffer
+{
+	final protected double[] buffer;
+
+	/* real index */
+	protected int nextRealIndex = 0;
+
+	protected int size = 0;
+	protected int nextBufferIndex = 0;
+
+	/*
+	 * max-heap of the lower and min-heap of the upper half of the contents,
+	 * both store buffer slots; heapIndex[ slot ] is the position of slot in
+	 * lower if >= 0 and the position ( -heapIndex[ slot ] - 1 ) in upper
+	 * otherwise
+	 */
+	final protected int[] lower;
+	final protected int[] upper;
+	final protected int[] heapIndex;
+	protected int lowerSize = 0;
+	protected int upperSize = 0;
+
+	/* sorted contents for the sorted view as of nextRealIndex == sortedIndex */
+	protected double[] sorted = new double[ 0 ];
+	protected int sortedIndex = -1;
+
+	public DoubleRingBuffer( final int capacity )
+	{
+		buffer = new double[ capacity ];
+		lower = new int[ capacity ];
+		upper = new int[ capacity ];
+		heapIndex = new int[ capacity ];
+	}
+
+	final public int capacity(){ return buffer.length; }
+
+	final public int size(){ return size; }
+
+	final public int nextIndex(){ return nextRealIndex; }
+
+	final public int lastIndex(){ return nextRealIndex - 1; }
+
+	final public boolean containsIndex( final int index )
+	{
+		return index < nextRealIndex && nextRealIndex - index - 1 < size;
+	}
+
+	final public double get( final int index ) throws IndexOutOfBoundsException
+	{
+		if ( !containsIndex( index ) )
+			throw new IndexOutOfBoundsException( "Index " + index + " is not in the buffer." );
+		return buffer[ index % buffer.length ];
+	}
+
+	/**
+	 * Append a value, replacing the oldest value if the buffer is full.
+	 *
+	 * @param value
+	 */
+	final public void add( final double value )
+	{
+		final int slot = nextBufferIndex;
+		buffer[ slot ] = value;
+		if ( size == buffer.length )
+			update( slot );
+		else
+		{
+			insert( slot );
+			++size;
+		}
+		nextBufferIndex = ++nextRealIndex % buffer.length;
+	}
+
+	/**
+	 * The median of the contents, the mean of the two central values for an
+	 * even number of values, 0 if the buffer is empty.
+	 */
+	final public double median()
+	{
+		if ( size == 0 )
+			return 0;
+		else if ( lowerSize > upperSize )
+			return buffer[ lower[ 0 ] ];
+		else
+			return 0.5 * ( buffer[ lower[ 0 ] ] + buffer[ upper[ 0 ] ] );
+	}
+
+	/**
+	 * Copy the contents in the order of their real index.
+	 */
+	final public double[] toArray()
+	{
+		final double[] array = new double[ size ];
+		for ( int i = 0, k = nextRealIndex - size; i < size; ++i, ++k )
+			array[ i ] = buffer[ k % buffer.length ];
+		return array;
+	}
+
+	final public void clear()
+	{
+		Arrays.fill( buffer, 0 );
+		nextRealIndex = 0;
+		nextBufferIndex = 0;
+		size = 0;
+		lowerSize = 0;
+		upperSize = 0;
+		sortedIndex = -1;
+	}
+
+	/**
+	 * Value at a real index of the contents sorted in ascending order, i.e.
+	 * the smallest value is at real index {@link #nextIndex()} -
+	 * {@link #size()}, the largest at {@link #lastIndex()}.
+	 */
+	final public double getSorted( final int index ) throws IndexOutOfBoundsException
+	{
+		if ( !containsIndex( index ) )
+			throw new IndexOutOfBoundsException( "Index " + index + " is not in the buffer." );
+		if ( sortedIndex != nextRealIndex )
+		{
+			sorted = toArray();
+			Arrays.sort( sorted );
+			sortedIndex = nextRealIndex;
+		}
+		return sorted[ index - nextRealIndex + size ];
+	}
+
+	/**
+	 * A read-only {@link RingBuffer} view of this buffer with the same real
+	 * indices.  Values are boxed on access.
+	 */
+	public RingBuffer< Double > view()
+	{
+		return new View( false );
+	}
+
+	/**
+	 * A read-only {@link RingBuffer} view of the contents of this buffer
+	 * sorted in ascending order, see {@link #getSorted(int)}.
+	 */
+	public RingBuffer< Double > sortedView()
+	{
+		return new View( true );
+	}
+
+	protected class ViewIterator implements ListIterator< Double >
+	{
+		final protected boolean sortedOrder;
+		protected int realIndex;
+
+		protected ViewIterator( final boolean sortedOrder, final int realIndex )
+		{
+			this.sortedOrder = sortedOrder;
+			this.realIndex = realIndex;
+		}
+
+		@Override
+		public boolean hasNext(){ return realIndex < nextRealIndex; }
+
+		@Override
+		public boolean hasPrevious(){ return realIndex > nextRealIndex - size; }
+
+		@Override
+		public Double next()
+		{
+			if ( !hasNext() ) throw new NoSuchElementException();
+			final int index = realIndex++;
+			return sortedOrder ? getSorted( index ) : get( index );
+		}
+
+		@Override
+		public Double previous()
+		{
+			if ( !hasPrevious() ) throw new NoSuchElementException();
+			final int index = --realIndex;
+			return sortedOrder ? getSorted( index ) : get( index );
+		}
+
+		@Override
+		public int nextIndex(){ return realIndex; }
+
+		@Override
+		public int previousIndex(){ return realIndex - 1; }
+
+		@Override
+		public void remove(){ throw new UnsupportedOperationException(); }
+
+		@Override
+		public void set( final Double e ){ throw new UnsupportedOperationException(); }
+
+		@Override
+		public void add( final Double e ){ throw new UnsupportedOperationException(); }
+	}
+
+	protected class View extends RingBuffer< Double >
+	{
+		final protected boolean sortedOrder;
+
+		protected View( final boolean sortedOrder )
+		{
+			super( 0 );
+			this.sortedOrder = sortedOrder;
+		}
+
+		@Override
+		public boolean containsIndex( final int index ){ return DoubleRingBuffer.this.containsIndex( index ); }
+
+		@Override
+		protected boolean indexOutOfBounds( final int index ){ return !DoubleRingBuffer.this.containsIndex( index ); }
+
+		@Override
+		public Double get( final int index ) throws IndexOutOfBoundsException
+		{
+			return sortedOrder ? getSorted( index ) : DoubleRingBuffer.this.get( index );
+		}
+
+		@Override
+		public boolean add( final Double element ){ throw new UnsupportedOperationException(); }
+
+		@Override
+		public void add( final int index, final Double element ){ throw new UnsupportedOperationException(); }
+
+		@Override
+		protected Double removeUnsafe( final int index ){ throw new UnsupportedOperationException(); }
+
+		@Override
+		public Double remove( final int index ){ throw new UnsupportedOperationException(); }
+
+		@Override
+		public void clear(){ throw new UnsupportedOperationException(); }
+
+		@Override
+		public Iterator< Double > iterator(){ return listIterator(); }
+
+		@Override
+		public ListIterator< Double > listIterator(){ return new ViewIterator( sortedOrder, DoubleRingBuffer.this.nextRealIndex - DoubleRingBuffer.this.size ); }
+
+		@Override
+		public ListIterator< Double > listIterator( final int index )
+		{
+			if ( !DoubleRingBuffer.this.containsIndex( index ) && index != DoubleRingBuffer.this.nextRealIndex ) throw new IndexOutOfBoundsException();
+			return new ViewIterator( sortedOrder, index );
+		}
+
+		@Override
+		public Double[] toArray()
+		{
+			final Double[] array = new Double[ DoubleRingBuffer.this.size ];
+			final ListIterator< Double > i = listIterator();
+			for ( int k = 0; i.hasNext(); ++k )
+				array[ k ] = i.next();
+			return array;
+		}
+
+		@Override
+		public int size(){ return DoubleRingBuffer.this.size; }
+
+		@Override
+		public int nextIndex(){ return DoubleRingBuffer.this.nextRealIndex; }
+
+		@Override
+		public int lastIndex(){ return DoubleRingBuffer.this.nextRealIndex - 1; }
+	}
+
+	final protected double lowerValue( final int i ){ return buffer[ lower[ i ] ]; }
+	final protected double upperValue( final int i ){ return buffer[ upper[ i ] ]; }
+
+	final protected void setLower( final int i, final int slot )
+	{
+		lower[ i ] = slot;
+		heapIndex[ slot ] = i;
+	}
+
+	final protected void setUpper( final int i, final int slot )
+	{
+		upper[ i ] = slot;
+		heapIndex[ slot ] = -i - 1;
+	}
+
+	final protected void siftUpLower( int i )
+	{
+		final int slot = lower[ i ];
+		final double value = buffer[ slot ];
+		while ( i > 0 )
+		{
+			final int parent = ( i - 1 ) >> 1;
+			if ( lowerValue( parent ) >= value )
+				break;
+			setLower( i, lower[ parent ] );
+			i = parent;
+		}
+		setLower( i, slot );
+	}
+
+	final protected void siftDownLower( int i )
+	{
+		final int slot = lower[ i ];
+		final double value = buffer[ slot ];
+		for ( int child = 2 * i + 1; child < lowerSize; child = 2 * i + 1 )
+		{
+			if ( child + 1 < lowerSize && lowerValue( child + 1 ) > lowerValue( child ) )
+				++child;
+			if ( lowerValue( child ) <= value )
+				break;
+			setLower( i, lower[ child ] );
+			i = child;
+		}
+		setLower( i, slot );
+	}
+
+	final protected void siftUpUpper( int i )
+	{
+		final int slot = upper[ i ];
+		final double value = buffer[ slot ];
+		while ( i > 0 )
+		{
+			final int parent = ( i - 1 ) >> 1;
+			if ( upperValue( parent ) <= value )
+				break;
+			setUpper( i, upper[ parent ] );
+			i = parent;
+		}
+		setUpper( i, slot );
+	}
+
+	final protected void siftDownUpper( int i )
+	{
+		final int slot = upper[ i ];
+		final double value = buffer[ slot ];
+		for ( int child = 2 * i + 1; child < upperSize; child = 2 * i + 1 )
+		{
+			if ( child + 1 < upperSize && upperValue( child + 1 ) < upperValue( child ) )
+				++child;
+			if ( upperValue( child ) >= value )
+				break;
+			setUpper( i, upper[ child ] );
+			i = child;
+		}
+		setUpper( i, slot );
+	}
+
+	/**
+	 * Swap the tops of both heaps if they are out of order.
+	 */
+	final protected void exchangeTops()
+	{
+		if ( lowerSize > 0 && upperSize > 0 && lowerValue( 0 ) > upperValue( 0 ) )
+		{
+			final int l = lower[ 0 ];
+			setLower( 0, upper[ 0 ] );
+			setUpper( 0, l );
+			siftDownLower( 0 );
+			siftDownUpper( 0 );
+		}
+	}
+
+	/**
+	 * Insert a new slot keeping lowerSize - upperSize in {0, 1}.
+	 */
+	final protected void insert( final int slot )
+	{
+		if ( lowerSize == upperSize )
+		{
+			setLower( lowerSize, slot );
+			siftUpLower( lowerSize++ );
+		}
+		else
+		{
+			setUpper( upperSize, slot );
+			siftUpUpper( upperSize++ );
+		}
+		exchangeTops();
+	}
+
+	/**
+	 * Restore the heaps after the value of a slot has changed.
+	 */
+	final protected void update( final int slot )
+	{
+		final int i = heapIndex[ slot ];
+		if ( i >= 0 )
+		{
+			siftUpLower( i );
+			siftDownLower( heapIndex[ slot ] );
+		}
+		else
+		{
+			siftUpUpper( -i - 1 );
+			siftDownUpper( -heapIndex[ slot ] - 1 );
+		}
+		exchangeTops();
+	}
+}
@@ -0,0 +1,305 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.util;
+
+/**
+ * A balanced kd-tree over n-dimensional points stored as one array per
+ * dimension, coordinates[ d ][ i ].  The tree is stored implicitly as a
+ * permutation of point indices such that the root of each index range
+ * [lo, hi) is at its center, and each node splits along the dimension of
+ * largest extent of its points.
+ * <p>
+ * The coordinates are not copied, changing them invalidates the tree.
+ * Queries do not modify the tree and can be issued concurrently.
+ * </p>
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class KdTree
+{
+	final protected int numDimensions;
+	final protected int size;
+	final protected double[][] coordinates;
+
+	/* point index of each node */
+	final protected int[] order;
+
+	/* split dimension of each node */
+	final protected int[] splitDimensions;
+
+	/**
+	 * Build a kd-tree over the first size points of coordinates.
+	 *
+	 * @param coordinates [dimension][point index]
+	 * @param size number of points
+	 */
+	public KdTree( final double[][] coordinates, final int size )
+	{
+		this.numDimensions = coordinates.length;
+		this.size = size;
+		this.coordinates = coordinates;
+		order = new int[ size ];
+		splitDimensions = new int[ size ];
+		for ( int i = 0; i < size; ++i )
+			order[ i ] = i;
+		build( 0, size );
+	}
+
+	final public int numDimensions(){ return numDimensions; }
+
+	final public int size(){ return size; }
+
+	protected void build( final int lo, final int hi )
+	{
+		if ( hi - lo < 2 )
+			return;
+
+		int splitDimension = 0;
+		double maxExtent = -1;
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			final double[] c = coordinates[ d ];
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for ( int k = lo; k < hi; ++k )
+			{
+				final double x = c[ order[ k ] ];
+				if ( x < min ) min = x;
+				if ( x > max ) max = x;
+			}
+			if ( max - min > maxExtent )
+			{
+				maxExtent = max - min;
+				splitDimension = d;
+			}
+		}
+
+		final int m = ( lo + hi ) >>> 1;
+		select( coordinates[ splitDimension ], lo, hi - 1, m );
+		splitDimensions[ m ] = splitDimension;
+
+		build( lo, m );
+		build( m + 1, hi );
+	}
+
+	/**
+	 * Partially sort order[left, right] by c such that order[k] is at its
+	 * sorted position, smaller elements are left and larger elements right
+	 * of it.
+	 */
+	protected void select( final double[] c, int left, int right, final int k )
+	{
+		while ( right > left )
+		{
+			final double pivot = c[ order[ ( left + right ) >>> 1 ] ];
+			int i = left;
+			int j = right;
+			while ( i <= j )
+			{
+				while ( c[ order[ i ] ] < pivot ) ++i;
+				while ( c[ order[ j ] ] > pivot ) --j;
+				if ( i <= j )
+				{
+					final int t = order[ i ];
+					order[ i ] = order[ j ];
+					order[ j ] = t;
+					++i;
+					--j;
+				}
+			}
+			if ( k <= j )
+				right = j;
+			else if ( k >= i )
+				left = i;
+			else
+				return;
+		}
+	}
+
+	final protected double squaredDistance( final int i, final double[] location )
+	{
+		double sum = 0;
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			final double dd = coordinates[ d ][ i ] - location[ d ];
+			sum += dd * dd;
+		}
+		return sum;
+	}
+
+	/**
+	 * Index of the point that is closest to location.
+	 *
+	 * @param location
+	 * @return point index, -1 if the tree is empty
+	 */
+	public int nearest( final double[] location )
+	{
+		return nearest( 0, size, location, -1, Double.MAX_VALUE );
+	}
+
+	protected int nearest( final int lo, final int hi, final double[] location, int best, double bestSquaredDistance )
+	{
+		if ( lo >= hi )
+			return best;
+
+		final int m = ( lo + hi ) >>> 1;
+		final int i = order[ m ];
+		final double squaredDistance = squaredDistance( i, location );
+		if ( squaredDistance < bestSquaredDistance )
+		{
+			best = i;
+			bestSquaredDistance = squaredDistance;
+		}
+
+		final int d = splitDimensions[ m ];
+		final double diff = location[ d ] - coordinates[ d ][ i ];
+		final int nearBest;
+		if ( diff < 0 )
+			nearBest = nearest( lo, m, location, best, bestSquaredDistance );
+		else
+			nearBest = nearest( m + 1, hi, location, best, bestSquaredDistance );
+		if ( nearBest != best )
+		{
+			best = nearBest;
+			bestSquaredDistance = squaredDistance( best, location );
+		}
+
+		if ( diff * diff < bestSquaredDistance )
+		{
+			if ( diff < 0 )
+				best = nearest( m + 1, hi, location, best, bestSquaredDistance );
+			else
+				best = nearest( lo, m, location, best, bestSquaredDistance );
+		}
+		return best;
+	}
+
+	/**
+	 * Find the k points that are closest to location.
+	 *
+	 * @param location
+	 * @param k
+	 * @param indices point indices by increasing distance, at least k long
+	 * @param squaredDistances squared distances of these points, at least k
+	 *   long
+	 *
+	 * @return number of points found, min(k, {@link #size()})
+	 */
+	public int kNearest( final double[] location, final int k, final int[] indices, final double[] squaredDistances )
+	{
+		return kNearest( 0, size, location, k, indices, squaredDistances, 0 );
+	}
+
+	protected int kNearest(
+			final int lo,
+			final int hi,
+			final double[] location,
+			final int k,
+			final int[] indices,
+			final double[] squaredDistances,
+			int count )
+	{
+		if ( lo >= hi || k == 0 )
+			return count;
+
+		final int m = ( lo + hi ) >>> 1;
+		final int i = order[ m ];
+		final double squaredDistance = squaredDistance( i, location );
+		if ( count < k || squaredDistance < squaredDistances[ count - 1 ] )
+		{
+			/* insert sorted */
+			int j = count < k ? count++ : count - 1;
+			for ( ; j > 0 && squaredDistances[ j - 1 ] > squaredDistance; --j )
+			{
+				indices[ j ] = indices[ j - 1 ];
+				squaredDistances[ j ] = squaredDistances[ j - 1 ];
+			}
+			indices[ j ] = i;
+			squaredDistances[ j ] = squaredDistance;
+		}
+
+		final int d = splitDimensions[ m ];
+		final double diff = location[ d ] - coordinates[ d ][ i ];
+		if ( diff < 0 )
+			count = kNearest( lo, m, location, k, indices, squaredDistances, count );
+		else
+			count = kNearest( m + 1, hi, location, k, indices, squaredDistances, count );
+
+		if ( count < k || diff * diff < squaredDistances[ count - 1 ] )
+		{
+			if ( diff < 0 )
+				count = kNearest( m + 1, hi, location, k, indices, squaredDistances, count );
+			else
+				count = kNearest( lo, m, location, k, indices, squaredDistances, count );
+		}
+		return count;
+	}
+
+	/**
+	 * Find all points whose distance to location is smaller than or equal to
+	 * radius.
+	 *
+	 * @param location
+	 * @param radius
+	 * @param indices point indices in no particular order, at least
+	 *   {@link #size()} long
+	 * @param squaredDistances squared distances of these points, at least
+	 *   {@link #size()} long
+	 *
+	 * @return number of points found
+	 */
+	public int withinRadius( final double[] location, final double radius, final int[] indices, final double[] squaredDistances )
+	{
+		return withinRadius( 0, size, location, radius * radius, indices, squaredDistances, 0 );
+	}
+
+	protected int withinRadius(
+			final int lo,
+			final int hi,
+			final double[] location,
+			final double squaredRadius,
+			final int[] indices,
+			final double[] squaredDistances,
+			int count )
+	{
+		if ( lo >= hi )
+			return count;
+
+		final int m = ( lo + hi ) >>> 1;
+		final int i = order[ m ];
+		final double squaredDistance = squaredDistance( i, location );
+		if ( squaredDistance <= squaredRadius )
+		{
+			indices[ count ] = i;
+			squaredDistances[ count++ ] = squaredDistance;
+		}
+
+		final int d = splitDimensions[ m ];
+		final double diff = location[ d ] - coordinates[ d ][ i ];
+		if ( diff <= 0 || diff * diff <= squaredRadius )
+			count = withinRadius( lo, m, location, squaredRadius, indices, squaredDistances, count );
+		if ( diff >= 0 || diff * diff <= squaredRadius )
+			count = withinRadius( m + 1, hi, location, squaredRadius, indices, squaredDistances, count );
+		return count;
+	}
+}
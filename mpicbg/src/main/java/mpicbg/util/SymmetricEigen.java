@@ -0,0 +1,176 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.util;
+
+/**
+ * Eigen-decomposition of small dense symmetric matrices by cyclic Jacobi
+ * rotations.  Matrices are passed as {@code double[]} in a row after row
+ * sequence, all scratch space is provided by the caller such that repeated
+ * decompositions, e.g. in model fits inside RANSAC loops, do not allocate.
+ * <p>
+ * Jacobi is slow for large matrices but for the 4&times;4 and 9&times;9
+ * problems of closed form model estimators it converges in very few sweeps
+ * and is more accurate than the general (non-symmetric) solvers.
+ * </p>
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+final public class SymmetricEigen
+{
+	final static public int DEFAULT_MAX_SWEEPS = 50;
+
+	private SymmetricEigen(){}
+
+	/**
+	 * Decompose the symmetric n&times;n matrix a into eigenvalues and
+	 * eigenvectors.  Only the values of a are used, a is not tested for
+	 * symmetry.
+	 *
+	 * @param a n&times;n symmetric matrix, row after row, overwritten
+	 * @param n
+	 * @param v receives the n&times;n matrix of eigenvectors, the eigenvector
+	 * 		of eigenvalue d[ i ] is column i, v[ k * n + i ]
+	 * @param d receives the n eigenvalues (unsorted)
+	 * @param maxSweeps maximal number of sweeps over all off-diagonal elements
+	 *
+	 * @return number of sweeps performed, maxSweeps if the decomposition did
+	 * 		not converge (e.g. because a contains NaN)
+	 */
+	final static public int decompose(
+			final double[] a,
+			final int n,
+			final double[] v,
+			final double[] d,
+			final int maxSweeps )
+	{
+		double norm = 0;
+		for ( int i = 0; i < n; ++i )
+		{
+			final int in = i * n;
+			for ( int j = 0; j < n; ++j )
+			{
+				v[ in + j ] = i == j ? 1 : 0;
+				norm += a[ in + j ] * a[ in + j ];
+			}
+		}
+
+		int sweep = 0;
+		for ( ; sweep < maxSweeps; ++sweep )
+		{
+			double off = 0;
+			for ( int p = 0; p < n; ++p )
+				for ( int q = p + 1; q < n; ++q )
+					off += a[ p * n + q ] * a[ p * n + q ];
+
+			if ( off <= 1e-32 * norm )
+				break;
+
+			for ( int p = 0; p < n; ++p )
+			{
+				final int pn = p * n;
+				for ( int q = p + 1; q < n; ++q )
+				{
+					final int qn = q * n;
+					final double apq = a[ pn + q ];
+					if ( apq == 0 )
+						continue;
+
+					/* rotation angle that annihilates a[ p ][ q ] */
+					final double theta = ( a[ qn + q ] - a[ pn + p ] ) / ( 2 * apq );
+					final double t;
+					if ( Math.abs( theta ) > 1e150 )
+						t = 0.5 / theta;
+					else
+						t = Math.copySign( 1.0, theta ) / ( Math.abs( theta ) + Math.sqrt( theta * theta + 1 ) );
+					final double c = 1.0 / Math.sqrt( t * t + 1 );
+					final double s = t * c;
+
+					/* a = J^T a J, v = v J */
+					for ( int k = 0; k < n; ++k )
+					{
+						final int kn = k * n;
+						final double akp = a[ kn + p ];
+						final double akq = a[ kn + q ];
+						a[ kn + p ] = c * akp - s * akq;
+						a[ kn + q ] = s * akp + c * akq;
+
+						final double vkp = v[ kn + p ];
+						final double vkq = v[ kn + q ];
+						v[ kn + p ] = c * vkp - s * vkq;
+						v[ kn + q ] = s * vkp + c * vkq;
+					}
+					for ( int k = 0; k < n; ++k )
+					{
+						final double apk = a[ pn + k ];
+						final double aqk = a[ qn + k ];
+						a[ pn + k ] = c * apk - s * aqk;
+						a[ qn + k ] = s * apk + c * aqk;
+					}
+					a[ pn + q ] = 0;
+					a[ qn + p ] = 0;
+				}
+			}
+		}
+
+		for ( int i = 0; i < n; ++i )
+			d[ i ] = a[ i * n + i ];
+
+		return sweep;
+	}
+
+	/**
+	 * {@link #decompose(double[], int, double[], double[], int)} with
+	 * {@link #DEFAULT_MAX_SWEEPS}.
+	 */
+	final static public int decompose(
+			final double[] a,
+			final int n,
+			final double[] v,
+			final double[] d )
+	{
+		return decompose( a, n, v, d, DEFAULT_MAX_SWEEPS );
+	}
+
+	/**
+	 * @return index of the largest of the first n values of d
+	 */
+	final static public int argMax( final double[] d, final int n )
+	{
+		int index = 0;
+		for ( int i = 1; i < n; ++i )
+			if ( d[ i ] > d[ index ] )
+				index = i;
+		return index;
+	}
+
+	/**
+	 * @return index of the smallest of the first n values of d
+	 */
+	final static public int argMin( final double[] d, final int n )
+	{
+		int index = 0;
+		for ( int i = 1; i < n; ++i )
+			if ( d[ i ] < d[ index ] )
+				index = i;
+		return index;
+	}
+}
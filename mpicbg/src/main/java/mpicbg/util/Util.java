@@ -387,4 +387,80 @@ final public class Util
 	    for ( int i = 1; i < len; i += i )
 	        System.arraycopy( array, 0, array, i, ( ( len - i ) < i ) ? ( len - i ) : i );
 	}
+
+	/**
+	 * Partially reorder the range [from, to) of a such that a[ k ] holds the
+	 * value that would be at position k if the range was sorted, all values
+	 * in [from, k) are not larger and all values in (k, to) are not smaller.
+	 * Hoare's selection with median of three pivots, expected O(n).
+	 *
+	 * @param a
+	 * @param from first index of the range
+	 * @param to first index after the range
+	 * @param k
+	 *
+	 * @return a[ k ]
+	 */
+	final public static double select( final double[] a, final int from, final int to, final int k )
+	{
+		int lo = from;
+		int hi = to - 1;
+		while ( hi > lo )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			if ( a[ mid ] < a[ lo ] ) swap( a, lo, mid );
+			if ( a[ hi ] < a[ lo ] ) swap( a, lo, hi );
+			if ( a[ hi ] < a[ mid ] ) swap( a, mid, hi );
+			final double pivot = a[ mid ];
+
+			int i = lo, j = hi;
+			while ( i <= j )
+			{
+				while ( a[ i ] < pivot ) ++i;
+				while ( a[ j ] > pivot ) --j;
+				if ( i <= j )
+					swap( a, i++, j-- );
+			}
+
+			if ( k <= j )
+				hi = j;
+			else if ( k >= i )
+				lo = i;
+			else
+				break;
+		}
+		return a[ k ];
+	}
+
+	/**
+	 * Median of the first n values of a, the mean of the two central values
+	 * if n is even.  Uses {@link #select(double[], int, int, int)}, a is
+	 * reordered.
+	 *
+	 * @param a
+	 * @param n
+	 *
+	 * @return median
+	 */
+	final public static double median( final double[] a, final int n )
+	{
+		final int m = n / 2;
+		final double upper = select( a, 0, n, m );
+		if ( n % 2 == 1 )
+			return upper;
+
+		/* the lower central value is the largest left of m */
+		double lower = a[ 0 ];
+		for ( int i = 1; i < m; ++i )
+			if ( a[ i ] > lower )
+				lower = a[ i ];
+		return ( lower + upper ) / 2.0;
+	}
+
+	final private static void swap( final double[] a, final int i, final int j )
+	{
+		final double t = a[ i ];
+		a[ i ] = a[ j ];
+		a[ j ] = t;
+	}
 }
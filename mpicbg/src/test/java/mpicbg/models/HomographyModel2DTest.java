@@ -0,0 +1,173 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static mpicbg.models.JamaReference.apply;
+import static mpicbg.models.JamaReference.collinear;
+import static mpicbg.models.JamaReference.fitHomography;
+import static mpicbg.models.JamaReference.matches;
+import static mpicbg.models.JamaReference.random;
+import static mpicbg.models.JamaReference.repeated;
+import static mpicbg.models.JamaReference.residual;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link HomographyModel2D#fit(java.util.Collection)} with the Jama
+ * based reference {@link JamaReference#fitHomography(java.util.List)}.
+ * {@link HomographyModel2D} normalizes the data before the DLT, so for noisy
+ * data the two agree only up to the noise.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class HomographyModel2DTest
+{
+	static protected double[] randomHomography( final Random rnd )
+	{
+		return new double[]{
+				1 + rnd.nextGaussian() * 0.2, rnd.nextGaussian() * 0.2, rnd.nextDouble() * 100 - 50,
+				rnd.nextGaussian() * 0.2, 1 + rnd.nextGaussian() * 0.2, rnd.nextDouble() * 100 - 50,
+				rnd.nextGaussian() * 1e-3, rnd.nextGaussian() * 1e-3, 1 };
+	}
+
+	static protected double[] transform( final HomographyModel2D model, final double[] l )
+	{
+		final double[] t = l.clone();
+		model.applyInPlace( t );
+		return t;
+	}
+
+	/**
+	 * Fit both implementations, compare them at the data points and at
+	 * test points within tolerance tol, and test that the residual of
+	 * {@link HomographyModel2D} is not worse than that of the reference.
+	 *
+	 * @param test points at which both fits are compared
+	 */
+	static protected void compare( final ArrayList< PointMatch > matches, final double[][] test, final double tol ) throws Exception
+	{
+		final HomographyModel2D model = new HomographyModel2D();
+		model.fit( matches );
+		final double[] r = fitHomography( matches );
+
+		double residual = 0;
+		for ( final PointMatch pm : matches )
+		{
+			final double[] p = transform( model, pm.getP1().getL() );
+			final double[] q = pm.getP2().getW();
+			residual += ( p[ 0 ] - q[ 0 ] ) * ( p[ 0 ] - q[ 0 ] ) + ( p[ 1 ] - q[ 1 ] ) * ( p[ 1 ] - q[ 1 ] );
+			assertArrayEquals( apply( r, pm.getP1().getL() ), p, tol );
+		}
+		final double rr = residual( r, matches );
+		assertTrue( residual <= rr * 1.01 + 1e-12 * matches.size() );
+
+		for ( final double[] l : test )
+			assertArrayEquals( apply( r, l ), transform( model, l ), tol );
+	}
+
+	@Test
+	public void testRandom() throws Exception
+	{
+		final Random rnd = new Random( 0 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			final int n = 5 + rnd.nextInt( 20 );
+			final double[][] test = random( 10, 2, rnd );
+			compare( matches( random( n, 2, rnd ), randomHomography( rnd ), 0, rnd ), test, 1e-6 );
+			compare( matches( random( n, 2, rnd ), randomHomography( rnd ), 0.01, rnd ), test, 0.5 );
+		}
+	}
+
+	@Test
+	public void testMinimal() throws Exception
+	{
+		final Random rnd = new Random( 1 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			final double[] h = randomHomography( rnd );
+			final ArrayList< PointMatch > matches = matches( random( 4, 2, rnd ), h, 0, rnd );
+			final HomographyModel2D model = new HomographyModel2D();
+			model.fit( matches );
+			for ( final double[] l : random( 10, 2, rnd ) )
+				assertArrayEquals( apply( h, l ), transform( model, l ), 1e-6 );
+		}
+	}
+
+	/**
+	 * Points close to a line still define the homography but the fit is
+	 * sensitive off the line.
+	 */
+	@Test
+	public void testNearlyDegenerate() throws Exception
+	{
+		final Random rnd = new Random( 2 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			final double[][] p = collinear( 10, 2, 1, rnd );
+			compare( matches( p, randomHomography( rnd ), 0, rnd ), p, 1e-4 );
+		}
+	}
+
+	/**
+	 * Collinear points leave the homography undefined, the Jama SVD returns
+	 * an arbitrary vector of the null space for them.
+	 */
+	@Test
+	public void testCollinear() throws Exception
+	{
+		final Random rnd = new Random( 5 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			try
+			{
+				new HomographyModel2D().fit( matches( collinear( 5 + i, 2, 0, rnd ), randomHomography( rnd ), 0, rnd ) );
+				fail( "collinear points accepted" );
+			}
+			catch ( final IllDefinedDataPointsException e ) {}
+		}
+	}
+
+	/**
+	 * Four points repeated define the homography, a single repeated point
+	 * does not.
+	 */
+	@Test
+	public void testRepeated() throws Exception
+	{
+		final Random rnd = new Random( 3 );
+		for ( int i = 0; i < 100; ++i )
+			compare( matches( repeated( 12, 4, 2, rnd ), randomHomography( rnd ), 0, rnd ), random( 10, 2, rnd ), 1e-4 );
+	}
+
+	@Test( expected = IllDefinedDataPointsException.class )
+	public void testSinglePoint() throws Exception
+	{
+		final Random rnd = new Random( 4 );
+		new HomographyModel2D().fit( matches( repeated( 10, 1, 2, rnd ), randomHomography( rnd ), 0, rnd ) );
+	}
+}
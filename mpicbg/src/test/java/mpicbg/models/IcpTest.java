@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link AbstractModel#icp(java.util.List, java.util.List, int, double)}.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class IcpTest
+{
+	/**
+	 * p and q, 80% of q being p rotated, shifted and with noise, the
+	 * remaining being random.
+	 */
+	static protected void clouds( final ArrayList< Point > p, final ArrayList< Point > q, final long seed )
+	{
+		final Random rnd = new Random( seed );
+		final double r = 0.3 * rnd.nextGaussian(), tx = 5 * rnd.nextGaussian(), ty = 5 * rnd.nextGaussian();
+		for ( int i = 0; i < 30; ++i )
+		{
+			final double x = 100 * rnd.nextDouble(), y = 100 * rnd.nextDouble();
+			p.add( new Point( new double[]{ x, y } ) );
+			if ( rnd.nextDouble() < 0.8 )
+				q.add( new Point( new double[]{
+						Math.cos( r ) * x - Math.sin( r ) * y + tx + rnd.nextGaussian(),
+						Math.sin( r ) * x + Math.cos( r ) * y + ty + rnd.nextGaussian() } ) );
+			else
+				q.add( new Point( new double[]{ 100 * rnd.nextDouble(), 100 * rnd.nextDouble() } ) );
+		}
+	}
+
+	static protected double meanError( final Collection< PointMatch > matches, final CoordinateTransform t )
+	{
+		double e = 0;
+		for ( final PointMatch match : matches )
+			e += Point.distance( new Point( match.getP1().getL(), t.apply( match.getP1().getL() ) ), match.getP2() );
+		return e / matches.size();
+	}
+
+	/**
+	 * More iterations never return a worse fit.
+	 */
+	@Test
+	public void testMonotone()
+	{
+		for ( final long seed : new long[]{ 5, 12, 19, 33, 36 } )
+		{
+			final ArrayList< Point > p = new ArrayList< Point >();
+			final ArrayList< Point > q = new ArrayList< Point >();
+			clouds( p, q, seed );
+			double previous = Double.MAX_VALUE;
+			for ( int k = 1; k <= 20; ++k )
+			{
+				final RigidModel2D model = new RigidModel2D();
+				final double error = meanError( model.icp( p, q, k, 0 ), model );
+				assertTrue( "seed " + seed + ", " + k + " iterations", error <= previous + 1e-12 );
+				previous = error;
+			}
+		}
+	}
+
+	@Test
+	public void testNoIterations()
+	{
+		final ArrayList< Point > p = new ArrayList< Point >();
+		final ArrayList< Point > q = new ArrayList< Point >();
+		clouds( p, q, 0 );
+		final AffineModel2D model = new AffineModel2D();
+		model.set( 1, 0, 0, 1, 3, 4 );
+		assertNull( model.icp( p, q, 0, 0 ) );
+		assertArrayEquals( new double[]{ 3, 4 }, model.apply( new double[]{ 0, 0 } ), 0 );
+	}
+}
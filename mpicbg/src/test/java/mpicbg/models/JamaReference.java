@@ -0,0 +1,287 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+import Jama.SingularValueDecomposition;
+
+/**
+ * Jama based reference implementations of the closed form fits that use
+ * {@link mpicbg.util.SymmetricEigen} and point sets to compare them on.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+final class JamaReference
+{
+	private JamaReference() {}
+
+	/**
+	 * Horn's closed form 3d rigid (s = false) or similarity (s = true)
+	 * fit with Jama's {@link EigenvalueDecomposition} as in
+	 * {@link RigidModel3D} and {@link SimilarityModel3D} before they used
+	 * {@link mpicbg.util.SymmetricEigen}.
+	 *
+	 * @return row-packed 3&times;4 matrix
+	 */
+	static double[] fitHorn( final List< PointMatch > matches, final boolean similarity )
+	{
+		double pcx = 0, pcy = 0, pcz = 0, qcx = 0, qcy = 0, qcz = 0, ws = 0;
+		for ( final PointMatch pm : matches )
+		{
+			final double[] p = pm.getP1().getL();
+			final double[] q = pm.getP2().getW();
+			final double w = pm.getWeight();
+			ws += w;
+			pcx += w * p[ 0 ];
+			pcy += w * p[ 1 ];
+			pcz += w * p[ 2 ];
+			qcx += w * q[ 0 ];
+			qcy += w * q[ 1 ];
+			qcz += w * q[ 2 ];
+		}
+		pcx /= ws;
+		pcy /= ws;
+		pcz /= ws;
+		qcx /= ws;
+		qcy /= ws;
+		qcz /= ws;
+
+		double s = 1;
+		if ( similarity )
+		{
+			double r1 = 0, r2 = 0;
+			for ( final PointMatch pm : matches )
+			{
+				final double[] p = pm.getP1().getL();
+				final double[] q = pm.getP2().getW();
+				final double x1 = p[ 0 ] - pcx, y1 = p[ 1 ] - pcy, z1 = p[ 2 ] - pcz;
+				final double x2 = q[ 0 ] - qcx, y2 = q[ 1 ] - qcy, z2 = q[ 2 ] - qcz;
+				r1 += x1 * x1 + y1 * y1 + z1 * z1;
+				r2 += x2 * x2 + y2 * y2 + z2 * z2;
+			}
+			s = Math.sqrt( r2 / r1 );
+		}
+
+		double Sxx = 0, Sxy = 0, Sxz = 0, Syx = 0, Syy = 0, Syz = 0, Szx = 0, Szy = 0, Szz = 0;
+		for ( final PointMatch pm : matches )
+		{
+			final double[] p = pm.getP1().getL();
+			final double[] q = pm.getP2().getW();
+			/* RigidModel3D weighs both sides, SimilarityModel3D does not weigh */
+			final double w = similarity ? 1 : pm.getWeight();
+			final double x1 = ( p[ 0 ] - pcx ) * s * w;
+			final double y1 = ( p[ 1 ] - pcy ) * s * w;
+			final double z1 = ( p[ 2 ] - pcz ) * s * w;
+			final double x2 = ( q[ 0 ] - qcx ) * w;
+			final double y2 = ( q[ 1 ] - qcy ) * w;
+			final double z2 = ( q[ 2 ] - qcz ) * w;
+			Sxx += x1 * x2;
+			Sxy += x1 * y2;
+			Sxz += x1 * z2;
+			Syx += y1 * x2;
+			Syy += y1 * y2;
+			Syz += y1 * z2;
+			Szx += z1 * x2;
+			Szy += z1 * y2;
+			Szz += z1 * z2;
+		}
+
+		final double[][] N = new double[][]{
+				{ Sxx + Syy + Szz, Syz - Szy, Szx - Sxz, Sxy - Syx },
+				{ Syz - Szy, Sxx - Syy - Szz, Sxy + Syx, Szx + Sxz },
+				{ Szx - Sxz, Sxy + Syx, -Sxx + Syy - Szz, Syz + Szy },
+				{ Sxy - Syx, Szx + Sxz, Syz + Szy, -Sxx - Syy + Szz } };
+
+		final EigenvalueDecomposition evd = new EigenvalueDecomposition( new Matrix( N ) );
+		final double[] eigenvalues = evd.getRealEigenvalues();
+		final Matrix eigenVectors = evd.getV();
+		int index = 0;
+		for ( int i = 1; i < 4; ++i )
+			if ( eigenvalues[ i ] > eigenvalues[ index ] )
+				index = i;
+
+		final double q0 = eigenVectors.get( 0, index );
+		final double qx = eigenVectors.get( 1, index );
+		final double qy = eigenVectors.get( 2, index );
+		final double qz = eigenVectors.get( 3, index );
+
+		final double[] m = new double[ 12 ];
+		m[ 0 ] = s * ( q0 * q0 + qx * qx - qy * qy - qz * qz );
+		m[ 1 ] = s * 2 * ( qx * qy - q0 * qz );
+		m[ 2 ] = s * 2 * ( qx * qz + q0 * qy );
+		m[ 4 ] = s * 2 * ( qy * qx + q0 * qz );
+		m[ 5 ] = s * ( q0 * q0 - qx * qx + qy * qy - qz * qz );
+		m[ 6 ] = s * 2 * ( qy * qz - q0 * qx );
+		m[ 8 ] = s * 2 * ( qz * qx - q0 * qy );
+		m[ 9 ] = s * 2 * ( qz * qy + q0 * qx );
+		m[ 10 ] = s * ( q0 * q0 - qx * qx - qy * qy + qz * qz );
+		m[ 3 ] = qcx - m[ 0 ] * pcx - m[ 1 ] * pcy - m[ 2 ] * pcz;
+		m[ 7 ] = qcy - m[ 4 ] * pcx - m[ 5 ] * pcy - m[ 6 ] * pcz;
+		m[ 11 ] = qcz - m[ 8 ] * pcx - m[ 9 ] * pcy - m[ 10 ] * pcz;
+		return m;
+	}
+
+	/**
+	 * Unnormalized DLT with Jama's {@link SingularValueDecomposition} as in
+	 * {@link HomographyModel2D} before it used
+	 * {@link mpicbg.util.SymmetricEigen}.
+	 *
+	 * @return row-packed 3&times;3 matrix
+	 */
+	static double[] fitHomography( final List< PointMatch > matches )
+	{
+		final int n = matches.size();
+		final double[][] a = new double[ 2 * n ][ 9 ];
+		int i = 0;
+		for ( final PointMatch pm : matches )
+		{
+			final double[] p = pm.getP1().getL();
+			final double[] q = pm.getP2().getW();
+			a[ i ] = new double[]{ -p[ 0 ], -p[ 1 ], -1, 0, 0, 0, q[ 0 ] * p[ 0 ], q[ 0 ] * p[ 1 ], q[ 0 ] };
+			a[ i + 1 ] = new double[]{ 0, 0, 0, -p[ 0 ], -p[ 1 ], -1, q[ 1 ] * p[ 0 ], q[ 1 ] * p[ 1 ], q[ 1 ] };
+			i += 2;
+		}
+		final Matrix v = new SingularValueDecomposition( new Matrix( a ) ).getV();
+		final double[] h = new double[ 9 ];
+		for ( int k = 0; k < 9; ++k )
+			h[ k ] = v.get( k, 8 );
+		return h;
+	}
+
+	static double[] apply( final double[] m, final double[] l )
+	{
+		if ( m.length == 12 )
+			return new double[]{
+					m[ 0 ] * l[ 0 ] + m[ 1 ] * l[ 1 ] + m[ 2 ] * l[ 2 ] + m[ 3 ],
+					m[ 4 ] * l[ 0 ] + m[ 5 ] * l[ 1 ] + m[ 6 ] * l[ 2 ] + m[ 7 ],
+					m[ 8 ] * l[ 0 ] + m[ 9 ] * l[ 1 ] + m[ 10 ] * l[ 2 ] + m[ 11 ] };
+		final double w = m[ 6 ] * l[ 0 ] + m[ 7 ] * l[ 1 ] + m[ 8 ];
+		return new double[]{
+				( m[ 0 ] * l[ 0 ] + m[ 1 ] * l[ 1 ] + m[ 2 ] ) / w,
+				( m[ 3 ] * l[ 0 ] + m[ 4 ] * l[ 1 ] + m[ 5 ] ) / w };
+	}
+
+	/**
+	 * @return weighted sum of squared transfer errors of m
+	 */
+	static double residual( final double[] m, final List< PointMatch > matches )
+	{
+		double r = 0;
+		for ( final PointMatch pm : matches )
+		{
+			final double[] p = apply( m, pm.getP1().getL() );
+			final double[] q = pm.getP2().getW();
+			double d = 0;
+			for ( int k = 0; k < q.length; ++k )
+				d += ( p[ k ] - q[ k ] ) * ( p[ k ] - q[ k ] );
+			r += pm.getWeight() * d;
+		}
+		return r;
+	}
+
+	/**
+	 * Map p by m and add Gaussian noise of sigma to create matches.
+	 */
+	static ArrayList< PointMatch > matches( final double[][] p, final double[] m, final double sigma, final Random rnd )
+	{
+		final ArrayList< PointMatch > matches = new ArrayList< PointMatch >();
+		for ( final double[] l : p )
+		{
+			final double[] q = apply( m, l );
+			for ( int k = 0; k < q.length; ++k )
+				q[ k ] += rnd.nextGaussian() * sigma;
+			matches.add( new PointMatch( new Point( l.clone() ), new Point( q ) ) );
+		}
+		return matches;
+	}
+
+	static double[][] random( final int n, final int d, final Random rnd )
+	{
+		final double[][] p = new double[ n ][ d ];
+		for ( final double[] l : p )
+			for ( int k = 0; k < d; ++k )
+				l[ k ] = rnd.nextDouble() * 200 - 100;
+		return p;
+	}
+
+	/**
+	 * Points on a line through the origin with direction ( 1, 2, 3 ) offset
+	 * by uniform noise of amplitude e.
+	 */
+	static double[][] collinear( final int n, final int d, final double e, final Random rnd )
+	{
+		final double[][] p = new double[ n ][ d ];
+		for ( final double[] l : p )
+		{
+			final double t = rnd.nextDouble() * 200 - 100;
+			for ( int k = 0; k < d; ++k )
+				l[ k ] = ( k + 1 ) * t + ( rnd.nextDouble() * 2 - 1 ) * e;
+		}
+		return p;
+	}
+
+	/**
+	 * 3d points in the plane z = x + y offset by uniform noise of amplitude e.
+	 */
+	static double[][] coplanar( final int n, final double e, final Random rnd )
+	{
+		final double[][] p = random( n, 3, rnd );
+		for ( final double[] l : p )
+			l[ 2 ] = l[ 0 ] + l[ 1 ] + ( rnd.nextDouble() * 2 - 1 ) * e;
+		return p;
+	}
+
+	/**
+	 * Each of k random points repeated n / k times.
+	 */
+	static double[][] repeated( final int n, final int k, final int d, final Random rnd )
+	{
+		final double[][] q = random( k, d, rnd );
+		final double[][] p = new double[ n ][];
+		for ( int i = 0; i < n; ++i )
+			p[ i ] = q[ i % k ].clone();
+		return p;
+	}
+
+	/**
+	 * @return a random rotation (s = 1) or similarity as row-packed
+	 * 3&times;4 matrix
+	 */
+	static double[] randomHorn( final double s, final Random rnd )
+	{
+		double q0 = rnd.nextGaussian(), qx = rnd.nextGaussian(), qy = rnd.nextGaussian(), qz = rnd.nextGaussian();
+		final double norm = Math.sqrt( q0 * q0 + qx * qx + qy * qy + qz * qz );
+		q0 /= norm;
+		qx /= norm;
+		qy /= norm;
+		qz /= norm;
+		return new double[]{
+				s * ( q0 * q0 + qx * qx - qy * qy - qz * qz ), s * 2 * ( qx * qy - q0 * qz ), s * 2 * ( qx * qz + q0 * qy ), rnd.nextDouble() * 100 - 50,
+				s * 2 * ( qy * qx + q0 * qz ), s * ( q0 * q0 - qx * qx + qy * qy - qz * qz ), s * 2 * ( qy * qz - q0 * qx ), rnd.nextDouble() * 100 - 50,
+				s * 2 * ( qz * qx - q0 * qy ), s * 2 * ( qz * qy + q0 * qx ), s * ( q0 * q0 - qx * qx - qy * qy + qz * qz ), rnd.nextDouble() * 100 - 50 };
+	}
+}
@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares fits to incrementally maintained {@link PointMatchMoments2D}
+ * with fits to the list of {@link PointMatch PointMatches}.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class PointMatchMoments2DTest
+{
+	/**
+	 * Moments of matches that were added together with 50 matches near
+	 * (12000, 12000) that were removed again.
+	 */
+	static protected PointMatchMoments2D moments( final ArrayList< PointMatch > matches, final long seed )
+	{
+		final Random rnd = new Random( seed );
+		final ArrayList< PointMatch > far = new ArrayList< PointMatch >();
+		for ( int i = 0; i < 50; ++i )
+		{
+			final double x = 12000 + 100 * rnd.nextDouble(), y = 12000 + 100 * rnd.nextDouble();
+			far.add( new PointMatch( new Point( new double[]{ x, y } ), new Point( new double[]{ x + 5, y - 3 } ) ) );
+		}
+
+		final PointMatchMoments2D moments = new PointMatchMoments2D();
+		for ( final PointMatch match : far )
+			moments.add( match );
+		for ( final PointMatch match : matches )
+			moments.add( match );
+		for ( final PointMatch match : far )
+			moments.remove( match );
+		return moments;
+	}
+
+	static protected ArrayList< PointMatch > matches( final double[][] p, final double[][] q )
+	{
+		return TileSolverTest.matches( p, q );
+	}
+
+	/**
+	 * Fit to moments and list both throw or both find the same model.
+	 */
+	static protected < M extends AbstractAffineModel2D< M > & MomentsFittable2D > void compare(
+			final M model,
+			final ArrayList< PointMatch > matches ) throws Exception
+	{
+		final M a = model.copy();
+		final M b = model.copy();
+		boolean aIllDefined = false, bIllDefined = false;
+		try
+		{
+			a.fit( moments( matches, 1234 ) );
+		}
+		catch ( final IllDefinedDataPointsException e )
+		{
+			aIllDefined = true;
+		}
+		try
+		{
+			b.fit( matches );
+			final double[] n = new double[ 6 ];
+			b.toArray( n );
+			for ( final double v : n )
+				if ( Double.isNaN( v ) )
+					bIllDefined = true;
+		}
+		catch ( final IllDefinedDataPointsException e )
+		{
+			bIllDefined = true;
+		}
+		assertEquals( bIllDefined, aIllDefined );
+		if ( !aIllDefined )
+		{
+			final double[] m = new double[ 6 ], n = new double[ 6 ];
+			a.toArray( m );
+			b.toArray( n );
+			for ( int i = 0; i < m.length; ++i )
+				assertEquals( n[ i ], m[ i ], 1e-6 );
+		}
+	}
+
+	@Test
+	public void testCollinear() throws Exception
+	{
+		final double[][] p = new double[][]{ { 0, 0 }, { 7.3, 14.6 }, { 14.6, 29.2 } };
+		final double[][] q = new double[][]{ { 1, 1 }, { 8.3, 15.6 }, { 15.6, 30.2 } };
+		compare( new AffineModel2D(), matches( p, q ) );
+	}
+
+	@Test
+	public void testCoincident() throws Exception
+	{
+		final double[][] p = new double[][]{ { 3, 4 }, { 3, 4 }, { 3, 4 } };
+		final double[][] q = new double[][]{ { 1, 1 }, { 8, 15 }, { 15, 30 } };
+		compare( new AffineModel2D(), matches( p, q ) );
+		compare( new SimilarityModel2D(), matches( p, q ) );
+		compare( new RigidModel2D(), matches( p, q ) );
+	}
+
+	@Test
+	public void testWellDefined() throws Exception
+	{
+		final double[][] p = new double[][]{ { 0, 0 }, { 10, 1 }, { 2, 12 }, { 9, 8 } };
+		final double[][] q = new double[][]{ { 5, 3 }, { 14, 8 }, { 3, 14 }, { 11, 13 } };
+		compare( new AffineModel2D(), matches( p, q ) );
+		compare( new SimilarityModel2D(), matches( p, q ) );
+		compare( new RigidModel2D(), matches( p, q ) );
+		compare( new TranslationModel2D(), matches( p, q ) );
+	}
+}
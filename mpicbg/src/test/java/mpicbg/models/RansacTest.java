@@ -0,0 +1,105 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link AbstractModel#ransac(java.util.List, java.util.Collection, int, double, double, int, RansacParam)}.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class RansacTest
+{
+	/**
+	 * Candidates of which the first numInliers are shifted by (30, -20) with
+	 * little noise, the remaining are random.
+	 */
+	static protected ArrayList< PointMatch > candidates( final int numCandidates, final int numInliers, final long seed )
+	{
+		final Random rnd = new Random( seed );
+		final ArrayList< PointMatch > candidates = new ArrayList< PointMatch >();
+		for ( int i = 0; i < numCandidates; ++i )
+		{
+			final double[] p = new double[]{ 1000 * rnd.nextDouble(), 1000 * rnd.nextDouble() };
+			final double[] q = i < numInliers ?
+					new double[]{ p[ 0 ] + 30 + 0.1 * rnd.nextGaussian(), p[ 1 ] - 20 + 0.1 * rnd.nextGaussian() } :
+					new double[]{ 1000 * rnd.nextDouble(), 1000 * rnd.nextDouble() };
+			candidates.add( new PointMatch( new Point( p ), new Point( q ) ) );
+		}
+		return candidates;
+	}
+
+	static protected void assertShift( final TranslationModel2D model )
+	{
+		final double[] l = model.apply( new double[]{ 0, 0 } );
+		assertEquals( 30, l[ 0 ], 0.1 );
+		assertEquals( -20, l[ 1 ], 0.1 );
+	}
+
+	static protected ArrayList< PointMatch > ransac(
+			final ArrayList< PointMatch > candidates,
+			final double minInlierRatio,
+			final boolean sprt ) throws Exception
+	{
+		final RansacParam param = new RansacParam();
+		param.seed = 1234;
+		param.sprt = sprt;
+		final TranslationModel2D model = new TranslationModel2D();
+		final ArrayList< PointMatch > inliers = new ArrayList< PointMatch >();
+		assertTrue( model.ransac( candidates, inliers, 1000, 1.0, minInlierRatio, 10, param ) );
+		assertShift( model );
+		return inliers;
+	}
+
+	/**
+	 * Models with an inlier ratio below {@link RansacParam#sprtDelta} but
+	 * above the minimal inlier ratio must not be rejected by SPRT.
+	 */
+	@Test
+	public void testSprtLowInlierRatio() throws Exception
+	{
+		final ArrayList< PointMatch > candidates = candidates( 2000, 100, 1234 );
+		final int numInliers = ransac( candidates, 0.02, false ).size();
+		assertTrue( numInliers >= 100 );
+		assertEquals( numInliers, ransac( candidates, 0.02, true ).size() );
+	}
+
+	/**
+	 * Models with an inlier ratio just above the minimal inlier ratio must
+	 * be found with SPRT.
+	 */
+	@Test
+	public void testSprt() throws Exception
+	{
+		final ArrayList< PointMatch > candidates = candidates( 2000, 300, 4321 );
+		final int numInliers = ransac( candidates, 0.12, false ).size();
+		assertTrue( numInliers >= 300 );
+		assertEquals( numInliers, ransac( candidates, 0.12, true ).size() );
+	}
+}
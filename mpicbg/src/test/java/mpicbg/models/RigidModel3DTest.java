@@ -0,0 +1,147 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static mpicbg.models.JamaReference.collinear;
+import static mpicbg.models.JamaReference.coplanar;
+import static mpicbg.models.JamaReference.fitHorn;
+import static mpicbg.models.JamaReference.matches;
+import static mpicbg.models.JamaReference.random;
+import static mpicbg.models.JamaReference.randomHorn;
+import static mpicbg.models.JamaReference.repeated;
+import static mpicbg.models.JamaReference.residual;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mpicbg.util.Matrix3x3;
+
+/**
+ * Compares {@link RigidModel3D#fit(java.util.Collection)} with the Jama
+ * based reference {@link JamaReference#fitHorn(java.util.List, boolean)}.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class RigidModel3DTest
+{
+	/**
+	 * Tests that the upper left 3&times;3 of m is s times a rotation.
+	 */
+	static protected void assertRotation( final double[] m, final double s )
+	{
+		for ( int i = 0; i < 3; ++i )
+			for ( int j = 0; j < 3; ++j )
+			{
+				double dot = 0;
+				for ( int k = 0; k < 3; ++k )
+					dot += m[ k * 4 + i ] * m[ k * 4 + j ];
+				assertEquals( i == j ? s * s : 0, dot, 1e-9 * s * s );
+			}
+		assertEquals( s * s * s, Matrix3x3.det( m[ 0 ], m[ 1 ], m[ 2 ], m[ 4 ], m[ 5 ], m[ 6 ], m[ 8 ], m[ 9 ], m[ 10 ] ), 1e-9 * s * s * s );
+	}
+
+	/**
+	 * Fit both implementations and compare their residuals and, if the
+	 * solution is unique, the transformations.
+	 */
+	static protected void compare( final ArrayList< PointMatch > matches, final boolean unique ) throws Exception
+	{
+		final RigidModel3D model = new RigidModel3D();
+		model.fit( matches );
+		final double[] m = model.getMatrix( null );
+		final double[] r = fitHorn( matches, false );
+
+		assertRotation( m, 1 );
+		final double rr = residual( r, matches );
+		assertEquals( rr, residual( m, matches ), 1e-9 * Math.max( 1, rr ) );
+		if ( unique )
+			assertArrayEquals( r, m, 1e-8 );
+	}
+
+	@Test
+	public void testRandom() throws Exception
+	{
+		final Random rnd = new Random( 0 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			final int n = 3 + rnd.nextInt( 20 );
+			compare( matches( random( n, 3, rnd ), randomHorn( 1, rnd ), 0, rnd ), true );
+			compare( matches( random( n, 3, rnd ), randomHorn( 1, rnd ), 1, rnd ), true );
+		}
+	}
+
+	@Test
+	public void testWeighted() throws Exception
+	{
+		final Random rnd = new Random( 1 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			final ArrayList< PointMatch > matches = matches( random( 10, 3, rnd ), randomHorn( 1, rnd ), 1, rnd );
+			for ( final PointMatch pm : matches )
+				pm.setWeights( new double[]{ rnd.nextDouble() } );
+			compare( matches, true );
+		}
+	}
+
+	@Test
+	public void testNearlyDegenerate() throws Exception
+	{
+		final Random rnd = new Random( 2 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			compare( matches( collinear( 10, 3, 1e-3, rnd ), randomHorn( 1, rnd ), 0, rnd ), false );
+			compare( matches( coplanar( 10, 1e-6, rnd ), randomHorn( 1, rnd ), 1e-3, rnd ), true );
+		}
+	}
+
+	/**
+	 * Coplanar points define the rotation, collinear points leave the
+	 * rotation about the line free and a single repeated point leaves the
+	 * rotation entirely free.
+	 */
+	@Test
+	public void testDegenerate() throws Exception
+	{
+		final Random rnd = new Random( 3 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			compare( matches( coplanar( 10, 0, rnd ), randomHorn( 1, rnd ), 0, rnd ), true );
+			compare( matches( coplanar( 3, 0, rnd ), randomHorn( 1, rnd ), 1, rnd ), true );
+			compare( matches( repeated( 12, 3, 3, rnd ), randomHorn( 1, rnd ), 0, rnd ), true );
+			compare( matches( collinear( 10, 3, 0, rnd ), randomHorn( 1, rnd ), 0, rnd ), false );
+			compare( matches( repeated( 10, 2, 3, rnd ), randomHorn( 1, rnd ), 0, rnd ), false );
+			compare( matches( repeated( 10, 1, 3, rnd ), randomHorn( 1, rnd ), 0, rnd ), false );
+		}
+	}
+
+	@Test( expected = NotEnoughDataPointsException.class )
+	public void testNotEnoughDataPoints() throws Exception
+	{
+		final Random rnd = new Random( 4 );
+		new RigidModel3D().fit( matches( random( 2, 3, rnd ), randomHorn( 1, rnd ), 0, rnd ) );
+	}
+}
@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static mpicbg.models.JamaReference.collinear;
+import static mpicbg.models.JamaReference.coplanar;
+import static mpicbg.models.JamaReference.fitHorn;
+import static mpicbg.models.JamaReference.matches;
+import static mpicbg.models.JamaReference.random;
+import static mpicbg.models.JamaReference.randomHorn;
+import static mpicbg.models.JamaReference.repeated;
+import static mpicbg.models.JamaReference.residual;
+import static mpicbg.models.RigidModel3DTest.assertRotation;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mpicbg.util.Matrix3x3;
+
+/**
+ * Compares {@link SimilarityModel3D#fit(java.util.Collection)} with the
+ * Jama based reference
+ * {@link JamaReference#fitHorn(java.util.List, boolean)}.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class SimilarityModel3DTest
+{
+	static protected void compare( final ArrayList< PointMatch > matches, final boolean unique ) throws Exception
+	{
+		final SimilarityModel3D model = new SimilarityModel3D();
+		model.fit( matches );
+		final double[] m = model.getMatrix( null );
+		final double[] r = fitHorn( matches, true );
+
+		assertRotation( m, Math.cbrt( Math.abs( Matrix3x3.det( r[ 0 ], r[ 1 ], r[ 2 ], r[ 4 ], r[ 5 ], r[ 6 ], r[ 8 ], r[ 9 ], r[ 10 ] ) ) ) );
+		final double rr = residual( r, matches );
+		assertEquals( rr, residual( m, matches ), 1e-9 * Math.max( 1, rr ) );
+		if ( unique )
+			assertArrayEquals( r, m, 1e-8 );
+	}
+
+	@Test
+	public void testRandom() throws Exception
+	{
+		final Random rnd = new Random( 0 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			final int n = 3 + rnd.nextInt( 20 );
+			final double s = 0.1 + rnd.nextDouble() * 10;
+			compare( matches( random( n, 3, rnd ), randomHorn( s, rnd ), 0, rnd ), true );
+			compare( matches( random( n, 3, rnd ), randomHorn( s, rnd ), 1, rnd ), true );
+		}
+	}
+
+	@Test
+	public void testNearlyDegenerate() throws Exception
+	{
+		final Random rnd = new Random( 2 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			compare( matches( collinear( 10, 3, 1e-3, rnd ), randomHorn( 2, rnd ), 0, rnd ), false );
+			compare( matches( coplanar( 10, 1e-6, rnd ), randomHorn( 0.5, rnd ), 1e-3, rnd ), true );
+		}
+	}
+
+	/**
+	 * Coplanar points define the similarity, collinear points leave the
+	 * rotation about the line free.
+	 */
+	@Test
+	public void testDegenerate() throws Exception
+	{
+		final Random rnd = new Random( 3 );
+		for ( int i = 0; i < 100; ++i )
+		{
+			compare( matches( coplanar( 10, 0, rnd ), randomHorn( 3, rnd ), 0, rnd ), true );
+			compare( matches( coplanar( 3, 0, rnd ), randomHorn( 3, rnd ), 1, rnd ), true );
+			compare( matches( repeated( 12, 3, 3, rnd ), randomHorn( 0.3, rnd ), 0, rnd ), true );
+			compare( matches( collinear( 10, 3, 0, rnd ), randomHorn( 3, rnd ), 0, rnd ), false );
+			compare( matches( repeated( 10, 2, 3, rnd ), randomHorn( 0.3, rnd ), 0, rnd ), false );
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+/**
+ * Compares the component-wise and multigrid optimizers of
+ * {@link TileConfiguration} with the converged
+ * relaxation of
+ * {@link TileConfiguration#optimizeSilently(ErrorStatistic, double, int, int)}.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class TileConfigurationTest
+{
+	static protected < M extends AbstractAffineModel2D< M > > void assertSameModels(
+			final List< Tile< M > > a,
+			final List< Tile< M > > b,
+			final double tolerance )
+	{
+		for ( int i = 0; i < a.size(); ++i )
+			for ( final double[] l : new double[][]{ { 0, 0 }, { 100, 0 }, { 0, 100 }, { 100, 100 } } )
+			{
+				final double[] p = a.get( i ).getModel().apply( l );
+				final double[] q = b.get( i ).getModel().apply( l );
+				assertEquals( "tile " + i + " x", q[ 0 ], p[ 0 ], tolerance );
+				assertEquals( "tile " + i + " y", q[ 1 ], p[ 1 ], tolerance );
+			}
+	}
+
+	/**
+	 * Two disconnected grids with one fixed tile each and a tile that is
+	 * connected to a tile outside of the configuration.
+	 */
+	static protected ArrayList< Tile< AffineModel2D > > components( final TileConfiguration tc )
+	{
+		final ArrayList< Tile< AffineModel2D > > tiles = TileSolverTest.grid( new AffineModel2D(), 3, 1234 );
+		final ArrayList< Tile< AffineModel2D > > second = TileSolverTest.grid( new AffineModel2D(), 4, 4321 );
+		tc.addTiles( tiles );
+		tc.addTiles( second );
+		tc.fixTile( tiles.get( 0 ) );
+		tc.fixTile( second.get( 5 ) );
+		tiles.addAll( second );
+
+		final Tile< AffineModel2D > single = new Tile< AffineModel2D >( new AffineModel2D() );
+		final Tile< AffineModel2D > outside = new Tile< AffineModel2D >( new AffineModel2D() );
+		single.connect( outside, TileSolverTest.matches(
+				new double[][]{ { 0, 0 }, { 100, 0 }, { 0, 100 } },
+				new double[][]{ { 10, 0 }, { 110, 0 }, { 10, 100 } } ) );
+		tc.addTile( single );
+		tc.fixTile( single );
+		tiles.add( single );
+		tiles.add( outside );
+
+		return tiles;
+	}
+
+	static protected void compareComponents( final ExecutorService executor ) throws Exception
+	{
+		final TileConfiguration tcComponents = new TileConfiguration();
+		final ArrayList< Tile< AffineModel2D > > components = components( tcComponents );
+		final List< TileConfiguration.ComponentStatistic > statistics =
+				tcComponents.optimizeComponentsSilently( 0, 100000, 1000, 1.0, executor );
+
+		final TileConfiguration tcRelaxed = new TileConfiguration();
+		final ArrayList< Tile< AffineModel2D > > relaxed = components( tcRelaxed );
+		tcRelaxed.optimizeSilently( new ErrorStatistic( 1001 ), 0, 100000, 1000 );
+
+		assertEquals( 3, statistics.size() );
+		assertEquals( 16, statistics.get( 0 ).getNumTiles() );
+		assertEquals( 9, statistics.get( 1 ).getNumTiles() );
+		assertEquals( 1, statistics.get( 2 ).getNumTiles() );
+		assertEquals( tcRelaxed.getError(), tcComponents.getError(), 1e-3 );
+		assertSameModels( components, relaxed, 1e-3 );
+
+		/* the tile outside of the configuration remains untouched */
+		assertEquals( 0, components.get( components.size() - 1 ).getModel().apply( new double[]{ 0, 0 } )[ 0 ], 0 );
+	}
+
+	@Test
+	public void testComponents() throws Exception
+	{
+		compareComponents( null );
+	}
+
+	@Test
+	public void testComponentsConcurrent() throws Exception
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			compareComponents( executor );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	static protected < M extends AbstractAffineModel2D< M > > void compareMultilevel(
+			final M prototype,
+			final int size,
+			final double tolerance ) throws Exception
+	{
+		final ArrayList< Tile< M > > multilevel = TileSolverTest.grid( prototype, size, 1234 );
+		final ArrayList< Tile< M > > relaxed = TileSolverTest.grid( prototype, size, 1234 );
+
+		final TileConfiguration tcMultilevel = new TileConfiguration();
+		tcMultilevel.addTiles( multilevel );
+		tcMultilevel.fixTile( multilevel.get( 0 ) );
+		tcMultilevel.optimizeMultilevelSilently( new ErrorStatistic( 1001 ), 0, 100000, 1000, 1.0 );
+
+		final TileConfiguration tcRelaxed = new TileConfiguration();
+		tcRelaxed.addTiles( relaxed );
+		tcRelaxed.fixTile( relaxed.get( 0 ) );
+		tcRelaxed.optimizeSilently( new ErrorStatistic( 1001 ), 0, 100000, 1000 );
+
+		assertEquals( tcRelaxed.getError(), tcMultilevel.getError(), tolerance );
+		assertSameModels( multilevel, relaxed, tolerance );
+	}
+
+	@Test
+	public void testMultilevelTranslation() throws Exception
+	{
+		compareMultilevel( new TranslationModel2D(), 8, 1e-3 );
+	}
+
+	@Test
+	public void testMultilevelAffine() throws Exception
+	{
+		compareMultilevel( new AffineModel2D(), 3, 1e-3 );
+	}
+}
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests the packed {@link TileGraph} against the {@link Tile Tiles} it was
+ * created from.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class TileGraphTest
+{
+	/**
+	 * After an interrupted optimization, the costs and distances written back
+	 * into the {@link Tile Tiles} must be those of the final configuration.
+	 */
+	@Test
+	public void testWriteBack() throws Exception
+	{
+		final ArrayList< Tile< TranslationModel2D > > tiles = TileSolverTest.grid( new TranslationModel2D(), 6, 4321 );
+
+		final TileConfiguration tc = new TileConfiguration();
+		tc.addTiles( tiles );
+		tc.fixTile( tiles.get( 0 ) );
+		tc.optimizeSilently( new ErrorStatistic( 6 ), 0, 5, 5 );
+
+		for ( int i = 0; i < tiles.size(); ++i )
+		{
+			final Tile< ? > tile = tiles.get( i );
+			final double distance = tile.getDistance();
+			final double cost = tile.getCost();
+			tile.updateCost();
+			assertEquals( "tile " + i + " distance", tile.getDistance(), distance, 1e-9 );
+			assertEquals( "tile " + i + " cost", tile.getCost(), cost, 1e-9 );
+		}
+	}
+
+	/**
+	 * {@link TileGraph#updateCost(int)} computes the same costs and distances
+	 * as {@link Tile#updateCost()}.
+	 */
+	@Test
+	public void testUpdateCost() throws Exception
+	{
+		final ArrayList< Tile< AffineModel2D > > tiles = TileSolverTest.grid( new AffineModel2D(), 4, 4321 );
+		final ArrayList< Tile< ? > > fixed = new ArrayList< Tile< ? > >();
+		fixed.add( tiles.get( 0 ) );
+
+		final TileGraph graph = new TileGraph( tiles, fixed );
+		final double[][] scratch = graph.createScratch();
+		for ( int i = 0; i < graph.numTiles(); ++i )
+			graph.apply( i, scratch );
+		for ( int i = 0; i < graph.numTiles(); ++i )
+			graph.updateCost( i );
+		graph.writeBack();
+
+		for ( int i = 0; i < graph.numTiles(); ++i )
+		{
+			final Tile< ? > tile = graph.getTile( i );
+			assertEquals( "tile " + i + " distance", tile.getDistance(), graph.getDistance( i ), 1e-9 );
+			assertEquals( "tile " + i + " cost", tile.getCost(), graph.getCost( i ), 1e-9 );
+		}
+	}
+
+	/**
+	 * Colour classes cover all free tiles once and no two tiles of a class
+	 * are connected.
+	 */
+	@Test
+	public void testColourClasses()
+	{
+		final ArrayList< Tile< TranslationModel2D > > tiles = TileSolverTest.grid( new TranslationModel2D(), 5, 4321 );
+		final ArrayList< Tile< ? > > fixed = new ArrayList< Tile< ? > >();
+		fixed.add( tiles.get( 12 ) );
+
+		final TileGraph graph = new TileGraph( tiles, fixed );
+		final int[] classOf = new int[ graph.numTiles() ];
+		Arrays.fill( classOf, -1 );
+		final int[][] classes = graph.colourClasses();
+		for ( int c = 0; c < classes.length; ++c )
+			for ( final int i : classes[ c ] )
+			{
+				assertEquals( -1, classOf[ i ] );
+				classOf[ i ] = c;
+			}
+
+		for ( int i = 0; i < graph.numTiles(); ++i )
+		{
+			assertEquals( graph.isFixed( i ), classOf[ i ] == -1 );
+			for ( final Tile< ? > other : graph.getTile( i ).getConnectedTiles() )
+				assertFalse( classOf[ i ] >= 0 && classOf[ i ] == classOf[ tiles.indexOf( other ) ] );
+		}
+	}
+}
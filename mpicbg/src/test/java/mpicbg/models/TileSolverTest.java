@@ -0,0 +1,184 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link TileConfiguration#solveSilently(ErrorStatistic, int, double)}
+ * with the converged relaxation of
+ * {@link TileConfiguration#optimizeSilently(ErrorStatistic, double, int, int)}.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class TileSolverTest
+{
+	static protected ArrayList< PointMatch > matches( final double[][] p, final double[][] q )
+	{
+		final ArrayList< PointMatch > matches = new ArrayList< PointMatch >();
+		for ( int i = 0; i < p.length; ++i )
+			matches.add( new PointMatch( new Point( p[ i ].clone() ), new Point( q[ i ].clone() ) ) );
+		return matches;
+	}
+
+	static protected double x( final Tile< ? > tile )
+	{
+		final double[] l = new double[ 2 ];
+		tile.getModel().applyInPlace( l );
+		return l[ 0 ];
+	}
+
+	/**
+	 * A fixed, B = A + 1, C = B + 1, C = A + 3 has the least squares
+	 * solution B = 4/3, C = 8/3 with all connections counting once.
+	 */
+	@Test
+	public void testChain()
+	{
+		final Tile< TranslationModel2D > a = new Tile< TranslationModel2D >( new TranslationModel2D() );
+		final Tile< TranslationModel2D > b = new Tile< TranslationModel2D >( new TranslationModel2D() );
+		final Tile< TranslationModel2D > c = new Tile< TranslationModel2D >( new TranslationModel2D() );
+
+		final double[][] o = new double[][]{ { 0, 0 } };
+		b.connect( a, matches( o, new double[][]{ { 1, 0 } } ) );
+		c.connect( b, matches( o, new double[][]{ { 1, 0 } } ) );
+		c.connect( a, matches( o, new double[][]{ { 3, 0 } } ) );
+
+		final TileConfiguration tc = new TileConfiguration();
+		tc.addTile( a );
+		tc.addTile( b );
+		tc.addTile( c );
+		tc.fixTile( a );
+		tc.solveSilently( new ErrorStatistic( 2 ), 10, 0 );
+
+		assertEquals( 0, x( a ), 1e-9 );
+		assertEquals( 4.0 / 3.0, x( b ), 1e-9 );
+		assertEquals( 8.0 / 3.0, x( c ), 1e-9 );
+	}
+
+	/**
+	 * Grid of tiles with random models, each tile overlapping its right and
+	 * lower neighbour with noisy matches.
+	 */
+	static protected < M extends AbstractAffineModel2D< M > > ArrayList< Tile< M > > grid(
+			final M prototype,
+			final int size,
+			final long seed )
+	{
+		final Random rnd = new Random( seed );
+		final ArrayList< Tile< M > > tiles = new ArrayList< Tile< M > >();
+		final ArrayList< AffineModel2D > truth = new ArrayList< AffineModel2D >();
+		for ( int i = 0; i < size * size; ++i )
+		{
+			tiles.add( new Tile< M >( prototype.copy() ) );
+			final AffineModel2D t = new AffineModel2D();
+			final double r = 0.05 * ( rnd.nextDouble() - 0.5 );
+			t.set(
+					Math.cos( r ) + 0.02 * rnd.nextGaussian(), Math.sin( r ), -Math.sin( r ), Math.cos( r ) + 0.02 * rnd.nextGaussian(),
+					90 * ( i % size ) + 5 * rnd.nextGaussian(), 90 * ( i / size ) + 5 * rnd.nextGaussian() );
+			truth.add( t );
+		}
+		for ( int i = 0; i < size * size; ++i )
+		{
+			final int x = i % size, y = i / size;
+			for ( int k = 0; k < 2; ++k )
+			{
+				final int j = k == 0 ? ( x + 1 < size ? i + 1 : -1 ) : ( y + 1 < size ? i + size : -1 );
+				if ( j < 0 )
+					continue;
+				final ArrayList< PointMatch > matches = new ArrayList< PointMatch >();
+				for ( int m = 0; m < 20; ++m )
+				{
+					/* a location in the overlap in world coordinates of the ideal layout */
+					final double[] w = new double[]{
+							90 * x + ( k == 0 ? 90 : 0 ) + 10 * rnd.nextDouble(),
+							90 * y + ( k == 1 ? 90 : 0 ) + 100 * rnd.nextDouble() };
+					final double[] p = w.clone();
+					final double[] q = w.clone();
+					try
+					{
+						truth.get( i ).applyInverseInPlace( p );
+						truth.get( j ).applyInverseInPlace( q );
+					}
+					catch ( final NoninvertibleModelException e ) {}
+					q[ 0 ] += 0.5 * rnd.nextGaussian();
+					q[ 1 ] += 0.5 * rnd.nextGaussian();
+					matches.add( new PointMatch( new Point( p ), new Point( q ) ) );
+				}
+				tiles.get( i ).connect( tiles.get( j ), matches );
+			}
+		}
+		return tiles;
+	}
+
+	static protected < M extends AbstractAffineModel2D< M > > void compare(
+			final M prototype,
+			final int maxIterations,
+			final double tolerance ) throws Exception
+	{
+		final ArrayList< Tile< M > > solved = grid( prototype, 3, 1234 );
+		final ArrayList< Tile< M > > relaxed = grid( prototype, 3, 1234 );
+
+		final TileConfiguration tcSolved = new TileConfiguration();
+		tcSolved.addTiles( solved );
+		tcSolved.fixTile( solved.get( 0 ) );
+		tcSolved.solveSilently( new ErrorStatistic( maxIterations + 1 ), maxIterations, 0 );
+
+		final TileConfiguration tcRelaxed = new TileConfiguration();
+		tcRelaxed.addTiles( relaxed );
+		tcRelaxed.fixTile( relaxed.get( 0 ) );
+		tcRelaxed.optimizeSilently( new ErrorStatistic( 1001 ), 0, 100000, 1000 );
+
+		assertEquals( tcRelaxed.getError(), tcSolved.getError(), tolerance );
+		for ( int i = 0; i < solved.size(); ++i )
+			for ( final double[] l : new double[][]{ { 0, 0 }, { 100, 0 }, { 0, 100 }, { 100, 100 } } )
+			{
+				final double[] a = solved.get( i ).getModel().apply( l );
+				final double[] b = relaxed.get( i ).getModel().apply( l );
+				assertEquals( "tile " + i + " x", b[ 0 ], a[ 0 ], tolerance );
+				assertEquals( "tile " + i + " y", b[ 1 ], a[ 1 ], tolerance );
+			}
+	}
+
+	@Test
+	public void testTranslation() throws Exception
+	{
+		compare( new TranslationModel2D(), 1, 1e-3 );
+	}
+
+	@Test
+	public void testAffine() throws Exception
+	{
+		compare( new AffineModel2D(), 1, 1e-3 );
+	}
+
+	@Test
+	public void testRigid() throws Exception
+	{
+		compare( new RigidModel2D(), 20, 1e-3 );
+	}
+}
@@ -0,0 +1,74 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class TileTest
+{
+	static protected Tile< TranslationModel2D > tile()
+	{
+		return new Tile< TranslationModel2D >( new TranslationModel2D() );
+	}
+
+	static protected void connect( final Tile< ? > a, final Tile< ? > b )
+	{
+		a.connect( b, TileSolverTest.matches( new double[][]{ { 0, 0 } }, new double[][]{ { 1, 0 } } ) );
+	}
+
+	/**
+	 * Connected tiles outside of the given collection must not hide given
+	 * tiles from the components.
+	 */
+	@Test
+	public void testIdentifyConnectedGraphs()
+	{
+		final Tile< TranslationModel2D > a = tile(), b = tile(), c = tile(), d = tile(), outside = tile();
+		connect( a, outside );
+		connect( b, c );
+
+		final ArrayList< Tile< ? > > tiles = new ArrayList< Tile< ? > >();
+		tiles.add( a );
+		tiles.add( b );
+		tiles.add( c );
+		tiles.add( d );
+
+		final ArrayList< Set< Tile< ? > > > graphs = Tile.identifyConnectedGraphs( tiles );
+		assertEquals( 3, graphs.size() );
+
+		final HashSet< Tile< ? > > covered = new HashSet< Tile< ? > >();
+		for ( final Set< Tile< ? > > graph : graphs )
+			covered.addAll( graph );
+		assertTrue( covered.containsAll( tiles ) );
+		assertTrue( covered.contains( outside ) );
+	}
+}
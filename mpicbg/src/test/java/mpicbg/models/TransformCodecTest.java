@@ -0,0 +1,259 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.models;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Round-trips through {@link TransformCodec}.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class TransformCodecTest
+{
+	static protected byte[] encode( final CoordinateTransform... transforms ) throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try ( final TransformCodec.Writer writer = new TransformCodec.Writer( bytes ) )
+		{
+			for ( final CoordinateTransform t : transforms )
+				writer.write( t );
+		}
+		return bytes.toByteArray();
+	}
+
+	static protected ArrayList< CoordinateTransform > decode( final byte[] bytes ) throws IOException
+	{
+		try ( final TransformCodec.Reader reader = new TransformCodec.Reader( new ByteArrayInputStream( bytes ) ) )
+		{
+			return reader.readAll();
+		}
+	}
+
+	static protected void assertSameTransform( final CoordinateTransform a, final CoordinateTransform b, final int n, final Random rnd )
+	{
+		assertSameTransform( a, b, n, rnd, 0 );
+	}
+
+	static protected void assertSameTransform( final CoordinateTransform a, final CoordinateTransform b, final int n, final Random rnd, final double tol )
+	{
+		for ( int i = 0; i < 100; ++i )
+		{
+			final double[] l = new double[ n ];
+			for ( int d = 0; d < n; ++d )
+				l[ d ] = rnd.nextDouble() * 100;
+			assertArrayEquals( a.apply( l ), b.apply( l ), tol );
+		}
+	}
+
+	static protected SpringMesh distortedSpringMesh( final Random rnd )
+	{
+		final SpringMesh mesh = new SpringMesh( 8, 100, 80, 0.1, 1000, 0.9 );
+		for ( final PointMatch pm : mesh.getVA().keySet() )
+		{
+			final double[] w = pm.getP2().getW();
+			w[ 0 ] += rnd.nextGaussian();
+			w[ 1 ] += rnd.nextGaussian();
+		}
+		mesh.updateAffines();
+		return mesh;
+	}
+
+	@Test
+	public void testModels() throws IOException
+	{
+		final Random rnd = new Random( 0 );
+		final AffineModel2D affine = new AffineModel2D();
+		affine.set( 1.1, 0.1, -0.2, 0.9, 10, -5 );
+		final RigidModel2D rigid = new RigidModel2D();
+		rigid.set( 0.3, 4, -2 );
+		final AffineModel3D affine3d = new AffineModel3D();
+		affine3d.set( 1.1, 0.1, 0.2, 3, -0.1, 0.9, 0.3, 4, 0.2, -0.3, 1.2, 5 );
+		final CoordinateTransformList< CoordinateTransform > list = new CoordinateTransformList< CoordinateTransform >();
+		list.add( affine );
+		list.add( rigid );
+
+		final ArrayList< CoordinateTransform > ts = decode( encode( affine, rigid, affine3d, list ) );
+		assertEquals( 4, ts.size() );
+		assertSameTransform( affine, ts.get( 0 ), 2, rnd );
+		assertSameTransform( rigid, ts.get( 1 ), 2, rnd );
+		assertSameTransform( affine3d, ts.get( 2 ), 3, rnd );
+		assertSameTransform( list, ts.get( 3 ), 2, rnd );
+	}
+
+	static protected HashMap< String, Vertex > verticesBySource( final SpringMesh mesh )
+	{
+		final HashMap< String, Vertex > vertices = new HashMap< String, Vertex >();
+		for ( final Vertex vertex : mesh.getVertices() )
+			vertices.put( Arrays.toString( vertex.getL() ), vertex );
+		return vertices;
+	}
+
+	@Test
+	public void testSpringMesh() throws Exception
+	{
+		final Random rnd = new Random( 1 );
+		final SpringMesh mesh = distortedSpringMesh( rnd );
+		final byte[] bytes = encode( mesh );
+		assertEquals( TransformCodec.SPRING_MESH, bytes[ 8 ] );
+
+		final SpringMesh decoded = ( SpringMesh )decode( bytes ).get( 0 );
+		assertEquals( mesh.getVA().size(), decoded.getVA().size() );
+		assertEquals( mesh.getAV().size(), decoded.getAV().size() );
+		assertEquals( mesh.numVertices(), decoded.numVertices() );
+		assertSameTransform( mesh, decoded, 2, rnd );
+
+		/* same springs between the same vertices */
+		final HashMap< String, Vertex > vertices = verticesBySource( mesh );
+		final HashMap< String, Vertex > decodedVertices = verticesBySource( decoded );
+		assertEquals( vertices.size(), decodedVertices.size() );
+		for ( final Vertex vertex : mesh.getVertices() )
+		{
+			final Vertex decodedVertex = decodedVertices.get( Arrays.toString( vertex.getL() ) );
+			assertArrayEquals( vertex.getW(), decodedVertex.getW(), 0 );
+			assertEquals( vertex.getConnectedVertices().size(), decodedVertex.getConnectedVertices().size() );
+			for ( final Vertex other : vertex.getConnectedVertices() )
+			{
+				final Spring spring = vertex.getSpring( other );
+				final Spring decodedSpring = decodedVertex.getSpring( decodedVertices.get( Arrays.toString( other.getL() ) ) );
+				assertNotNull( decodedSpring );
+				assertEquals( spring.getLength(), decodedSpring.getLength(), 0 );
+				assertEquals( spring.getWeight(), decodedSpring.getWeight(), 0 );
+				assertEquals( spring.maxStretch, decodedSpring.maxStretch, 0 );
+			}
+		}
+
+		/* a decoded mesh optimizes like the original */
+		mesh.optimize( 0, 50, 10 );
+		decoded.optimize( 0, 50, 10 );
+		assertSameTransform( mesh, decoded, 2, rnd, 1e-6 );
+	}
+
+	/**
+	 * Vertices and triangles are written in canonical order, so that
+	 * re-encoding a decoded mesh reproduces the bytes.
+	 */
+	@Test
+	public void testMeshOrder() throws IOException
+	{
+		final Random rnd = new Random( 2 );
+		final byte[] bytes = encode( distortedSpringMesh( rnd ) );
+		final TransformMesh decoded = ( TransformMesh )decode( bytes ).get( 0 );
+		assertArrayEquals( bytes, encode( decoded ) );
+		assertArrayEquals( bytes, encode( ( TransformMesh )decode( encode( decoded ) ).get( 0 ) ) );
+	}
+
+	static protected ArrayList< PointMatch > randomMatches( final Random rnd, final double dx, final double dy )
+	{
+		final ArrayList< PointMatch > matches = new ArrayList< PointMatch >();
+		for ( int i = 0; i < 10; ++i )
+		{
+			final double x = rnd.nextDouble() * 100, y = rnd.nextDouble() * 100;
+			matches.add( new PointMatch(
+					new Point( new double[]{ x, y } ),
+					new Point( new double[]{ x + dx + rnd.nextGaussian(), y + dy + rnd.nextGaussian() } ),
+					rnd.nextDouble() ) );
+		}
+		return matches;
+	}
+
+	@Test
+	public void testTileConfiguration() throws Exception
+	{
+		final Random rnd = new Random( 3 );
+		final ArrayList< Tile< RigidModel2D > > tiles = new ArrayList< Tile< RigidModel2D > >();
+		final TileConfiguration tc = new TileConfiguration();
+		for ( int i = 0; i < 4; ++i )
+		{
+			final Tile< RigidModel2D > tile = new Tile< RigidModel2D >( new RigidModel2D() );
+			tiles.add( tile );
+			tc.addTile( tile );
+		}
+		tiles.get( 0 ).connect( tiles.get( 1 ), randomMatches( rnd, 10, 0 ) );
+		tiles.get( 1 ).connect( tiles.get( 2 ), randomMatches( rnd, 0, 10 ) );
+		tiles.get( 2 ).connect( tiles.get( 3 ), randomMatches( rnd, -10, 0 ) );
+		tiles.get( 3 ).connect( tiles.get( 0 ), randomMatches( rnd, 0, -10 ) );
+		tc.fixTile( tiles.get( 0 ) );
+		tc.optimizeSilently( new ErrorStatistic( 11 ), 0, 10, 10 );
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try ( final TransformCodec.Writer writer = new TransformCodec.Writer( bytes ) )
+		{
+			writer.write( tc );
+		}
+		final TileConfiguration decoded;
+		try ( final TransformCodec.Reader reader = new TransformCodec.Reader( new ByteArrayInputStream( bytes.toByteArray() ) ) )
+		{
+			decoded = reader.readTileConfiguration();
+			assertNull( reader.readTileConfiguration() );
+		}
+
+		assertEquals( 4, decoded.getTiles().size() );
+		assertEquals( 1, decoded.getFixedTiles().size() );
+		assertTrue( decoded.getTiles().containsAll( decoded.getFixedTiles() ) );
+
+		/* find the tile of each decoded tile by its model */
+		final HashMap< Tile< ? >, Tile< ? > > map = new HashMap< Tile< ? >, Tile< ? > >();
+		for ( final Tile< ? > d : decoded.getTiles() )
+			for ( final Tile< ? > t : tiles )
+				if ( Arrays.equals( t.getModel().apply( new double[]{ 1, 2 } ), d.getModel().apply( new double[]{ 1, 2 } ) ) )
+					map.put( d, t );
+		assertEquals( 4, map.size() );
+		assertSame( tiles.get( 0 ), map.get( decoded.getFixedTiles().iterator().next() ) );
+
+		for ( final Tile< ? > d : decoded.getTiles() )
+		{
+			final Tile< ? > t = map.get( d );
+			assertEquals( t.getMatches().size(), d.getMatches().size() );
+			assertEquals( t.getConnectedTiles().size(), d.getConnectedTiles().size() );
+			for ( final Tile< ? > c : d.getConnectedTiles() )
+				assertTrue( t.getConnectedTiles().contains( map.get( c ) ) );
+
+			/* the targets of a tile's matches are the sources of the connected tile's matches */
+			for ( final PointMatch m : d.getMatches() )
+			{
+				assertNotNull( d.findConnectedTile( m ) );
+			}
+		}
+
+		/* continuing the optimization continues identically up to summation order */
+		tc.optimizeSilently( new ErrorStatistic( 101 ), 0, 100, 100 );
+		decoded.optimizeSilently( new ErrorStatistic( 101 ), 0, 100, 100 );
+		for ( final Tile< ? > d : decoded.getTiles() )
+			assertSameTransform( map.get( d ).getModel(), d.getModel(), 2, rnd, 1e-6 );
+	}
+}
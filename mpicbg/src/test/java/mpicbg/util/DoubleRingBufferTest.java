@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link DoubleRingBuffer} and its views with a {@link RingBuffer}.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class DoubleRingBufferTest
+{
+	@Test
+	public void testViews()
+	{
+		final Random rnd = new Random( 1234 );
+		final DoubleRingBuffer buffer = new DoubleRingBuffer( 7 );
+		final RingBuffer< Double > reference = new RingBuffer< Double >( 7 );
+		final RingBuffer< Double > view = buffer.view();
+		final RingBuffer< Double > sortedView = buffer.sortedView();
+
+		for ( int i = 0; i < 30; ++i )
+		{
+			final double value = rnd.nextInt( 10 );
+			buffer.add( value );
+			reference.add( value );
+
+			assertEquals( reference.size(), view.size() );
+			assertEquals( reference.nextIndex(), view.nextIndex() );
+			assertEquals( reference.lastIndex(), view.lastIndex() );
+
+			final ArrayList< Double > sorted = new ArrayList< Double >();
+			for ( int k = reference.nextIndex() - reference.size(); k < reference.nextIndex(); ++k )
+			{
+				assertEquals( reference.get( k ), view.get( k ) );
+				sorted.add( reference.get( k ) );
+			}
+			Collections.sort( sorted );
+
+			int j = 0;
+			for ( final double v : sortedView )
+				assertEquals( sorted.get( j++ ), v, 0 );
+			int k = view.nextIndex() - view.size();
+			for ( final double v : view )
+				assertEquals( reference.get( k++ ), v, 0 );
+
+			final int n = sorted.size();
+			final double median = n % 2 == 0 ? 0.5 * ( sorted.get( n / 2 - 1 ) + sorted.get( n / 2 ) ) : sorted.get( n / 2 );
+			assertEquals( median, buffer.median(), 0 );
+			assertEquals( sorted.get( n - 1 ), sortedView.get( sortedView.lastIndex() ), 0 );
+		}
+	}
+
+	@Test( expected = UnsupportedOperationException.class )
+	public void testViewReadOnly()
+	{
+		new DoubleRingBuffer( 3 ).view().add( 1.0 );
+	}
+}
@@ -0,0 +1,186 @@
+/*-
+ * #%L
+ * MPICBG Core Library.
+ * %%
+ * Copyright (C) 2008 - 2025 Stephan Saalfeld et. al.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package mpicbg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+
+/**
+ * Compares {@link SymmetricEigen} with Jama's
+ * {@link EigenvalueDecomposition} on random, rank deficient and
+ * degenerate symmetric matrices.
+ *
+ * @author Stephan Saalfeld &lt;saalfelds@janelia.hhmi.org&gt;
+ */
+public class SymmetricEigenTest
+{
+	static protected double[] random( final Random rnd, final int n )
+	{
+		final double[] a = new double[ n * n ];
+		for ( int i = 0; i < n; ++i )
+			for ( int j = i; j < n; ++j )
+				a[ i * n + j ] = a[ j * n + i ] = rnd.nextDouble() * 2 - 1;
+		return a;
+	}
+
+	/**
+	 * @return B^T B for a k&times;n matrix B, i.e. rank &le; k
+	 */
+	static protected double[] gram( final Random rnd, final int n, final int k )
+	{
+		final double[] b = new double[ k * n ];
+		for ( int i = 0; i < b.length; ++i )
+			b[ i ] = rnd.nextDouble() * 2 - 1;
+		final double[] a = new double[ n * n ];
+		for ( int i = 0; i < n; ++i )
+			for ( int j = 0; j < n; ++j )
+				for ( int l = 0; l < k; ++l )
+					a[ i * n + j ] += b[ l * n + i ] * b[ l * n + j ];
+		return a;
+	}
+
+	/**
+	 * @return Q diag(d) Q^T for a random orthogonal Q
+	 */
+	static protected double[] withEigenvalues( final Random rnd, final double... d )
+	{
+		final int n = d.length;
+		final Matrix q = new Matrix( n, n );
+		for ( int i = 0; i < n; ++i )
+			for ( int j = 0; j < n; ++j )
+				q.set( i, j, rnd.nextGaussian() );
+		final Matrix o = q.qr().getQ();
+		final Matrix a = o.times( diag( d ) ).times( o.transpose() );
+		final double[] packed = a.getRowPackedCopy();
+		for ( int i = 0; i < n; ++i )
+			for ( int j = 0; j < i; ++j )
+				packed[ i * n + j ] = packed[ j * n + i ];
+		return packed;
+	}
+
+	static protected Matrix diag( final double[] d )
+	{
+		final Matrix m = new Matrix( d.length, d.length );
+		for ( int i = 0; i < d.length; ++i )
+			m.set( i, i, d[ i ] );
+		return m;
+	}
+
+	static protected void compare( final double[] a, final int n )
+	{
+		double scale = 0;
+		for ( final double x : a )
+			scale = Math.max( scale, Math.abs( x ) );
+		final double tol = 1e-12 * Math.max( 1, scale ) * n;
+
+		final double[] v = new double[ n * n ];
+		final double[] d = new double[ n ];
+		final int sweeps = SymmetricEigen.decompose( a.clone(), n, v, d );
+		assertTrue( sweeps < SymmetricEigen.DEFAULT_MAX_SWEEPS );
+
+		final double[] expected = new EigenvalueDecomposition( new Matrix( a, n ).transpose() ).getRealEigenvalues();
+		final double[] sorted = d.clone();
+		Arrays.sort( sorted );
+		Arrays.sort( expected );
+		for ( int i = 0; i < n; ++i )
+			assertEquals( expected[ i ], sorted[ i ], tol );
+
+		/* eigenvectors are not unique for repeated eigenvalues, test A v = d v and V^T V = I */
+		for ( int k = 0; k < n; ++k )
+		{
+			for ( int i = 0; i < n; ++i )
+			{
+				double av = 0;
+				for ( int j = 0; j < n; ++j )
+					av += a[ i * n + j ] * v[ j * n + k ];
+				assertEquals( d[ k ] * v[ i * n + k ], av, tol );
+			}
+			for ( int l = 0; l < n; ++l )
+			{
+				double dot = 0;
+				for ( int i = 0; i < n; ++i )
+					dot += v[ i * n + k ] * v[ i * n + l ];
+				assertEquals( k == l ? 1 : 0, dot, 1e-12 * n );
+			}
+		}
+	}
+
+	@Test
+	public void testRandom()
+	{
+		final Random rnd = new Random( 0 );
+		for ( final int n : new int[]{ 1, 2, 3, 4, 9 } )
+			for ( int i = 0; i < 100; ++i )
+				compare( random( rnd, n ), n );
+	}
+
+	@Test
+	public void testRankDeficient()
+	{
+		final Random rnd = new Random( 1 );
+		for ( final int n : new int[]{ 3, 4, 9 } )
+			for ( int k = 0; k < n; ++k )
+				for ( int i = 0; i < 20; ++i )
+					compare( gram( rnd, n, k ), n );
+	}
+
+	@Test
+	public void testRepeatedEigenvalues()
+	{
+		final Random rnd = new Random( 2 );
+		for ( int i = 0; i < 20; ++i )
+		{
+			compare( withEigenvalues( rnd, 1, 1, 1, 1 ), 4 );
+			compare( withEigenvalues( rnd, 2, 2, -1, 0 ), 4 );
+			compare( withEigenvalues( rnd, 3, 3, 3, 1e-9 ), 4 );
+			compare( withEigenvalues( rnd, 1, 1 + 1e-12, 5, 5 ), 4 );
+			compare( withEigenvalues( rnd, 0, 0, 0, 0, 0, 0, 0, 0, 1 ), 9 );
+			compare( withEigenvalues( rnd, 1e6, 1, 1, 1, 1e-6, 0, 0, -1, -1e6 ), 9 );
+		}
+	}
+
+	@Test
+	public void testZeroAndDiagonal()
+	{
+		compare( new double[ 16 ], 4 );
+		compare( new double[]{
+				3, 0, 0,
+				0, -1, 0,
+				0, 0, 3 }, 3 );
+	}
+
+	@Test
+	public void testNaN()
+	{
+		final double[] a = new double[]{ 1, Double.NaN, Double.NaN, 1 };
+		final int sweeps = SymmetricEigen.decompose( a, 2, new double[ 4 ], new double[ 2 ], 5 );
+		assertEquals( 5, sweeps );
+	}
+}
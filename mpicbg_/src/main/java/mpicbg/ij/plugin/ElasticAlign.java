@@ -62,6 +62,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -83,6 +84,7 @@ import mpicbg.models.MovingLeastSquaresTransform;
 import mpicbg.models.NotEnoughDataPointsException;
 import mpicbg.models.Point;
 import mpicbg.models.PointMatch;
+import mpicbg.models.RansacParam;
 import mpicbg.models.RigidModel2D;
 import mpicbg.models.SimilarityModel2D;
 import mpicbg.models.Spring;
@@ -441,6 +443,23 @@ public class ElasticAlign implements PlugIn, KeyListener
 
 		if ( !p.setup( imp ) ) return;
 
+		final ExecutorService exec = Executors.newFixedThreadPool( p.maxNumThreads );
+		try
+		{
+			run( imp, exec );
+		}
+		finally
+		{
+			exec.shutdown();
+		}
+	}
+
+	/**
+	 * Process imp with the parameters in {@link #p}.  Parallel steps run on
+	 * the threads of exec.
+	 */
+	protected void run( final ImagePlus imp, final ExecutorService exec ) throws Exception
+	{
 		final ImageStack stack = imp.getStack();
 		final double displayRangeMin = imp.getDisplayRangeMin();
 		final double displayRangeMax = imp.getDisplayRangeMax();
@@ -582,6 +601,9 @@ J:				for ( int j = i + 1; j < range; )
 
 								final ArrayList< PointMatch > inliers = new ArrayList< PointMatch >();
 
+								/* a random source per pair is reproducible for any number of threads */
+								final Random random = new Random( RansacParam.DEFAULT_SEED );
+
 								boolean modelFound;
 								boolean again = false;
 								try
@@ -595,7 +617,8 @@ J:				for ( int j = i + 1; j < range; )
 												p.maxEpsilon,
 												p.minInlierRatio,
 												p.minNumInliers,
-												3 );
+												3,
+												random );
 										if ( modelFound && p.rejectIdentity )
 										{
 											final ArrayList< Point > points = new ArrayList< Point >();
@@ -773,7 +796,7 @@ J:				for ( int j = i + 1; j < range; )
 			if ( p.useLocalSmoothnessFilter )
 			{
 				IJ.log( pair.a + " > " + pair.b + ": found " + pm12.size() + " correspondence candidates." );
-				localSmoothnessFilterModel.localSmoothnessFilter( pm12, pm12, p.localRegionSigma, p.maxLocalEpsilon, p.maxLocalTrust );
+				localSmoothnessFilterModel.localSmoothnessFilter( pm12, pm12, p.localRegionSigma, p.maxLocalEpsilon, p.maxLocalTrust, exec );
 				IJ.log( pair.a + " > " + pair.b + ": " + pm12.size() + " candidates passed local smoothness filter." );
 			}
 			else
@@ -827,7 +850,7 @@ J:				for ( int j = i + 1; j < range; )
 			if ( p.useLocalSmoothnessFilter )
 			{
 				IJ.log( pair.a + " < " + pair.b + ": found " + pm21.size() + " correspondence candidates." );
-				localSmoothnessFilterModel.localSmoothnessFilter( pm21, pm21, p.localRegionSigma, p.maxLocalEpsilon, p.maxLocalTrust );
+				localSmoothnessFilterModel.localSmoothnessFilter( pm21, pm21, p.localRegionSigma, p.maxLocalEpsilon, p.maxLocalTrust, exec );
 				IJ.log( pair.a + " < " + pair.b + ": " + pm21.size() + " candidates passed local smoothness filter." );
 			}
 			else
@@ -950,7 +973,7 @@ J:				for ( int j = i + 1; j < range; )
 			mlt.setAlpha( 2.0f );
 			mlt.setMatches( meshes.get( i ).getVA().keySet() );
 
-			final CoordinateTransformMesh mltMesh = new CoordinateTransformMesh( mlt, p.resolutionOutput, stack.getWidth(), stack.getHeight() );
+			final CoordinateTransformMesh mltMesh = new CoordinateTransformMesh( mlt, p.resolutionOutput, stack.getWidth(), stack.getHeight(), exec );
 			final TransformMeshMapping< CoordinateTransformMesh > mltMapping = new TransformMeshMapping< CoordinateTransformMesh >( mltMesh );
 
 			final ImageProcessor source, target;
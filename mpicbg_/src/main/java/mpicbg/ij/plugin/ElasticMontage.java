@@ -55,6 +55,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -76,6 +77,7 @@ import mpicbg.models.InvertibleCoordinateTransform;
 import mpicbg.models.MovingLeastSquaresTransform;
 import mpicbg.models.NotEnoughDataPointsException;
 import mpicbg.models.PointMatch;
+import mpicbg.models.RansacParam;
 import mpicbg.models.RigidModel2D;
 import mpicbg.models.SimilarityModel2D;
 import mpicbg.models.Spring;
@@ -338,6 +340,23 @@ public class ElasticMontage implements PlugIn
 
 		if ( !p.setup() ) return;
 
+		final ExecutorService exec = Executors.newFixedThreadPool( p.maxNumThreads );
+		try
+		{
+			run( imp, exec );
+		}
+		finally
+		{
+			exec.shutdown();
+		}
+	}
+
+	/**
+	 * Process imp with the parameters in {@link #p}.  Parallel steps run on
+	 * the threads of exec.
+	 */
+	protected void run( final ImagePlus imp, final ExecutorService exec ) throws Exception
+	{
 		final ImageStack stack = imp.getStack();
 		final double displayRangeMin = imp.getDisplayRangeMin();
 		final double displayRangeMax = imp.getDisplayRangeMax();
@@ -492,6 +511,9 @@ public class ElasticMontage implements PlugIn
 
 							final ArrayList< PointMatch > inliers = new ArrayList< PointMatch >();
 
+							/* a random source per pair is reproducible for any number of threads */
+							final Random random = new Random( RansacParam.DEFAULT_SEED );
+
 							boolean modelFound;
 							try
 							{
@@ -501,7 +523,9 @@ public class ElasticMontage implements PlugIn
 										1000,
 										p.maxEpsilon,
 										p.minInlierRatio,
-										p.minNumInliers );
+										p.minNumInliers,
+										4,
+										random );
 							}
 							catch ( final Exception e )
 							{
@@ -595,7 +619,7 @@ public class ElasticMontage implements PlugIn
 			if ( p.useLocalSmoothnessFilter )
 			{
 				IJ.log( pair.a + " > " + pair.b + ": found " + pm12.size() + " correspondence candidates." );
-				localSmoothnessFilterModel.localSmoothnessFilter( pm12, pm12, p.localRegionSigma, p.maxLocalEpsilon, p.maxLocalTrust );
+				localSmoothnessFilterModel.localSmoothnessFilter( pm12, pm12, p.localRegionSigma, p.maxLocalEpsilon, p.maxLocalTrust, exec );
 				IJ.log( pair.a + " > " + pair.b + ": " + pm12.size() + " candidates passed local smoothness filter." );
 			}
 			else
@@ -634,7 +658,7 @@ public class ElasticMontage implements PlugIn
 			if ( p.useLocalSmoothnessFilter )
 			{
 				IJ.log( pair.a + " < " + pair.b + ": found " + pm21.size() + " correspondence candidates." );
-				localSmoothnessFilterModel.localSmoothnessFilter( pm21, pm21, p.localRegionSigma, p.maxLocalEpsilon, p.maxLocalTrust );
+				localSmoothnessFilterModel.localSmoothnessFilter( pm21, pm21, p.localRegionSigma, p.maxLocalEpsilon, p.maxLocalTrust, exec );
 				IJ.log( pair.a + " < " + pair.b + ": " + pm21.size() + " candidates passed local smoothness filter." );
 			}
 			else
@@ -759,7 +783,7 @@ public class ElasticMontage implements PlugIn
 			mlt.setAlpha( 2.0f );
 			mlt.setMatches( meshes.get( i ).getVA().keySet() );
 
-			final TransformMeshMapping< CoordinateTransformMesh > mltMapping = new TransformMeshMapping< CoordinateTransformMesh >( new CoordinateTransformMesh( mlt, p.resolutionOutput, stack.getWidth() - 1, stack.getHeight() - 1 ) );
+			final TransformMeshMapping< CoordinateTransformMesh > mltMapping = new TransformMeshMapping< CoordinateTransformMesh >( new CoordinateTransformMesh( mlt, p.resolutionOutput, stack.getWidth() - 1, stack.getHeight() - 1, exec ) );
 			final ImageProcessor source;
 			if ( p.rgbWithGreenBackground )
 				source = stack.getProcessor( slice ).convertToRGB();